@@ -1,8 +1,9 @@
 package com.jd.blockchain.binaryproto;
 
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 import com.jd.blockchain.binaryproto.impl2.DataContractContext;
 import com.jd.blockchain.binaryproto.impl2.HeaderEncoder;
@@ -11,22 +12,136 @@ import com.jd.blockchain.utils.io.BytesSlice;
 import com.jd.blockchain.utils.io.BytesUtils;
 
 public class BinaryEncodingUtils {
-	
 
+	/**
+	 * 线程本地的输出缓冲区；
+	 * <p>
+	 * 编码过程中可能重入（例如字段的读取方法中又调用了编码），因此使用时从线程本地取出，用完后清空并归还；重入时创建新的缓冲区；<br>
+	 * 复用的只是缓冲区对象及其片段引用数组的容量，写入的数据片段在每次编码时分配，清空时即释放引用；
+	 */
+	private static final ThreadLocal<BytesOutputBuffer> BUFFER_POOL = new ThreadLocal<>();
+
+	/**
+	 * 序列化数据对象，写入指定的输出流；
+	 * <p>
+	 * 数据片段逐个写入输出流，不合并为完整的数组；例如可以直接写入哈希计算器的输出流计算序列化结果的哈希；
+	 * 
+	 * @param data
+	 *            数据对象；
+	 * @param contractType
+	 *            数据契约类型；
+	 * @param out
+	 *            输出流；
+	 */
 	public static void encode(Object data, Class<?> contractType, OutputStream out) {
+		DataContractEncoder encoder = resolveEncoder(contractType);
+		BytesSlice contractBytes = encoder.getContractBytes(data);
+		if (contractBytes != null) {
+			contractBytes.writeTo(out);
+			return;
+		}
+		BytesOutputBuffer buffer = borrowBuffer();
+		try {
+			encoder.encode(data, buffer);
+			buffer.writeTo(out);
+		} finally {
+			returnBuffer(buffer);
+		}
+	}
+
+	/**
+	 * 序列化数据对象；
+	 * <p>
+	 * 数据片段写入缓冲区之后一次复制到长度恰好等于编码结果的数组；反序列化生成的数据对象直接返回其原始字节的副本；
+	 * 
+	 * @param data
+	 *            数据对象；
+	 * @param contractType
+	 *            数据契约类型；
+	 * @return
+	 */
+	public static byte[] encode(Object data, Class<?> contractType) {
+		DataContractEncoder encoder = resolveEncoder(contractType);
+		BytesSlice contractBytes = encoder.getContractBytes(data);
+		if (contractBytes != null) {
+			return contractBytes.toBytes();
+		}
+		BytesOutputBuffer buffer = borrowBuffer();
+		try {
+			encoder.encode(data, buffer);
+			return buffer.toBytes();
+		} finally {
+			returnBuffer(buffer);
+		}
+	}
+
+	/**
+	 * 序列化数据对象，写入指定的 {@link ByteBuffer}；
+	 * <p>
+	 * 可以写入调用者复用的缓冲区（包括直接缓冲区），避免为每次编码分配新的数组；<br>
+	 * 如果缓冲区的剩余空间不足，则抛出 {@link BufferOverflowException}，不写入任何数据；
+	 * 
+	 * @param data
+	 *            数据对象；
+	 * @param contractType
+	 *            数据契约类型；
+	 * @param out
+	 *            要写入的缓冲区；从当前位置开始写入；
+	 * @return 写入的字节数；
+	 */
+	public static int encode(Object data, Class<?> contractType, ByteBuffer out) {
+		DataContractEncoder encoder = resolveEncoder(contractType);
+		BytesSlice contractBytes = encoder.getContractBytes(data);
+		if (contractBytes != null) {
+			return contractBytes.writeTo(out);
+		}
+		BytesOutputBuffer buffer = borrowBuffer();
+		try {
+			encoder.encode(data, buffer);
+			return buffer.writeTo(out);
+		} finally {
+			returnBuffer(buffer);
+		}
+	}
+
+	/**
+	 * 返回反序列化生成的数据对象的原始字节；
+	 * <p>
+	 * 适用于解码得到的数据对象及其任意层级的数据契约字段，可直接用于计算哈希、验证签名，而不必重新序列化；
+	 * 
+	 * @param data
+	 *            数据对象；
+	 * @param contractType
+	 *            数据契约类型；
+	 * @return 原始字节的片段；如果数据对象不是以指定的数据契约类型反序列化生成的，则返回 null；
+	 */
+	public static BytesSlice getContractBytes(Object data, Class<?> contractType) {
+		if (data == null) {
+			return null;
+		}
+		return resolveEncoder(contractType).getContractBytes(data);
+	}
+
+	private static DataContractEncoder resolveEncoder(Class<?> contractType) {
 		DataContractEncoder encoder = DataContractContext.resolve(contractType);
 		if (encoder == null) {
 			throw new IllegalArgumentException("Contract Type not exist!--" + contractType.getName());
 		}
-		BytesOutputBuffer buffer = new BytesOutputBuffer();
-		encoder.encode(data, buffer);
-		buffer.writeTo(out);
+		return encoder;
 	}
 
-	public static byte[] encode(Object data, Class<?> contractType) {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		encode(data, contractType, out);
-		return out.toByteArray();
+	private static BytesOutputBuffer borrowBuffer() {
+		BytesOutputBuffer buffer = BUFFER_POOL.get();
+		if (buffer == null) {
+			return new BytesOutputBuffer();
+		}
+		BUFFER_POOL.set(null);
+		return buffer;
+	}
+
+	private static void returnBuffer(BytesOutputBuffer buffer) {
+		buffer.clear();
+		BUFFER_POOL.set(buffer);
 	}
 
 	public static <T> T decode(InputStream in) {
@@ -44,4 +44,15 @@ public interface DataContractEncoder {
 	 * @return
 	 */
 	<T> T decode(BytesInputStream bytesStream);
+
+	/**
+	 * 返回由此编码器反序列化生成的数据对象的原始字节；
+	 * <p>
+	 * 反序列化生成的数据对象是只读的，其原始字节与重新序列化的结果一致，可直接用于计算哈希、验证签名或者嵌入到其它数据中；
+	 * 
+	 * @param dataContract
+	 *            数据对象；
+	 * @return 原始字节的片段；如果数据对象不是由此编码器反序列化生成的，则返回 null；
+	 */
+	BytesSlice getContractBytes(Object dataContract);
 }
@@ -1,7 +1,7 @@
 package com.jd.blockchain.binaryproto.impl2;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.function.Function;
 
 import com.jd.blockchain.binaryproto.BinarySliceSpec;
 import com.jd.blockchain.binaryproto.FieldSpec;
@@ -14,10 +14,16 @@ public abstract class AbstractFieldEncoder implements FieldEncoder {
 
 	protected Method reader;
 
+	/**
+	 * 字段值的读取器；参见 {@link FieldReader}；
+	 */
+	private final Function<Object, Object> valueReader;
+
 	public AbstractFieldEncoder(BinarySliceSpec sliceSpec, FieldSpec fieldSpec, Method reader) {
 		this.sliceSpec = sliceSpec;
 		this.fieldSpec = fieldSpec;
 		this.reader = reader;
+		this.valueReader = FieldReader.create(reader);
 	}
 
 	@Override
@@ -37,11 +43,7 @@ public abstract class AbstractFieldEncoder implements FieldEncoder {
 
 
 	protected Object readValue(Object dataContract) {
-		try {
-			return reader.invoke(dataContract);
-		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-			throw new IllegalStateException(e.getMessage(), e);
-		}
+		return valueReader.apply(dataContract);
 	}
 
 	protected Object[] readArrayValue(Object dataContract) {
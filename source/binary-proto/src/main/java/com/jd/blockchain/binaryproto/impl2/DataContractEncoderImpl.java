@@ -2,6 +2,7 @@ package com.jd.blockchain.binaryproto.impl2;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import com.jd.blockchain.binaryproto.DataContractEncoder;
@@ -25,6 +26,14 @@ public class DataContractEncoderImpl implements DataContractEncoder {
 	// 字段的 Get 方法与编码器的映射表；
 	private Map<Method, Integer> fieldIndexMap;
 
+	/**
+	 * 以方法实例为键的字段序号缓存；不是字段的方法映射为 -1；
+	 * <p>
+	 * 动态代理传入的方法实例是代理类的静态成员，实例保持不变，以引用比较代替 {@link Method#equals(Object)}；
+	 * 以写时复制的方式更新，读取时不加锁；
+	 */
+	private volatile Map<Method, Integer> methodIdCache = new IdentityHashMap<>();
+
 	/**
 	 * @param contractType
 	 * @param specification
@@ -72,8 +81,20 @@ public class DataContractEncoderImpl implements DataContractEncoder {
 	 * @return 字段序号； 如果不存在，则返回 -1；
 	 */
 	int getFieldId(Method declaredMethod) {
-		Integer id = fieldIndexMap.get(declaredMethod);
-		return id == null ? -1 : id.intValue();
+		Integer id = methodIdCache.get(declaredMethod);
+		if (id != null) {
+			return id.intValue();
+		}
+		id = fieldIndexMap.get(declaredMethod);
+		int fieldId = id == null ? -1 : id.intValue();
+		cacheFieldId(declaredMethod, fieldId);
+		return fieldId;
+	}
+
+	private synchronized void cacheFieldId(Method method, int fieldId) {
+		Map<Method, Integer> cache = new IdentityHashMap<>(methodIdCache);
+		cache.put(method, fieldId);
+		methodIdCache = cache;
 	}
 
 	/**
@@ -103,6 +124,12 @@ public class DataContractEncoderImpl implements DataContractEncoder {
 
 	@Override
 	public int encode(Object dataContract, BytesOutputBuffer buffer) {
+		// 反序列化生成的数据对象直接写入原始字节，不再逐个字段编码；
+		BytesSlice contractBytes = getContractBytes(dataContract);
+		if (contractBytes != null) {
+			buffer.write(contractBytes);
+			return contractBytes.getSize();
+		}
 		int size = 0;
 		size += headEncoder.encode(dataContract, buffer);
 		if (dataContract != null) {
@@ -130,4 +157,9 @@ public class DataContractEncoderImpl implements DataContractEncoder {
 		return (T) DynamicDataContract.createContract(bytesStream, this);
 	}
 
+	@Override
+	public BytesSlice getContractBytes(Object dataContract) {
+		return DynamicDataContract.getContractBytes(dataContract, this);
+	}
+
 }
@@ -1,10 +1,13 @@
 package com.jd.blockchain.binaryproto.impl2;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.jd.blockchain.utils.io.BytesInputStream;
+import com.jd.blockchain.utils.io.BytesSlice;
 import com.jd.blockchain.utils.io.BytesSlices;
 
 class DynamicDataContract implements InvocationHandler {
@@ -21,11 +24,24 @@ class DynamicDataContract implements InvocationHandler {
 
 	private DataContractEncoderImpl contractEncoder;
 
-//	private BytesSlice contractBytes;
+	/**
+	 * 数据契约的原始字节，包括头部；
+	 */
+	private BytesSlice contractBytes;
 
 	// 字段的数据片段列表，首个是 HeaderSlice，其次是按字段顺序排列的数据片段；
 	private BytesSlices[] dataSlices;
 
+	/**
+	 * 已解码的字段值，按字段顺序排列；未解码的字段为 {@link #UNDECODED}；
+	 * <p>
+	 * 数据契约是只读的，字段值在首次读取时解码，之后的读取不再重复解码；<br>
+	 * 并发读取时可能重复解码，但只有首个解码的值被发布，通过 {@link AtomicReferenceArray} 保证其他线程看到完整构造的值；
+	 */
+	private AtomicReferenceArray<Object> fieldValues;
+
+	private static final Object UNDECODED = new Object();
+
 	private DynamicDataContract(BytesInputStream bytesStream, DataContractEncoderImpl contractEncoder) {
 		this.contractEncoder = contractEncoder;
 
@@ -33,6 +49,9 @@ class DynamicDataContract implements InvocationHandler {
 	}
 
 	private void init(BytesInputStream bytesStream) {
+		BytesSlice remainBytes = bytesStream.getSlice();
+		int remainSize = bytesStream.getSize();
+
 		// 解析出所有的数据片段；
 		dataSlices = new BytesSlices[contractEncoder.getFieldCount() + 1];
 		
@@ -41,6 +60,64 @@ class DynamicDataContract implements InvocationHandler {
 		for (int i = 1; i < dataSlices.length; i++) {
 			dataSlices[i] = contractEncoder.getFieldEncoder(i - 1).decode(bytesStream);
 		}
+
+		fieldValues = new AtomicReferenceArray<>(contractEncoder.getFieldCount());
+		for (int i = 0; i < fieldValues.length(); i++) {
+			fieldValues.set(i, UNDECODED);
+		}
+
+		// 保留已读取的原始字节；
+		contractBytes = remainBytes.getSlice(0, remainSize - bytesStream.getSize());
+	}
+
+	/**
+	 * 返回数据契约对象的原始字节；
+	 * 
+	 * @param dataContract
+	 *            数据契约对象；
+	 * @param contractEncoder
+	 *            数据契约的编码器；
+	 * @return 如果数据契约对象不是由指定的编码器反序列化生成的，则返回 null；
+	 */
+	static BytesSlice getContractBytes(Object dataContract, DataContractEncoderImpl contractEncoder) {
+		if (!(dataContract instanceof Proxy)) {
+			return null;
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(dataContract);
+		if (handler instanceof DynamicDataContract
+				&& ((DynamicDataContract) handler).contractEncoder == contractEncoder) {
+			return ((DynamicDataContract) handler).contractBytes;
+		}
+		return null;
+	}
+
+	private Object getFieldValue(int fieldId) {
+		Object value = fieldValues.get(fieldId);
+		if (value == UNDECODED) {
+			FieldEncoder encoder = contractEncoder.getFieldEncoder(fieldId);
+			value = encoder.decodeField(dataSlices[fieldId + 1]);
+			if (!fieldValues.compareAndSet(fieldId, UNDECODED, value)) {
+				value = fieldValues.get(fieldId);
+			}
+		}
+		if (value != null && value.getClass().isArray()) {
+			// 数组可被调用者修改，每次返回副本；
+			return cloneArray(value);
+		}
+		return value;
+	}
+
+	private static Object cloneArray(Object array) {
+		if (array instanceof Object[]) {
+			return ((Object[]) array).clone();
+		}
+		if (array instanceof byte[]) {
+			return ((byte[]) array).clone();
+		}
+		int length = Array.getLength(array);
+		Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -60,8 +137,7 @@ class DynamicDataContract implements InvocationHandler {
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 		int fieldId = contractEncoder.getFieldId(method);
 		if (fieldId > -1) {
-			FieldEncoder encoder = contractEncoder.getFieldEncoder(fieldId);
-			return encoder.decodeField(dataSlices[fieldId + 1]);
+			return getFieldValue(fieldId);
 		}
 		if (METHOD_GET_CLASS == method) {
 			return contractEncoder.getContractType();
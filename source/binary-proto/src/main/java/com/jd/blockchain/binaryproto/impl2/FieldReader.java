@@ -0,0 +1,113 @@
+package com.jd.blockchain.binaryproto.impl2;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+/**
+ * 字段值的读取器；
+ * <p>
+ * 以 {@link LambdaMetafactory} 生成直接调用字段声明方法的实现类，读取字段值时不经过反射调用；<br>
+ * 如果数据契约的类型对 binary-proto 的类加载器不可见（例如由合约的类加载器加载），则退化为以 {@link MethodHandle} 调用；<br>
+ * 如果方法不可访问，则保持以反射调用；
+ *
+ * @author huanghaiquan
+ *
+ */
+final class FieldReader {
+
+	private FieldReader() {
+	}
+
+	/**
+	 * 创建字段声明方法的读取器；
+	 *
+	 * @param reader
+	 *            字段的声明方法；必须是无参数的公共方法；
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static Function<Object, Object> create(Method reader) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle handle;
+		try {
+			handle = lookup.unreflect(reader);
+		} catch (IllegalAccessException e) {
+			// 不可访问的方法保持以反射调用；
+			return new ReflectionReader(reader);
+		}
+		if (isVisible(reader.getDeclaringClass()) && isVisible(reader.getReturnType())) {
+			try {
+				CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+						MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+				return (Function<Object, Object>) site.getTarget().invokeExact();
+			} catch (Throwable e) {
+				// 无法生成时以 MethodHandle 调用；
+			}
+		}
+		return new MethodHandleReader(handle.asType(MethodType.methodType(Object.class, Object.class)));
+	}
+
+	/**
+	 * 生成的实现类以 binary-proto 的类加载器解析其引用的类型，因此要求类型对此类加载器可见；
+	 *
+	 * @param type
+	 * @return
+	 */
+	private static boolean isVisible(Class<?> type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive()) {
+			return true;
+		}
+		try {
+			return Class.forName(type.getName(), false, FieldReader.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	private static class ReflectionReader implements Function<Object, Object> {
+
+		private final Method method;
+
+		public ReflectionReader(Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public Object apply(Object dataContract) {
+			try {
+				return method.invoke(dataContract);
+			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+	}
+
+	private static class MethodHandleReader implements Function<Object, Object> {
+
+		private final MethodHandle handle;
+
+		public MethodHandleReader(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		@Override
+		public Object apply(Object dataContract) {
+			try {
+				return handle.invokeExact(dataContract);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+	}
+}
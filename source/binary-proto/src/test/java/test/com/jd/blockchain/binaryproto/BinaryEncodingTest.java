@@ -1,9 +1,16 @@
 package test.com.jd.blockchain.binaryproto;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 
@@ -154,6 +161,105 @@ public class BinaryEncodingTest {
 		assertEquals(pd.getNetworkAddr().getPort(), decodeData.getNetworkAddr().getPort());
 	}
 
+	/**
+	 * 此测试用例是对反序列化结果的字段缓存的验证：字段值只解码一次，数组字段每次返回副本；解码结果重新序列化后与原数据一致；
+	 */
+	@Test
+	public void testDecoding_MemoizedFields() {
+		DataContractRegistry.register(PrimitiveDatas.class);
+		PrimitiveDatasImpl pd = new PrimitiveDatasImpl();
+		pd.setId(123);
+		pd.setName("John");
+		pd.setImage("Image of John".getBytes());
+		pd.setConfig(Bytes.fromString("Configuration of something."));
+		pd.setNetworkAddress(new NetworkAddress("192.168.1.1", 9001, false));
+
+		byte[] bytes = BinaryEncodingUtils.encode(pd, PrimitiveDatas.class);
+		PrimitiveDatas decodeData = BinaryEncodingUtils.decode(bytes);
+
+		assertSame(decodeData.getConfig(), decodeData.getConfig());
+		assertSame(decodeData.getNetworkAddr(), decodeData.getNetworkAddr());
+
+		byte[] image = decodeData.getImage();
+		assertNotSame(image, decodeData.getImage());
+		image[0] = 0;
+		assertArrayEquals(pd.getImage(), decodeData.getImage());
+
+		byte[] reencodedBytes = BinaryEncodingUtils.encode(decodeData, PrimitiveDatas.class);
+		assertArrayEquals(bytes, reencodedBytes);
+	}
+
+	/**
+	 * 此测试用例是对反序列化结果保留原始字节的验证：解码得到的数据及其引用的数据契约字段可直接返回原始字节，重新序列化时直接写入原始字节；
+	 */
+	@Test
+	public void testDecoding_ContractBytes() {
+		DataContractRegistry.register(RefContractDatas.class);
+		PrimitiveDatasImpl primitiveDatas = new PrimitiveDatasImpl();
+		primitiveDatas.setId(123);
+		primitiveDatas.setName("John");
+		primitiveDatas.setImage("Image of John".getBytes());
+		primitiveDatas.setNetworkAddress(new NetworkAddress("192.168.1.1", 9001, false));
+		RefContractDatasImpl refContractDatas = new RefContractDatasImpl();
+		refContractDatas.setPrimitiveDatas(primitiveDatas);
+
+		byte[] primitiveBytes = BinaryEncodingUtils.encode(primitiveDatas, PrimitiveDatas.class);
+		byte[] bytes = BinaryEncodingUtils.encode(refContractDatas, RefContractDatas.class);
+
+		// 未经反序列化的数据没有原始字节；
+		assertNull(BinaryEncodingUtils.getContractBytes(refContractDatas, RefContractDatas.class));
+
+		RefContractDatas decodeData = BinaryEncodingUtils.decode(bytes);
+		assertArrayEquals(bytes, BinaryEncodingUtils.getContractBytes(decodeData, RefContractDatas.class).toBytes());
+		assertArrayEquals(primitiveBytes,
+				BinaryEncodingUtils.getContractBytes(decodeData.getPrimitive(), PrimitiveDatas.class).toBytes());
+
+		// 引用的数据契约字段以原始字节嵌入；
+		RefContractDatasImpl newRefContractDatas = new RefContractDatasImpl();
+		newRefContractDatas.setPrimitiveDatas(decodeData.getPrimitive());
+		assertArrayEquals(bytes, BinaryEncodingUtils.encode(newRefContractDatas, RefContractDatas.class));
+	}
+
+	/**
+	 * 此测试用例是对写入 {@link ByteBuffer} 的序列化过程的验证：结果与字节数组的编码一致，空间不足时不写入任何数据；
+	 */
+	@Test
+	public void testEncoding_ByteBuffer() {
+		DataContractRegistry.register(RefContractDatas.class);
+		PrimitiveDatasImpl primitiveDatas = new PrimitiveDatasImpl();
+		primitiveDatas.setId(123);
+		primitiveDatas.setName("John");
+		primitiveDatas.setImage("Image of John".getBytes());
+		RefContractDatasImpl refContractDatas = new RefContractDatasImpl();
+		refContractDatas.setPrimitiveDatas(primitiveDatas);
+
+		byte[] bytes = BinaryEncodingUtils.encode(refContractDatas, RefContractDatas.class);
+
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length + 10);
+		directBuffer.position(10);
+		int size = BinaryEncodingUtils.encode(refContractDatas, RefContractDatas.class, directBuffer);
+		assertEquals(bytes.length, size);
+		assertEquals(bytes.length + 10, directBuffer.position());
+		byte[] directBytes = new byte[size];
+		directBuffer.position(10);
+		directBuffer.get(directBytes);
+		assertArrayEquals(bytes, directBytes);
+
+		// 反序列化生成的数据对象直接写入原始字节；
+		RefContractDatas decodeData = BinaryEncodingUtils.decode(bytes);
+		ByteBuffer heapBuffer = ByteBuffer.allocate(bytes.length);
+		assertEquals(bytes.length, BinaryEncodingUtils.encode(decodeData, RefContractDatas.class, heapBuffer));
+		assertArrayEquals(bytes, heapBuffer.array());
+
+		ByteBuffer smallBuffer = ByteBuffer.allocate(bytes.length - 1);
+		try {
+			BinaryEncodingUtils.encode(refContractDatas, RefContractDatas.class, smallBuffer);
+			fail("No BufferOverflowException was thrown!");
+		} catch (BufferOverflowException e) {
+		}
+		assertEquals(0, smallBuffer.position());
+	}
+
 	/**
 	 * 此测试用例是对序列化过程的验证，包括：头部、枚举值、字段顺序的正确性；
 	 */
@@ -1,16 +1,35 @@
 package com.jd.blockchain.consensus.bftsmart.client;
 
+import bftsmart.communication.client.ReplyListener;
+import bftsmart.reconfiguration.ClientViewController;
 import bftsmart.tom.AsynchServiceProxy;
+import bftsmart.tom.RequestContext;
+import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.tom.core.messages.TOMMessageType;
 import com.jd.blockchain.consensus.MessageService;
 import com.jd.blockchain.utils.concurrent.AsyncFuture;
 import com.jd.blockchain.utils.concurrent.CompletableAsyncFuture;
+import com.jd.blockchain.utils.concurrent.NamedThreadFactory;
 import com.jd.blockchain.utils.io.BytesUtils;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class BftsmartMessageService implements MessageService {
 
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER = new ScheduledThreadPoolExecutor(1,
+            new NamedThreadFactory("bftsmart-request-timeout", true));
+
+    static {
+        // 请求完成时取消的超时任务立即移除，避免在队列中积压到超时；
+        TIMEOUT_SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
     private BftsmartPeerProxyPool asyncPeerProxyPool;
 
     public BftsmartMessageService(BftsmartPeerProxyPool peerProxyPool) {
@@ -22,28 +41,32 @@ public class BftsmartMessageService implements MessageService {
         return sendOrderedMessage(message);
     }
 
+    /**
+     * 以 {@link AsynchServiceProxy#invokeAsynchRequest(byte[], ReplyListener, TOMMessageType)} 发送请求，不等待共识的结果；
+     * <p>
+     * 代理只在发送期间从池中借出；收到足够数量的相同回复之后完成，超过代理的调用超时时间仍未完成则以超时异常结束；
+     */
     private AsyncFuture<byte[]> sendOrderedMessage(byte[] message) {
         CompletableAsyncFuture<byte[]> asyncFuture = new CompletableAsyncFuture<>();
         AsynchServiceProxy asynchServiceProxy = null;
         try {
             asynchServiceProxy = asyncPeerProxyPool.borrowObject();
-//            //0: Transaction msg, 1: Commitblock msg
-//            byte[] msgType = BytesUtils.toBytes(0);
-//            byte[] wrapMsg = new byte[message.length + 4];
-//            System.arraycopy(message, 0, wrapMsg, 4, message.length);
-//            System.arraycopy(msgType, 0, wrapMsg, 0, 4);
-//
-//            System.out.printf("BftsmartMessageService invokeOrdered time = %s, id = %s threadId = %s \r\n",
-//                    System.currentTimeMillis(),  asynchServiceProxy.getProcessId(), Thread.currentThread().getId());
-
-            byte[] result = asynchServiceProxy.invokeOrdered(message);
-            asyncFuture.complete(result);
-
+            OrderedReplyListener replyListener = new OrderedReplyListener(asynchServiceProxy, asyncFuture);
+            int requestId = asynchServiceProxy.invokeAsynchRequest(message, replyListener,
+                    TOMMessageType.ORDERED_REQUEST);
+            AsynchServiceProxy proxy = asynchServiceProxy;
+            ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(() -> {
+                if (asyncFuture.error(new TimeoutException("Timeout of waiting replies of ordered request!"))) {
+                    proxy.cleanAsynchRequest(requestId);
+                }
+            }, asynchServiceProxy.getInvokeTimeout(), TimeUnit.SECONDS);
+            asyncFuture.whenComplete((result, error) -> timeout.cancel(false));
         } catch (Exception e) {
-            throw new RuntimeException();
-
+            asyncFuture.error(e);
         } finally {
-            asyncPeerProxyPool.returnObject(asynchServiceProxy);
+            if (asynchServiceProxy != null) {
+                asyncPeerProxyPool.returnObject(asynchServiceProxy);
+            }
         }
 
         return asyncFuture;
@@ -70,4 +93,56 @@ public class BftsmartMessageService implements MessageService {
         return asyncFuture;
     }
 
+    /**
+     * 有序请求的回复的监听器；
+     * <p>
+     * 与 {@link AsynchServiceProxy#invokeOrdered(byte[])} 一样，同一内容的回复达到法定数量时完成；
+     */
+    private static class OrderedReplyListener implements ReplyListener {
+
+        private final AsynchServiceProxy proxy;
+
+        private final CompletableAsyncFuture<byte[]> future;
+
+        private final Map<Integer, byte[]> replies = new HashMap<>();
+
+        public OrderedReplyListener(AsynchServiceProxy proxy, CompletableAsyncFuture<byte[]> future) {
+            this.proxy = proxy;
+            this.future = future;
+        }
+
+        @Override
+        public synchronized void reset() {
+            replies.clear();
+        }
+
+        @Override
+        public synchronized void replyReceived(RequestContext context, TOMMessage reply) {
+            if (future.isDone()) {
+                return;
+            }
+            byte[] content = reply.getContent();
+            replies.put(reply.getSender(), content);
+            int sameCount = 0;
+            for (byte[] r : replies.values()) {
+                if (Arrays.equals(content, r)) {
+                    sameCount++;
+                }
+            }
+            if (sameCount >= getReplyQuorum()) {
+                proxy.cleanAsynchRequest(context.getOperationId());
+                future.complete(content);
+            }
+        }
+
+        private int getReplyQuorum() {
+            ClientViewController viewManager = proxy.getViewManager();
+            int n = viewManager.getCurrentViewN();
+            if (viewManager.getStaticConf().isBFT()) {
+                return (n + viewManager.getCurrentViewF()) / 2 + 1;
+            }
+            return n / 2 + 1;
+        }
+    }
+
 }
@@ -0,0 +1,208 @@
+package com.jd.blockchain.consensus.bftsmart.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jd.blockchain.consensus.service.StateMachineReplicate;
+
+/**
+ * 检查点的点对点传输服务；
+ * <p>
+ * 共识的状态传输只携带检查点的描述（状态编号以及发送方的传输地址），落后的节点按描述连接发送方，以流的方式逐块拉取检查点的归档
+ * （参见 {@link StateMachineReplicate#readState(String, long)}），边接收边还原，发送方和接收方都不会把整个检查点读入内存；
+ * <p>
+ * 协议：接收方连接之后发送 8 字节的状态编号；发送方随后写出归档流并关闭连接；状态编号对应的检查点不存在时直接关闭连接，接收方还原时因归档不完整而失败；
+ * <p>
+ * 只接受来自共识节点的主机的连接；检查点的数据由接收方按照共识的区块哈希以及默克尔树校验，传输通道本身不做校验；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class BftsmartCheckpointServer {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BftsmartCheckpointServer.class);
+
+    /**
+     * 传输端口相对于共识节点端口的偏移；BFT-SMaRt 占用节点端口以及之后的 1 个端口；
+     */
+    public static final int PORT_OFFSET = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 接收方读取的超时时间（毫秒）；
+     */
+    private static final int READ_TIMEOUT = 60 * 1000;
+
+    private final String realmName;
+
+    private final StateMachineReplicate stateMachineReplicate;
+
+    private final Set<InetAddress> allowedHosts;
+
+    private final ExecutorService transferExecutor = Executors.newCachedThreadPool();
+
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * @param realmName
+     *            共识域；
+     * @param stateMachineReplicate
+     *            检查点的来源；
+     * @param allowedHosts
+     *            允许连接的主机，即各个共识节点的主机；
+     */
+    public BftsmartCheckpointServer(String realmName, StateMachineReplicate stateMachineReplicate,
+                                    Set<InetAddress> allowedHosts) {
+        this.realmName = realmName;
+        this.stateMachineReplicate = stateMachineReplicate;
+        this.allowedHosts = allowedHosts;
+    }
+
+    /**
+     * 在指定端口启动服务；
+     *
+     * @param port
+     */
+    public synchronized void start(int port) {
+        if (serverSocket != null) {
+            return;
+        }
+        try {
+            ServerSocket socket = new ServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+            serverSocket = socket;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cann't listen on port[" + port + "] for checkpoint transfer! --"
+                    + e.getMessage(), e);
+        }
+        Thread acceptor = new Thread(this::accept, "checkpoint-transfer-" + port);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOGGER.info("Checkpoint transfer server of realm[" + realmName + "] is listening on port[" + port + "]!");
+    }
+
+    public synchronized void stop() {
+        ServerSocket socket = serverSocket;
+        if (socket == null) {
+            return;
+        }
+        serverSocket = null;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error occurred on closing checkpoint transfer server! --" + e.getMessage(), e);
+        }
+        transferExecutor.shutdownNow();
+    }
+
+    private void accept() {
+        ServerSocket socket;
+        while ((socket = serverSocket) != null) {
+            Socket conn;
+            try {
+                conn = socket.accept();
+            } catch (SocketException e) {
+                // 服务已停止；
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Error occurred on accepting checkpoint transfer! --" + e.getMessage(), e);
+                continue;
+            }
+            if (!allowedHosts.contains(conn.getInetAddress())) {
+                LOGGER.warn("Reject checkpoint transfer from unknown host[" + conn.getInetAddress() + "]!");
+                closeQuietly(conn);
+                continue;
+            }
+            transferExecutor.execute(() -> transfer(conn));
+        }
+    }
+
+    private void transfer(Socket conn) {
+        long stateId = -1;
+        try {
+            conn.setSoTimeout(READ_TIMEOUT);
+            stateId = new DataInputStream(conn.getInputStream()).readLong();
+            long size = 0;
+            try (InputStream in = stateMachineReplicate.readState(realmName, stateId)) {
+                OutputStream out = conn.getOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buffer)) > -1) {
+                    out.write(buffer, 0, len);
+                    size += len;
+                }
+                out.flush();
+            }
+            LOGGER.info("Checkpoint of realm[" + realmName + "] at state[" + stateId + "] is transferred to ["
+                    + conn.getRemoteSocketAddress() + "]! --[" + size + " bytes]");
+        } catch (Exception e) {
+            LOGGER.error("Error occurred on transferring checkpoint of realm[" + realmName + "] at state[" + stateId
+                    + "] to [" + conn.getRemoteSocketAddress() + "]! --" + e.getMessage(), e);
+        } finally {
+            closeQuietly(conn);
+        }
+    }
+
+    /**
+     * 连接发送方，拉取指定状态编号的检查点的归档流；
+     * <p>
+     * 关闭返回的流时关闭连接；
+     *
+     * @param host
+     *            发送方的主机；
+     * @param port
+     *            发送方的传输端口；
+     * @param stateId
+     *            状态编号；
+     * @return
+     * @throws IOException
+     */
+    public static InputStream fetch(String host, int port, long stateId) throws IOException {
+        Socket conn = new Socket();
+        try {
+            conn.connect(new InetSocketAddress(host, port), READ_TIMEOUT);
+            conn.setSoTimeout(READ_TIMEOUT);
+            DataOutputStream out = new DataOutputStream(conn.getOutputStream());
+            out.writeLong(stateId);
+            out.flush();
+            return new BufferedInputStream(conn.getInputStream(), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        conn.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Socket conn) {
+        try {
+            conn.close();
+        } catch (IOException e) {
+            // 忽略；
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.jd.blockchain.consensus.bftsmart.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
@@ -19,6 +24,7 @@ import com.jd.blockchain.consensus.service.NodeServer;
 import com.jd.blockchain.consensus.service.ServerSettings;
 import com.jd.blockchain.consensus.service.StateHandle;
 import com.jd.blockchain.consensus.service.StateMachineReplicate;
+import com.jd.blockchain.consensus.service.StateSnapshot;
 import com.jd.blockchain.ledger.TransactionState;
 import com.jd.blockchain.utils.PropertiesUtils;
 import com.jd.blockchain.utils.concurrent.AsyncFuture;
@@ -26,6 +32,8 @@ import com.jd.blockchain.utils.io.BytesUtils;
 import bftsmart.reconfiguration.util.HostsConfig;
 import bftsmart.reconfiguration.util.TOMConfiguration;
 import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.statemanagement.ApplicationState;
+import bftsmart.tom.server.defaultservices.DefaultApplicationState;
 import bftsmart.tom.server.defaultservices.DefaultRecoverable;
 
 public class BftsmartNodeServer extends DefaultRecoverable implements NodeServer {
@@ -67,6 +75,16 @@ public class BftsmartNodeServer extends DefaultRecoverable implements NodeServer
 
     private int serverId;
 
+    /**
+     * 正在装载的状态附加的检查点的描述；
+     */
+    private volatile CheckpointDescriptor receivedCheckpoint;
+
+    /**
+     * 检查点的点对点传输服务；
+     */
+    private volatile BftsmartCheckpointServer checkpointServer;
+
     public BftsmartNodeServer() {
 
     }
@@ -234,6 +252,8 @@ public class BftsmartNodeServer extends DefaultRecoverable implements NodeServer
         String batchId = messageHandle.beginBatch(realmName);
         List<AsyncFuture<byte[]>> asyncFutureLinkedList = new ArrayList<>(manageConsensusCmds.size());
         try {
+            messageHandle.prefetchOrdered(manageConsensusCmds.toArray(new byte[manageConsensusCmds.size()][]),
+                    realmName, batchId);
             int msgId = 0;
             for (byte[] txContent : manageConsensusCmds) {
                 AsyncFuture<byte[]> asyncFuture = messageHandle.processOrdered(msgId++, txContent, realmName, batchId);
@@ -274,21 +294,117 @@ public class BftsmartNodeServer extends DefaultRecoverable implements NodeServer
         });
     }
 
-    //notice
+    /**
+     * 返回状态快照；
+     * <p>
+     * 快照只包含账本最新的状态编号（区块高度）以及状态快照（区块哈希），各节点以快照的哈希比对状态；账本的数据以检查点的归档在发送状态时附加，
+     * 参见 {@link #getState(int, boolean)}；
+     * <p>
+     * 同时保留该状态编号的检查点（参见 {@link StateMachineReplicate#retainState(String, long)}），使得发送的检查点恰好是快照的状态；
+     */
     public byte[] getSnapshot() {
         LOGGER.debug("------- GetSnapshot...[replica.id=" + this.getId() + "]");
 
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        BytesUtils.writeInt(stateHandles.size(), out);
-        for (StateHandle stateHandle : stateHandles) {
-            // TODO: 测试代码；
-            return stateHandle.takeSnapshot();
+        if (stateMachineReplicate == null) {
+            return out.toByteArray();
+        }
+        long stateId = stateMachineReplicate.getLatestStateID(realmName);
+        StateSnapshot snapshot = stateMachineReplicate.getSnapshot(realmName, stateId);
+        try {
+            stateMachineReplicate.retainState(realmName, stateId);
+        } catch (Exception e) {
+            LOGGER.warn("Error occurred on retaining checkpoint of realm[" + realmName + "] at state[" + stateId
+                    + "]! --" + e.getMessage(), e);
+        }
+        BytesUtils.writeLong(stateId, out);
+        if (snapshot != null) {
+            byte[] snapshotBytes = snapshot.getSnapshot();
+            BytesUtils.writeInt(snapshotBytes.length, out);
+            out.write(snapshotBytes, 0, snapshotBytes.length);
+        } else {
+            BytesUtils.writeInt(0, out);
         }
         return out.toByteArray();
     }
 
+    /**
+     * 返回指定共识编号的状态；
+     * <p>
+     * 需要发送状态时，在状态中附加账本存储的检查点的描述；接收方按描述从本节点的检查点传输服务拉取检查点的归档（参见
+     * {@link BftsmartCheckpointServer}）；<br>
+     * 检查点不参与状态哈希的计算，接收方按照状态快照中的区块哈希以及默克尔树校验检查点；
+     */
+    @Override
+    public ApplicationState getState(int cid, boolean sendState) {
+        ApplicationState state = super.getState(cid, sendState);
+        if (!sendState || checkpointServer == null || !(state instanceof DefaultApplicationState)
+                || !state.hasState()) {
+            return state;
+        }
+        DefaultApplicationState appState = (DefaultApplicationState) state;
+        byte[] snapshot = appState.getState();
+        if (snapshot == null || snapshot.length < 8) {
+            return state;
+        }
+        long stateId = BytesUtils.toLong(snapshot, 0);
+        CheckpointDescriptor checkpoint = new CheckpointDescriptor(stateId, hostsConfig.getHost(getId()),
+                hostsConfig.getPort(getId()) + BftsmartCheckpointServer.PORT_OFFSET);
+        return new CheckpointApplicationState(appState, this.getId(), checkpoint);
+    }
+
+    /**
+     * 装载状态；
+     * <p>
+     * 状态附加的检查点由 {@link #installSnapshot(byte[])} 装载；
+     */
+    @Override
+    public int setState(ApplicationState state) {
+        if (state instanceof CheckpointApplicationState) {
+            receivedCheckpoint = ((CheckpointApplicationState) state).getCheckpoint();
+        }
+        try {
+            return super.setState(state);
+        } finally {
+            receivedCheckpoint = null;
+        }
+    }
+
+    /**
+     * 装载状态快照；
+     * <p>
+     * 本地账本不低于快照的状态时无需处理；落后时按状态附加的描述从发送方拉取检查点，由
+     * {@link StateMachineReplicate#setupState(String, StateSnapshot, InputStream)} 边接收边校验并装载；
+     */
     public void installSnapshot(byte[] snapshot) {
-//        System.out.println("Not implement!");
+        if (stateMachineReplicate == null || snapshot == null || snapshot.length < 12) {
+            return;
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(snapshot);
+        long stateId = BytesUtils.readLong(in);
+        long localStateId = stateMachineReplicate.getLatestStateID(realmName);
+        if (localStateId >= stateId) {
+            LOGGER.debug("Ignore snapshot of realm[" + realmName + "] that is not ahead of local state! --[snapshot="
+                    + stateId + "][local=" + localStateId + "]");
+            return;
+        }
+        CheckpointDescriptor checkpoint = receivedCheckpoint;
+        int snapshotSize = BytesUtils.readInt(in);
+        if (checkpoint == null || checkpoint.stateId != stateId || snapshotSize <= 0
+                || snapshotSize > in.available()) {
+            LOGGER.warn("Local state of realm[" + realmName + "] is behind the snapshot, but no checkpoint is received! --[snapshot="
+                    + stateId + "][local=" + localStateId + "]");
+            return;
+        }
+        byte[] snapshotBytes = new byte[snapshotSize];
+        in.read(snapshotBytes, 0, snapshotSize);
+        try (InputStream checkpointIn = BftsmartCheckpointServer.fetch(checkpoint.host, checkpoint.port, stateId)) {
+            stateMachineReplicate.setupState(realmName, new SimpleStateSnapshot(stateId, snapshotBytes),
+                    checkpointIn);
+        } catch (Exception e) {
+            LOGGER.error("Error occurred on installing checkpoint of realm[" + realmName + "]! --[snapshot=" + stateId
+                    + "][local=" + localStateId + "] " + e.getMessage(), e);
+        }
     }
 
     @Override
@@ -311,6 +427,7 @@ public class BftsmartNodeServer extends DefaultRecoverable implements NodeServer
                 LOGGER.debug("Start replica...[ID=" + getId() + "]");
                 this.replica = new ServiceReplica(tomConfig, this, this);
                 this.topology = new BftsmartTopology(replica.getReplicaContext().getCurrentView());
+                startCheckpointServer();
                 status = Status.RUNNING;
 //                createProxyClient();
                 LOGGER.debug(
@@ -344,12 +461,109 @@ public class BftsmartNodeServer extends DefaultRecoverable implements NodeServer
                     rep.kill();
                     LOGGER.debug("Replica had stopped! --[ID=" + rep.getId() + "]");
                 }
+                BftsmartCheckpointServer server = this.checkpointServer;
+                if (server != null) {
+                    this.checkpointServer = null;
+                    server.stop();
+                }
             } finally {
                 status = Status.STOPPED;
             }
         }
     }
     
+    /**
+     * 启动检查点的传输服务，只允许共识节点的主机连接；
+     * <p>
+     * 传输服务只用于向落后的节点发送检查点，启动失败时不影响共识，只输出日志；
+     */
+    private void startCheckpointServer() {
+        if (stateMachineReplicate == null) {
+            return;
+        }
+        try {
+            Set<InetAddress> allowedHosts = new HashSet<>();
+            for (int id : hostsConfig.getHostsIds()) {
+                try {
+                    allowedHosts.addAll(Arrays.asList(InetAddress.getAllByName(hostsConfig.getHost(id))));
+                } catch (UnknownHostException e) {
+                    LOGGER.warn("Unknown host of node[" + id + "]! --" + e.getMessage());
+                }
+            }
+            BftsmartCheckpointServer server = new BftsmartCheckpointServer(realmName, stateMachineReplicate,
+                    allowedHosts);
+            server.start(hostsConfig.getPort(getId()) + BftsmartCheckpointServer.PORT_OFFSET);
+            this.checkpointServer = server;
+        } catch (RuntimeException e) {
+            LOGGER.error("Error occurred on starting checkpoint transfer server of realm[" + realmName + "]! --"
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 附加了账本检查点的描述的状态；
+     * <p>
+     * 描述以 Java 序列化随状态发送，不影响 {@link #getSerializedState()} 以及状态哈希；检查点的数据由接收方另行拉取；
+     */
+    private static class CheckpointApplicationState extends DefaultApplicationState {
+
+        private static final long serialVersionUID = 4262317541468792453L;
+
+        private CheckpointDescriptor checkpoint;
+
+        public CheckpointApplicationState(DefaultApplicationState state, int pid, CheckpointDescriptor checkpoint) {
+            super(state.getMessageBatches(), state.getLastCheckpointCID(), state.getLastCID(), state.getState(),
+                    state.getStateHash(), pid);
+            this.checkpoint = checkpoint;
+        }
+
+        public CheckpointDescriptor getCheckpoint() {
+            return checkpoint;
+        }
+    }
+
+    /**
+     * 检查点的描述：状态编号，以及发送方的检查点传输地址；
+     */
+    private static class CheckpointDescriptor implements Serializable {
+
+        private static final long serialVersionUID = -2310938126459270315L;
+
+        private final long stateId;
+
+        private final String host;
+
+        private final int port;
+
+        public CheckpointDescriptor(long stateId, String host, int port) {
+            this.stateId = stateId;
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    private static class SimpleStateSnapshot implements StateSnapshot {
+
+        private long id;
+
+        private byte[] snapshot;
+
+        public SimpleStateSnapshot(long id, byte[] snapshot) {
+            this.id = id;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public byte[] getSnapshot() {
+            return snapshot;
+        }
+    }
+
     enum Status {
 
         STARTING,
@@ -29,6 +29,20 @@ public interface MessageHandle {
 	 */
 	AsyncFuture<byte[]> processOrdered(int messageId, byte[] message, String realmName, String batchId);
 
+	/**
+	 * 预读批次中将要处理的有序消息所需的数据；
+	 * <p>
+	 * 在逐个调用 {@link #processOrdered(int, byte[], String, String)} 之前调用，传入批次中的全部消息；<br>
+	 * 预读只是优化，不影响消息的处理结果；默认不做任何处理；
+	 * 
+	 * @param messages
+	 *            批次中的消息内容；
+	 * @param batchId
+	 *            批次ID；
+	 */
+	default void prefetchOrdered(byte[][] messages, String realmName, String batchId) {
+	}
+
 	/**
 	 * 完成处理批次，返回要进行一致性校验的状态快照；
 	 * 
@@ -39,8 +39,20 @@ public interface StateMachineReplicate {
 	 */
 	Iterator<StateSnapshot> getSnapshots(String realmName, long fromStateId, long toStateId);
 
+	/**
+	 * 保留指定状态编号的状态数据，供之后以 {@link #readState(String, long)} 读取；
+	 * <p>
+	 * 状态编号必须是当前最新的状态编号；之前保留的状态数据随之释放；
+	 * 
+	 * @param realmName
+	 * @param stateId
+	 */
+	void retainState(String realmName, long stateId);
+
 	/**
 	 * 读状态数据；
+	 * <p>
+	 * 只能读取由 {@link #retainState(String, long)} 保留的状态数据；
 	 * 
 	 * @param stateId
 	 * @return
@@ -154,6 +154,11 @@ public class MsgQueueMessageExecutor implements EventHandler<EventEntity<Exchang
 //        int txSize = messageEvents.size();
         String batchId = messageHandle.beginBatch(realmName);
         try {
+            byte[][] messages = new byte[messageEvents.size()][];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = messageEvents.get(i).getMessage();
+            }
+            messageHandle.prefetchOrdered(messages, realmName, batchId);
             for (MessageEvent messageEvent : messageEvents) {
                 String txKey = messageEvent.getMessageKey();
                 byte[] txContent = messageEvent.getMessage();
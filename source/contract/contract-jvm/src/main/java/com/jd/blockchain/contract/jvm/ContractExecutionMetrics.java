@@ -0,0 +1,105 @@
+package com.jd.blockchain.contract.jvm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个合约的执行指标；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public class ContractExecutionMetrics {
+
+	private final String address;
+
+	private final LatencyHistogram beforeEventLatency = new LatencyHistogram();
+
+	private final LatencyHistogram eventLatency = new LatencyHistogram();
+
+	private final LatencyHistogram postEventLatency = new LatencyHistogram();
+
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private final AtomicLong budgetExceededCount = new AtomicLong();
+
+	private final AtomicLong maxConsumedSteps = new AtomicLong();
+
+	ContractExecutionMetrics(String address) {
+		this.address = address;
+	}
+
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * beforeEvent 的耗时；
+	 * 
+	 * @return
+	 */
+	public LatencyHistogram getBeforeEventLatency() {
+		return beforeEventLatency;
+	}
+
+	/**
+	 * 事件方法的耗时；
+	 * 
+	 * @return
+	 */
+	public LatencyHistogram getEventLatency() {
+		return eventLatency;
+	}
+
+	/**
+	 * postEvent 的耗时；
+	 * 
+	 * @return
+	 */
+	public LatencyHistogram getPostEventLatency() {
+		return postEventLatency;
+	}
+
+	/**
+	 * 合约代码抛出异常的次数；
+	 * 
+	 * @return
+	 */
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	/**
+	 * 执行预算耗尽的次数；
+	 * 
+	 * @return
+	 */
+	public long getBudgetExceededCount() {
+		return budgetExceededCount.get();
+	}
+
+	/**
+	 * 一次调用消耗的最大执行步数；
+	 * 
+	 * @return
+	 */
+	public long getMaxConsumedSteps() {
+		return maxConsumedSteps.get();
+	}
+
+	void recordFailure() {
+		failureCount.incrementAndGet();
+	}
+
+	void recordBudgetExceeded() {
+		budgetExceededCount.incrementAndGet();
+	}
+
+	void recordConsumedSteps(long steps) {
+		long max;
+		while (steps > (max = maxConsumedSteps.get())) {
+			if (maxConsumedSteps.compareAndSet(max, steps)) {
+				break;
+			}
+		}
+	}
+}
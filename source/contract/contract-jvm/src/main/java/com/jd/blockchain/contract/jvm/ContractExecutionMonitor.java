@@ -0,0 +1,104 @@
+package com.jd.blockchain.contract.jvm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 合约执行的监控；
+ * <p>
+ * 限制每一次事件调用的执行步数（参见 {@link com.jd.blockchain.runtime.ExecutionBudget}），并按合约地址统计各个阶段的耗时；<br>
+ * 执行步数与机器的快慢无关，预算耗尽的结果在所有节点上都是一致的；而耗时在各个节点上并不相同，因此只用于统计和告警，不影响执行的结果；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public class ContractExecutionMonitor {
+
+	/**
+	 * 默认的每一次事件调用的最大执行步数；
+	 */
+	public static final long DEFAULT_EXECUTION_BUDGET;
+
+	/**
+	 * 默认的慢调用的告警阈值（毫秒）；
+	 */
+	public static final long DEFAULT_SLOW_EVENT_MILLIS;
+
+	static {
+		DEFAULT_EXECUTION_BUDGET = Long.getLong("contract-execution-budget", 10000000L);
+		DEFAULT_SLOW_EVENT_MILLIS = Long.getLong("contract-slow-event-millis", 1000L);
+		System.out.println(String.format("------ [[ contract-execution-budget=%s, contract-slow-event-millis=%s ]] ------",
+				DEFAULT_EXECUTION_BUDGET, DEFAULT_SLOW_EVENT_MILLIS));
+	}
+
+	private volatile long executionBudget;
+
+	private volatile long slowEventMillis;
+
+	private Map<String, ContractExecutionMetrics> metrics = new ConcurrentHashMap<>();
+
+	public ContractExecutionMonitor() {
+		this(DEFAULT_EXECUTION_BUDGET, DEFAULT_SLOW_EVENT_MILLIS);
+	}
+
+	public ContractExecutionMonitor(long executionBudget, long slowEventMillis) {
+		setExecutionBudget(executionBudget);
+		this.slowEventMillis = slowEventMillis;
+	}
+
+	/**
+	 * 每一次事件调用的最大执行步数；包括 beforeEvent、事件方法以及 postEvent；
+	 * <p>
+	 * 注意：所有节点必须采用相同的设置，否则预算耗尽的结果在各个节点上不一致；
+	 * 
+	 * @return
+	 */
+	public long getExecutionBudget() {
+		return executionBudget;
+	}
+
+	public void setExecutionBudget(long executionBudget) {
+		if (executionBudget < 0) {
+			throw new IllegalArgumentException("The execution budget is negative!");
+		}
+		this.executionBudget = executionBudget;
+	}
+
+	/**
+	 * 慢调用的告警阈值（毫秒）；事件调用的总耗时超过此值时输出告警日志；
+	 * 
+	 * @return
+	 */
+	public long getSlowEventMillis() {
+		return slowEventMillis;
+	}
+
+	public void setSlowEventMillis(long slowEventMillis) {
+		this.slowEventMillis = slowEventMillis;
+	}
+
+	/**
+	 * 返回指定合约的执行指标；如果合约未被调用过，则返回 null；
+	 * 
+	 * @param address
+	 * @return
+	 */
+	public ContractExecutionMetrics getMetrics(String address) {
+		return metrics.get(address);
+	}
+
+	/**
+	 * 返回所有被调用过的合约的执行指标；
+	 * 
+	 * @return
+	 */
+	public List<ContractExecutionMetrics> getAllMetrics() {
+		return new ArrayList<>(metrics.values());
+	}
+
+	ContractExecutionMetrics getOrCreateMetrics(String address) {
+		return metrics.computeIfAbsent(address, ContractExecutionMetrics::new);
+	}
+}
@@ -1,14 +1,35 @@
 package com.jd.blockchain.contract.jvm;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.jd.blockchain.contract.ContractCode;
 import com.jd.blockchain.contract.ContractEngine;
 import com.jd.blockchain.runtime.Module;
 import com.jd.blockchain.runtime.RuntimeContext;
 
+/**
+ * 基于 JVM 的合约引擎；
+ * <p>
+ * 按合约地址和版本缓存已加载的合约代码 {@link JavaContractCode}，使合约类以及事件方法的解析结果在多次调用之间复用；<br>
+ * 缓存的合约代码与运行时上下文中的模块一一对应，当模块被替换时重新创建；<br>
+ * 所有合约的执行都由同一个 {@link ContractExecutionMonitor} 限制执行预算并统计耗时；
+ * 
+ * @author huanghaiquan
+ *
+ */
 public class JVMContractEngine implements ContractEngine {
 
 	private RuntimeContext runtimeContext = RuntimeContext.get();
 //    private RuntimeContext runtimeContext = ModularRuntimeContext.setup(System.getProperty("user.dir"));
+
+	private Map<String, JavaContractCode> contractCodes = new ConcurrentHashMap<>();
+
+	private ContractExecutionMonitor executionMonitor = new ContractExecutionMonitor();
+
+	public ContractExecutionMonitor getExecutionMonitor() {
+		return executionMonitor;
+	}
 	
 	private String getCodeName(String address, long version) {
 		return address + "_" + version;
@@ -19,9 +40,10 @@ public class JVMContractEngine implements ContractEngine {
 		String codeName = getCodeName(address, version);
 		Module module = runtimeContext.getDynamicModule(codeName);
 		if (module == null) {
+			contractCodes.remove(codeName);
 			return null;
 		}
- 		return new JavaContractCode(address, version, module);
+		return getContractCode(codeName, address, version, module);
 	}
 
 	@Override
@@ -36,6 +58,16 @@ public class JVMContractEngine implements ContractEngine {
 		if (module == null) {
 			return null;
 		}
-		return new JavaContractCode(address, version, module);
+		return getContractCode(codeName, address, version, module);
+	}
+
+	private JavaContractCode getContractCode(String codeName, String address, long version, Module module) {
+		JavaContractCode contractCode = contractCodes.get(codeName);
+		if (contractCode != null && contractCode.getModule() == module) {
+			return contractCode;
+		}
+		contractCode = new JavaContractCode(address, version, module, executionMonitor);
+		contractCodes.put(codeName, contractCode);
+		return contractCode;
 	}
 }
@@ -3,36 +3,56 @@ package com.jd.blockchain.contract.jvm;
 import com.jd.blockchain.contract.ContractCode;
 import com.jd.blockchain.contract.model.ContractEvent;
 import com.jd.blockchain.contract.model.ContractEventContext;
+import com.jd.blockchain.contract.model.ContractException;
+import com.jd.blockchain.runtime.ExecutionBudget;
 import com.jd.blockchain.runtime.Module;
-import com.jd.blockchain.utils.BaseConstant;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.ReflectionUtils;
-
-import static com.jd.blockchain.utils.BaseConstant.CONTRACT_MAIN_CLASS_KEY;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Properties;
 
 /**
  * contract code based jvm
+ * <p>
+ * 合约类、构造器以及 beforeEvent、postEvent 和各个事件方法在首次调用时解析为 {@link MethodHandle}，之后的调用直接复用；<br>
+ * 每次调用仍然创建新的合约实例，调用的上下文通过参数传递，因此同一个实例可以被多个线程同时调用；<br>
+ * 每次调用的执行步数受 {@link ContractExecutionMonitor} 的预算限制，预算耗尽时抛出 {@link ContractException}，在所有节点上得到一致的结果；
+ * 
  *  @author zhaogw
  */
 public class JavaContractCode implements ContractCode {
 	private static final Logger LOGGER = LoggerFactory.getLogger(JavaContractCode.class);
+
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+	private static final MethodType EVENT_METHOD_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static final MethodType POST_EVENT_METHOD_TYPE = MethodType.methodType(void.class, Object.class);
+
 	private Module codeModule;
 	private String address;
 	private long version;
-	private ContractEventContext contractEventContext;
-	
+	private ContractExecutionMonitor monitor;
+
+	private volatile ContractInvocationHandle invocationHandle;
+
 	public JavaContractCode(String address, long version, Module codeModule) {
+		this(address, version, codeModule, new ContractExecutionMonitor());
+	}
+
+	public JavaContractCode(String address, long version, Module codeModule, ContractExecutionMonitor monitor) {
 		this.address = address;
 		this.version = version;
 		this.codeModule = codeModule;
+		this.monitor = monitor;
 	}
 
 	@Override
@@ -45,79 +65,167 @@ public class JavaContractCode implements ContractCode {
 		return version;
 	}
 
+	Module getModule() {
+		return codeModule;
+	}
+
 	@Override
 	public void processEvent(ContractEventContext eventContext) {
-		this.contractEventContext = eventContext;
-		codeModule.execute(new ContractThread());
+		codeModule.execute(new ContractThread(eventContext));
 	}
 
-	class ContractThread implements Runnable{
-		@Override
-		public void run(){
-			LOGGER.info("ContractThread execute().");
-			try {
-				//Perform pretreatment;
-				long startTime = System.currentTimeMillis();
+	private ContractInvocationHandle getInvocationHandle() throws ReflectiveOperationException {
+		ContractInvocationHandle handle = invocationHandle;
+		if (handle == null) {
+			synchronized (this) {
+				handle = invocationHandle;
+				if (handle == null) {
+					handle = resolve();
+					invocationHandle = handle;
+				}
+			}
+		}
+		return handle;
+	}
 
-				String contractClassName = codeModule.getMainClass();
-				Class myClass = codeModule.loadClass(contractClassName);
-				Object contractMainClassObj = myClass.newInstance();
+	/**
+	 * 解析合约类的调用句柄；须在合约模块的 ClassLoader 上下文中执行；
+	 * 
+	 * @return
+	 * @throws ReflectiveOperationException
+	 */
+	@SuppressWarnings("unchecked")
+	private ContractInvocationHandle resolve() throws ReflectiveOperationException {
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		Class<?> contractClass = codeModule.loadClass(codeModule.getMainClass());
 
-				Method beforeMth_ = myClass.getMethod("beforeEvent",codeModule.loadClass(ContractEventContext.class.getName()));
-				ReflectionUtils.invokeMethod(beforeMth_,contractMainClassObj,contractEventContext);
-				LOGGER.info("beforeEvent,spend time:"+(System.currentTimeMillis()-startTime));
+		MethodHandle constructor = lookup.findConstructor(contractClass, MethodType.methodType(void.class))
+				.asType(CONSTRUCTOR_TYPE);
+		Method beforeMethod = contractClass.getMethod("beforeEvent",
+				codeModule.loadClass(ContractEventContext.class.getName()));
+		MethodHandle beforeEvent = lookup.unreflect(beforeMethod).asType(EVENT_METHOD_TYPE);
+		MethodHandle postEvent = lookup.unreflect(contractClass.getMethod("postEvent")).asType(POST_EVENT_METHOD_TYPE);
 
-				Method eventMethod = this.getMethodByAnno(contractMainClassObj,contractEventContext.getEvent());
-				startTime = System.currentTimeMillis();
+		// 按事件名建立事件方法的分派表；
+		Class<? extends Annotation> contractEventClass = (Class<? extends Annotation>) codeModule
+				.loadClass(ContractEvent.class.getName());
+		Method nameMethod = contractEventClass.getMethod("name");
+		Map<String, MethodHandle> eventHandles = new HashMap<>();
+		for (Method method : contractClass.getMethods()) {
+			Annotation eventAnno = method.getAnnotation(contractEventClass);
+			if (eventAnno == null) {
+				continue;
+			}
+			String eventName = (String) nameMethod.invoke(eventAnno);
+			eventHandles.put(eventName, lookup.unreflect(method).asType(EVENT_METHOD_TYPE));
+		}
+		return new ContractInvocationHandle(constructor, beforeEvent, postEvent, eventHandles);
+	}
 
-				ReflectionUtils.invokeMethod(eventMethod,contractMainClassObj,contractEventContext);
+	class ContractThread implements Runnable{
 
-				LOGGER.info("execute contract,spend time:"+(System.currentTimeMillis()-startTime));
+		private ContractEventContext contractEventContext;
 
-				Method mth2 = myClass.getMethod("postEvent");
-				startTime = System.currentTimeMillis();
-				ReflectionUtils.invokeMethod(mth2,contractMainClassObj);
-				LOGGER.info("postEvent,spend time:"+(System.currentTimeMillis()-startTime));
-			} catch (NoSuchMethodException e) {
-				e.printStackTrace();
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+		ContractThread(ContractEventContext contractEventContext) {
+			this.contractEventContext = contractEventContext;
 		}
 
-		//get the relation between the methods and annotations
-		Method getMethodByAnno(Object classObj, String eventName){
-			Class<?> c = classObj.getClass();
-			Class <ContractEvent> contractEventClass = null;
+		@Override
+		public void run(){
+			ContractExecutionMetrics metrics = monitor.getOrCreateMetrics(address);
+			ContractInvocationHandle handle;
 			try {
-				contractEventClass = (Class <ContractEvent>)c.getClassLoader().loadClass(ContractEvent.class.getName());
-			} catch (ClassNotFoundException e) {
-				e.printStackTrace();
+				handle = getInvocationHandle();
+			} catch (Throwable e) {
+				metrics.recordFailure();
+				LOGGER.error(e.getMessage(), e);
+				throw new ContractException(String.format(
+						"Contract resolution failed! --[Address=%s][Version=%s] %s", address, version, e.getMessage()), e);
 			}
-			Method[] classMethods = c.getMethods();
-			Map<Method, Annotation[]> methodAnnoMap = new HashMap<Method, Annotation[]>();
-			Map<String,Method> annoMethodMap = new HashMap<String,Method>();
-			for(int i = 0;i<classMethods.length;i++){
-				Annotation[] a = classMethods[i].getDeclaredAnnotations();
-				methodAnnoMap.put(classMethods[i], a);
-				//if contain @ContractEvent in the method,then put it to the map;
-				for(Annotation annotation_ : a){
-					//if is the type of contractEvent,then put it to the map;
-					if(classMethods[i].isAnnotationPresent(contractEventClass)){
-						Object obj = classMethods[i].getAnnotation(contractEventClass);
-						String annoAllName = obj.toString();
-						//format:@com.jd.blockchain.contract.model.ContractEvent(name=transfer-asset)
-						String eventName_ = obj.toString().substring(BaseConstant.CONTRACT_EVENT_PREFIX.length(),annoAllName.length()-1);
-						annoMethodMap.put(eventName_,classMethods[i]);
-						break;
-					}
+			MethodHandle eventHandle = handle.eventHandles.get(contractEventContext.getEvent());
+			Object eventContext = contractEventContext;
+
+			long eventStartTime = System.nanoTime();
+			long startTime = eventStartTime;
+			ExecutionBudget.Meter meter = null;
+			Throwable failure = null;
+			try {
+				meter = ExecutionBudget.begin(monitor.getExecutionBudget());
+
+				//Perform pretreatment;
+				Object contractMainClassObj = (Object) handle.constructor.invokeExact();
+				handle.beforeEvent.invokeExact(contractMainClassObj, eventContext);
+				long time = System.nanoTime();
+				metrics.getBeforeEventLatency().record(time - startTime);
+
+				if (eventHandle == null) {
+					throw new ContractException(String.format("Contract event not found! --[Address=%s][Version=%s][Event=%s]",
+							address, version, contractEventContext.getEvent()));
+				}
+				startTime = time;
+				eventHandle.invokeExact(contractMainClassObj, eventContext);
+				time = System.nanoTime();
+				metrics.getEventLatency().record(time - startTime);
+
+				startTime = time;
+				handle.postEvent.invokeExact(contractMainClassObj);
+				metrics.getPostEventLatency().record(System.nanoTime() - startTime);
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				if (meter != null) {
+					meter.close();
+					metrics.recordConsumedSteps(meter.getConsumed());
 				}
 			}
-			if(annoMethodMap.containsKey(eventName)){
-				return annoMethodMap.get(eventName);
-			}else {
-				return null;
+
+			long elapsedMillis = (System.nanoTime() - eventStartTime) / 1000000;
+			if (elapsedMillis > monitor.getSlowEventMillis()) {
+				LOGGER.warn(String.format(
+						"Contract event is too slow! --[Address=%s][Version=%s][Event=%s][Time=%sms][Steps=%s]",
+						address, version, contractEventContext.getEvent(), elapsedMillis,
+						meter == null ? 0 : meter.getConsumed()));
 			}
+			// 即使合约代码捕获了预算耗尽的异常，仍然视为失败；
+			if (meter != null && meter.isExceeded()) {
+				metrics.recordBudgetExceeded();
+				throw new ContractException(String.format(
+						"Contract execution budget exceeded! --[Address=%s][Version=%s][Event=%s][Budget=%s]", address,
+						version, contractEventContext.getEvent(), meter.getLimit()), failure);
+			}
+			// 合约执行失败时抛出异常，使交易失败；
+			if (failure != null) {
+				metrics.recordFailure();
+				LOGGER.error(failure.getMessage(), failure);
+				if (failure instanceof ContractException) {
+					throw (ContractException) failure;
+				}
+				throw new ContractException(String.format(
+						"Contract execution failed! --[Address=%s][Version=%s][Event=%s] %s", address, version,
+						contractEventContext.getEvent(), failure.getMessage()), failure);
+			}
+		}
+	}
+
+	/**
+	 * 合约类解析后的调用句柄；
+	 */
+	private static class ContractInvocationHandle {
+
+		private final MethodHandle constructor;
+
+		private final MethodHandle beforeEvent;
+
+		private final MethodHandle postEvent;
+
+		private final Map<String, MethodHandle> eventHandles;
+
+		ContractInvocationHandle(MethodHandle constructor, MethodHandle beforeEvent, MethodHandle postEvent,
+				Map<String, MethodHandle> eventHandles) {
+			this.constructor = constructor;
+			this.beforeEvent = beforeEvent;
+			this.postEvent = postEvent;
+			this.eventHandles = Collections.unmodifiableMap(eventHandles);
 		}
 	}
 }
@@ -0,0 +1,102 @@
+package com.jd.blockchain.contract.jvm;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时的直方图；
+ * <p>
+ * 以微秒为单位，按 2 的幂划分区间：第 i 个区间记录耗时在 [2^(i-1), 2^i) 微秒之间的次数，第 0 个区间记录不足 1 微秒的次数；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKET_COUNT = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		long micros = nanos / 1000;
+		int index = micros == 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+		buckets.incrementAndGet(index);
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get())) {
+			if (maxNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public long getMeanNanos() {
+		long c = count.get();
+		return c == 0 ? 0 : totalNanos.get() / c;
+	}
+
+	/**
+	 * 耗时的分位数的近似值（微秒）；返回分位数所在区间的上界；
+	 * 
+	 * @param quantile
+	 *            分位，取值范围 [0, 1]；
+	 * @return
+	 */
+	public long getQuantileMicros(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("The quantile is out of range [0, 1]!");
+		}
+		long[] counts = getBuckets();
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(total * quantile);
+		long accumulated = 0;
+		for (int i = 0; i < counts.length; i++) {
+			accumulated += counts[i];
+			if (accumulated >= threshold && accumulated > 0) {
+				return 1L << i;
+			}
+		}
+		return 1L << (counts.length - 1);
+	}
+
+	/**
+	 * 各个区间的次数；
+	 * 
+	 * @return
+	 */
+	public long[] getBuckets() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+}
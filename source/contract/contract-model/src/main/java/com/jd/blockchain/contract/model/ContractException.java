@@ -6,6 +6,10 @@ public class ContractException extends RuntimeException {
 		super(message);
 	}
 
+	public ContractException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 	public ContractException(String message,ErrorCodeEnum errorCodeEnum) {
 		super(message+","+errorCodeEnum.toString());
 	}
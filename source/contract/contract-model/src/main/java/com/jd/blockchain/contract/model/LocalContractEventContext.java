@@ -21,6 +21,11 @@ public class LocalContractEventContext implements ContractEventContext,Cloneable
     private Set<BlockchainIdentity> contractOwners;
     private LedgerContext ledgerContext;
 
+    public LocalContractEventContext(HashDigest ledgeHash, String event){
+        this.ledgeHash = ledgeHash;
+        this.event = event;
+    }
+
     public LocalContractEventContext(HashDigest ledgeHash, byte[] chainCode, String event){
         this.ledgeHash = ledgeHash;
         this.event = event;
@@ -22,6 +22,32 @@ public interface SignatureFunction extends CryptoKeyPairGenerator, CryptoFunctio
 	 */
 	boolean verify(SignatureDigest digest, PubKey pubKey, byte[] data);
 
+	/**
+	 * 批量校验签名摘要和数据是否一致；
+	 * <p>
+	 * 默认实现逐个调用 {@link #verify(SignatureDigest, PubKey, byte[])}；支持批量验证的算法可以重写此方法；<br>
+	 * 格式错误或者算法不一致的签名摘要、公钥的验证结果为 false，不会影响其它签名的验证；
+	 * 
+	 * @param digests 待验证的签名摘要列表
+	 * @param pubKeys 公钥列表
+	 * @param datas 被签名信息列表
+	 * @return 按顺序对应每一个签名的验证结果
+	 */
+	default boolean[] verifyBatch(SignatureDigest[] digests, PubKey[] pubKeys, byte[][] datas) {
+		if (digests.length != pubKeys.length || digests.length != datas.length) {
+			throw new IllegalArgumentException("The lengths of digests, public keys and datas are not equal!");
+		}
+		boolean[] results = new boolean[digests.length];
+		for (int i = 0; i < digests.length; i++) {
+			try {
+				results[i] = verify(digests[i], pubKeys[i], datas[i]);
+			} catch (RuntimeException e) {
+				results[i] = false;
+			}
+		}
+		return results;
+	}
+
 	/**
 	 * 校验私钥格式是否满足要求；
 	 *
@@ -0,0 +1,100 @@
+package com.jd.blockchain.crypto.hash;
+
+import java.io.OutputStream;
+
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesSlice;
+
+/**
+ * 哈希计算器的基础实现；
+ * <p>
+ * 子类只需实现写入数据片段以及完成计算的方法；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public abstract class AbstractHasher implements Hasher {
+
+	private final CryptoAlgorithm algorithm;
+
+	private final OutputStream out = new HasherOutputStream();
+
+	private boolean completed = false;
+
+	public AbstractHasher(CryptoAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	@Override
+	public Hasher update(byte[] data) {
+		return update(data, 0, data.length);
+	}
+
+	@Override
+	public Hasher update(byte[] data, int offset, int len) {
+		checkState();
+		doUpdate(data, offset, len);
+		return this;
+	}
+
+	@Override
+	public Hasher update(BytesSlice data) {
+		data.writeTo(out);
+		return this;
+	}
+
+	@Override
+	public Hasher update(Bytes data) {
+		data.writeTo(out);
+		return this;
+	}
+
+	@Override
+	public OutputStream asOutputStream() {
+		return out;
+	}
+
+	@Override
+	public HashDigest digest() {
+		checkState();
+		completed = true;
+		return new HashDigest(algorithm, doComplete());
+	}
+
+	private void checkState() {
+		if (completed) {
+			throw new IllegalStateException("The hasher has been completed!");
+		}
+	}
+
+	/**
+	 * 写入数据片段；
+	 * 
+	 * @param data
+	 * @param offset
+	 * @param len
+	 */
+	protected abstract void doUpdate(byte[] data, int offset, int len);
+
+	/**
+	 * 完成计算，返回原始的哈希摘要；此方法只会被调用一次；
+	 * 
+	 * @return
+	 */
+	protected abstract byte[] doComplete();
+
+	private class HasherOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+			update(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			update(b, off, len);
+		}
+	}
+
+}
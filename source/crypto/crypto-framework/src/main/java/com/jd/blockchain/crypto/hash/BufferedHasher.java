@@ -0,0 +1,34 @@
+package com.jd.blockchain.crypto.hash;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 缓冲全部数据之后再计算哈希的计算器；
+ * <p>
+ * 作为不支持流式计算的哈希算法的默认实现；
+ * 
+ * @author huanghaiquan
+ *
+ */
+class BufferedHasher extends AbstractHasher {
+
+	private final HashFunction hashFunction;
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	public BufferedHasher(HashFunction hashFunction) {
+		super(hashFunction.getAlgorithm());
+		this.hashFunction = hashFunction;
+	}
+
+	@Override
+	protected void doUpdate(byte[] data, int offset, int len) {
+		buffer.write(data, offset, len);
+	}
+
+	@Override
+	protected byte[] doComplete() {
+		return hashFunction.hash(buffer.toByteArray()).getRawDigest();
+	}
+
+}
@@ -11,6 +11,17 @@ public interface HashFunction extends CryptoFunction {
 	 * @return
 	 */
 	HashDigest hash(byte[] data);
+
+	/**
+	 * 创建流式计算哈希的计算器；
+	 * <p>
+	 * 默认实现缓冲全部数据之后调用 {@link #hash(byte[])}；支持增量计算的算法应重写此方法；
+	 * 
+	 * @return
+	 */
+	default Hasher newHasher() {
+		return new BufferedHasher(this);
+	}
 	
 
 	/**
@@ -0,0 +1,71 @@
+package com.jd.blockchain.crypto.hash;
+
+import java.io.OutputStream;
+
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesSlice;
+
+/**
+ * 流式计算哈希的计算器；
+ * <p>
+ * 由 {@link HashFunction#newHasher()} 创建，依次写入数据片段之后调用 {@link #digest()} 得到哈希；<br>
+ * 输入数据不必预先拼接为一个完整的数组，例如可以直接写入 {@link BytesSlice} 或者数据契约的序列化输出；
+ * <p>
+ * 计算器不是线程安全的；调用 {@link #digest()} 之后不能再使用；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public interface Hasher {
+
+	/**
+	 * 写入数据；
+	 * 
+	 * @param data
+	 * @return 当前计算器；
+	 */
+	Hasher update(byte[] data);
+
+	/**
+	 * 写入数据片段；
+	 * 
+	 * @param data
+	 * @param offset
+	 * @param len
+	 * @return 当前计算器；
+	 */
+	Hasher update(byte[] data, int offset, int len);
+
+	/**
+	 * 写入数据片段；
+	 * 
+	 * @param data
+	 * @return 当前计算器；
+	 */
+	Hasher update(BytesSlice data);
+
+	/**
+	 * 写入数据；
+	 * 
+	 * @param data
+	 * @return 当前计算器；
+	 */
+	Hasher update(Bytes data);
+
+	/**
+	 * 以输出流的方式写入数据；
+	 * <p>
+	 * 写入输出流的数据等同于调用 {@link #update(byte[], int, int)}；
+	 * 
+	 * @return
+	 */
+	OutputStream asOutputStream();
+
+	/**
+	 * 完成计算，返回已写入的全部数据的哈希；
+	 * 
+	 * @return
+	 */
+	HashDigest digest();
+
+}
@@ -68,6 +68,40 @@ public class ED25519SignatureFunction implements SignatureFunction {
 		return Ed25519Utils.verify(data, rawPubKeyBytes, rawDigestBytes);
 	}
 
+	@Override
+	public boolean[] verifyBatch(SignatureDigest[] digests, PubKey[] pubKeys, byte[][] datas) {
+		if (digests.length != pubKeys.length || digests.length != datas.length) {
+			throw new IllegalArgumentException("The lengths of digests, public keys and datas are not equal!");
+		}
+		byte[][] rawPubKeys = new byte[digests.length][];
+		byte[][] rawDigests = new byte[digests.length][];
+		boolean[] wellFormed = new boolean[digests.length];
+		for (int i = 0; i < digests.length; i++) {
+			// 格式检查与 verify 方法一致，不满足要求的签名不参与批量验证，其验证结果为 false；
+			wellFormed[i] = isWellFormed(digests[i], pubKeys[i]);
+			if (wellFormed[i]) {
+				rawPubKeys[i] = pubKeys[i].getRawKeyBytes();
+				rawDigests[i] = digests[i].getRawDigest();
+			} else {
+				rawPubKeys[i] = new byte[PUBKEY_SIZE];
+				rawDigests[i] = new byte[DIGEST_SIZE];
+			}
+		}
+
+		// 调用ED25519批量验签算法，复用验签引擎并且相同的公钥只解码一次
+		boolean[] results = Ed25519Utils.verifyBatch(datas, rawPubKeys, rawDigests);
+		for (int i = 0; i < results.length; i++) {
+			results[i] = results[i] && wellFormed[i];
+		}
+		return results;
+	}
+
+	private static boolean isWellFormed(SignatureDigest digest, PubKey pubKey) {
+		return digest != null && pubKey != null && pubKey.getAlgorithm() == ED25519
+				&& pubKey.getRawKeyBytes().length == PUBKEY_SIZE && digest.getAlgorithm() == ED25519
+				&& digest.getRawDigest().length == DIGEST_SIZE;
+	}
+
 	@Override
 	public boolean supportPrivKey(byte[] privKeyBytes) {
 		// 验证输入字节数组长度=算法标识长度+密钥类型长度+密钥长度，密钥数据的算法标识对应ED25519签名算法，并且密钥类型是私钥
@@ -0,0 +1,43 @@
+package com.jd.blockchain.crypto.impl.def.hash;
+
+import java.security.MessageDigest;
+
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.hash.AbstractHasher;
+import com.jd.blockchain.utils.security.DigestPool;
+
+/**
+ * 以 {@link MessageDigest} 增量计算哈希的计算器；
+ * <p>
+ * 摘要实例从线程本地的实例池中取出，完成计算后归还；
+ * 
+ * @author huanghaiquan
+ *
+ */
+class MessageDigestHasher extends AbstractHasher {
+
+	private final DigestPool<MessageDigest> digestPool;
+
+	private final MessageDigest md;
+
+	public MessageDigestHasher(CryptoAlgorithm algorithm, DigestPool<MessageDigest> digestPool) {
+		super(algorithm);
+		this.digestPool = digestPool;
+		this.md = digestPool.borrow();
+	}
+
+	@Override
+	protected void doUpdate(byte[] data, int offset, int len) {
+		md.update(data, offset, len);
+	}
+
+	@Override
+	protected byte[] doComplete() {
+		try {
+			return md.digest();
+		} finally {
+			digestPool.giveBack(md);
+		}
+	}
+
+}
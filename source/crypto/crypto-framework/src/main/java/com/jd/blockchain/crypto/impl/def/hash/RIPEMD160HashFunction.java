@@ -8,6 +8,7 @@ import java.util.Arrays;
 import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.crypto.hash.HashFunction;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.utils.security.RipeMD160Utils;
 
 public class RIPEMD160HashFunction implements HashFunction {
@@ -27,6 +28,11 @@ public class RIPEMD160HashFunction implements HashFunction {
 		return new HashDigest(RIPEMD160, digestBytes);
 	}
 
+	@Override
+	public Hasher newHasher() {
+		return new MessageDigestHasher(RIPEMD160, RipeMD160Utils.DIGEST_POOL);
+	}
+
 	@Override
 	public boolean verify(HashDigest digest, byte[] data) {
 		HashDigest hashDigest = hash(data);
@@ -8,6 +8,7 @@ import java.util.Arrays;
 import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.crypto.hash.HashFunction;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.utils.security.ShaUtils;
 
 public class SHA256HashFunction implements HashFunction {
@@ -27,6 +28,11 @@ public class SHA256HashFunction implements HashFunction {
 		return new HashDigest(SHA256, digestBytes);
 	}
 
+	@Override
+	public Hasher newHasher() {
+		return new MessageDigestHasher(SHA256, ShaUtils.SHA256_DIGEST_POOL);
+	}
+
 	@Override
 	public boolean verify(HashDigest digest, byte[] data) {
 		HashDigest hashDigest = hash(data);
@@ -4,6 +4,7 @@ import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.CryptoBytes;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.crypto.hash.HashFunction;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.crypto.smutils.hash.SM3Utils;
 
 import java.util.Arrays;
@@ -27,6 +28,11 @@ public class SM3HashFunction implements HashFunction {
 		return new HashDigest(SM3,digestBytes);
 	}
 
+	@Override
+	public Hasher newHasher() {
+		return new SM3Hasher();
+	}
+
 	@Override
 	public boolean verify(HashDigest digest, byte[] data) {
 		HashDigest hashDigest = hash(data);
@@ -0,0 +1,43 @@
+package com.jd.blockchain.crypto.impl.sm.hash;
+
+import static com.jd.blockchain.crypto.CryptoAlgorithm.SM3;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+
+import com.jd.blockchain.crypto.hash.AbstractHasher;
+import com.jd.blockchain.crypto.smutils.hash.SM3Utils;
+
+/**
+ * 以 {@link SM3Digest} 增量计算哈希的计算器；
+ * <p>
+ * 摘要实例从线程本地的实例池中取出，完成计算后归还；
+ * 
+ * @author huanghaiquan
+ *
+ */
+class SM3Hasher extends AbstractHasher {
+
+	private final SM3Digest sm3digest;
+
+	public SM3Hasher() {
+		super(SM3);
+		this.sm3digest = SM3Utils.DIGEST_POOL.borrow();
+	}
+
+	@Override
+	protected void doUpdate(byte[] data, int offset, int len) {
+		sm3digest.update(data, offset, len);
+	}
+
+	@Override
+	protected byte[] doComplete() {
+		byte[] result = new byte[sm3digest.getDigestSize()];
+		try {
+			sm3digest.doFinal(result, 0);
+			return result;
+		} finally {
+			SM3Utils.DIGEST_POOL.giveBack(sm3digest);
+		}
+	}
+
+}
@@ -2,24 +2,31 @@ package com.jd.blockchain.crypto.smutils.hash;
 
 import org.bouncycastle.crypto.digests.SM3Digest;
 
+import com.jd.blockchain.utils.security.DigestPool;
+
 public class SM3Utils {
 
 
     // The length of sm3 output is 32 bytes
     private static final int SM3DIGEST_LENGTH = 32;
 
+    // The reusable sm3 digest of current thread
+    public static final DigestPool<SM3Digest> DIGEST_POOL = new DigestPool<>(SM3Digest::new, SM3Digest::reset);
+
     public static byte[] hash(byte[] data) {
 
         byte[] result = new byte[SM3DIGEST_LENGTH];
 
-        SM3Digest sm3digest = new SM3Digest();
-
-        sm3digest.update(data, 0, data.length);
-        sm3digest.doFinal(result, 0);
+        SM3Digest sm3digest = DIGEST_POOL.borrow();
+        try {
+            sm3digest.update(data, 0, data.length);
+            sm3digest.doFinal(result, 0);
+        } finally {
+            DIGEST_POOL.giveBack(sm3digest);
+        }
 
         return result;
 
     }
 
 }
-
@@ -10,6 +10,7 @@ import com.jd.blockchain.utils.io.BytesUtils;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import static com.jd.blockchain.crypto.CryptoKeyType.PRIV_KEY;
@@ -349,6 +350,66 @@ public class AsymmtricCryptographyImplTest {
         }
     }
 
+    @Test
+    public void testVerifyBatch() {
+
+        AsymmetricCryptography asymmetricCrypto =  new AsymmtricCryptographyImpl();
+        Random randomData = new Random();
+
+        // ED25519 以批量验证实现，SM2 以默认的逐个验证实现
+        CryptoAlgorithm[] algorithms = {CryptoAlgorithm.ED25519, CryptoAlgorithm.SM2};
+        for (CryptoAlgorithm algorithm : algorithms) {
+            SignatureFunction sf = asymmetricCrypto.getSignatureFunction(algorithm);
+            CryptoKeyPair keyPair1 = sf.generateKeyPair();
+            CryptoKeyPair keyPair2 = sf.generateKeyPair();
+
+            int count = 10;
+            SignatureDigest[] digests = new SignatureDigest[count];
+            PubKey[] pubKeys = new PubKey[count];
+            byte[][] datas = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                CryptoKeyPair keyPair = i % 2 == 0 ? keyPair1 : keyPair2;
+                datas[i] = new byte[256];
+                randomData.nextBytes(datas[i]);
+                digests[i] = sf.sign(keyPair.getPrivKey(), datas[i]);
+                pubKeys[i] = keyPair.getPubKey();
+            }
+
+            boolean[] expected = new boolean[count];
+            Arrays.fill(expected, true);
+            assertArrayEquals(expected, sf.verifyBatch(digests, pubKeys, datas));
+
+            // 数据被篡改
+            datas[3][0]++;
+            expected[3] = false;
+            // 公钥不匹配
+            pubKeys[4] = keyPair2.getPubKey();
+            expected[4] = false;
+            // 签名摘要的算法不一致
+            CryptoAlgorithm wrongAlgorithm = algorithm == CryptoAlgorithm.ED25519 ? CryptoAlgorithm.SM2 : CryptoAlgorithm.ED25519;
+            digests[7] = new SignatureDigest(wrongAlgorithm, digests[7].getRawDigest());
+            expected[7] = false;
+            assertArrayEquals(expected, sf.verifyBatch(digests, pubKeys, datas));
+
+            // 批量验证与逐个验证的结果一致
+            for (int i = 0; i < count; i++) {
+                if (expected[i]) {
+                    assertTrue(sf.verify(digests[i], pubKeys[i], datas[i]));
+                }
+            }
+        }
+
+        SignatureFunction sf = asymmetricCrypto.getSignatureFunction(CryptoAlgorithm.ED25519);
+        Exception actualEx = null;
+        try {
+            sf.verifyBatch(new SignatureDigest[1], new PubKey[2], new byte[1][]);
+        } catch (Exception e) {
+            actualEx = e;
+        }
+        assertNotNull(actualEx);
+        assertTrue(actualEx instanceof IllegalArgumentException);
+    }
+
     @Test
     public void testGetAsymmetricEncryptionFunction() {
 
@@ -2,9 +2,12 @@ package test.com.jd.blockchain.crypto.hash;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.util.Random;
 
 import com.jd.blockchain.crypto.smutils.hash.SM3Utils;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesSlice;
 import com.jd.blockchain.utils.io.BytesUtils;
 import com.jd.blockchain.utils.security.RipeMD160Utils;
 import com.jd.blockchain.utils.security.ShaUtils;
@@ -15,6 +18,7 @@ import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.hash.HashCryptography;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.crypto.hash.HashFunction;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.crypto.impl.HashCryptographyImpl;
 
 public class HashCryptographyImplTest {
@@ -149,6 +153,43 @@ public class HashCryptographyImplTest {
 		}
 	}
 
+	@Test
+	public void testNewHasher() throws IOException {
+		HashCryptography hashCrypto = new HashCryptographyImpl();
+		Random rand = new Random();
+		byte[] data = new byte[1056];
+		rand.nextBytes(data);
+
+		CryptoAlgorithm[] algorithms = { CryptoAlgorithm.SHA256, CryptoAlgorithm.RIPEMD160, CryptoAlgorithm.SM3 };
+		for (CryptoAlgorithm algorithm : algorithms) {
+			HashFunction hashFunction = hashCrypto.getFunction(algorithm);
+			HashDigest expected = hashFunction.hash(data);
+
+			// 分段写入的结果与一次计算的结果一致；
+			Hasher hasher = hashFunction.newHasher();
+			hasher.update(data, 0, 100).update(new BytesSlice(data, 100, 900));
+			// 计算过程中同一线程计算其它哈希，不影响结果；
+			Hasher nestedHasher = hashFunction.newHasher();
+			assertEquals(hashFunction.hash(new byte[0]), nestedHasher.digest());
+			assertEquals(hashFunction.hash(data), hashFunction.hash(data));
+			hasher.asOutputStream().write(data, 1000, 56);
+			assertEquals(expected, hasher.digest());
+
+			// 复用线程本地的实例之后结果一致；
+			assertEquals(expected, hashFunction.newHasher().update(new Bytes(data)).digest());
+			assertEquals(expected, hashFunction.hash(data));
+
+			// 完成计算之后不能再使用；
+			Exception actualEx = null;
+			try {
+				hasher.update(data);
+			} catch (Exception e) {
+				actualEx = e;
+			}
+			assertTrue(actualEx instanceof IllegalStateException);
+		}
+	}
+
 	@Test
 	public void testVerifyHashDigestByteArray() {
 		HashCryptography hashCrypto = new HashCryptographyImpl();
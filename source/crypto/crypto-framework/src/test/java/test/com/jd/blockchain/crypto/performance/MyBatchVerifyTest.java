@@ -0,0 +1,78 @@
+package test.com.jd.blockchain.crypto.performance;
+
+import com.jd.blockchain.crypto.asymmetric.CryptoKeyPair;
+import com.jd.blockchain.crypto.asymmetric.PubKey;
+import com.jd.blockchain.crypto.asymmetric.SignatureDigest;
+import com.jd.blockchain.crypto.asymmetric.SignatureFunction;
+import com.jd.blockchain.crypto.impl.def.asymmetric.ED25519SignatureFunction;
+
+import java.util.Random;
+
+/**
+ * 对比 ED25519 逐个验签与批量验签的性能；
+ * <p>
+ * 每批签名来自少量的公钥，与一个区块内的交易签名分布相近；
+ */
+public class MyBatchVerifyTest {
+
+    private static final int[] BATCH_SIZES = {64, 256, 1024};
+
+    private static final int KEY_COUNT = 8;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+
+        Random rand = new Random();
+        ED25519SignatureFunction ed25519sf = new ED25519SignatureFunction();
+        CryptoKeyPair[] keyPairs = new CryptoKeyPair[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keyPairs[i] = ed25519sf.generateKeyPair();
+        }
+
+        for (int batchSize : BATCH_SIZES) {
+            SignatureDigest[] digests = new SignatureDigest[batchSize];
+            PubKey[] pubKeys = new PubKey[batchSize];
+            byte[][] datas = new byte[batchSize][];
+            for (int i = 0; i < batchSize; i++) {
+                CryptoKeyPair keyPair = keyPairs[i % KEY_COUNT];
+                datas[i] = new byte[256];
+                rand.nextBytes(datas[i]);
+                digests[i] = ed25519sf.sign(keyPair.getPrivKey(), datas[i]);
+                pubKeys[i] = keyPair.getPubKey();
+            }
+            int count = 20480 / batchSize;
+
+            System.out.println("=================== do ED25519 verify test [batch=" + batchSize + "] ===================");
+            for (int r = 0; r < ROUNDS; r++) {
+                System.out.println("------------- round[" + r + "] --------------");
+                long startTS = System.currentTimeMillis();
+                for (int c = 0; c < count; c++) {
+                    verifySingle(ed25519sf, digests, pubKeys, datas);
+                }
+                long elapsedTS = System.currentTimeMillis() - startTS;
+                System.out.println(String.format("ED25519 Single Verifying Count=%s; Elapsed Times=%s; TPS=%.2f",
+                        count * batchSize, elapsedTS, (count * batchSize * 1000.00D) / elapsedTS));
+
+                startTS = System.currentTimeMillis();
+                for (int c = 0; c < count; c++) {
+                    boolean[] results = ed25519sf.verifyBatch(digests, pubKeys, datas);
+                    if (!results[batchSize - 1]) {
+                        throw new IllegalStateException("Batch verification failed!");
+                    }
+                }
+                elapsedTS = System.currentTimeMillis() - startTS;
+                System.out.println(String.format("ED25519 Batch Verifying Count=%s; Elapsed Times=%s; TPS=%.2f",
+                        count * batchSize, elapsedTS, (count * batchSize * 1000.00D) / elapsedTS));
+            }
+        }
+    }
+
+    private static void verifySingle(SignatureFunction sf, SignatureDigest[] digests, PubKey[] pubKeys, byte[][] datas) {
+        for (int i = 0; i < digests.length; i++) {
+            if (!sf.verify(digests[i], pubKeys[i], datas[i])) {
+                throw new IllegalStateException("Single verification failed!");
+            }
+        }
+    }
+}
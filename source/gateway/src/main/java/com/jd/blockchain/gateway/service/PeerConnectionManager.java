@@ -7,7 +7,7 @@ import org.springframework.stereotype.Component;
 import com.jd.blockchain.crypto.asymmetric.CryptoKeyPair;
 import com.jd.blockchain.gateway.PeerConnector;
 import com.jd.blockchain.gateway.PeerService;
-import com.jd.blockchain.ledger.data.TransactionService;
+import com.jd.blockchain.ledger.data.AsyncTransactionService;
 import com.jd.blockchain.sdk.BlockchainQueryService;
 import com.jd.blockchain.sdk.service.PeerBlockchainServiceFactory;
 import com.jd.blockchain.utils.net.NetworkAddress;
@@ -80,7 +80,7 @@ public class PeerConnectionManager implements PeerService, PeerConnector {
 	}
 
 	@Override
-	public TransactionService getTransactionService() {
+	public AsyncTransactionService getTransactionService() {
 		PeerBlockchainServiceFactory serviceFactory = this.peerServiceFactory;
 		if (serviceFactory == null) {
 			throw new IllegalStateException("Peer connection was closed!");
@@ -8,15 +8,21 @@ import com.jd.blockchain.gateway.service.DataRetrievalService;
 import com.jd.blockchain.gateway.service.GatewayQueryService;
 import com.jd.blockchain.ledger.*;
 import com.jd.blockchain.sdk.BlockchainExtendQueryService;
+import com.jd.blockchain.sdk.BlockchainQueryService;
 import com.jd.blockchain.tools.keygen.KeyGenCommand;
 import com.jd.blockchain.utils.BaseConstant;
 import com.jd.blockchain.utils.ConsoleUtils;
+import com.jd.blockchain.utils.web.model.JsonLinesWriter;
+import com.jd.blockchain.utils.web.model.QueryCursor;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @RestController
@@ -516,4 +522,118 @@ public class BlockBrowserController implements BlockchainExtendQueryService {
                                            @RequestParam(name = "count", required = false, defaultValue = "-1") int count) {
         return peerService.getQueryService().getContractAccounts(ledgerHash, fromIndex, count);
     }
+
+    /**
+     * 以 JSON Lines 格式流式返回数据账户的键值数据；
+     * <p>
+     * 网关按分页查询的上限逐页从节点读取结果，并逐条写入响应，因此只占用常量的内存；<br>
+     * 如果之后还有更多的结果，则以响应头 {@link QueryCursor#HEADER_NAME} 返回续传游标；<br>
+     * 注：分页查询总是基于节点的最新区块，因此网关返回的续传游标不绑定区块；需要一致的快照时，应直接使用节点的流式查询；
+     *
+     * @param ledgerHash
+     * @param address
+     * @param fromIndex
+     *            起始的序号；指定了续传游标时忽略此参数；
+     * @param count
+     *            返回的数量；小于 0 时返回之后的全部结果；
+     * @param cursor
+     *            续传游标；
+     * @param response
+     * @throws IOException
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/accounts/address/{address}/entries/stream")
+    public void streamDataEntries(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+                                  @PathVariable(name = "address") String address,
+                                  @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+                                  @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+                                  @RequestParam(name = "cursor", required = false) String cursor,
+                                  HttpServletResponse response) throws IOException {
+        BlockchainQueryService queryService = peerService.getQueryService();
+        long totalCount = queryService.getDataEntriesTotalCount(ledgerHash, address);
+        long[] range = QueryCursor.range(resolveFromIndex(cursor, fromIndex), count, totalCount);
+        writeStream(response, range, totalCount, new PagingIterator<>(
+                (from, n) -> queryService.getDataEntries(ledgerHash, address, from, n), range[0], range[1]));
+    }
+
+    /**
+     * 以 JSON Lines 格式流式返回用户账户；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/users/stream")
+    public void streamUsers(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+                            @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+                            @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+                            @RequestParam(name = "cursor", required = false) String cursor,
+                            HttpServletResponse response) throws IOException {
+        BlockchainQueryService queryService = peerService.getQueryService();
+        long totalCount = queryService.getUserTotalCount(ledgerHash);
+        long[] range = QueryCursor.range(resolveFromIndex(cursor, fromIndex), count, totalCount);
+        writeStream(response, range, totalCount, new PagingIterator<>(
+                (from, n) -> queryService.getUsers(ledgerHash, from, n), range[0], range[1]));
+    }
+
+    /**
+     * 以 JSON Lines 格式流式返回数据账户；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/accounts/stream")
+    public void streamDataAccounts(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+                                   @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+                                   @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+                                   @RequestParam(name = "cursor", required = false) String cursor,
+                                   HttpServletResponse response) throws IOException {
+        BlockchainQueryService queryService = peerService.getQueryService();
+        long totalCount = queryService.getDataAccountTotalCount(ledgerHash);
+        long[] range = QueryCursor.range(resolveFromIndex(cursor, fromIndex), count, totalCount);
+        writeStream(response, range, totalCount, new PagingIterator<>(
+                (from, n) -> queryService.getDataAccounts(ledgerHash, from, n), range[0], range[1]));
+    }
+
+    /**
+     * 以 JSON Lines 格式流式返回合约账户；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/contracts/stream")
+    public void streamContractAccounts(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+                                       @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+                                       @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+                                       @RequestParam(name = "cursor", required = false) String cursor,
+                                       HttpServletResponse response) throws IOException {
+        BlockchainQueryService queryService = peerService.getQueryService();
+        long totalCount = queryService.getContractTotalCount(ledgerHash);
+        long[] range = QueryCursor.range(resolveFromIndex(cursor, fromIndex), count, totalCount);
+        writeStream(response, range, totalCount, new PagingIterator<>(
+                (from, n) -> queryService.getContractAccounts(ledgerHash, from, n), range[0], range[1]));
+    }
+
+    /**
+     * 以 JSON Lines 格式流式返回指定区块中的交易；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/blocks/height/{blockHeight}/txs/stream")
+    public void streamTransactions(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+                                   @PathVariable(name = "blockHeight") long blockHeight,
+                                   @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+                                   @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+                                   @RequestParam(name = "cursor", required = false) String cursor,
+                                   HttpServletResponse response) throws IOException {
+        BlockchainQueryService queryService = peerService.getQueryService();
+        long totalCount = getAdditionalTransactionCount(ledgerHash, blockHeight);
+        long[] range = QueryCursor.range(resolveFromIndex(cursor, fromIndex), count, totalCount);
+        writeStream(response, range, totalCount, new PagingIterator<>(
+                (from, n) -> queryService.getTransactions(ledgerHash, blockHeight, from, n), range[0], range[1]));
+    }
+
+    private long resolveFromIndex(String cursor, long fromIndex) {
+        if (cursor == null || cursor.isEmpty()) {
+            return fromIndex;
+        }
+        return QueryCursor.decode(cursor).getIndex();
+    }
+
+    private void writeStream(HttpServletResponse response, long[] range, long totalCount, Iterator<?> results)
+            throws IOException {
+        response.setContentType(JsonLinesWriter.CONTENT_TYPE_VALUE);
+        QueryCursor nextCursor = QueryCursor.next(-1, range, totalCount);
+        if (nextCursor != null) {
+            response.setHeader(QueryCursor.HEADER_NAME, nextCursor.encode());
+        }
+        new JsonLinesWriter(response.getOutputStream()).writeAll(results);
+    }
 }
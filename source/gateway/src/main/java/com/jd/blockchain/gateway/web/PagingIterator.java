@@ -0,0 +1,84 @@
+package com.jd.blockchain.gateway.web;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.jd.blockchain.utils.BaseConstant;
+
+/**
+ * 通过分页查询逐页读取结果的迭代器；
+ * <p>
+ * 每次只保留一页的结果，使得网关在流式返回大量结果时只占用常量的内存；
+ *
+ * @author huanghaiquan
+ *
+ * @param <T>
+ */
+class PagingIterator<T> implements Iterator<T> {
+
+	private final PageReader<T> reader;
+
+	private final long toIndex;
+
+	private long nextIndex;
+
+	private T[] page;
+
+	private int cursor;
+
+	/**
+	 * @param reader
+	 *            分页查询；
+	 * @param fromIndex
+	 *            起始的序号（包含）；
+	 * @param count
+	 *            返回的结果的数量；
+	 */
+	PagingIterator(PageReader<T> reader, long fromIndex, long count) {
+		this.reader = reader;
+		this.nextIndex = fromIndex;
+		this.toIndex = fromIndex + count;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (page != null && cursor < page.length) {
+			return true;
+		}
+		if (nextIndex >= toIndex) {
+			return false;
+		}
+		// 每页的数量不超过分页查询的上限；
+		int count = (int) Math.min(BaseConstant.QUERY_LIST_MAX, toIndex - nextIndex);
+		page = reader.read((int) nextIndex, count);
+		cursor = 0;
+		if (page == null || page.length == 0) {
+			// 结果比预期的少；
+			nextIndex = toIndex;
+			return false;
+		}
+		nextIndex += page.length;
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T result = page[cursor];
+		page[cursor++] = null;
+		return result;
+	}
+
+	/**
+	 * 分页查询；
+	 *
+	 * @param <T>
+	 */
+	interface PageReader<T> {
+
+		T[] read(int fromIndex, int count);
+
+	}
+}
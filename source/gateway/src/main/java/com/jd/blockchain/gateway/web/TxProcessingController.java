@@ -7,17 +7,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
-import com.jd.blockchain.crypto.CryptoUtils;
-import com.jd.blockchain.crypto.asymmetric.SignatureFunction;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.gateway.PeerService;
 import com.jd.blockchain.ledger.DigitalSignature;
-import com.jd.blockchain.ledger.TransactionContent;
 import com.jd.blockchain.ledger.TransactionRequest;
 import com.jd.blockchain.ledger.TransactionResponse;
 import com.jd.blockchain.ledger.data.TransactionService;
+import com.jd.blockchain.ledger.data.TransactionVerifier;
 import com.jd.blockchain.utils.BusinessException;
 import com.jd.blockchain.web.converters.BinaryMessageConverter;
 
@@ -31,9 +29,40 @@ public class TxProcessingController implements TransactionService {
 	@Autowired
 	private PeerService peerService;
 
+	/**
+	 * 以 Servlet 异步的方式处理交易请求；
+	 * <p>
+	 * 交易请求通过校验并提交之后立即释放请求线程，交易的结果在共识完成时再写回响应；<br>
+	 * 等待结果的超时时长由 Spring MVC 的异步请求超时配置（spring.mvc.async.request-timeout）决定；
+	 * 
+	 * @param txRequest
+	 * @return
+	 */
 	@RequestMapping(path = "rpc/tx", method = RequestMethod.POST, consumes = BinaryMessageConverter.CONTENT_TYPE_VALUE, produces = BinaryMessageConverter.CONTENT_TYPE_VALUE)
+	public @ResponseBody DeferredResult<TransactionResponse> processAsync(@RequestBody TransactionRequest txRequest) {
+		checkRequest(txRequest);
+
+		DeferredResult<TransactionResponse> result = new DeferredResult<>();
+		// 注：转发前自动附加网关的签名并转发请求至共识节点；
+		peerService.getTransactionService().processAsync(txRequest).whenComplete((response, error) -> {
+			if (error != null) {
+				result.setErrorResult(error);
+			} else {
+				result.setResult(response);
+			}
+		});
+		return result;
+	}
+
 	@Override
-	public @ResponseBody TransactionResponse process(@RequestBody TransactionRequest txRequest) {
+	public TransactionResponse process(TransactionRequest txRequest) {
+		checkRequest(txRequest);
+
+		// 注：转发前自动附加网关的签名并转发请求至共识节点；
+		return peerService.getTransactionService().process(txRequest);
+	}
+
+	private void checkRequest(TransactionRequest txRequest) {
 		// 检查交易请求的信息是否完整；
 		HashDigest ledgerHash = txRequest.getTransactionContent().getLedgerHash();
 		if (ledgerHash == null) {
@@ -54,17 +83,10 @@ public class TxProcessingController implements TransactionService {
 			throw new IllegalStateException("Not implemented!");
 		} else {
 			// 验证签名；
-			byte[] content = BinaryEncodingUtils.encode(txRequest.getTransactionContent(), TransactionContent.class);
-			for (DigitalSignature sign : partiSigns) {
-				SignatureFunction signFunc = CryptoUtils.sign(sign.getPubKey().getAlgorithm());
-				if (!signFunc.verify(sign.getDigest(), sign.getPubKey(), content)) {
-					throw new BusinessException("The validation of participant signatures fail!");
-				}
+			if (!TransactionVerifier.SERIAL.verify(txRequest)) {
+				throw new BusinessException("The validation of participant signatures fail!");
 			}
 		}
-
-		// 注：转发前自动附加网关的签名并转发请求至共识节点；异步的处理方式
-		return peerService.getTransactionService().process(txRequest);
 	}
 }
 
@@ -1,6 +1,7 @@
 package com.jd.blockchain.ledger.core;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
@@ -11,9 +12,11 @@ import com.jd.blockchain.crypto.AddressEncoding;
 import com.jd.blockchain.crypto.asymmetric.PubKey;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.AccountHeader;
+import com.jd.blockchain.ledger.BlockchainIdentityData;
 import com.jd.blockchain.ledger.CryptoSetting;
 import com.jd.blockchain.ledger.LedgerTransaction;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.Transactional;
@@ -42,6 +45,11 @@ public class AccountSet implements Transactional, MerkleProvable {
 
 	private CryptoSetting cryptoSetting;
 
+	/**
+	 * 默克尔树的运行上下文，由账户集合以及其中所有账户的默克尔数据集共享；
+	 */
+	private MerkleTreeContext merkleContext;
+
 	private boolean updated;
 
 	private AccountAccessPolicy accessPolicy;
@@ -57,12 +65,19 @@ public class AccountSet implements Transactional, MerkleProvable {
 
 	public AccountSet(HashDigest rootHash, CryptoSetting cryptoSetting, String keyPrefix, ExPolicyKVStorage exStorage,
 			VersioningKVStorage verStorage, boolean readonly, AccountAccessPolicy accessPolicy) {
+		this(rootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly, accessPolicy, null);
+	}
+
+	public AccountSet(HashDigest rootHash, CryptoSetting cryptoSetting, String keyPrefix, ExPolicyKVStorage exStorage,
+			VersioningKVStorage verStorage, boolean readonly, AccountAccessPolicy accessPolicy,
+			MerkleTreeContext merkleContext) {
 		this.keyPrefix = keyPrefix;
 		this.cryptoSetting = cryptoSetting;
 		this.baseExStorage = exStorage;
 		this.baseVerStorage = verStorage;
+		this.merkleContext = merkleContext;
 		this.merkleDataset = new MerkleDataSet(rootHash, cryptoSetting, keyPrefix, this.baseExStorage,
-				this.baseVerStorage, readonly);
+				this.baseVerStorage, readonly, merkleContext);
 		this.accessPolicy = accessPolicy;
 	}
 
@@ -90,6 +105,32 @@ public class AccountSet implements Transactional, MerkleProvable {
 		return accounts;
 	}
 
+	/**
+	 * 按序号顺序返回账户的迭代器；
+	 * <p>
+	 * 账户在迭代时按批读取（参见 {@link MerkleDataSet#iterator(long, long)}），不必一次加载区间内的全部账户；
+	 * 
+	 * @param fromIndex
+	 *            起始的序号（包含）；
+	 * @param count
+	 *            最多返回的账户数量；
+	 * @return
+	 */
+	public Iterator<AccountHeader> getAccountIterator(long fromIndex, long count) {
+		Iterator<VersioningKVEntry> entries = merkleDataset.iterator(fromIndex, count);
+		return new Iterator<AccountHeader>() {
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public AccountHeader next() {
+				return deserialize(entries.next().getValue());
+			}
+		};
+	}
+
 //	private VersioningAccount deserialize(byte[] txBytes) {
 ////		return BinaryEncodingUtils.decode(txBytes, null, Account.class);
 //		AccountHeaderData accInfo = BinaryEncodingUtils.decode(txBytes);
@@ -103,6 +144,26 @@ public class AccountSet implements Transactional, MerkleProvable {
         return BinaryEncodingUtils.decode(txBytes);
 	}
 
+	/**
+	 * 校验账户集以及其中每一个账户的数据集的全部默克尔节点；参见 {@link MerkleDataSet#verify()}；
+	 * 
+	 * @return 账户的数量；
+	 */
+	public long verify() {
+		long count = merkleDataset.verify();
+		Iterator<AccountHeader> accounts = getAccountIterator(0, count);
+		while (accounts.hasNext()) {
+			AccountHeader header = accounts.next();
+			if (header.getRootHash() == null) {
+				continue;
+			}
+			MerkleDataSet accountDataset = new MerkleDataSet(header.getRootHash(), cryptoSetting,
+					keyPrefix + header.getAddress(), baseExStorage, baseVerStorage, true, merkleContext);
+			accountDataset.verify();
+		}
+		return count;
+	}
+
 	/**
 	 * 返回账户的总数量；
 	 * 
@@ -112,6 +173,15 @@ public class AccountSet implements Transactional, MerkleProvable {
 		return merkleDataset.getDataCount();
 	}
 
+	/**
+	 * 以批量读取预读指定账户的最新版本；
+	 * 
+	 * @param addresses
+	 */
+	public void prefetch(Bytes[] addresses) {
+		merkleDataset.prefetch(addresses);
+	}
+
 	/**
 	 * 返回最新版本的 Account;
 	 * 
@@ -269,6 +339,8 @@ public class AccountSet implements Transactional, MerkleProvable {
 		String prefix = keyPrefix + address;
 		VersioningAccount acc = createInstance(address, pubKey, cryptoSetting, prefix, baseExStorage, baseVerStorage, -1);
 		latestAccountsCache.put(address, acc);
+		// 账户在提交时才写入默克尔数据集，先记录写入，以便识别同一区块中依赖此账户的交易；
+		merkleDataset.recordWriting(address);
 		updated = true;
 
 		return acc;
@@ -333,9 +405,9 @@ public class AccountSet implements Transactional, MerkleProvable {
 		if (!updated) {
 			return;
 		}
-		String[] addresses = new String[latestAccountsCache.size()];
+		Bytes[] addresses = new Bytes[latestAccountsCache.size()];
 		latestAccountsCache.keySet().toArray(addresses);
-		for (String address : addresses) {
+		for (Bytes address : addresses) {
 			VersioningAccount acc = latestAccountsCache.remove(address);
 			// cancel;
 			if (acc.isUpdated()) {
@@ -391,15 +463,16 @@ public class AccountSet implements Transactional, MerkleProvable {
 		public VersioningAccount(Bytes address, PubKey pubKey, HashDigest rootHash, CryptoSetting cryptoSetting,
 				String keyPrefix, ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
 				AccountAccessPolicy accessPolicy, long version) {
-			super(address, pubKey, rootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly, accessPolicy);
+			super(new BlockchainIdentityData(address, pubKey), rootHash, cryptoSetting, keyPrefix, exStorage,
+					verStorage, readonly, accessPolicy, merkleContext);
 			this.version = version;
 		}
 
 		public VersioningAccount(Bytes address, PubKey pubKey, CryptoSetting cryptoSetting, String keyPrefix,
 				ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, AccountAccessPolicy accessPolicy,
 				long version) {
-			super(address, pubKey, cryptoSetting, keyPrefix, exStorage, verStorage, accessPolicy);
-			this.version = version;
+			this(address, pubKey, null, cryptoSetting, keyPrefix, exStorage, verStorage, false, accessPolicy,
+					version);
 		}
 
 		// @Override
@@ -88,8 +88,35 @@ public class BaseAccount implements AccountHeader, MerkleProvable, Transactional
 	public BaseAccount(BlockchainIdentity bcid, HashDigest dataRootHash, CryptoSetting cryptoSetting, String keyPrefix,
 			ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
 			AccountAccessPolicy accessPolicy) {
+		this(bcid, dataRootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly, accessPolicy, null);
+	}
+
+	/**
+	 * Create a account instance with the specified blockchain identity and load
+	 * it's merkle dataset with the specified root hash. <br>
+	 * 
+	 * The merkle nodes of the account's dataset are loaded through the specified
+	 * node cache, which is shared by all the accounts of the same ledger;
+	 * 
+	 * @param bcid
+	 * @param dataRootHash
+	 *            merkle root hash of account's data; if null be set, create a new
+	 *            empty merkle dataset;
+	 * @param cryptoSetting
+	 * @param keyPrefix
+	 * @param exStorage
+	 * @param verStorage
+	 * @param readonly
+	 * @param accessPolicy
+	 * @param merkleContext
+	 *            the context of merkle trees, providing the node cache and the commit engine; if null be set, no cache is used and commits serially;
+	 */
+	public BaseAccount(BlockchainIdentity bcid, HashDigest dataRootHash, CryptoSetting cryptoSetting, String keyPrefix,
+			ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
+			AccountAccessPolicy accessPolicy, MerkleTreeContext merkleContext) {
 		this.bcid = bcid;
-		this.dataset = new MerkleDataSet(dataRootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly);
+		this.dataset = new MerkleDataSet(dataRootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly,
+				merkleContext);
 		this.accessPolicy = accessPolicy;
 	}
 
@@ -168,6 +195,15 @@ public class BaseAccount implements AccountHeader, MerkleProvable, Transactional
 		return dataset.setValue(key, value, version);
 	}
 
+	/**
+	 * Prefetch the latest versions of the specified keys in a batch;
+	 * 
+	 * @param keys
+	 */
+	public void prefetch(Bytes[] keys) {
+		dataset.prefetch(keys);
+	}
+
 	/**
 	 * Return the latest version entry associated the specified key; If the key
 	 * doesn't exist, then return -1;
@@ -1,5 +1,7 @@
 package com.jd.blockchain.ledger.core;
 
+import java.util.Iterator;
+
 import com.jd.blockchain.crypto.asymmetric.PubKey;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.AccountHeader;
@@ -22,13 +24,24 @@ public class ContractAccountSet implements MerkleProvable, Transactional {
 	public ContractAccountSet(HashDigest dataRootHash, CryptoSetting cryptoSetting, String prefix,
 			ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
 			AccountAccessPolicy accessPolicy) {
-		accountSet = new AccountSet(dataRootHash, cryptoSetting, prefix, exStorage, verStorage, readonly, accessPolicy);
+		this(dataRootHash, cryptoSetting, prefix, exStorage, verStorage, readonly, accessPolicy, null);
+	}
+
+	public ContractAccountSet(HashDigest dataRootHash, CryptoSetting cryptoSetting, String prefix,
+			ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
+			AccountAccessPolicy accessPolicy, MerkleTreeContext merkleContext) {
+		accountSet = new AccountSet(dataRootHash, cryptoSetting, prefix, exStorage, verStorage, readonly, accessPolicy,
+				merkleContext);
 	}
 
 	public AccountHeader[] getAccounts(int fromIndex, int count) {
 		return accountSet.getAccounts(fromIndex,count);
 	}
 
+	public Iterator<AccountHeader> getAccountIterator(long fromIndex, long count) {
+		return accountSet.getAccountIterator(fromIndex, count);
+	}
+
 	public boolean isReadonly() {
 		return accountSet.isReadonly();
 	}
@@ -47,6 +60,15 @@ public class ContractAccountSet implements MerkleProvable, Transactional {
 		return accountSet.getTotalCount();
 	}
 
+	/**
+	 * 校验合约集以及其中每一个账户的数据集的全部默克尔节点；参见 {@link AccountSet#verify()}；
+	 * 
+	 * @return 账户的数量；
+	 */
+	public long verify() {
+		return accountSet.verify();
+	}
+
 	@Override
 	public MerkleProof getProof(Bytes address) {
 		return accountSet.getProof(address);
@@ -56,6 +78,15 @@ public class ContractAccountSet implements MerkleProvable, Transactional {
 		return accountSet.contains(address);
 	}
 
+	/**
+	 * 以批量读取预读指定账户的最新版本；
+	 * 
+	 * @param addresses
+	 */
+	public void prefetch(Bytes[] addresses) {
+		accountSet.prefetch(addresses);
+	}
+
 	public ContractAccount getContract(Bytes address) {
 		BaseAccount accBase = accountSet.getAccount(address);
 		return new ContractAccount(accBase);
@@ -0,0 +1,131 @@
+package com.jd.blockchain.ledger.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 数据访问的记录器；
+ * <p>
+ * 记录当前线程对可写的 {@link MerkleDataSet} 读取和写入的键，用于判断同一区块中的交易之间是否存在数据依赖；<br>
+ * 键以数据集的存储前缀加上数据的键表示，同一账本中不同数据集的键互不冲突；对数据集整体的访问（例如数据总数、按序号读取）以数据集的存储前缀表示；
+ * <p>
+ * 记录器通过 {@link #begin()} 绑定到当前线程，通过 {@link #end()} 解除绑定；只读的数据集（例如前一区块的数据集）不作记录；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class DataAccessRecorder {
+
+	private static final ThreadLocal<DataAccessRecorder> CURRENT = new ThreadLocal<>();
+
+	private final Set<Bytes> readingKeys = new HashSet<>();
+
+	private final Set<Bytes> writingKeys = new HashSet<>();
+
+	private final DataAccessRecorder previous;
+
+	private DataAccessRecorder(DataAccessRecorder previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * 创建记录器并绑定到当前线程；
+	 * <p>
+	 * 如果当前线程已经绑定了记录器，则在新的记录器结束后恢复；
+	 *
+	 * @return
+	 */
+	public static DataAccessRecorder begin() {
+		DataAccessRecorder recorder = new DataAccessRecorder(CURRENT.get());
+		CURRENT.set(recorder);
+		return recorder;
+	}
+
+	/**
+	 * 结束记录，解除与当前线程的绑定；
+	 */
+	public void end() {
+		if (CURRENT.get() != this) {
+			throw new IllegalStateException("The recorder is not the current one of this thread!");
+		}
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * 读取的键；
+	 *
+	 * @return
+	 */
+	public Set<Bytes> getReadingKeys() {
+		return Collections.unmodifiableSet(readingKeys);
+	}
+
+	/**
+	 * 写入的键；
+	 *
+	 * @return
+	 */
+	public Set<Bytes> getWritingKeys() {
+		return Collections.unmodifiableSet(writingKeys);
+	}
+
+	/**
+	 * 是否读取了指定的键中的任何一个；
+	 *
+	 * @param keys
+	 * @return
+	 */
+	public boolean isReadingAny(Set<Bytes> keys) {
+		if (keys.size() < readingKeys.size()) {
+			for (Bytes key : keys) {
+				if (readingKeys.contains(key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		for (Bytes key : readingKeys) {
+			if (keys.contains(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 记录读取；
+	 *
+	 * @param prefix
+	 *            数据集的存储前缀；
+	 * @param key
+	 *            数据的键；如果为 null，则表示读取数据集整体；
+	 */
+	static void recordReading(Bytes prefix, Bytes key) {
+		DataAccessRecorder recorder = CURRENT.get();
+		if (recorder != null) {
+			recorder.readingKeys.add(key == null ? prefix : new Bytes(prefix, key));
+		}
+	}
+
+	/**
+	 * 记录写入；
+	 *
+	 * @param prefix
+	 *            数据集的存储前缀；
+	 * @param key
+	 *            数据的键；如果为 null，则表示写入数据集整体；
+	 */
+	static void recordWriting(Bytes prefix, Bytes key) {
+		DataAccessRecorder recorder = CURRENT.get();
+		if (recorder != null) {
+			recorder.writingKeys.add(key == null ? prefix : new Bytes(prefix, key));
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.jd.blockchain.ledger.core;
 
+import java.util.Arrays;
+import java.util.Iterator;
+
 import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
 import com.jd.blockchain.crypto.asymmetric.PubKey;
 import com.jd.blockchain.crypto.hash.HashDigest;
@@ -7,6 +10,7 @@ import com.jd.blockchain.ledger.AccountHeader;
 import com.jd.blockchain.ledger.BytesValue;
 import com.jd.blockchain.ledger.KVDataEntry;
 import com.jd.blockchain.ledger.KVDataObject;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.QueryUtil;
 import com.jd.blockchain.utils.ValueType;
@@ -44,6 +48,15 @@ public class DataAccount implements AccountHeader, MerkleProvable {
 	public long setBytes(Bytes key, byte[] value, long version) {
 		return baseAccount.setBytes(key, value, version);
 	}
+
+	/**
+	 * 以批量读取预读指定键的最新版本；
+	 * 
+	 * @param keys
+	 */
+	public void prefetch(Bytes[] keys) {
+		baseAccount.prefetch(keys);
+	}
 	
 	/**
 	 * Return the latest version entry associated the specified key; If the key
@@ -126,19 +139,43 @@ public class DataAccount implements AccountHeader, MerkleProvable {
 		count = pages[1];
 
 		KVDataEntry[] kvDataEntries = new KVDataEntry[count];
-		byte[] value;
-		String key;
-		long ver;
-		for (int i = 0; i < count; i++) {
-			value = baseAccount.dataset.getValuesAtIndex(fromIndex);
-			key = baseAccount.dataset.getKeyAtIndex(fromIndex);
-			ver = baseAccount.dataset.getVersion(key);
-			BytesValue decodeData = BinaryEncodingUtils.decode(value);
-			kvDataEntries[i] = new KVDataObject(key, ver, ValueType.valueOf(decodeData.getType().CODE), decodeData.getValue().toBytes());
-			fromIndex++;
+		// 按序号顺序遍历，键、版本和值在一次遍历中同时返回；
+		Iterator<KVDataEntry> entries = getDataEntryIterator(fromIndex, count);
+		int i = 0;
+		while (i < count && entries.hasNext()) {
+			kvDataEntries[i++] = entries.next();
 		}
 
-		return kvDataEntries;
+		return i == count ? kvDataEntries : Arrays.copyOf(kvDataEntries, i);
+	}
+
+	/**
+	 * 按序号顺序返回键值数据的迭代器；
+	 * <p>
+	 * 数据在迭代时按批读取，不必一次加载区间内的全部数据，适用于导出大量的数据；
+	 * 
+	 * @param fromIndex
+	 *            起始的序号（包含）；
+	 * @param count
+	 *            最多返回的数据数量；
+	 * @return
+	 */
+	public Iterator<KVDataEntry> getDataEntryIterator(long fromIndex, long count) {
+		Iterator<VersioningKVEntry> entries = baseAccount.dataset.iterator(fromIndex, count);
+		return new Iterator<KVDataEntry>() {
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public KVDataEntry next() {
+				VersioningKVEntry entry = entries.next();
+				String key = new String(entry.getKey().toBytes());
+				BytesValue decodeData = BinaryEncodingUtils.decode(entry.getValue());
+				return new KVDataObject(key, entry.getVersion(), ValueType.valueOf(decodeData.getType().CODE), decodeData.getValue().toBytes());
+			}
+		};
 	}
 
 	/**
@@ -40,6 +40,33 @@ public interface LedgerEditor {
 	 */
 	LedgerTransactionContext newTransaction(TransactionRequest txRequest);
 
+	/**
+	 * 预读指定的交易请求将要访问的账户和数据；<br>
+	 * 
+	 * 以批量读取加载交易的签名者、操作的目标账户以及写入的键的最新版本，之后在新区块中执行这些交易时直接使用预读的数据；
+	 * <p>
+	 * 
+	 * 注：方法只解析交易中的操作的目标，不执行操作，也不校验签名；预读不改变账本数据；
+	 * 
+	 * @param txRequests
+	 */
+	void prefetch(TransactionRequest[] txRequests);
+
+	/**
+	 * 以新区块的起点（即前一个区块）的数据创建一个隔离的数据集；<br>
+	 * 
+	 * 隔离的数据集读取新区块的缓冲存储（包括预读的数据），但对其修改只缓冲在数据集自身，不会写入新区块，
+	 * 用于在新区块之外预先推测执行交易；不同的隔离数据集之间互不影响，可以在不同的线程中使用；
+	 * <p>
+	 * 
+	 * 注：隔离的数据集不反映新区块中已经执行的交易对账本数据的修改；
+	 * 
+	 * @param readonly
+	 *            是否只读；只读的数据集等同于前一个区块的数据集；
+	 * @return 隔离的数据集；如果新区块不支持（例如创世区块），则返回 null；
+	 */
+	LedgerDataSet newIsolatedDataSet(boolean readonly);
+
 	/**
 	 * 暂存当前的数据变更，并预提交生成新区块；
 	 * 
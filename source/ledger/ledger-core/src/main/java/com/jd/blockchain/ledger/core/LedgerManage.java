@@ -1,6 +1,7 @@
 package com.jd.blockchain.ledger.core;
 
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.LedgerBlock;
 import com.jd.blockchain.ledger.LedgerInitSetting;
 import com.jd.blockchain.storage.service.KVStorageService;
 
@@ -13,9 +14,60 @@ import com.jd.blockchain.storage.service.KVStorageService;
 public interface LedgerManage extends LedgerService {
 	
 	LedgerRepository register(HashDigest ledgerHash, KVStorageService storageService);
+
+	/**
+	 * 注册账本；
+	 * 
+	 * @param ledgerHash
+	 *            账本哈希；
+	 * @param storageService
+	 *            账本的存储服务；
+	 * @param merkleCommitEngine
+	 *            账本的默克尔树提交引擎；由账本管理器持有，在账本注销或者以不同的提交引擎重新注册时关闭；
+	 * @return
+	 */
+	LedgerRepository register(HashDigest ledgerHash, KVStorageService storageService,
+			MerkleCommitEngine merkleCommitEngine);
 	
 	void unregister(HashDigest ledgerHash);
 
+	/**
+	 * 返回已注册的账本的存储服务；
+	 * 
+	 * @param ledgerHash
+	 *            账本哈希；
+	 * @return 账本未注册时返回 null；
+	 */
+	KVStorageService getStorageService(HashDigest ledgerHash);
+
+	/**
+	 * 返回已注册的账本的默克尔树提交引擎；
+	 * 
+	 * @param ledgerHash
+	 *            账本哈希；
+	 * @return 账本未注册时返回 null；
+	 */
+	MerkleCommitEngine getMerkleCommitEngine(HashDigest ledgerHash);
+
+	/**
+	 * 校验存储中的账本在指定高度的状态；不注册账本；
+	 * <p>
+	 * 用于在启用从检查点装载的账本之前，校验区块哈希以及区块记录的各个数据集的默克尔根；<br>
+	 * 存储中账本的最新区块必须是指定高度的区块，否则之后重放的区块会与检查点中已有的区块重复；
+	 * 
+	 * @param ledgerHash
+	 *            账本哈希；
+	 * @param storageService
+	 *            账本的存储服务；
+	 * @param height
+	 *            区块高度；
+	 * @param blockHash
+	 *            期望的区块哈希；
+	 * @return 校验通过的区块；校验失败时抛出 {@link LedgerException}；
+	 */
+	LedgerBlock verifyLedger(HashDigest ledgerHash, KVStorageService storageService, long height,
+			HashDigest blockHash);
+
 	/**
 	 * 创建新账本；
 	 * 
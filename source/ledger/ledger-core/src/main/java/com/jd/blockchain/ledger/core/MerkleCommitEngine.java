@@ -0,0 +1,191 @@
+package com.jd.blockchain.ledger.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * 默克尔树的提交引擎；
+ * <p>
+ * 默克尔树在提交时自底向上逐层重新计算路径节点的哈希；同一层的路径节点之间互不依赖，提交引擎负责把每一层的节点划分为若干分区，
+ * 并决定这些分区是在提交线程中串行执行，还是在线程池中并行执行；
+ * <p>
+ * 提交引擎按账本进行配置（参见 {@link MerkleTreeContext}），不同账本可以选择不同的引擎；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class MerkleCommitEngine {
+
+	/**
+	 * 默认的分区大小；即每个并行任务至少处理的节点数量；
+	 */
+	public static final int DEFAULT_PARTITION_SIZE = 64;
+
+	/**
+	 * 串行的提交引擎；所有节点都在提交线程中处理；
+	 */
+	public static final MerkleCommitEngine SERIAL = new MerkleCommitEngine(null, Integer.MAX_VALUE);
+
+	private static final Completion DONE = new Completion() {
+		@Override
+		public void await() {
+		}
+	};
+
+	private final ForkJoinPool pool;
+
+	private final int partitionSize;
+
+	/**
+	 * @param pool
+	 *            执行并行任务的线程池；如果为 null，则以串行方式执行；
+	 * @param partitionSize
+	 *            分区大小；节点数量不超过分区大小的层级直接在提交线程中处理；
+	 */
+	public MerkleCommitEngine(ForkJoinPool pool, int partitionSize) {
+		if (partitionSize < 1) {
+			throw new IllegalArgumentException("The partition size of merkle commit engine is less than 1!");
+		}
+		this.pool = pool;
+		this.partitionSize = partitionSize;
+	}
+
+	/**
+	 * 创建提交引擎；
+	 *
+	 * @param parallelism
+	 *            并行度；小于或等于 1 时返回串行的提交引擎 {@link #SERIAL}；
+	 * @return
+	 */
+	public static MerkleCommitEngine create(int parallelism) {
+		return create(parallelism, DEFAULT_PARTITION_SIZE);
+	}
+
+	/**
+	 * 创建提交引擎；
+	 *
+	 * @param parallelism
+	 *            并行度；小于或等于 1 时返回串行的提交引擎 {@link #SERIAL}；
+	 * @param partitionSize
+	 *            分区大小；
+	 * @return
+	 */
+	public static MerkleCommitEngine create(int parallelism, int partitionSize) {
+		if (parallelism <= 1) {
+			return SERIAL;
+		}
+		return new MerkleCommitEngine(new ForkJoinPool(parallelism), partitionSize);
+	}
+
+	/**
+	 * 是否以并行方式执行；
+	 *
+	 * @return
+	 */
+	public boolean isParallel() {
+		return pool != null;
+	}
+
+	/**
+	 * 并行度；串行方式时为 1；
+	 *
+	 * @return
+	 */
+	public int getParallelism() {
+		return pool == null ? 1 : pool.getParallelism();
+	}
+
+	public int getPartitionSize() {
+		return partitionSize;
+	}
+
+	/**
+	 * 对序号 [0, count) 执行指定的操作；
+	 * <p>
+	 * 以并行方式执行时，此方法提交任务后立即返回，调用者可以在等待期间处理其它工作，之后通过 {@link Completion#await()}
+	 * 等待全部操作完成；
+	 *
+	 * @param count
+	 *            操作的数量；
+	 * @param action
+	 *            操作；不同序号的操作可能在不同的线程中同时执行；
+	 * @return
+	 */
+	Completion submit(int count, IntConsumer action) {
+		if (pool == null || count <= partitionSize) {
+			for (int i = 0; i < count; i++) {
+				action.accept(i);
+			}
+			return DONE;
+		}
+		ForkJoinTask<Void> task = pool.submit(new PartitionTask(action, 0, count, partitionSize));
+		return task::join;
+	}
+
+	/**
+	 * 关闭引擎，释放线程池；串行的提交引擎没有线程池，关闭后仍然可以使用；
+	 */
+	public void close() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * 线程池是否已经关闭；
+	 *
+	 * @return
+	 */
+	public boolean isClosed() {
+		return pool != null && pool.isShutdown();
+	}
+
+	/**
+	 * 已提交的操作的完成状态；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	static interface Completion {
+
+		/**
+		 * 等待全部操作完成；如果有操作引发了异常，则重新抛出该异常；
+		 */
+		void await();
+
+	}
+
+	@SuppressWarnings("serial")
+	private static class PartitionTask extends RecursiveAction {
+
+		private final IntConsumer action;
+
+		private final int from;
+
+		private final int to;
+
+		private final int partitionSize;
+
+		private PartitionTask(IntConsumer action, int from, int to, int partitionSize) {
+			this.action = action;
+			this.from = from;
+			this.to = to;
+			this.partitionSize = partitionSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > partitionSize) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new PartitionTask(action, from, middle, partitionSize),
+						new PartitionTask(action, middle, to, partitionSize));
+			} else {
+				for (int i = from; i < to; i++) {
+					action.accept(i);
+				}
+			}
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.jd.blockchain.ledger.core;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.CryptoSetting;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
@@ -32,12 +35,22 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 	public static final String DATA_PREFIX = "KV" + ORIG_KEY_SEPERATOR;
 	public static final String MERKLE_TREE_PREFIX = "MKL" + ORIG_KEY_SEPERATOR;
 
+	/**
+	 * 按序号遍历数据项时每一批读取的数据项的数量；
+	 */
+	private static final int ITERATING_BATCH_SIZE = 64;
+
 	private final Bytes snKeyPrefix;
 	private final Bytes dataKeyPrefix;
 	private final Bytes merkleKeyPrefix;
 
 	private BufferedKVStorage bufferedStorage;
 
+	/**
+	 * 预读数据的存储；
+	 */
+	private BufferedKVStorage prefetchStorage;
+
 	private VersioningKVStorage valueStorage;
 
 	private ExPolicyKVStorage snStorage;
@@ -72,6 +85,8 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 			VersioningKVStorage versioningStorage) {
 		// 缓冲对KV的写入；
 		this.bufferedStorage = new BufferedKVStorage(exPolicyStorage, versioningStorage, false);
+		this.prefetchStorage = versioningStorage instanceof BufferedKVStorage
+				&& exPolicyStorage == versioningStorage ? (BufferedKVStorage) versioningStorage : bufferedStorage;
 
 		// 把存储数据值、SN、Merkle节点的 key 分别加入独立的前缀，避免针对 key 的注入攻击；
 		// this.valueStorage = PrefixAppender.prefix(DATA_PREFIX, (VersioningKVStorage)
@@ -103,8 +118,28 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 	 */
 	public MerkleDataSet(HashDigest merkleRootHash, CryptoSetting setting, String keyPrefix,
 			ExPolicyKVStorage exPolicyStorage, VersioningKVStorage versioningStorage, boolean readonly) {
+		this(merkleRootHash, setting, keyPrefix, exPolicyStorage, versioningStorage, readonly, null);
+	}
+
+	/**
+	 * 从指定的 Merkle 根构建的 MerkleDataSet；
+	 * 
+	 * @param merkleRootHash
+	 * @param setting
+	 * @param keyPrefix
+	 * @param exPolicyStorage
+	 * @param versioningStorage
+	 * @param readonly
+	 * @param merkleContext
+	 *            默克尔树的运行上下文，提供节点缓存和提交引擎；如果为 null，则不使用缓存，并以串行方式提交；
+	 */
+	public MerkleDataSet(HashDigest merkleRootHash, CryptoSetting setting, String keyPrefix,
+			ExPolicyKVStorage exPolicyStorage, VersioningKVStorage versioningStorage, boolean readonly,
+			MerkleTreeContext merkleContext) {
 		// 缓冲对KV的写入；
 		this.bufferedStorage = new BufferedKVStorage(exPolicyStorage, versioningStorage, false);
+		this.prefetchStorage = versioningStorage instanceof BufferedKVStorage
+				&& exPolicyStorage == versioningStorage ? (BufferedKVStorage) versioningStorage : bufferedStorage;
 
 		// 把存储数据值、SN、Merkle节点的 key 分别加入独立的前缀，避免针对 key 的注入攻击；
 		snKeyPrefix = Bytes.fromString(keyPrefix + SN_PREFIX);
@@ -115,7 +150,8 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 		// MerkleTree 本身是可缓冲的；
 		merkleKeyPrefix = Bytes.fromString(keyPrefix + MERKLE_TREE_PREFIX);
 		ExPolicyKVStorage merkleTreeStorage = exPolicyStorage;
-		this.merkleTree = new MerkleTree(merkleRootHash, setting, merkleKeyPrefix, merkleTreeStorage, readonly);
+		this.merkleTree = new MerkleTree(merkleRootHash, setting, merkleKeyPrefix, merkleTreeStorage, readonly,
+				merkleContext);
 
 		this.snGenerator = new MerkleSequenceSNGenerator(merkleTree);
 		this.readonly = readonly;
@@ -126,10 +162,12 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 	}
 
 	public long getDataCount() {
+		recordReading(null);
 		return merkleTree.getDataCount();
 	}
 
 	public long getMaxIndex() {
+		recordReading(null);
 		return merkleTree.getMaxSn();
 	}
 
@@ -141,20 +179,59 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 			throw new IllegalArgumentException("Index out of bound!");
 		}
 		byte[][] values = new byte[count][];
-		for (int i = 0; i < count; i++) {
-			MerkleDataNode dataNode = merkleTree.getData(fromIndex + i);
-			Bytes dataKey = encodeDataKey(dataNode.getKey());
-			values[i] = valueStorage.get(dataKey, dataNode.getVersion());
+		Iterator<VersioningKVEntry> entries = iterator(fromIndex, count);
+		for (int i = 0; i < count && entries.hasNext(); i++) {
+			values[i] = entries.next().getValue();
 		}
 		return values;
 	}
 
+	/**
+	 * 按序号升序返回指定区间的数据项的迭代器；数据项的版本是当前默克尔树中记录的版本；
+	 * <p>
+	 * 数据节点按批从默克尔树中顺序读取（参见 {@link MerkleTree#iterator(long, long)}），<br>
+	 * 每一批数据节点对应的确切版本的值以一次批量读取得到，而不是逐个键地访问存储；读取的值不保留在数据集中；
+	 * 
+	 * @param fromIndex
+	 *            起始的序号（包含）；
+	 * @param count
+	 *            最多返回的数据项的数量；
+	 * @return
+	 */
+	public Iterator<VersioningKVEntry> iterator(long fromIndex, long count) {
+		recordReading(null);
+		return new DataEntryIterator(merkleTree.iterator(fromIndex, count));
+	}
+
+	/**
+	 * 校验数据集的全部默克尔节点；每一个数据节点都以存储中对应版本的值重新计算哈希，参见 {@link MerkleTree#verify(java.util.function.Function)}；
+	 * 
+	 * @return 数据项的数量；
+	 */
+	public long verify() {
+		return merkleTree.verify(dataNodes -> {
+			Bytes[] dataKeys = new Bytes[dataNodes.length];
+			long[] versions = new long[dataNodes.length];
+			for (int i = 0; i < dataNodes.length; i++) {
+				dataKeys[i] = encodeDataKey(dataNodes[i].getKey());
+				versions[i] = dataNodes[i].getVersion();
+			}
+			VersioningKVEntry[] entries = valueStorage.multiGetEntries(dataKeys, versions);
+			byte[][] values = new byte[entries.length][];
+			for (int i = 0; i < entries.length; i++) {
+				values[i] = entries[i] == null ? null : entries[i].getValue();
+			}
+			return values;
+		});
+	}
+
 	/**
 	 * get the data at the specific index;
 	 * @param fromIndex
 	 * @return
 	 */
 	public byte[] getValuesAtIndex(int fromIndex) {
+		recordReading(null);
 		MerkleDataNode dataNode = merkleTree.getData(fromIndex);
 		Bytes dataKey = encodeDataKey(dataNode.getKey());
 		return valueStorage.get(dataKey, dataNode.getVersion());
@@ -166,6 +243,7 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 	 * @return
 	 */
 	public String getKeyAtIndex(int fromIndex) {
+		recordReading(null);
 		MerkleDataNode dataNode = merkleTree.getData(fromIndex);
 		return new String(dataNode.getKey().toBytes());
 	}
@@ -229,6 +307,7 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 			throw new IllegalArgumentException(
 					"The size of value is great than the max size[" + MAX_SIZE_OF_VALUE + "]!");
 		}
+		recordReading(key);
 		Bytes dataKey = encodeDataKey(key);
 		long latestVersion = valueStorage.getVersion(dataKey);
 		if (version != latestVersion) {
@@ -267,12 +346,57 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 
 		// update merkle tree;
 		merkleTree.setData(sn, key, newVersion, value);
+		recordWriting(key);
 		// TODO: 未在当前实例的层面，实现对输入键-值的缓冲，而直接写入了存储，而 MerkleTree 在未调用 commit
 		// 之前是缓冲的，这使得在存储层面的数据会不一致，而未来需要优化；
 
 		return newVersion;
 	}
 
+	/**
+	 * 以批量读取预读指定键的序号和最新版本的值；
+	 * <p>
+	 * 如果依赖的存储是账本编辑器的缓冲存储（在整个新区块的编辑期间有效），则预读到该存储中，使得同一区块中后续加载的数据集都可以使用；<br>
+	 * 否则预读到当前数据集的缓冲存储中；
+	 * 
+	 * @param keys
+	 */
+	public void prefetch(Bytes[] keys) {
+		Bytes[] dataKeys = new Bytes[keys.length];
+		Bytes[] snKeys = new Bytes[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			dataKeys[i] = encodeDataKey(keys[i]);
+			snKeys[i] = encodeSNKey(keys[i]);
+		}
+		prefetchStorage.prefetch(dataKeys, snKeys);
+	}
+
+	/**
+	 * 记录对指定键的读取；只读的数据集不作记录；
+	 * 
+	 * @param key
+	 *            数据的键；如果为 null，则表示读取数据集整体（例如数据总数、按序号读取、默克尔证明）；
+	 */
+	private void recordReading(Bytes key) {
+		if (!readonly) {
+			DataAccessRecorder.recordReading(dataKeyPrefix, key);
+		}
+	}
+
+	/**
+	 * 记录对指定键的写入，同时记录对数据集整体的写入；只读的数据集不作记录；
+	 * <p>
+	 * 除了 {@link #setValue(Bytes, byte[], long)} 之外，也用于记录在提交时才写入数据集的延迟更新，例如新注册的账户；
+	 * 
+	 * @param key
+	 */
+	void recordWriting(Bytes key) {
+		if (!readonly) {
+			DataAccessRecorder.recordWriting(dataKeyPrefix, key);
+			DataAccessRecorder.recordWriting(dataKeyPrefix, null);
+		}
+	}
+
 	private Bytes encodeSNKey(Bytes key) {
 		return new Bytes(snKeyPrefix, key);
 	}
@@ -307,6 +431,7 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 	 * @return 返回指定的键的版本；如果不存在，则返回 -1；
 	 */
 	private long getMerkleVersion(Bytes key) {
+		recordReading(key);
 		long sn = getSN(key);
 		if (sn < 0) {
 			return -1;
@@ -451,6 +576,7 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 	 */
 	@Override
 	public MerkleProof getProof(Bytes key) {
+		recordReading(null);
 		long sn = getSN(key);
 		if (sn < 0) {
 			return null;
@@ -458,6 +584,47 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 		return merkleTree.getProof(sn);
 	}
 
+	/**
+	 * 批量返回指定键的默克尔证明；
+	 * <p>
+	 * 证明之间共享公共路径节点，参见 {@link MerkleTree#getProofs(long[])}；
+	 * 
+	 * @param keys
+	 * @return 默克尔证明的列表，与参数中的键一一对应；其中不存在的键对应的元素为 null；
+	 */
+	public MerkleProof[] getProofs(Bytes[] keys) {
+		recordReading(null);
+		long[] sns = new long[keys.length];
+		int count = 0;
+		for (int i = 0; i < keys.length; i++) {
+			sns[i] = getSN(keys[i]);
+			if (sns[i] > -1) {
+				count++;
+			}
+		}
+		if (count == keys.length) {
+			return merkleTree.getProofs(sns);
+		}
+
+		// 仅对存在的键生成证明；
+		long[] existingSNs = new long[count];
+		int[] positions = new int[count];
+		count = 0;
+		for (int i = 0; i < sns.length; i++) {
+			if (sns[i] > -1) {
+				existingSNs[count] = sns[i];
+				positions[count] = i;
+				count++;
+			}
+		}
+		MerkleProof[] existingProofs = merkleTree.getProofs(existingSNs);
+		MerkleProof[] proofs = new MerkleProof[keys.length];
+		for (int i = 0; i < existingProofs.length; i++) {
+			proofs[positions[i]] = existingProofs[i];
+		}
+		return proofs;
+	}
+
 	/**
 	 * A wrapper for {@link VersioningKVEntry} and {@link MerkleProof};
 	 * 
@@ -486,6 +653,99 @@ public class MerkleDataSet implements Transactional, MerkleProvable {
 
 	}
 
+	/**
+	 * 按批读取值的数据项迭代器；
+	 * <p>
+	 * 每一批数据节点对应的确切版本的值以一次批量读取得到，只在当前批次中保留，不加入数据集的预读缓存；<br>
+	 * 因此迭代大量的数据项时，占用的内存不随已返回的数据项增长；
+	 * 
+	 * @author huanghaiquan
+	 *
+	 */
+	private class DataEntryIterator implements Iterator<VersioningKVEntry> {
+
+		private final Iterator<MerkleDataNode> dataNodes;
+
+		private final MerkleDataNode[] batch = new MerkleDataNode[ITERATING_BATCH_SIZE];
+
+		private VersioningKVEntry[] batchEntries;
+
+		private int batchSize;
+
+		private int cursor;
+
+		private DataEntryIterator(Iterator<MerkleDataNode> dataNodes) {
+			this.dataNodes = dataNodes;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor < batchSize || dataNodes.hasNext();
+		}
+
+		@Override
+		public VersioningKVEntry next() {
+			if (cursor == batchSize) {
+				fetchBatch();
+			}
+			MerkleDataNode dataNode = batch[cursor];
+			VersioningKVEntry entry = batchEntries[cursor];
+			batch[cursor] = null;
+			batchEntries[cursor++] = null;
+			return new VersioningKVData(dataNode.getKey(), dataNode.getVersion(),
+					entry == null ? null : entry.getValue());
+		}
+
+		private void fetchBatch() {
+			batchSize = 0;
+			cursor = 0;
+			while (batchSize < batch.length && dataNodes.hasNext()) {
+				batch[batchSize++] = dataNodes.next();
+			}
+			if (batchSize == 0) {
+				throw new NoSuchElementException();
+			}
+			Bytes[] dataKeys = new Bytes[batchSize];
+			long[] versions = new long[batchSize];
+			for (int i = 0; i < batchSize; i++) {
+				dataKeys[i] = encodeDataKey(batch[i].getKey());
+				versions[i] = batch[i].getVersion();
+			}
+			batchEntries = valueStorage.multiGetEntries(dataKeys, versions);
+		}
+	}
+
+	private static class VersioningKVData implements VersioningKVEntry {
+
+		private Bytes key;
+
+		private long version;
+
+		private byte[] value;
+
+		public VersioningKVData(Bytes key, long version, byte[] value) {
+			this.key = key;
+			this.version = version;
+			this.value = value;
+		}
+
+		@Override
+		public Bytes getKey() {
+			return key;
+		}
+
+		@Override
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public byte[] getValue() {
+			return value;
+		}
+
+	}
+
 	@Override
 	public boolean isUpdated() {
 		return bufferedStorage.isUpdated() || merkleTree.isUpdated();
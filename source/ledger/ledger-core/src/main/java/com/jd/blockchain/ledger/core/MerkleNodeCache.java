@@ -0,0 +1,205 @@
+package com.jd.blockchain.ledger.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jd.blockchain.crypto.hash.HashDigest;
+
+/**
+ * 默克尔节点的缓存；
+ * <p>
+ * 以节点哈希为键，缓存从存储服务加载并校验过的节点，以及提交时新生成的节点；<br>
+ * 由于默克尔节点是按哈希进行内容寻址的，节点一经生成便不会改变，因此同一个账本下的所有默克尔树（包括每个新区块的编辑器重新加载的默克尔树）都可以共享此缓存，
+ * 从而避免从存储服务中重复加载、解析和校验相同的节点；
+ * <p>
+ * 缓存的容量以节点序列化后的字节数进行衡量，超出容量时按照最近最少使用（LRU）的顺序淘汰节点；
+ * <p>
+ * 注：缓存中的节点实例是不可变的快照，由 {@link MerkleTree} 负责在放入和取出时复制，以隔离不同默克尔树对节点的修改；
+ * <p>
+ * 此实现是线程安全的；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class MerkleNodeCache {
+
+	/**
+	 * 默认的缓存容量（字节数）；可通过系统属性 "merkle-node-cache-size" 设置；
+	 */
+	public static final long DEFAULT_CAPACITY;
+
+	static {
+		DEFAULT_CAPACITY = Long.getLong("merkle-node-cache-size", 64 * 1024 * 1024L);
+	}
+
+	private final long capacity;
+
+	private final LinkedHashMap<HashDigest, CachedNode> nodes = new LinkedHashMap<>(1024, 0.75f, true);
+
+	private long weight;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public MerkleNodeCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            缓存的容量，以节点序列化后的字节总数衡量；
+	 */
+	public MerkleNodeCache(long capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity of merkle node cache is negative!");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * 返回指定哈希的节点；如果不存在，则返回 null；
+	 *
+	 * @param nodeHash
+	 * @return
+	 */
+	public MerkleNode get(HashDigest nodeHash) {
+		CachedNode cachedNode;
+		synchronized (nodes) {
+			cachedNode = nodes.get(nodeHash);
+		}
+		if (cachedNode == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return cachedNode.node;
+	}
+
+	/**
+	 * 缓存节点；
+	 *
+	 * @param node
+	 *            节点；调用者须确保在放入之后不再修改该节点；
+	 * @param nodeSize
+	 *            节点序列化后的字节数，作为节点在缓存中的权重；
+	 */
+	public void put(MerkleNode node, int nodeSize) {
+		if (nodeSize > capacity) {
+			return;
+		}
+		synchronized (nodes) {
+			CachedNode origNode = nodes.put(node.getNodeHash(), new CachedNode(node, nodeSize));
+			if (origNode != null) {
+				weight -= origNode.size;
+			}
+			weight += nodeSize;
+			evict();
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry<HashDigest, CachedNode>> iterator = nodes.entrySet().iterator();
+		while (weight > capacity && iterator.hasNext()) {
+			CachedNode eldest = iterator.next().getValue();
+			iterator.remove();
+			weight -= eldest.size;
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 清空缓存；
+	 */
+	public void clear() {
+		synchronized (nodes) {
+			nodes.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * 缓存的容量（字节数）；
+	 *
+	 * @return
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 当前缓存的节点数量；
+	 *
+	 * @return
+	 */
+	public int getNodeCount() {
+		synchronized (nodes) {
+			return nodes.size();
+		}
+	}
+
+	/**
+	 * 当前缓存的节点的总字节数；
+	 *
+	 * @return
+	 */
+	public long getWeight() {
+		synchronized (nodes) {
+			return weight;
+		}
+	}
+
+	/**
+	 * 命中次数；
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * 未命中次数；
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 因超出容量而被淘汰的节点数量；
+	 *
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * 命中率；如果尚未发生过查询，则返回 0；
+	 *
+	 * @return
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	private static class CachedNode {
+
+		private final MerkleNode node;
+
+		private final int size;
+
+		private CachedNode(MerkleNode node, int size) {
+			this.node = node;
+			this.size = size;
+		}
+	}
+}
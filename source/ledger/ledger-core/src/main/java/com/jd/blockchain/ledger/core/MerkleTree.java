@@ -1,28 +1,31 @@
 package com.jd.blockchain.ledger.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinTask;
-import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.CryptoUtils;
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.ledger.CryptoSetting;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage.ExPolicy;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.Transactional;
 import com.jd.blockchain.utils.codec.Base58Utils;
+import com.jd.blockchain.utils.io.BytesEncoding;
 import com.jd.blockchain.utils.io.BytesSerializable;
 import com.jd.blockchain.utils.io.BytesUtils;
 import com.jd.blockchain.utils.io.NumberMask;
@@ -57,23 +60,19 @@ public class MerkleTree implements Transactional {
 
 	public static final String PATH_SEPERATOR = "/";
 
-	public static final boolean PARALLEL;
-
-	static {
-		// get property from System;
-		PARALLEL = Boolean.getBoolean("parallel-merkle");
-		System.out.println("------ [[ parallel-merkle=" + PARALLEL + " ]] -----");
-	}
-
 	private final Bytes keyPrefix;
 
 	private CryptoSetting setting;
 
 	private ExPolicyKVStorage kvStorage;
 
+	private MerkleNodeCache nodeCache;
+
+	private MerkleCommitEngine commitEngine;
+
 	private boolean readonly;
 
-	private SortedMap<Long, DataNode> updatedDataNodes = Collections.synchronizedSortedMap(new TreeMap<>());
+	private SortedMap<Long, DataNode> updatedDataNodes = new TreeMap<>();
 
 	private PathNode root;
 
@@ -170,9 +169,53 @@ public class MerkleTree implements Transactional {
 	 */
 	public MerkleTree(HashDigest rootHash, CryptoSetting setting, Bytes keyPrefix, ExPolicyKVStorage kvStorage,
 			boolean readonly) {
+		this(rootHash, setting, keyPrefix, kvStorage, readonly, (MerkleTreeContext) null);
+	}
+
+	/**
+	 * 创建 Merkle 树；
+	 * 
+	 * @param rootHash
+	 *            节点的根Hash; 如果指定为 null，则实际上创建一个空的 Merkle Tree；
+	 * @param verifyOnLoad
+	 *            从外部存储加载节点时是否校验节点的哈希；
+	 * @param kvStorage
+	 *            保存 Merkle 节点的存储服务；
+	 * @param readonly
+	 *            是否只读；
+	 * @param nodeCache
+	 *            节点缓存；加载节点时优先从缓存读取，新加载和新提交的节点也会放入缓存；如果为 null，则不使用缓存；
+	 */
+	public MerkleTree(HashDigest rootHash, CryptoSetting setting, Bytes keyPrefix, ExPolicyKVStorage kvStorage,
+			boolean readonly, MerkleNodeCache nodeCache) {
+		this(rootHash, setting, keyPrefix, kvStorage, readonly, new MerkleTreeContext(nodeCache, null));
+	}
+
+	/**
+	 * 创建 Merkle 树；
+	 * 
+	 * @param rootHash
+	 *            节点的根Hash; 如果指定为 null，则实际上创建一个空的 Merkle Tree；
+	 * @param verifyOnLoad
+	 *            从外部存储加载节点时是否校验节点的哈希；
+	 * @param kvStorage
+	 *            保存 Merkle 节点的存储服务；
+	 * @param readonly
+	 *            是否只读；
+	 * @param context
+	 *            默克尔树的运行上下文，提供节点缓存和提交引擎；如果为 null，则不使用缓存，并以串行方式提交；
+	 */
+	public MerkleTree(HashDigest rootHash, CryptoSetting setting, Bytes keyPrefix, ExPolicyKVStorage kvStorage,
+			boolean readonly, MerkleTreeContext context) {
 		this.setting = setting;
 		this.keyPrefix = keyPrefix;
 		this.kvStorage = kvStorage;
+		if (context == null) {
+			this.commitEngine = MerkleCommitEngine.SERIAL;
+		} else {
+			this.nodeCache = context.getNodeCache();
+			this.commitEngine = context.getCommitEngine();
+		}
 		this.readonly = readonly;
 		if (rootHash == null) {
 			root = new PathNode(setting.getHashAlgorithm(), 0, (byte) 1, 0);
@@ -214,18 +257,177 @@ public class MerkleTree implements Transactional {
 			if (i < nodePath.length - 1) {
 				// PathNode will be changed on updating data;
 				// So record the path info with the immutable ProofNodeEntry instead;
-				PathNode n = (PathNode) nodePath[i];
-				ProofNodeEntry p = new ProofNodeEntry();
-				p.nodeHash = n.getNodeHash();
-				p.level = n.getLevel();
-				p.dataCount = n.getDataCount();
-				p.startingSN = n.getStartingSN();
-				nodePath[i] = p;
+				nodePath[i] = ProofNodeEntry.of((PathNode) nodePath[i]);
 			}
 		}
 		return new MerkleProofImpl(sn, nodePath);
 	}
 
+	/**
+	 * 批量返回数据的默克尔证明；
+	 * <p>
+	 * 先按序列号对目标进行排序，再依次从根节点向下查找；相邻目标的公共路径节点只查找一次，返回的证明之间也共享公共路径节点的实例；<br>
+	 * 因此，对大量的序列号生成证明时，比逐个调用 {@link #getProof(long)} 更高效；
+	 * <p>
+	 * 如果 sn 超出范围，则引发 {@link IndexOutOfBoundsException} ；
+	 * 
+	 * @param sns
+	 *            数据的序列号列表；
+	 * @return 默克尔证明的列表，与参数中的序列号一一对应；其中不存在的数据对应的元素为 null；
+	 */
+	public MerkleProof[] getProofs(long[] sns) {
+		long logicMaxSN = root.interval;
+		Integer[] order = new Integer[sns.length];
+		for (int i = 0; i < sns.length; i++) {
+			if (sns[i] < 0 || sns[i] >= logicMaxSN) {
+				throw new IndexOutOfBoundsException("The specified sn is out of range!");
+			}
+			order[i] = i;
+		}
+		Arrays.sort(order, (i1, i2) -> Long.compare(sns[i1], sns[i2]));
+
+		// 当前路径；路径的首个元素是根节点，最后一个元素是叶子路径节点；
+		int pathLength = root.level;
+		PathNode[] pathNodes = new PathNode[pathLength];
+		ProofNodeEntry[] pathEntries = new ProofNodeEntry[pathLength];
+		pathNodes[0] = root;
+		pathEntries[0] = ProofNodeEntry.of(root);
+
+		MerkleProof[] proofs = new MerkleProof[sns.length];
+		for (Integer idx : order) {
+			long sn = sns[idx];
+			// 找到当前路径上仍然包含该序列号的最深的节点，其以上的路径节点可以复用；
+			int depth = 0;
+			while (depth + 1 < pathLength && pathNodes[depth + 1] != null
+					&& sn < pathNodes[depth + 1].startingSN + pathNodes[depth + 1].interval) {
+				depth++;
+			}
+			// 从该节点继续向下查找；
+			while (depth + 1 < pathLength) {
+				PathNode child = seekChildPathNode(pathNodes[depth], sn);
+				depth++;
+				pathNodes[depth] = child;
+				pathEntries[depth] = child == null ? null : ProofNodeEntry.of(child);
+				if (child == null) {
+					break;
+				}
+			}
+			if (pathNodes[depth] == null) {
+				// 节点不存在；
+				continue;
+			}
+			for (int i = depth + 1; i < pathLength; i++) {
+				pathNodes[i] = null;
+				pathEntries[i] = null;
+			}
+
+			DataNode dataNode = seekDataNode(pathNodes[pathLength - 1], sn);
+			if (dataNode == null) {
+				continue;
+			}
+			MerkleNode[] nodePath = new MerkleNode[pathLength + 1];
+			System.arraycopy(pathEntries, 0, nodePath, 0, pathLength);
+			nodePath[pathLength] = dataNode;
+			proofs[idx] = new MerkleProofImpl(sn, nodePath);
+		}
+		return proofs;
+	}
+
+	/**
+	 * 把一组默克尔证明编码为紧凑的多重证明；
+	 * <p>
+	 * 证明按序列号排序之后，相邻证明的公共路径节点只编码一次，后一个证明只记录与前一个证明共享的路径节点的数量以及其余的节点；<br>
+	 * 数据节点则完整地编码，以便解码时还原数据节点的键、版本等属性；
+	 * <p>
+	 * 所有的证明必须来自同一个默克尔根；为 null 的元素将被忽略；
+	 * 
+	 * @param proofs
+	 *            由 {@link #getProof(long)} 或 {@link #getProofs(long[])} 返回的默克尔证明；
+	 * @return
+	 */
+	public static byte[] encodeMultiProof(MerkleProof... proofs) {
+		List<MerkleProof> sortedProofs = new ArrayList<>(proofs.length);
+		for (MerkleProof proof : proofs) {
+			if (proof != null) {
+				sortedProofs.add(proof);
+			}
+		}
+		sortedProofs.sort((p1, p2) -> Long.compare(p1.getSN(), p2.getSN()));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NumberMask.NORMAL.writeMask(sortedProofs.size(), out);
+		if (sortedProofs.isEmpty()) {
+			return out.toByteArray();
+		}
+		int levels = sortedProofs.get(0).getLevels();
+		HashDigest rootHash = sortedProofs.get(0).getRootHash();
+		BytesUtils.writeByte((byte) levels, out);
+
+		MerkleProof previous = null;
+		for (MerkleProof proof : sortedProofs) {
+			if (proof.getLevels() != levels || !rootHash.equals(proof.getRootHash())) {
+				throw new IllegalArgumentException("The proofs to encode are not from the same merkle root!");
+			}
+			MerkleNode dataNode = proof.getNode(0);
+			if (!(dataNode instanceof DataNode)) {
+				throw new IllegalArgumentException("Unsupported data node of merkle proof!");
+			}
+			// 与前一个证明共享的路径节点的数量，从根节点开始计算；
+			int shared = 0;
+			if (previous != null) {
+				while (shared < levels && previous.getHash(levels - shared).equals(proof.getHash(levels - shared))) {
+					shared++;
+				}
+			}
+			BytesUtils.writeByte((byte) shared, out);
+			for (int level = levels - shared; level > 0; level--) {
+				BytesEncoding.writeInTiny(proof.getHash(level).toBytes(), out);
+			}
+			BytesEncoding.writeInNormal(((DataNode) dataNode).toBytes(), out);
+			previous = proof;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 解码由 {@link #encodeMultiProof(MerkleProof...)} 编码的多重证明；
+	 * 
+	 * @param bytes
+	 * @return 按序列号升序排列的默克尔证明；证明之间共享公共路径节点的实例；
+	 */
+	public static MerkleProof[] decodeMultiProof(byte[] bytes) {
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+		int count = NumberMask.NORMAL.resolveMaskedNumber(in);
+		MerkleProof[] proofs = new MerkleProof[count];
+		if (count == 0) {
+			return proofs;
+		}
+		int levels = BytesUtils.readByte(in);
+		if (levels < 1 || levels > MAX_LEVEL) {
+			throw new MerkleProofException("Illegal levels of merkle multi-proof!");
+		}
+		ProofNodeEntry[] pathEntries = new ProofNodeEntry[levels];
+		for (int i = 0; i < count; i++) {
+			int shared = BytesUtils.readByte(in);
+			if (shared < 0 || shared > levels || (i == 0 && shared > 0)) {
+				throw new MerkleProofException("Illegal shared path of merkle multi-proof!");
+			}
+			for (int level = levels - shared; level > 0; level--) {
+				ProofNodeEntry entry = new ProofNodeEntry();
+				entry.level = level;
+				entry.nodeHash = CryptoUtils.hashCrypto().resolveHashDigest(BytesEncoding.readInTiny(in));
+				pathEntries[levels - level] = entry;
+			}
+			DataNode dataNode = DataNode.parse(BytesEncoding.readInNormal(in));
+
+			MerkleNode[] nodePath = new MerkleNode[levels + 1];
+			System.arraycopy(pathEntries, 0, nodePath, 0, levels);
+			nodePath[levels] = dataNode;
+			proofs[i] = new MerkleProofImpl(dataNode.getSN(), nodePath);
+		}
+		return proofs;
+	}
+
 	/**
 	 * 以指定序号建立对指定键值的索引；
 	 * <p>
@@ -293,6 +495,98 @@ public class MerkleTree implements Transactional {
 		return seekPath(sn, null);
 	}
 
+	/**
+	 * 返回按序号升序遍历指定区间的数据节点的迭代器；
+	 * <p>
+	 * 迭代器记录从根节点到当前叶子路径节点的路径，只从仍然包含下一个序号的最低层的路径节点向下查找，<br>
+	 * 因此区间内的每一个路径节点只查找和加载一次，而不必像 {@link #getData(long)} 那样对每一个序号都从根节点开始查找；
+	 * <p>
+	 * 未提交的数据节点优先于已提交的数据节点；不存在数据节点的序号被跳过；<br>
+	 * 在迭代期间不应修改或提交默克尔树；
+	 * 
+	 * @param fromSn
+	 *            起始的序号（包含）；
+	 * @param count
+	 *            最多遍历的序号的数量；
+	 * @return
+	 */
+	public Iterator<MerkleDataNode> iterator(long fromSn, long count) {
+		if (fromSn < 0) {
+			throw new IllegalArgumentException("The from sn is negative!");
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException("The count is negative!");
+		}
+		// 超出根节点的范围以及未提交的最大序号的部分不存在数据节点；
+		long upperSn = root.interval;
+		if (!updatedDataNodes.isEmpty()) {
+			upperSn = Math.max(upperSn, updatedDataNodes.lastKey() + 1);
+		}
+		long toSn = count > upperSn - fromSn ? upperSn : fromSn + count;
+		return new DataNodeIterator(fromSn, toSn);
+	}
+
+	/**
+	 * 校验已提交的全部节点；
+	 * <p>
+	 * 按序号遍历全部数据节点，从存储加载的每一个路径节点都重新计算其哈希，并与父节点记录的子节点哈希比对；
+	 * 每一个数据节点都以读取器返回的数据原文重新计算哈希，因此根哈希由全部叶子数据逐层校验；<br>
+	 * 遍历得到的数据节点数量必须与根节点记录的数量一致，缺失的节点也会被发现；
+	 * <p>
+	 * 要求默克尔树以自动校验哈希的配置（参见 {@link CryptoSetting#getAutoVerifyHash()}）加载，并且没有未提交的数据；
+	 * 
+	 * @param dataReader
+	 *            数据读取器；按批返回数据节点对应的数据原文，即写入时参与哈希计算的数据；不存在时返回 null；
+	 * @return 数据节点的数量；
+	 * @throws MerkleProofException
+	 *             校验失败时抛出；
+	 */
+	public long verify(Function<MerkleDataNode[], byte[][]> dataReader) {
+		if (!setting.getAutoVerifyHash()) {
+			throw new IllegalStateException("The merkle tree is not loaded with hash verification!");
+		}
+		if (isUpdated()) {
+			throw new IllegalStateException("The merkle tree has uncommitted data!");
+		}
+		long dataCount = root.getDataCount();
+		Iterator<MerkleDataNode> dataNodes = iterator(0, dataCount);
+		MerkleDataNode[] batch = new MerkleDataNode[TREE_DEGREE * TREE_DEGREE];
+		long count = 0;
+		while (dataNodes.hasNext()) {
+			int size = 0;
+			while (size < batch.length && dataNodes.hasNext()) {
+				batch[size++] = dataNodes.next();
+			}
+			MerkleDataNode[] nodes = size == batch.length ? batch : Arrays.copyOf(batch, size);
+			byte[][] datas = dataReader.apply(nodes);
+			for (int i = 0; i < size; i++) {
+				verifyData(nodes[i], datas[i]);
+			}
+			count += size;
+		}
+		if (count != dataCount) {
+			throw new MerkleProofException(String.format(
+					"The count of data nodes doesn't match the root node! --[RootHash=%s][Expected=%s][Actual=%s]",
+					root.getNodeHash().toBase58(), dataCount, count));
+		}
+		return count;
+	}
+
+	private static void verifyData(MerkleDataNode dataNode, byte[] hashedData) {
+		if (hashedData == null) {
+			throw new MerkleProofException(String.format("The data of data node doesn't exist! --[SN=%s][Key=%s]",
+					dataNode.getSN(), dataNode.getKey()));
+		}
+		HashDigest nodeHash = dataNode.getNodeHash();
+		DataNode actualNode = DataNode.newDataNode(nodeHash.getAlgorithm(), dataNode.getSN(), dataNode.getKey(),
+				dataNode.getVersion(), hashedData);
+		if (!nodeHash.equals(actualNode.getNodeHash())) {
+			throw new MerkleProofException(String.format(
+					"The actually hash of DataNode is not equal with it's original hash! --[SN=%s][Key=%s][OrigHash=%s][ActualHash=%s]",
+					dataNode.getSN(), dataNode.getKey(), nodeHash.toBase58(), actualNode.getNodeHash().toBase58()));
+		}
+	}
+
 	/**
 	 * Return the max sequence number in all data nodes; <br>
 	 * 
@@ -377,282 +671,157 @@ public class MerkleTree implements Transactional {
 			updatedLeafNodes.add(leafPathNode);
 		}
 
-		// 遍历涉及更改的所有路径节点，重新计算根节点哈希；
-		if (PARALLEL) {
-			concurrentRehash(updatedLeafNodes);
-		} else {
-			rehash(updatedLeafNodes);
-		}
-
-		// List<AbstractMerkleNode> updatedNodes = Collections.synchronizedList(new
-		// LinkedList<>());
-		// rehash(root, updatedNodes);
-		//
-		// // 把更改的节点写入到存储服务；
-		// for (AbstractMerkleNode merkleNode : updatedNodes) {
-		// String key = encodeNodeKey(merkleNode.getNodeHash());
-		// boolean nx = kvStorage.set(key, merkleNode.toBytes(), ExPolicy.NOT_EXISTING);
-		// if (!nx) {
-		// throw new LedgerException("Merkle node already exist!");
-		// }
-		// }
+		// 遍历涉及更改的所有路径节点，逐层重新计算哈希，直到根节点；
+		rehash(updatedLeafNodes);
 
 		// 清空缓存；
 		updatedDataNodes.clear();
 	}
 
-	private void saveNode(AbstractMerkleNode merkleNode) {
-		Bytes key = encodeNodeKey(merkleNode.getNodeHash());
-		boolean nx = kvStorage.set(key, merkleNode.toBytes(), ExPolicy.NOT_EXISTING);
-		if (!nx) {
-			throw new LedgerException("Merkle node already exist!");
-		}
-	}
-
-	private void rehash(Set<PathNode> updatedPathNodes) {
-
-		Set<PathNode> updatedParentNodes = new HashSet<>();
-
-		for (PathNode pathNode : updatedPathNodes) {
-			AbstractMerkleNode[] children = pathNode.children;
-			HashDigest[] childrenHashes = pathNode.childrenHashes;
-			boolean updated = false;
-			for (int i = 0; i < children.length; i++) {
-				if (children[i] == null) {
-					continue;
-				}
-				HashDigest origChildHash = childrenHashes[i];
-				HashDigest newChildHash = children[i].getNodeHash();
-				if (origChildHash == null) {
-					childrenHashes[i] = newChildHash;
-					updated = true;
-					if (pathNode.level == 1) {
-						// 在叶子节点上发现新增加了数据节点；
-						pathNode.increaseDataCount(1);
-						// 同时保存新增的数据节点；
-						saveNode(children[i]);
-					}
-				} else if (!origChildHash.equals(newChildHash)) {
-					childrenHashes[i] = newChildHash;
-					updated = true;
-					if (pathNode.level == 1) {
-						// 同时保存更新的数据节点；
-						saveNode(children[i]);
+	/**
+	 * 自底向上逐层重新计算路径节点的哈希，并把产生变更的节点保存到存储服务；
+	 * <p>
+	 * 同一层的路径节点之间互不依赖，由提交引擎 {@link #commitEngine} 划分并执行哈希计算和序列化；<br>
+	 * 在工作线程计算上一层节点的同时，提交线程把当前层已完成的节点写入存储服务，使计算和写入形成流水线；<br>
+	 * 由于上一层节点的哈希只依赖当前层节点的哈希，而写入只读取当前层已序列化的字节，两者不会相互干扰；
+	 * 
+	 * @param updatedLeafNodes
+	 *            发生变更的叶子路径节点（层级为 1）；
+	 */
+	private void rehash(Set<PathNode> updatedLeafNodes) {
+		PathNode[] levelNodes = updatedLeafNodes.toArray(new PathNode[updatedLeafNodes.size()]);
+		UpdatedNode[][] levelUpdates = new UpdatedNode[levelNodes.length][];
+		MerkleCommitEngine.Completion levelCompletion = submitRehash(levelNodes, levelUpdates);
+
+		MerkleCommitEngine.Completion pendingCompletion = null;
+		try {
+			while (levelNodes != null) {
+				levelCompletion.await();
+				pendingCompletion = null;
+
+				// 收集上一层需要重新计算哈希的节点，并提交计算；
+				Set<PathNode> parentNodes = new HashSet<>();
+				for (int i = 0; i < levelNodes.length; i++) {
+					if (levelUpdates[i] != null && levelNodes[i].parent != null) {
+						parentNodes.add((PathNode) levelNodes[i].parent);
 					}
 				}
-			}
-
-			if (updated) {
-				// 计算节点哈希：
-				pathNode.rehash();
+				PathNode[] nextLevelNodes = null;
+				UpdatedNode[][] nextLevelUpdates = null;
+				MerkleCommitEngine.Completion nextLevelCompletion = null;
+				if (parentNodes.size() > 0) {
+					nextLevelNodes = parentNodes.toArray(new PathNode[parentNodes.size()]);
+					nextLevelUpdates = new UpdatedNode[nextLevelNodes.length][];
+					nextLevelCompletion = submitRehash(nextLevelNodes, nextLevelUpdates);
+					pendingCompletion = nextLevelCompletion;
+				}
 
-				saveNode(pathNode);
+				// 在上一层计算的同时，写入当前层已完成的节点；
+				for (UpdatedNode[] updatedNodes : levelUpdates) {
+					if (updatedNodes != null) {
+						for (UpdatedNode updatedNode : updatedNodes) {
+							saveNode(updatedNode);
+						}
+					}
+				}
 
-				if (pathNode.parent != null) {
-					updatedParentNodes.add((PathNode) pathNode.parent);
+				levelNodes = nextLevelNodes;
+				levelUpdates = nextLevelUpdates;
+				levelCompletion = nextLevelCompletion;
+			}
+		} finally {
+			if (pendingCompletion != null) {
+				// 写入失败时，等待已提交的计算结束后再返回，避免工作线程继续修改节点；
+				try {
+					pendingCompletion.await();
+				} catch (RuntimeException e) {
+					// 以写入时的异常为准；
 				}
 			}
 		}
-
-		if (updatedParentNodes.size() > 0) {
-			rehash(updatedParentNodes);
-		}
 	}
 
-	private void concurrentRehash(Set<PathNode> updatedPathNodes) {
-
-		// Set<PathNode> updatedParentNodes = new HashSet<>();
-		// List<RehashTask> tasks = new ArrayList<>();
-		// for (PathNode pathNode : updatedPathNodes) {
-		// RehashTask task = new RehashTask(pathNode, kvStorage);
-		// ForkJoinPool.commonPool().execute(task);
-		// tasks.add(task);
-		// }
-		PathNode[] nodes = updatedPathNodes.toArray(new PathNode[updatedPathNodes.size()]);
-		RehashTask task = new RehashTask(nodes, this, kvStorage);
-		List<PathNode> updatedNodes = ForkJoinPool.commonPool().invoke(task);
-		Set<PathNode> updatedParentNodes = new HashSet<>();
-		for (PathNode pathNode : updatedNodes) {
-			if (pathNode.parent != null) {
-				updatedParentNodes.add((PathNode) pathNode.parent);
-			}
-		}
-		if (updatedParentNodes.size() > 0) {
-			rehash(updatedParentNodes);
-		}
+	private MerkleCommitEngine.Completion submitRehash(PathNode[] pathNodes, UpdatedNode[][] updates) {
+		return commitEngine.submit(pathNodes.length, i -> updates[i] = rehash(pathNodes[i]));
 	}
 
 	/**
-	 * @author huanghaiquan
-	 *
+	 * 根据子节点的哈希重新计算路径节点的哈希；
+	 * 
+	 * @param pathNode
+	 * @return 需要保存的节点；如果路径节点未发生变更，则返回 null；
 	 */
-	private static class RehashTask extends RecursiveTask<List<PathNode>> {
-
-		private MerkleTree tree;
-
-		private PathNode[] pathNodes;
-
-		private ExPolicyKVStorage kvStorage;
-
-		private static int TASK_THRESHOLD = 100;
-
-		public RehashTask(PathNode[] pathNodes, MerkleTree tree, ExPolicyKVStorage kvStorage) {
-			this.tree = tree;
-			this.pathNodes = pathNodes;
-			this.kvStorage = kvStorage;
-		}
-
-		@Override
-		protected List<PathNode> compute() {
-			int count = pathNodes.length;
-			if (count > TASK_THRESHOLD) {
-				PathNode[] nodes1 = new PathNode[count / 2];
-				PathNode[] nodes2 = new PathNode[count - nodes1.length];
-				System.arraycopy(pathNodes, 0, nodes1, 0, nodes1.length);
-				System.arraycopy(pathNodes, nodes1.length, nodes2, 0, nodes2.length);
-				RehashTask task1 = new RehashTask(nodes1, tree, kvStorage);
-				RehashTask task2 = new RehashTask(nodes2, tree, kvStorage);
-				ForkJoinTask.invokeAll(task1, task2);
-				List<PathNode> updatedNodes = task1.join();
-				updatedNodes.addAll(task2.join());
-				return updatedNodes;
-			} else {
-				List<PathNode> updatedNodes = new ArrayList<>();
-				for (PathNode pathNode : pathNodes) {
-					if (rehash(pathNode)) {
-						updatedNodes.add(pathNode);
-					}
-				}
-				return updatedNodes;
+	private UpdatedNode[] rehash(PathNode pathNode) {
+		AbstractMerkleNode[] children = pathNode.children;
+		HashDigest[] childrenHashes = pathNode.childrenHashes;
+		UpdatedNode[] updatedNodes = null;
+		int count = 0;
+		for (int i = 0; i < children.length; i++) {
+			if (children[i] == null) {
+				continue;
 			}
-		}
-
-		private boolean rehash(PathNode pathNode) {
-			AbstractMerkleNode[] children = pathNode.children;
-			HashDigest[] childrenHashes = pathNode.childrenHashes;
-			boolean updated = false;
-			for (int i = 0; i < children.length; i++) {
-				if (children[i] == null) {
-					continue;
-				}
-				HashDigest origChildHash = childrenHashes[i];
-				HashDigest newChildHash = children[i].getNodeHash();
+			HashDigest origChildHash = childrenHashes[i];
+			HashDigest newChildHash = children[i].getNodeHash();
+			if (origChildHash != null && origChildHash.equals(newChildHash)) {
+				continue;
+			}
+			childrenHashes[i] = newChildHash;
+			if (updatedNodes == null) {
+				updatedNodes = new UpdatedNode[pathNode.level == 1 ? TREE_DEGREE + 1 : 1];
+			}
+			if (pathNode.level == 1) {
 				if (origChildHash == null) {
-					childrenHashes[i] = newChildHash;
-					updated = true;
-					if (pathNode.level == 1) {
-						// 在叶子节点上发现新增加了数据节点；
-						// newDataCount++;
-						pathNode.increaseDataCount(1);
-						// 同时保存新增的数据节点；
-						tree.saveNode(children[i]);
-					}
-				} else if (!origChildHash.equals(newChildHash)) {
-					childrenHashes[i] = newChildHash;
-					updated = true;
-					if (pathNode.level == 1) {
-						// 同时保存更新的数据节点；
-						tree.saveNode(children[i]);
-					}
+					// 在叶子节点上发现新增加了数据节点；
+					pathNode.increaseDataCount(1);
 				}
+				// 同时保存新增或更新的数据节点；
+				updatedNodes[count++] = new UpdatedNode(children[i]);
 			}
+		}
+		if (updatedNodes == null) {
+			return null;
+		}
 
-			if (updated) {
-				// 计算节点哈希：
-				pathNode.rehash();
-				tree.saveNode(pathNode);
+		// 计算节点哈希：
+		pathNode.rehash();
+		updatedNodes[count++] = new UpdatedNode(pathNode);
 
-				// if (pathNode.parent != null) {
-				// return (PathNode) pathNode.parent;
-				// }
-				return true;
-			}
+		return count == updatedNodes.length ? updatedNodes : Arrays.copyOf(updatedNodes, count);
+	}
 
-			return false;
+	private void saveNode(UpdatedNode updatedNode) {
+		Bytes key = encodeNodeKey(updatedNode.nodeHash);
+		boolean nx = kvStorage.set(key, updatedNode.nodeBytes, ExPolicy.NOT_EXISTING);
+		if (!nx) {
+			throw new LedgerException("Merkle node already exist!");
+		}
+		if (nodeCache != null) {
+			// 新提交的节点的哈希是刚刚计算得到的，可直接放入缓存；
+			nodeCache.put(updatedNode.node.duplicate(), updatedNode.nodeBytes.length);
 		}
-
-		// private void saveNode(AbstractMerkleNode merkleNode) {
-		// String key = encodeNodeKey(merkleNode.getNodeHash());
-		// boolean nx = kvStorage.set(key, merkleNode.toBytes(), ExPolicy.NOT_EXISTING);
-		// if (!nx) {
-		// throw new LedgerException("Merkle node already exist!");
-		// }
-		// }
-
 	}
 
 	/**
-	 * 重新计算所有子节点以及自身的哈希，并返回新加入的数据节点的数量；
+	 * 提交时产生变更的节点；
+	 * <p>
+	 * 在计算哈希的线程中完成序列化，写入存储服务时不再访问节点的可变状态；
 	 * 
-	 * @param pathNode
-	 *            需要重新计算 hash 的路径节点；
-	 * @param updatedNodes
-	 *            用于记录已更新节点的列表；
-	 * @return
+	 * @author huanghaiquan
+	 *
 	 */
-	private int rehash(PathNode pathNode, List<AbstractMerkleNode> updatedNodes) {
-		// int newDataCount = 0;
-		boolean updated = false;
-
-		// 先检查并更新子节点的 hash；
-		AbstractMerkleNode[] children = pathNode.children;
-		HashDigest[] childrenHashes = pathNode.childrenHashes;
-
-		if (pathNode.level == 1) {
-			// 检查作为叶子的数据节点的哈希是否更新；
-			// 注：因为数据节点加入时已经进行过计算了它本身的哈希，在此不需重新计算；
-			for (int i = 0; i < children.length; i++) {
-				if (children[i] == null) {
-					continue;
-				}
-				HashDigest origChildHash = childrenHashes[i];
-				HashDigest newChildHash = children[i].getNodeHash();
-				if (origChildHash == null) {
-					// newDataCount++;
-					pathNode.increaseDataCount(1);
-					childrenHashes[i] = newChildHash;
-					updated = true;
-					updatedNodes.add(children[i]);
-				} else if (!origChildHash.equals(newChildHash)) {
-					childrenHashes[i] = newChildHash;
-					updated = true;
-					updatedNodes.add(children[i]);
-				}
-			}
-		} else {
-			for (int i = 0; i < children.length; i++) {
-				if (children[i] == null) {
-					continue;
-				}
-
-				// 递归重新计算子路径的哈希；
-				// 更新数据节点数量；
-				// newDataCount += rehash((PathNode) children[i], updatedNodes);
-				rehash((PathNode) children[i], updatedNodes);
+	private static class UpdatedNode {
 
-				HashDigest origChildHash = childrenHashes[i];
-				HashDigest newChildHash = children[i].getNodeHash();
-				if (origChildHash == null || !origChildHash.equals(newChildHash)) {
-					childrenHashes[i] = newChildHash;
-					updated = true;
-				}
-			}
-		}
+		private final AbstractMerkleNode node;
 
-		// 如果子节点发生了更改，则重新计算当前节点的 hash；
-		// 注：当加入了新的数据节点，即 newDataCount > 0 时，必然地 updated > 0
-		if (updated) {
-			// 更新数据节点的计数器；
-			// pathNode.dataCount += newDataCount;
+		private final HashDigest nodeHash;
 
-			// 计算节点哈希：
-			pathNode.rehash();
+		private final byte[] nodeBytes;
 
-			updatedNodes.add(pathNode);
+		private UpdatedNode(AbstractMerkleNode node) {
+			this.node = node;
+			this.nodeHash = node.getNodeHash();
+			this.nodeBytes = node.toBytes();
 		}
-
-		// return newDataCount;
-		return 0;
 	}
 
 	/**
@@ -758,45 +927,151 @@ public class MerkleTree implements Transactional {
 		}
 
 		while (leafPathNode.level > 1) {
-			int index = leafPathNode.index(sn);
-			if (leafPathNode.children[index] == null) {
-				if (leafPathNode.childrenHashes[index] == null) {
-					// 节点不存在；
-					return null;
-				} else {
-					// 加载节点；
-					PathNode node = loadPathNode(leafPathNode.childrenHashes[index], setting.getAutoVerifyHash());
-					if (node == null) {
-						return null;
-					}
-					leafPathNode.attachChildNode(node, index);
-				}
+			leafPathNode = seekChildPathNode(leafPathNode, sn);
+			if (leafPathNode == null) {
+				// 节点不存在；
+				return null;
 			}
-			leafPathNode = (PathNode) leafPathNode.children[index];
 			if (path != null) {
 				path[path.length - leafPathNode.level - 1] = leafPathNode;
 			}
 		}
 
 		// 数据节点；
+		DataNode dataNode = seekDataNode(leafPathNode, sn);
+		if (dataNode != null && path != null) {
+			path[path.length - 1] = dataNode;
+		}
+		return dataNode;
+	}
+
+	/**
+	 * 返回包含指定序号的子路径节点；如果子节点尚未加载，则从存储中加载；
+	 * 
+	 * @param pathNode
+	 *            层级大于 1 的路径节点；
+	 * @param sn
+	 * @return 子路径节点；如果不存在，则返回 null；
+	 */
+	private PathNode seekChildPathNode(PathNode pathNode, long sn) {
+		int index = pathNode.index(sn);
+		if (pathNode.children[index] == null) {
+			if (pathNode.childrenHashes[index] == null) {
+				// 节点不存在；
+				return null;
+			}
+			// 加载节点；
+			PathNode node = loadPathNode(pathNode.childrenHashes[index], setting.getAutoVerifyHash());
+			if (node == null) {
+				return null;
+			}
+			pathNode.attachChildNode(node, index);
+		}
+		return (PathNode) pathNode.children[index];
+	}
+
+	/**
+	 * 返回指定序号的数据节点；如果数据节点尚未加载，则从存储中加载；
+	 * 
+	 * @param leafPathNode
+	 *            层级为 1 的路径节点；
+	 * @param sn
+	 * @return 数据节点；如果不存在，则返回 null；
+	 */
+	private DataNode seekDataNode(PathNode leafPathNode, long sn) {
 		int index = leafPathNode.index(sn);
 		if (leafPathNode.children[index] == null) {
 			if (leafPathNode.childrenHashes[index] == null) {
 				// 节点不存在；
 				return null;
-			} else {
-				// 加载节点；
-				DataNode dataNode = loadDataNode(leafPathNode.childrenHashes[index], setting.getAutoVerifyHash());
-				if (dataNode == null) {
+			}
+			// 加载节点；
+			DataNode dataNode = loadDataNode(leafPathNode.childrenHashes[index], setting.getAutoVerifyHash());
+			if (dataNode == null) {
+				return null;
+			}
+			leafPathNode.setData(sn, dataNode);
+		}
+		return (DataNode) leafPathNode.children[index];
+	}
+
+	/**
+	 * 按序号升序遍历数据节点的迭代器；参见 {@link MerkleTree#iterator(long, long)}；
+	 * 
+	 * @author huanghaiquan
+	 *
+	 */
+	private class DataNodeIterator implements Iterator<MerkleDataNode> {
+
+		/**
+		 * 当前的路径；以路径节点的层级为下标；
+		 */
+		private final PathNode[] path;
+
+		private final long toSn;
+
+		private long sn;
+
+		private MerkleDataNode next;
+
+		private DataNodeIterator(long fromSn, long toSn) {
+			this.path = new PathNode[root.level + 1];
+			this.path[root.level] = root;
+			this.sn = fromSn;
+			this.toSn = toSn;
+			this.next = seekNext();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public MerkleDataNode next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			MerkleDataNode dataNode = next;
+			next = seekNext();
+			return dataNode;
+		}
+
+		private MerkleDataNode seekNext() {
+			PathNode rootNode = path[path.length - 1];
+			while (sn < toSn) {
+				long currentSn = sn++;
+				MerkleDataNode dataNode = updatedDataNodes.get(currentSn);
+				if (dataNode == null && currentSn < rootNode.interval) {
+					dataNode = seekCommitted(currentSn);
+				}
+				if (dataNode != null) {
+					return dataNode;
+				}
+			}
+			return null;
+		}
+
+		private DataNode seekCommitted(long sn) {
+			// 从仍然包含指定序号的最低层的路径节点开始向下查找；
+			int level = 1;
+			while (level < path.length - 1 && !contains(path[level], sn)) {
+				level++;
+			}
+			PathNode pathNode = path[level];
+			while (pathNode.level > 1) {
+				pathNode = seekChildPathNode(pathNode, sn);
+				if (pathNode == null) {
 					return null;
 				}
-				leafPathNode.setData(sn, dataNode);
+				path[pathNode.level] = pathNode;
 			}
+			return seekDataNode(pathNode, sn);
 		}
-		if (path != null) {
-			path[path.length - leafPathNode.children[index].getLevel() - 1] = leafPathNode.children[index];
+
+		private boolean contains(PathNode pathNode, long sn) {
+			return pathNode != null && sn >= pathNode.startingSN && sn < pathNode.startingSN + pathNode.interval;
 		}
-		return (MerkleDataNode) leafPathNode.children[index];
 	}
 
 	private Bytes encodeNodeKey(HashDigest hashBytes) {
@@ -814,6 +1089,12 @@ public class MerkleTree implements Transactional {
 	 * @return return instance of {@link PathNode}, or null if not exist;
 	 */
 	private PathNode loadPathNode(HashDigest hashDigest, boolean verify) {
+		if (nodeCache != null) {
+			MerkleNode cachedNode = nodeCache.get(hashDigest);
+			if (cachedNode instanceof PathNode) {
+				return ((PathNode) cachedNode).duplicate();
+			}
+		}
 		Bytes key = encodeNodeKey(hashDigest);
 		byte[] bytes = kvStorage.get(key);
 		if (bytes == null || bytes.length == 0) {
@@ -827,10 +1108,19 @@ public class MerkleTree implements Transactional {
 					"The actually hash of PathNode is not equal with it's key! -- [Key=%s][ActualHash=%s]", keyStr,
 					actualHashStr));
 		}
+		if (nodeCache != null) {
+			nodeCache.put(pathNode.duplicate(), bytes.length);
+		}
 		return pathNode;
 	}
 
 	private DataNode loadDataNode(HashDigest hashBytes, boolean verify) {
+		if (nodeCache != null) {
+			MerkleNode cachedNode = nodeCache.get(hashBytes);
+			if (cachedNode instanceof DataNode) {
+				return ((DataNode) cachedNode).duplicate();
+			}
+		}
 		Bytes key = encodeNodeKey(hashBytes);
 		byte[] bytes = kvStorage.get(key);
 		if (bytes == null || bytes.length == 0) {
@@ -844,6 +1134,9 @@ public class MerkleTree implements Transactional {
 					"The actually hash of DataNode is not equal with it's key! -- [Key=%s][ActualHash=%s]", keyStr,
 					actualHashStr));
 		}
+		if (nodeCache != null) {
+			nodeCache.put(dataNode.duplicate(), bytes.length);
+		}
 		return dataNode;
 	}
 
@@ -984,6 +1277,15 @@ public class MerkleTree implements Transactional {
 
 	private static class ProofNodeEntry implements MerkleNode {
 
+		private static ProofNodeEntry of(PathNode pathNode) {
+			ProofNodeEntry p = new ProofNodeEntry();
+			p.nodeHash = pathNode.getNodeHash();
+			p.level = pathNode.getLevel();
+			p.dataCount = pathNode.getDataCount();
+			p.startingSN = pathNode.getStartingSN();
+			return p;
+		}
+
 		private int level;
 
 		@SuppressWarnings("unused")
@@ -1069,6 +1371,13 @@ public class MerkleTree implements Transactional {
 		@Override
 		public abstract int getLevel();
 
+		/**
+		 * 复制当前节点的不可变属性，返回一个未挂接到任何父节点和子节点的新实例；
+		 * 
+		 * @return
+		 */
+		protected abstract AbstractMerkleNode duplicate();
+
 	}
 
 	/**
@@ -1245,6 +1554,11 @@ public class MerkleTree implements Transactional {
 			return startingSN;
 		}
 
+		@Override
+		protected PathNode duplicate() {
+			return new PathNode(hashAlgorithm, startingSN, level, getDataCount(), childrenHashes.clone(), nodeHash);
+		}
+
 		@Override
 		public long getDataCount() {
 			return dataCount.get();
@@ -1390,10 +1704,29 @@ public class MerkleTree implements Transactional {
 		 * @return
 		 */
 		private HashDigest computeBodyHash() {
-			int totalSize = getBodySize();
-			byte[] bodyBytes = new byte[totalSize];
-			generateBodyBytes(bodyBytes);
-			return CryptoUtils.hash(hashAlgorithm).hash(bodyBytes);
+			// 以流式计算，子节点的哈希直接写入，不必生成完整的节点字节；
+			Hasher hasher = CryptoUtils.hash(hashAlgorithm).newHasher();
+			byte[] headerBytes = new byte[8 + 4 + 8 + NumberMask.TINY.MAX_HEADER_LENGTH];
+			int offset = 0;
+			offset += BytesUtils.toBytes(startingSN, headerBytes, offset);
+			offset += BytesUtils.toBytes(level, headerBytes, offset);
+			offset += BytesUtils.toBytes(getDataCount(), headerBytes, offset);
+			hasher.update(headerBytes, 0, offset);
+
+			HashDigest h;
+			for (int i = 0; i < TREE_DEGREE; i++) {
+				h = childrenHashes[i];
+				if (h == null) {
+					// 只写入一个字节的长度头部，值为 0；
+					headerBytes[0] = 0;
+					hasher.update(headerBytes, 0, 1);
+				} else {
+					int maskSize = NumberMask.TINY.writeMask(h.size(), headerBytes, 0);
+					hasher.update(headerBytes, 0, maskSize);
+					hasher.update(h);
+				}
+			}
+			return hasher.digest();
 		}
 
 	}
@@ -1448,9 +1781,8 @@ public class MerkleTree implements Transactional {
 			// TODO: version;
 			offset += BytesUtils.toBytes(version, bodyBytes, offset);
 
-			byte[] dataBytes = BytesUtils.concat(bodyBytes, hashedData);
-
-			HashDigest dataHash = CryptoUtils.hash(hashAlgorithm).hash(dataBytes);
+			HashDigest dataHash = CryptoUtils.hash(hashAlgorithm).newHasher().update(bodyBytes).update(hashedData)
+					.digest();
 
 			int hashMaskSize = NumberMask.TINY.getMaskLength(dataHash.size());
 			int dataNodeSize = bodySize + hashMaskSize + dataHash.size();
@@ -1471,6 +1803,11 @@ public class MerkleTree implements Transactional {
 			return sn;
 		}
 
+		@Override
+		protected DataNode duplicate() {
+			return new DataNode(sn, key, version, nodeHash, dataNodeBytes);
+		}
+
 		@Override
 		protected long getDataCount() {
 			return 1;
@@ -0,0 +1,46 @@
+package com.jd.blockchain.ledger.core;
+
+/**
+ * 默克尔树的运行上下文；
+ * <p>
+ * 包含同一个账本下所有默克尔树共享的节点缓存和提交引擎，由账本仓库创建，并传递给账本中的各个默克尔数据集；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class MerkleTreeContext {
+
+	private final MerkleNodeCache nodeCache;
+
+	private final MerkleCommitEngine commitEngine;
+
+	/**
+	 * @param nodeCache
+	 *            节点缓存；如果为 null，则不使用缓存；
+	 * @param commitEngine
+	 *            提交引擎；如果为 null，则采用串行的提交引擎 {@link MerkleCommitEngine#SERIAL}；
+	 */
+	public MerkleTreeContext(MerkleNodeCache nodeCache, MerkleCommitEngine commitEngine) {
+		this.nodeCache = nodeCache;
+		this.commitEngine = commitEngine == null ? MerkleCommitEngine.SERIAL : commitEngine;
+	}
+
+	/**
+	 * 节点缓存；可能为 null；
+	 *
+	 * @return
+	 */
+	public MerkleNodeCache getNodeCache() {
+		return nodeCache;
+	}
+
+	/**
+	 * 提交引擎；
+	 *
+	 * @return
+	 */
+	public MerkleCommitEngine getCommitEngine() {
+		return commitEngine;
+	}
+
+}
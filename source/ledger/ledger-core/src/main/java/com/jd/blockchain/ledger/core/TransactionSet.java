@@ -1,5 +1,7 @@
 package com.jd.blockchain.ledger.core;
 
+import java.util.Iterator;
+
 import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
 import com.jd.blockchain.binaryproto.DataContractRegistry;
 import com.jd.blockchain.crypto.hash.HashDigest;
@@ -7,6 +9,7 @@ import com.jd.blockchain.ledger.CryptoSetting;
 import com.jd.blockchain.ledger.LedgerTransaction;
 import com.jd.blockchain.ledger.TransactionState;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.Transactional;
@@ -36,6 +39,38 @@ public class TransactionSet implements Transactional, MerkleProvable {
 		return ledgerTransactions;
 	}
 
+	/**
+	 * 按序号顺序返回交易的迭代器；
+	 * <p>
+	 * 交易在迭代时按批读取，不必一次加载区间内的全部交易；
+	 * 
+	 * @param fromIndex
+	 *            起始的交易序号（包含）；
+	 * @param count
+	 *            最多返回的交易数量；
+	 * @return
+	 */
+	public Iterator<LedgerTransaction> getTxIterator(long fromIndex, long count) {
+		// 每一个交易之后紧接着记录该交易的结果；
+		Iterator<VersioningKVEntry> entries = txSet.iterator(fromIndex * 2, count * 2);
+		return new Iterator<LedgerTransaction>() {
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public LedgerTransaction next() {
+				LedgerTransaction tx = deserialize(entries.next().getValue());
+				if (entries.hasNext()) {
+					// 跳过交易结果；
+					entries.next();
+				}
+				return tx;
+			}
+		};
+	}
+
 	public byte[][] getValuesByIndex(int fromIndex, int count) {
 		byte[][] values = new byte[count][];
 		for (int i = 0; i < count; i++) {
@@ -60,6 +95,13 @@ public class TransactionSet implements Transactional, MerkleProvable {
 		return txSet.getDataCount() / 2;
 	}
 
+	/**
+	 * 校验交易集的全部默克尔节点；参见 {@link MerkleDataSet#verify()}；
+	 */
+	public void verify() {
+		txSet.verify();
+	}
+
 	/**
 	 * Create a new TransactionSet which can be added transaction;
 	 * 
@@ -82,8 +124,27 @@ public class TransactionSet implements Transactional, MerkleProvable {
 	 */
 	public TransactionSet(HashDigest txRootHash, CryptoSetting setting, String keyPrefix,
 			ExPolicyKVStorage merkleTreeStorage, VersioningKVStorage dataStorage, boolean readonly) {
+		this(txRootHash, setting, keyPrefix, merkleTreeStorage, dataStorage, readonly, null);
+	}
+
+	/**
+	 * Create TransactionSet which loads the merkle nodes through the specified
+	 * node cache;
+	 * 
+	 * @param txRootHash
+	 * @param setting
+	 * @param keyPrefix
+	 * @param merkleTreeStorage
+	 * @param dataStorage
+	 * @param readonly
+	 * @param merkleContext
+	 */
+	public TransactionSet(HashDigest txRootHash, CryptoSetting setting, String keyPrefix,
+			ExPolicyKVStorage merkleTreeStorage, VersioningKVStorage dataStorage, boolean readonly,
+			MerkleTreeContext merkleContext) {
 		this.txStatePrefix = Bytes.fromString(keyPrefix + TX_STATE_PREFIX);
-		this.txSet = new MerkleDataSet(txRootHash, setting, keyPrefix, merkleTreeStorage, dataStorage, readonly);
+		this.txSet = new MerkleDataSet(txRootHash, setting, keyPrefix, merkleTreeStorage, dataStorage, readonly,
+				merkleContext);
 	}
 
 	/**
@@ -1,5 +1,7 @@
 package com.jd.blockchain.ledger.core;
 
+import java.util.Iterator;
+
 import com.jd.blockchain.crypto.asymmetric.PubKey;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.AccountHeader;
@@ -25,14 +27,24 @@ public class UserAccountSet implements Transactional, MerkleProvable {
 	public UserAccountSet(HashDigest dataRootHash, CryptoSetting cryptoSetting, String keyPrefix,
 			ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
 			AccountAccessPolicy accessPolicy) {
-		accountSet = new AccountSet(dataRootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly,
-				accessPolicy);
+		this(dataRootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly, accessPolicy, null);
+	}
+
+	public UserAccountSet(HashDigest dataRootHash, CryptoSetting cryptoSetting, String keyPrefix,
+			ExPolicyKVStorage exStorage, VersioningKVStorage verStorage, boolean readonly,
+			AccountAccessPolicy accessPolicy, MerkleTreeContext merkleContext) {
+		accountSet = new AccountSet(dataRootHash, cryptoSetting, keyPrefix, exStorage, verStorage, readonly, accessPolicy,
+				merkleContext);
 	}
 
 	public AccountHeader[] getAccounts(int fromIndex, int count) {
 		return accountSet.getAccounts(fromIndex,count);
 	}
 
+	public Iterator<AccountHeader> getAccountIterator(long fromIndex, long count) {
+		return accountSet.getAccountIterator(fromIndex, count);
+	}
+
 	/**
 	 * 返回用户总数；
 	 * 
@@ -42,6 +54,15 @@ public class UserAccountSet implements Transactional, MerkleProvable {
 		return accountSet.getTotalCount();
 	}
 
+	/**
+	 * 校验用户集以及其中每一个账户的数据集的全部默克尔节点；参见 {@link AccountSet#verify()}；
+	 * 
+	 * @return 账户的数量；
+	 */
+	public long verify() {
+		return accountSet.verify();
+	}
+
 	public boolean isReadonly() {
 		return accountSet.isReadonly();
 	}
@@ -69,6 +90,15 @@ public class UserAccountSet implements Transactional, MerkleProvable {
 		return accountSet.contains(address);
 	}
 
+	/**
+	 * 以批量读取预读指定账户的最新版本；
+	 * 
+	 * @param addresses
+	 */
+	public void prefetch(Bytes[] addresses) {
+		accountSet.prefetch(addresses);
+	}
+
 	public UserAccount getUser(Bytes address, long version) {
 		BaseAccount baseAccount = accountSet.getAccount(address, version);
 		return new UserAccount(baseAccount);
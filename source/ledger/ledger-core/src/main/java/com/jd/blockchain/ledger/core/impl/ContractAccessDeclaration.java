@@ -0,0 +1,27 @@
+package com.jd.blockchain.ledger.core.impl;
+
+import com.jd.blockchain.ledger.ContractEventSendOperation;
+
+/**
+ * 合约调用的数据访问声明；
+ * <p>
+ * 合约调用访问的数据只有在执行合约代码时才能确定，因此在 {@link TransactionAccessSet} 中默认视为可能访问任何数据；<br>
+ * 如果合约事先声明了某个事件访问的数据，则可以通过此接口提供，使得合约调用也可以参与交易的分组；
+ *
+ * @author huanghaiquan
+ *
+ */
+public interface ContractAccessDeclaration {
+
+	/**
+	 * 把合约调用访问的数据加入到访问集合中；
+	 *
+	 * @param op
+	 *            合约调用操作；
+	 * @param accessSet
+	 *            交易的访问集合；
+	 * @return 如果合约调用未声明访问的数据，则返回 false，此时合约调用视为可能访问任何数据；
+	 */
+	boolean declare(ContractEventSendOperation op, TransactionAccessSet accessSet);
+
+}
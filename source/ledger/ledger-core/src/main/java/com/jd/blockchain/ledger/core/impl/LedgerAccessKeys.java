@@ -0,0 +1,113 @@
+package com.jd.blockchain.ledger.core.impl;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.jd.blockchain.crypto.AddressEncoding;
+import com.jd.blockchain.ledger.ContractCodeDeployOperation;
+import com.jd.blockchain.ledger.ContractEventSendOperation;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation.KVWriteEntry;
+import com.jd.blockchain.ledger.DataAccountRegisterOperation;
+import com.jd.blockchain.ledger.DigitalSignature;
+import com.jd.blockchain.ledger.Operation;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.ledger.UserRegisterOperation;
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 一批交易请求将要访问的账户和数据的键；
+ * <p>
+ * 只解析交易的签名者、操作的目标账户以及写入的键，不执行操作；用于在执行交易之前以批量读取预读账本数据；
+ *
+ * @author huanghaiquan
+ *
+ */
+class LedgerAccessKeys {
+
+	private final Set<Bytes> users = new LinkedHashSet<>();
+
+	private final Set<Bytes> dataAccounts = new LinkedHashSet<>();
+
+	private final Set<Bytes> contracts = new LinkedHashSet<>();
+
+	/**
+	 * 数据账户的地址以及写入的键；
+	 */
+	private final Map<Bytes, Set<Bytes>> dataKeys = new LinkedHashMap<>();
+
+	public void add(TransactionRequest request) {
+		addSigners(request.getEndpointSignatures());
+		addSigners(request.getNodeSignatures());
+
+		TransactionContent content = request.getTransactionContent();
+		Operation[] ops = content == null ? null : content.getOperations();
+		if (ops == null) {
+			return;
+		}
+		for (Operation op : ops) {
+			add(op);
+		}
+	}
+
+	private void addSigners(DigitalSignature[] signatures) {
+		if (signatures == null) {
+			return;
+		}
+		for (DigitalSignature signature : signatures) {
+			users.add(AddressEncoding.generateAddress(signature.getPubKey()));
+		}
+	}
+
+	private void add(Operation op) {
+		if (op instanceof UserRegisterOperation) {
+			users.add(((UserRegisterOperation) op).getUserID().getAddress());
+		} else if (op instanceof DataAccountRegisterOperation) {
+			dataAccounts.add(((DataAccountRegisterOperation) op).getAccountID().getAddress());
+		} else if (op instanceof DataAccountKVSetOperation) {
+			DataAccountKVSetOperation kvOp = (DataAccountKVSetOperation) op;
+			Bytes address = kvOp.getAccountAddress();
+			dataAccounts.add(address);
+			KVWriteEntry[] writeSet = kvOp.getWriteSet();
+			if (writeSet != null) {
+				Set<Bytes> keys = dataKeys.computeIfAbsent(address, k -> new LinkedHashSet<>());
+				for (KVWriteEntry kvw : writeSet) {
+					keys.add(Bytes.fromString(kvw.getKey()));
+				}
+			}
+		} else if (op instanceof ContractCodeDeployOperation) {
+			contracts.add(((ContractCodeDeployOperation) op).getContractID().getAddress());
+		} else if (op instanceof ContractEventSendOperation) {
+			contracts.add(((ContractEventSendOperation) op).getContractAddress());
+		}
+	}
+
+	/**
+	 * 签名者以及注册的用户的地址；
+	 *
+	 * @return
+	 */
+	public Bytes[] getUsers() {
+		return users.toArray(new Bytes[users.size()]);
+	}
+
+	public Bytes[] getDataAccounts() {
+		return dataAccounts.toArray(new Bytes[dataAccounts.size()]);
+	}
+
+	public Bytes[] getContracts() {
+		return contracts.toArray(new Bytes[contracts.size()]);
+	}
+
+	/**
+	 * 数据账户的地址以及写入的键；
+	 *
+	 * @return
+	 */
+	public Map<Bytes, Set<Bytes>> getDataKeys() {
+		return dataKeys;
+	}
+}
@@ -4,14 +4,19 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.LedgerBlock;
 import com.jd.blockchain.ledger.LedgerInitSetting;
 import com.jd.blockchain.ledger.core.LedgerConsts;
 import com.jd.blockchain.ledger.core.LedgerEditor;
+import com.jd.blockchain.ledger.core.LedgerException;
 import com.jd.blockchain.ledger.core.LedgerManage;
 import com.jd.blockchain.ledger.core.LedgerRepository;
+import com.jd.blockchain.ledger.core.MerkleCommitEngine;
+import com.jd.blockchain.ledger.core.MerkleTreeContext;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.storage.service.KVStorageService;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.storage.service.utils.GroupCommitKVStorage;
 import com.jd.blockchain.utils.codec.Base58Utils;
 
 /**
@@ -24,6 +29,16 @@ public class LedgerManager implements LedgerManage {
 
 	private static final String LEDGER_PREFIX = "LDG://";
 
+	/**
+	 * 是否以分组提交的方式异步写入账本的存储；参见 {@link GroupCommitKVStorage}；
+	 */
+	private static final boolean GROUP_COMMIT_DB_WRITE;
+
+	static {
+		GROUP_COMMIT_DB_WRITE = Boolean.getBoolean("group-commit-dbwrite");
+		System.out.println("------ [[ group-commit-dbwrite=" + GROUP_COMMIT_DB_WRITE + " ]] ------");
+	}
+
 	// @Autowired
 	// private ExistentialKVStorage exPolicyStorage;
 	//
@@ -57,26 +72,107 @@ public class LedgerManager implements LedgerManage {
 
 	@Override
 	public LedgerRepository register(HashDigest ledgerHash, KVStorageService storageService) {
-		VersioningKVStorage ledgerVersioningStorage = storageService.getVersioningKVStorage();
-		ExPolicyKVStorage ledgerExPolicyStorage = storageService.getExPolicyKVStorage();
-		LedgerRepository ledgerRepo = new LedgerRepositoryImpl(ledgerHash, LEDGER_PREFIX, ledgerExPolicyStorage,
-				ledgerVersioningStorage);
+		return register(ledgerHash, storageService, MerkleCommitEngine.SERIAL);
+	}
+
+	/**
+	 * 注册账本；
+	 * <p>
+	 * 提交引擎由账本管理器持有，在账本注销，或者以不同的提交引擎重新注册时关闭；<br>
+	 * 如果账本已经注册，则以新的存储替换原来的注册，原来的账本存储库以及存储在替换之后关闭；
+	 * 以原来的提交引擎（参见 {@link #getMerkleCommitEngine(HashDigest)}）重新注册时，提交引擎继续使用，不会被关闭；
+	 */
+	@Override
+	public synchronized LedgerRepository register(HashDigest ledgerHash, KVStorageService storageService,
+			MerkleCommitEngine merkleCommitEngine) {
+		LedgerRepositoryContext previousCtx = ledgers.get(ledgerHash);
+		KVStorageService ledgerStorageService = storageService;
+		if (GROUP_COMMIT_DB_WRITE) {
+			// 区块的数据由独立的线程写入存储，提交区块之后即可开始执行下一个区块；
+			ledgerStorageService = new GroupCommitKVStorage(storageService);
+		}
+		VersioningKVStorage ledgerVersioningStorage = ledgerStorageService.getVersioningKVStorage();
+		ExPolicyKVStorage ledgerExPolicyStorage = ledgerStorageService.getExPolicyKVStorage();
+		LedgerRepository ledgerRepo;
+		try {
+			ledgerRepo = new LedgerRepositoryImpl(ledgerHash, LEDGER_PREFIX, ledgerExPolicyStorage,
+					ledgerVersioningStorage, merkleCommitEngine);
+		} catch (RuntimeException e) {
+			if (ledgerStorageService instanceof GroupCommitKVStorage) {
+				((GroupCommitKVStorage) ledgerStorageService).close();
+			}
+			if (previousCtx == null || previousCtx.merkleCommitEngine != merkleCommitEngine) {
+				merkleCommitEngine.close();
+			}
+			throw e;
+		}
 
 		LedgerRepositoryContext ledgerCtx = new LedgerRepositoryContext();
 		ledgerCtx.ledgerRepo = ledgerRepo;
-		ledgerCtx.storageService = storageService;
+		ledgerCtx.storageService = ledgerStorageService;
+		ledgerCtx.merkleCommitEngine = merkleCommitEngine;
 		ledgers.put(ledgerHash, ledgerCtx);
+		if (previousCtx != null) {
+			release(previousCtx, previousCtx.merkleCommitEngine != merkleCommitEngine);
+		}
 		return ledgerRepo;
 	}
 
 	@Override
-	public void unregister(HashDigest ledgerHash) {
-		LedgerRepositoryContext ledgerCtx = ledgers.get(ledgerHash);
+	public synchronized void unregister(HashDigest ledgerHash) {
+		LedgerRepositoryContext ledgerCtx = ledgers.remove(ledgerHash);
 		if (ledgerCtx != null) {
-			ledgerCtx.ledgerRepo.close();
-			ledgers.remove(ledgerHash);
-			ledgerCtx.ledgerRepo = null;
-			ledgerCtx.storageService = null;
+			release(ledgerCtx, true);
+		}
+	}
+
+	private static void release(LedgerRepositoryContext ledgerCtx, boolean closeEngine) {
+		ledgerCtx.ledgerRepo.close();
+		if (ledgerCtx.storageService instanceof GroupCommitKVStorage) {
+			// 等待已提交的区块全部写入存储；
+			((GroupCommitKVStorage) ledgerCtx.storageService).close();
+		}
+		if (closeEngine) {
+			ledgerCtx.merkleCommitEngine.close();
+		}
+		ledgerCtx.ledgerRepo = null;
+		ledgerCtx.storageService = null;
+		ledgerCtx.merkleCommitEngine = null;
+	}
+
+	@Override
+	public MerkleCommitEngine getMerkleCommitEngine(HashDigest ledgerHash) {
+		LedgerRepositoryContext ledgerCtx = ledgers.get(ledgerHash);
+		if (ledgerCtx == null) {
+			return null;
+		}
+		return ledgerCtx.merkleCommitEngine;
+	}
+
+	@Override
+	public KVStorageService getStorageService(HashDigest ledgerHash) {
+		LedgerRepositoryContext ledgerCtx = ledgers.get(ledgerHash);
+		if (ledgerCtx == null) {
+			return null;
+		}
+		return ledgerCtx.storageService;
+	}
+
+	@Override
+	public LedgerBlock verifyLedger(HashDigest ledgerHash, KVStorageService storageService, long height,
+			HashDigest blockHash) {
+		LedgerRepositoryImpl ledgerRepo = new LedgerRepositoryImpl(ledgerHash, LEDGER_PREFIX,
+				storageService.getExPolicyKVStorage(), storageService.getVersioningKVStorage(),
+				new MerkleTreeContext(null, null));
+		try {
+			long latestHeight = ledgerRepo.retrieveLatestBlockHeight();
+			if (latestHeight != height) {
+				throw new LedgerException("The latest block height[" + latestHeight
+						+ "] of ledger in storage is not the expected height[" + height + "]!");
+			}
+			return ledgerRepo.verifyBlock(height, blockHash);
+		} finally {
+			ledgerRepo.close();
 		}
 	}
 
@@ -115,5 +211,7 @@ public class LedgerManager implements LedgerManage {
 		private LedgerRepository ledgerRepo;
 
 		private KVStorageService storageService;
+
+		private MerkleCommitEngine merkleCommitEngine;
 	}
 }
@@ -1,8 +1,13 @@
 package com.jd.blockchain.ledger.core.impl;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
 import com.jd.blockchain.crypto.CryptoUtils;
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.ledger.BlockBody;
 import com.jd.blockchain.ledger.CryptoSetting;
 import com.jd.blockchain.ledger.LedgerBlock;
@@ -11,6 +16,7 @@ import com.jd.blockchain.ledger.LedgerInitSetting;
 import com.jd.blockchain.ledger.TransactionRequest;
 import com.jd.blockchain.ledger.core.AccountAccessPolicy;
 import com.jd.blockchain.ledger.core.ContractAccountSet;
+import com.jd.blockchain.ledger.core.CryptoConfig;
 import com.jd.blockchain.ledger.core.DataAccountSet;
 import com.jd.blockchain.ledger.core.LedgerAdminAccount;
 import com.jd.blockchain.ledger.core.LedgerAdministration;
@@ -21,6 +27,10 @@ import com.jd.blockchain.ledger.core.LedgerException;
 import com.jd.blockchain.ledger.core.LedgerRepository;
 import com.jd.blockchain.ledger.core.LedgerSetting;
 import com.jd.blockchain.ledger.core.LedgerTransactionContext;
+import com.jd.blockchain.ledger.core.MerkleCommitEngine;
+import com.jd.blockchain.ledger.core.MerkleDataSet;
+import com.jd.blockchain.ledger.core.MerkleNodeCache;
+import com.jd.blockchain.ledger.core.MerkleTreeContext;
 import com.jd.blockchain.ledger.core.TransactionSet;
 import com.jd.blockchain.ledger.core.UserAccountSet;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
@@ -38,6 +48,9 @@ import com.jd.blockchain.utils.codec.Base58Utils;
  * 3、区块数据以区块 hash 加上特定前缀({@link #BLOCK_PREFIX}) 构成 key
  * 进行保存，每个区块只有唯一个版本，在存储时会进行版本唯一性校验； <br>
  * 
+ * 已提交的区块及其数据集都是只读的，因此历史区块按高度缓存，历史区块的数据集按区块哈希缓存，
+ * 供查询线程共享；两者都按照最近最少使用（LRU）的顺序淘汰； <br>
+ * 
  * @author huanghaiquan
  *
  */
@@ -57,6 +70,16 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 
 	private static final AccountAccessPolicy DEFAULT_ACCESS_POLICY = new OpeningAccessPolicy();
 
+	/**
+	 * 缓存的历史区块的数量；
+	 */
+	public static final int DEFAULT_BLOCK_CACHE_SIZE = 1024;
+
+	/**
+	 * 缓存的历史区块的数据集的数量；
+	 */
+	public static final int DEFAULT_STATE_CACHE_SIZE = 256;
+
 	private HashDigest ledgerHash;
 
 	private final String keyPrefix;
@@ -73,9 +96,38 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 	
 	private volatile boolean closed = false;
 
+	/**
+	 * 以高度为键的历史区块的缓存；
+	 */
+	private final Map<Long, LedgerBlock> blockCache = Collections
+			.synchronizedMap(new HistoryCache<>(DEFAULT_BLOCK_CACHE_SIZE));
+
+	/**
+	 * 以区块哈希为键的历史区块的数据状态的缓存；
+	 */
+	private final Map<HashDigest, LedgerState> stateCache = Collections
+			.synchronizedMap(new HistoryCache<>(DEFAULT_STATE_CACHE_SIZE));
+
+	/**
+	 * 账本内所有默克尔树共享的运行上下文，包括节点缓存和提交引擎；
+	 */
+	private final MerkleTreeContext merkleContext;
+
 	public LedgerRepositoryImpl(HashDigest ledgerHash, String keyPrefix, ExPolicyKVStorage exPolicyStorage,
 			VersioningKVStorage versioningStorage) {
+		this(ledgerHash, keyPrefix, exPolicyStorage, versioningStorage, MerkleCommitEngine.SERIAL);
+	}
+
+	public LedgerRepositoryImpl(HashDigest ledgerHash, String keyPrefix, ExPolicyKVStorage exPolicyStorage,
+			VersioningKVStorage versioningStorage, MerkleCommitEngine merkleCommitEngine) {
+		this(ledgerHash, keyPrefix, exPolicyStorage, versioningStorage,
+				new MerkleTreeContext(new MerkleNodeCache(), merkleCommitEngine));
+	}
+
+	public LedgerRepositoryImpl(HashDigest ledgerHash, String keyPrefix, ExPolicyKVStorage exPolicyStorage,
+			VersioningKVStorage versioningStorage, MerkleTreeContext merkleContext) {
 		this.keyPrefix = keyPrefix;
+		this.merkleContext = merkleContext;
 
 		this.ledgerHash = ledgerHash;
 		this.versioningStorage = versioningStorage;
@@ -97,6 +149,27 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		return ledgerHash;
 	}
 
+	/**
+	 * 返回账本的默克尔节点缓存，可用于查询缓存的命中情况；
+	 * 
+	 * @return
+	 */
+	public MerkleNodeCache getMerkleNodeCache() {
+		return merkleContext.getNodeCache();
+	}
+
+	/**
+	 * 返回账本的默克尔树提交引擎；
+	 * <p>
+	 * 提交引擎由创建存储库的一方持有（参见 {@link LedgerManager#register(HashDigest, com.jd.blockchain.storage.service.KVStorageService, MerkleCommitEngine)}），
+	 * 关闭存储库时不关闭提交引擎；
+	 * 
+	 * @return
+	 */
+	public MerkleCommitEngine getMerkleCommitEngine() {
+		return merkleContext.getCommitEngine();
+	}
+
 	@Override
 	public HashDigest getLatestBlockHash() {
 		if (latestState == null) {
@@ -185,7 +258,15 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		if (blk != null && height == blk.getHeight()) {
 			return blk;
 		}
-		return innerGetBlock(height);
+		blk = blockCache.get(height);
+		if (blk != null) {
+			return blk;
+		}
+		blk = innerGetBlock(height);
+		if (blk != null) {
+			blockCache.put(height, blk);
+		}
+		return blk;
 	}
 
 	private LedgerBlock innerGetBlock(long height) {
@@ -201,7 +282,13 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		if (blk != null && blockHash.equals(blk.getHash())) {
 			return blk;
 		}
-		return innerGetBlock(blockHash);
+		LedgerState state = stateCache.get(blockHash);
+		if (state != null) {
+			return state.block;
+		}
+		blk = innerGetBlock(blockHash);
+		blockCache.put(blk.getHeight(), blk);
+		return blk;
 	}
 
 	private LedgerBlock innerGetBlock(HashDigest blockHash) {
@@ -220,20 +307,7 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		// TODO: 未实现从配置中加载是否校验 Hash 的设置；
 		boolean requiredVerifyHash = false;
 		if (requiredVerifyHash) {
-			byte[] blockBodyBytes = null;
-			if (block.getHeight() == 0) {
-				// 计算创世区块的 hash 时，不包括 ledgerHash 字段；
-				block.setLedgerHash(null);
-				blockBodyBytes = BinaryEncodingUtils.encode(block, BlockBody.class);
-				// 恢复；
-				block.setLedgerHash(block.getHash());
-			} else {
-				blockBodyBytes = BinaryEncodingUtils.encode(block, BlockBody.class);
-			}
-			boolean pass = CryptoUtils.hashCrypto().verify(blockHash, blockBodyBytes);
-			if (!pass) {
-				throw new LedgerException("Block hash verification fail!");
-			}
+			verifyBlockHash(block, blockHash);
 		}
 
 		// verify height;
@@ -248,6 +322,77 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		return block;
 	}
 
+	private static void verifyBlockHash(LedgerBlockData block, HashDigest blockHash) {
+		Hasher hasher = CryptoUtils.hash(blockHash.getAlgorithm()).newHasher();
+		if (block.getHeight() == 0) {
+			// 计算创世区块的 hash 时，不包括 ledgerHash 字段；
+			block.setLedgerHash(null);
+			BinaryEncodingUtils.encode(block, BlockBody.class, hasher.asOutputStream());
+			// 恢复；
+			block.setLedgerHash(block.getHash());
+		} else {
+			BinaryEncodingUtils.encode(block, BlockBody.class, hasher.asOutputStream());
+		}
+		boolean pass = blockHash.equals(hasher.digest());
+		if (!pass) {
+			throw new LedgerException("Block hash verification fail!");
+		}
+	}
+
+	/**
+	 * 校验指定高度的区块及其默克尔根；
+	 * <p>
+	 * 用于校验从检查点装载的账本，要求：<br>
+	 * 1、指定高度的区块哈希与期望的一致，并且区块内容的哈希校验通过；<br>
+	 * 2、区块记录的管理账户的哈希校验通过；<br>
+	 * 3、区块记录的用户账户集、数据账户集、合约账户集以及交易集的全部默克尔节点存在并且哈希校验通过，
+	 * 其中每一个数据节点都以存储中对应版本的数据重新计算哈希，各个账户的数据集也同样逐个校验；参见 {@link MerkleDataSet#verify()}；
+	 * <p>
+	 * 校验需要读取账本的全部数据，代价与账本的数据量成正比；
+	 * 
+	 * @param height
+	 *            区块高度；
+	 * @param expectedBlockHash
+	 *            期望的区块哈希；通常是共识节点之间已经达成一致的区块哈希；
+	 * @return 校验通过的区块；
+	 */
+	public LedgerBlock verifyBlock(long height, HashDigest expectedBlockHash) {
+		HashDigest blockHash = innerGetBlockHash(height);
+		if (blockHash == null) {
+			throw new LedgerException("The block of height[" + height + "] doesn't exist!");
+		}
+		if (!blockHash.equals(expectedBlockHash)) {
+			throw new LedgerException("The hash of block[" + height + "] doesn't match the expected hash!");
+		}
+		LedgerBlock block = innerGetBlock(blockHash);
+		verifyBlockHash((LedgerBlockData) block, blockHash);
+
+		// 加载管理账户时校验其哈希；
+		LedgerAdminAccount adminAccount = new LedgerAdminAccount(block.getAdminAccountHash(), keyPrefix,
+				exPolicyStorage, versioningStorage, true);
+
+		// 不经过节点缓存，直接从存储加载并校验全部默克尔节点；
+		MerkleTreeContext verifyingContext = new MerkleTreeContext(null, null);
+		CryptoSetting cryptoSetting = verifyingSetting(adminAccount.getPreviousSetting().getCryptoSetting());
+		loadUserAccountSet(block.getUserAccountSetHash(), cryptoSetting, keyPrefix, exPolicyStorage,
+				versioningStorage, true, verifyingContext).verify();
+		loadDataAccountSet(block.getDataAccountSetHash(), cryptoSetting, keyPrefix, exPolicyStorage,
+				versioningStorage, true, verifyingContext).verify();
+		loadContractAccountSet(block.getContractAccountSetHash(), cryptoSetting, keyPrefix, exPolicyStorage,
+				versioningStorage, true, verifyingContext).verify();
+		loadTransactionSet(block.getTransactionSetHash(),
+				verifyingSetting(adminAccount.getMetadata().getSetting().getCryptoSetting()), keyPrefix,
+				exPolicyStorage, versioningStorage, true, verifyingContext).verify();
+
+		return block;
+	}
+
+	private static CryptoSetting verifyingSetting(CryptoSetting setting) {
+		CryptoConfig verifyingSetting = new CryptoConfig(setting);
+		verifyingSetting.setAutoVerifyHash(true);
+		return verifyingSetting;
+	}
+
 	@Override
 	public LedgerAdministration getAdminInfo() {
 		return getAdminAccount(getLatestBlock());
@@ -257,135 +402,99 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		return BinaryEncodingUtils.decode(blockBytes);
 	}
 
+	/**
+	 * 返回指定区块的数据状态的缓存；
+	 * <p>
+	 * 最新区块返回最新状态，历史区块返回按区块哈希缓存的状态；
+	 * 
+	 * @param block
+	 * @return
+	 */
+	private LedgerState getState(LedgerBlock block) {
+		if (getLatestBlockHeight() == block.getHeight()) {
+			return getLatestState();
+		}
+		// All of existing block is readonly;
+		return stateCache.computeIfAbsent(block.getHash(), key -> new LedgerState(block));
+	}
+
 	@Override
 	public TransactionSet getTransactionSet(LedgerBlock block) {
-		long height = getLatestBlockHeight();
-		TransactionSet transactionSet = null;
-		if (height == block.getHeight()) {
-			// 缓存读；
-			LedgerState state = getLatestState();
-			transactionSet = state.transactionSet;
-			if (transactionSet == null) {
-				LedgerAdminAccount adminAccount = getAdminAccount(block);
-				transactionSet = loadTransactionSet(block.getTransactionSetHash(),
-						adminAccount.getMetadata().getSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
-						versioningStorage, true);
-				state.transactionSet = transactionSet;
-			}
-			return transactionSet;
+		LedgerState state = getState(block);
+		TransactionSet transactionSet = state.transactionSet;
+		if (transactionSet == null) {
+			LedgerAdminAccount adminAccount = getAdminAccount(block);
+			transactionSet = loadTransactionSet(block.getTransactionSetHash(),
+					adminAccount.getMetadata().getSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
+					versioningStorage, true, merkleContext);
+			state.transactionSet = transactionSet;
 		}
-		LedgerAdminAccount adminAccount = getAdminAccount(block);
-		// All of existing block is readonly;
-		return loadTransactionSet(block.getTransactionSetHash(),
-				adminAccount.getMetadata().getSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
-				versioningStorage, true);
+		return transactionSet;
 	}
 
 	@Override
 	public LedgerAdminAccount getAdminAccount(LedgerBlock block) {
-		long height = getLatestBlockHeight();
-		LedgerAdminAccount adminAccount = null;
-		if (height == block.getHeight()) {
-			// 缓存读；
-			LedgerState state = getLatestState();
-			adminAccount = state.adminAccount;
-			if (adminAccount == null) {
-				adminAccount = new LedgerAdminAccount(block.getAdminAccountHash(), keyPrefix, exPolicyStorage,
-						versioningStorage, true);
-				state.adminAccount = adminAccount;
-			}
-			return adminAccount;
+		LedgerState state = getState(block);
+		LedgerAdminAccount adminAccount = state.adminAccount;
+		if (adminAccount == null) {
+			adminAccount = new LedgerAdminAccount(block.getAdminAccountHash(), keyPrefix, exPolicyStorage,
+					versioningStorage, true);
+			state.adminAccount = adminAccount;
 		}
-
-		return new LedgerAdminAccount(block.getAdminAccountHash(), keyPrefix, exPolicyStorage, versioningStorage, true);
+		return adminAccount;
 	}
 
 	@Override
 	public UserAccountSet getUserAccountSet(LedgerBlock block) {
-		long height = getLatestBlockHeight();
-		UserAccountSet userAccountSet = null;
-		if (height == block.getHeight()) {
-			// 缓存读；
-			LedgerState state = getLatestState();
-			userAccountSet = state.userAccountSet;
-			if (userAccountSet == null) {
-				LedgerAdminAccount adminAccount = getAdminAccount(block);
-				userAccountSet = loadUserAccountSet(block.getUserAccountSetHash(),
-						adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
-						versioningStorage, true);
-				state.userAccountSet = userAccountSet;
-			}
-			return userAccountSet;
+		LedgerState state = getState(block);
+		UserAccountSet userAccountSet = state.userAccountSet;
+		if (userAccountSet == null) {
+			LedgerAdminAccount adminAccount = getAdminAccount(block);
+			userAccountSet = loadUserAccountSet(block.getUserAccountSetHash(),
+					adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
+					versioningStorage, true, merkleContext);
+			state.userAccountSet = userAccountSet;
 		}
-		LedgerAdminAccount adminAccount = getAdminAccount(block);
-		return loadUserAccountSet(block.getUserAccountSetHash(), adminAccount.getPreviousSetting().getCryptoSetting(),
-				keyPrefix, exPolicyStorage, versioningStorage, true);
+		return userAccountSet;
 	}
 
 	@Override
 	public DataAccountSet getDataAccountSet(LedgerBlock block) {
-		long height = getLatestBlockHeight();
-		DataAccountSet dataAccountSet = null;
-		if (height == block.getHeight()) {
-			// 缓存读；
-			LedgerState state = getLatestState();
-			dataAccountSet = state.dataAccountSet;
-			if (dataAccountSet == null) {
-				LedgerAdminAccount adminAccount = getAdminAccount(block);
-				dataAccountSet = loadDataAccountSet(block.getDataAccountSetHash(),
-						adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
-						versioningStorage, true);
-				state.dataAccountSet = dataAccountSet;
-			}
-			return dataAccountSet;
+		LedgerState state = getState(block);
+		DataAccountSet dataAccountSet = state.dataAccountSet;
+		if (dataAccountSet == null) {
+			LedgerAdminAccount adminAccount = getAdminAccount(block);
+			dataAccountSet = loadDataAccountSet(block.getDataAccountSetHash(),
+					adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
+					versioningStorage, true, merkleContext);
+			state.dataAccountSet = dataAccountSet;
 		}
-
-		LedgerAdminAccount adminAccount = getAdminAccount(block);
-		return loadDataAccountSet(block.getDataAccountSetHash(), adminAccount.getPreviousSetting().getCryptoSetting(),
-				keyPrefix, exPolicyStorage, versioningStorage, true);
+		return dataAccountSet;
 	}
 
 	@Override
 	public ContractAccountSet getContractAccountSet(LedgerBlock block) {
-		long height = getLatestBlockHeight();
-		ContractAccountSet contractAccountSet = null;
-		if (height == block.getHeight()) {
-			// 缓存读；
-			LedgerState state = getLatestState();
-			contractAccountSet = state.contractAccountSet;
-			if (contractAccountSet == null) {
-				LedgerAdminAccount adminAccount = getAdminAccount(block);
-				contractAccountSet = loadContractAccountSet(block.getContractAccountSetHash(),
-						adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
-						versioningStorage, true);
-				state.contractAccountSet = contractAccountSet;
-			}
-			return contractAccountSet;
+		LedgerState state = getState(block);
+		ContractAccountSet contractAccountSet = state.contractAccountSet;
+		if (contractAccountSet == null) {
+			LedgerAdminAccount adminAccount = getAdminAccount(block);
+			contractAccountSet = loadContractAccountSet(block.getContractAccountSetHash(),
+					adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage,
+					versioningStorage, true, merkleContext);
+			state.contractAccountSet = contractAccountSet;
 		}
-
-		LedgerAdminAccount adminAccount = getAdminAccount(block);
-		return loadContractAccountSet(block.getContractAccountSetHash(),
-				adminAccount.getPreviousSetting().getCryptoSetting(), keyPrefix, exPolicyStorage, versioningStorage,
-				true);
+		return contractAccountSet;
 	}
 
 	@Override
 	public LedgerDataSet getDataSet(LedgerBlock block) {
-		long height = getLatestBlockHeight();
-		LedgerDataSet ledgerDataSet = null;
-		if (height == block.getHeight()) {
-			// 缓存读；
-			LedgerState state = getLatestState();
-			ledgerDataSet = state.ledgerDataSet;
-			if (ledgerDataSet == null) {
-				ledgerDataSet = innerDataSet(block);
-				state.ledgerDataSet = ledgerDataSet;
-			}
-			return ledgerDataSet;
+		LedgerState state = getState(block);
+		LedgerDataSet ledgerDataSet = state.ledgerDataSet;
+		if (ledgerDataSet == null) {
+			ledgerDataSet = innerDataSet(block);
+			state.ledgerDataSet = ledgerDataSet;
 		}
-
-		// All of existing block is readonly;
-		return innerDataSet(block);
+		return ledgerDataSet;
 	}
 
 	private LedgerDataSet innerDataSet(LedgerBlock block) {
@@ -409,7 +518,7 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		LedgerBlock previousBlock = getLatestBlock();
 		LedgerTransactionalEditor editor = LedgerTransactionalEditor.createEditor(
 				getAdminInfo().getMetadata().getSetting(), previousBlock, keyPrefix, exPolicyStorage,
-				versioningStorage);
+				versioningStorage, merkleContext);
 		NewBlockCommittingMonitor committingMonitor = new NewBlockCommittingMonitor(editor, this);
 		this.nextBlockEditor = committingMonitor;
 		return committingMonitor;
@@ -500,20 +609,21 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 	}
 
 	static LedgerDataSetImpl loadDataSet(LedgerDataSnapshot dataSnapshot, String keyPrefix,
-			ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage, boolean readonly) {
+			ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage, boolean readonly,
+			MerkleTreeContext merkleContext) {
 		LedgerAdminAccount adminAccount = new LedgerAdminAccount(dataSnapshot.getAdminAccountHash(), keyPrefix,
 				ledgerExStorage, ledgerVerStorage, readonly);
 
 		CryptoSetting cryptoSetting = adminAccount.getPreviousSetting().getCryptoSetting();
 
 		UserAccountSet userAccountSet = loadUserAccountSet(dataSnapshot.getUserAccountSetHash(), cryptoSetting,
-				keyPrefix, ledgerExStorage, ledgerVerStorage, readonly);
+				keyPrefix, ledgerExStorage, ledgerVerStorage, readonly, merkleContext);
 
 		DataAccountSet dataAccountSet = loadDataAccountSet(dataSnapshot.getDataAccountSetHash(), cryptoSetting,
-				keyPrefix, ledgerExStorage, ledgerVerStorage, readonly);
+				keyPrefix, ledgerExStorage, ledgerVerStorage, readonly, merkleContext);
 
 		ContractAccountSet contractAccountSet = loadContractAccountSet(dataSnapshot.getContractAccountSetHash(),
-				cryptoSetting, keyPrefix, ledgerExStorage, ledgerVerStorage, readonly);
+				cryptoSetting, keyPrefix, ledgerExStorage, ledgerVerStorage, readonly, merkleContext);
 
 		LedgerDataSetImpl dataset = new LedgerDataSetImpl(adminAccount, userAccountSet, dataAccountSet,
 				contractAccountSet, readonly);
@@ -523,7 +633,7 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 
 	static UserAccountSet loadUserAccountSet(HashDigest userAccountSetHash, CryptoSetting cryptoSetting,
 			String keyPrefix, ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage,
-			boolean readonly) {
+			boolean readonly, MerkleTreeContext merkleContext) {
 		// return new UserAccountSet(userAccountSetHash, cryptoSetting,
 		// PrefixAppender.prefix(USER_SET_PREFIX, ledgerExStorage),
 		// PrefixAppender.prefix(USER_SET_PREFIX, ledgerVerStorage), readonly,
@@ -531,12 +641,12 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 
 		String usersetKeyPrefix = keyPrefix + USER_SET_PREFIX;
 		return new UserAccountSet(userAccountSetHash, cryptoSetting, usersetKeyPrefix, ledgerExStorage,
-				ledgerVerStorage, readonly, DEFAULT_ACCESS_POLICY);
+				ledgerVerStorage, readonly, DEFAULT_ACCESS_POLICY, merkleContext);
 	}
 
 	static DataAccountSet loadDataAccountSet(HashDigest dataAccountSetHash, CryptoSetting cryptoSetting,
 			String keyPrefix, ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage,
-			boolean readonly) {
+			boolean readonly, MerkleTreeContext merkleContext) {
 		// return new DataAccountSet(dataAccountSetHash, cryptoSetting,
 		// PrefixAppender.prefix(DATA_SET_PREFIX, ledgerExStorage,
 		// PrefixAppender.prefix(DATA_SET_PREFIX, ledgerVerStorage), readonly,
@@ -544,12 +654,12 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 
 		String datasetKeyPrefix = keyPrefix + DATA_SET_PREFIX;
 		return new DataAccountSet(dataAccountSetHash, cryptoSetting, datasetKeyPrefix, ledgerExStorage,
-				ledgerVerStorage, readonly, DEFAULT_ACCESS_POLICY);
+				ledgerVerStorage, readonly, DEFAULT_ACCESS_POLICY, merkleContext);
 	}
 
 	static ContractAccountSet loadContractAccountSet(HashDigest contractAccountSetHash, CryptoSetting cryptoSetting,
 			String keyPrefix, ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage,
-			boolean readonly) {
+			boolean readonly, MerkleTreeContext merkleContext) {
 		// return new ContractAccountSet(contractAccountSetHash, cryptoSetting,
 		// PrefixAppender.prefix(CONTRACT_SET_PREFIX, ledgerExStorage,
 		// PrefixAppender.prefix(CONTRACT_SET_PREFIX, ledgerVerStorage), readonly,
@@ -557,18 +667,19 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 
 		String contractsetKeyPrefix = keyPrefix + CONTRACT_SET_PREFIX;
 		return new ContractAccountSet(contractAccountSetHash, cryptoSetting, contractsetKeyPrefix, ledgerExStorage,
-				ledgerVerStorage, readonly, DEFAULT_ACCESS_POLICY);
+				ledgerVerStorage, readonly, DEFAULT_ACCESS_POLICY, merkleContext);
 	}
 
 	static TransactionSet loadTransactionSet(HashDigest txsetHash, CryptoSetting cryptoSetting, String keyPrefix,
-			ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage, boolean readonly) {
+			ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage, boolean readonly,
+			MerkleTreeContext merkleContext) {
 		// return new TransactionSet(txsetHash, cryptoSetting,
 		// PrefixAppender.prefix(TRANSACTION_SET_PREFIX, ledgerExStorage),
 		// PrefixAppender.prefix(TRANSACTION_SET_PREFIX, ledgerVerStorage), readonly);
 
 		String txsetKeyPrefix = keyPrefix + TRANSACTION_SET_PREFIX;
 		return new TransactionSet(txsetHash, cryptoSetting, txsetKeyPrefix, ledgerExStorage, ledgerVerStorage,
-				readonly);
+				readonly, merkleContext);
 
 	}
 
@@ -588,6 +699,16 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 			return editor.newTransaction(txRequest);
 		}
 
+		@Override
+		public void prefetch(TransactionRequest[] txRequests) {
+			editor.prefetch(txRequests);
+		}
+
+		@Override
+		public LedgerDataSet newIsolatedDataSet(boolean readonly) {
+			return editor.newIsolatedDataSet(readonly);
+		}
+
 		@Override
 		public LedgerBlock prepare() {
 			return editor.prepare();
@@ -598,7 +719,13 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 			try {
 				editor.commit();
 				LedgerBlock latestBlock = editor.getNewlyBlock();
+				LedgerState previousState = ledgerRepo.latestState;
 				ledgerRepo.latestState = new LedgerState(latestBlock);
+				if (previousState != null) {
+					// 之前的最新状态成为历史状态，其已加载的数据集继续复用；
+					ledgerRepo.blockCache.put(previousState.block.getHeight(), previousState.block);
+					ledgerRepo.stateCache.put(previousState.block.getHash(), previousState);
+				}
 			} finally {
 				ledgerRepo.nextBlockEditor = null;
 			}
@@ -642,4 +769,26 @@ public class LedgerRepositoryImpl implements LedgerRepository {
 		}
 
 	}
+
+	/**
+	 * 按照最近最少使用的顺序淘汰的缓存；
+	 * 
+	 * @author huanghaiquan
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class HistoryCache<K, V> extends LinkedHashMap<K, V> {
+
+		private final int maxSize;
+
+		public HistoryCache(int maxSize) {
+			super(16, 0.75F, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	}
 }
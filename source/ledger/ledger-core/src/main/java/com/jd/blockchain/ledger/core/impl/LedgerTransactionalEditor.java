@@ -1,10 +1,13 @@
 package com.jd.blockchain.ledger.core.impl;
 
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Stack;
 
 import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
 import com.jd.blockchain.crypto.CryptoUtils;
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.ledger.BlockBody;
 import com.jd.blockchain.ledger.CryptoSetting;
 import com.jd.blockchain.ledger.LedgerBlock;
@@ -13,14 +16,17 @@ import com.jd.blockchain.ledger.LedgerInitSetting;
 import com.jd.blockchain.ledger.LedgerTransaction;
 import com.jd.blockchain.ledger.TransactionRequest;
 import com.jd.blockchain.ledger.TransactionState;
+import com.jd.blockchain.ledger.core.DataAccount;
 import com.jd.blockchain.ledger.core.LedgerDataSet;
 import com.jd.blockchain.ledger.core.LedgerEditor;
 import com.jd.blockchain.ledger.core.LedgerSetting;
 import com.jd.blockchain.ledger.core.LedgerTransactionContext;
+import com.jd.blockchain.ledger.core.MerkleTreeContext;
 import com.jd.blockchain.ledger.core.TransactionSet;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
 import com.jd.blockchain.storage.service.utils.BufferedKVStorage;
+import com.jd.blockchain.storage.service.utils.GroupCommitKVStorage;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.codec.Base58Utils;
 
@@ -49,6 +55,13 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 
 	private BufferedKVStorage bufferedStorage;
 
+	/**
+	 * 账本的分组提交存储；账本不以分组提交的方式写入存储时为 null；
+	 */
+	private GroupCommitKVStorage groupCommitStorage;
+
+	private MerkleTreeContext merkleContext;
+
 	/**
 	 * 最近一个交易上下文；
 	 */
@@ -57,17 +70,37 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 	private LedgerDataContext newTxCtx;
 
 	private LedgerTransactionalEditor(CryptoSetting cryptoSetting, LedgerBlockData newlyBlock,
-			StagedSnapshot startingPoint, String ledgerKeyPrefix, BufferedKVStorage bufferedStorage) {
+			StagedSnapshot startingPoint, String ledgerKeyPrefix, BufferedKVStorage bufferedStorage,
+			MerkleTreeContext merkleContext) {
 		this.ledgerKeyPrefix = ledgerKeyPrefix;
 		this.cryptoSetting = cryptoSetting;
 		this.newlyBlock = newlyBlock;
 		this.bufferedStorage = bufferedStorage;
+		this.merkleContext = merkleContext;
 
 		this.stagedSnapshots.push(startingPoint);
 	}
 
 	public static LedgerTransactionalEditor createEditor(LedgerSetting ledgerSetting, LedgerBlock previousBlock,
 			String ledgerKeyPrefix, ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage) {
+		return createEditor(ledgerSetting, previousBlock, ledgerKeyPrefix, ledgerExStorage, ledgerVerStorage, null);
+	}
+
+	/**
+	 * 创建新区块的编辑器；
+	 * 
+	 * @param ledgerSetting
+	 * @param previousBlock
+	 * @param ledgerKeyPrefix
+	 * @param ledgerExStorage
+	 * @param ledgerVerStorage
+	 * @param merkleContext
+	 *            账本的默克尔树运行上下文；新区块加载的默克尔树会优先从其节点缓存读取节点，并通过其提交引擎提交；如果为 null，则不使用缓存，并以串行方式提交；
+	 * @return
+	 */
+	public static LedgerTransactionalEditor createEditor(LedgerSetting ledgerSetting, LedgerBlock previousBlock,
+			String ledgerKeyPrefix, ExPolicyKVStorage ledgerExStorage, VersioningKVStorage ledgerVerStorage,
+			MerkleTreeContext merkleContext) {
 		// new block;
 		LedgerBlockData currBlock = new LedgerBlockData(previousBlock.getHeight() + 1, previousBlock.getLedgerHash(),
 				previousBlock.getHash());
@@ -78,8 +111,12 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 		StagedSnapshot startingPoint = new TxSnapshot(previousBlock, previousBlock.getTransactionSetHash());
 
 		// instantiate editor;
-		return new LedgerTransactionalEditor(ledgerSetting.getCryptoSetting(), currBlock, startingPoint,
-				ledgerKeyPrefix, txStagedStorage);
+		LedgerTransactionalEditor editor = new LedgerTransactionalEditor(ledgerSetting.getCryptoSetting(), currBlock,
+				startingPoint, ledgerKeyPrefix, txStagedStorage, merkleContext);
+		if (ledgerVerStorage instanceof GroupCommitKVStorage) {
+			editor.groupCommitStorage = (GroupCommitKVStorage) ledgerVerStorage;
+		}
+		return editor;
 	}
 
 	public static LedgerTransactionalEditor createEditor(LedgerInitSetting initSetting, String ledgerKeyPrefix,
@@ -89,7 +126,7 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 		// init storage;
 		BufferedKVStorage txStagedStorage = new BufferedKVStorage(ledgerExStorage, ledgerVerStorage, false);
 		return new LedgerTransactionalEditor(initSetting.getCryptoSetting(), genesisBlock, startingPoint,
-				ledgerKeyPrefix, txStagedStorage);
+				ledgerKeyPrefix, txStagedStorage, null);
 	}
 
 	private void commitTxSnapshot(TxSnapshot snapshot) {
@@ -118,6 +155,64 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 		checkState();
 		// TODO:验证交易签名；
 
+		LedgerDataContext dataCtx = loadDataContext();
+
+		// newTxCtx = new LedgerTransactionContextImpl(newlyBlock.getHeight(),
+		// txRequest, txDataset, txset, txBuffStorage,
+		// this);
+		// return newTxCtx;
+
+		return new LedgerTransactionContextImpl(newlyBlock.getHeight(), txRequest, dataCtx.dataset, dataCtx.txset,
+				dataCtx.storage, this);
+	}
+
+	@Override
+	public void prefetch(TransactionRequest[] txRequests) {
+		checkState();
+		if (stagedSnapshots.peek() instanceof GenesisSnapshot) {
+			// 创世区块没有可预读的数据；
+			return;
+		}
+		LedgerAccessKeys accessKeys = new LedgerAccessKeys();
+		for (TransactionRequest txRequest : txRequests) {
+			accessKeys.add(txRequest);
+		}
+		// 预读到新区块的缓冲存储中，在新区块编辑期间有效；
+		LedgerDataSetImpl dataset = loadDataContext().dataset;
+		dataset.getUserAccountSet().prefetch(accessKeys.getUsers());
+		dataset.getDataAccountSet().prefetch(accessKeys.getDataAccounts());
+		dataset.getContractAccountSet().prefetch(accessKeys.getContracts());
+
+		// 数据账户的键以账户为前缀，需要先加载账户；
+		for (Entry<Bytes, Set<Bytes>> entry : accessKeys.getDataKeys().entrySet()) {
+			if (!dataset.getDataAccountSet().contains(entry.getKey())) {
+				continue;
+			}
+			Set<Bytes> keys = entry.getValue();
+			DataAccount account = dataset.getDataAccountSet().getDataAccount(entry.getKey());
+			account.prefetch(keys.toArray(new Bytes[keys.size()]));
+		}
+	}
+
+	@Override
+	public LedgerDataSet newIsolatedDataSet(boolean readonly) {
+		checkState();
+		StagedSnapshot startingPoint = stagedSnapshots.firstElement();
+		if (!(startingPoint instanceof TxSnapshot)) {
+			// 创世区块不支持；
+			return null;
+		}
+		// 数据集以自身的缓冲存储缓冲写入，只要不提交，就不会写入新区块的缓冲存储；
+		return LedgerRepositoryImpl.loadDataSet(((TxSnapshot) startingPoint).dataSnapshot, ledgerKeyPrefix,
+				bufferedStorage, bufferedStorage, readonly, merkleContext);
+	}
+
+	/**
+	 * 加载新区块的数据上下文；同一个区块中的交易复用同一个数据上下文；
+	 * 
+	 * @return
+	 */
+	private LedgerDataContext loadDataContext() {
 		BufferedKVStorage txBuffStorage = null;
 		LedgerDataSetImpl txDataset = null;
 		TransactionSet txset = null;
@@ -141,28 +236,17 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 				TxSnapshot snpht = (TxSnapshot) previousSnapshot;
 				// load dataset;
 				txDataset = LedgerRepositoryImpl.loadDataSet(snpht.dataSnapshot, ledgerKeyPrefix, txBuffStorage,
-						txBuffStorage, false);
+						txBuffStorage, false, merkleContext);
 
 				// load tx set;
 				txset = LedgerRepositoryImpl.loadTransactionSet(snpht.transactionSetHash, this.cryptoSetting,
-						ledgerKeyPrefix, txBuffStorage, txBuffStorage, false);
+						ledgerKeyPrefix, txBuffStorage, txBuffStorage, false, merkleContext);
 			}
 
 			lastTxCtx = new LedgerDataContext(txDataset, txset, txBuffStorage);
-		} else {
-			// Reuse previous object to optimize performance;
-			txBuffStorage = lastTxCtx.storage;
-			txDataset = lastTxCtx.dataset;
-			txset = lastTxCtx.txset;
 		}
-
-		// newTxCtx = new LedgerTransactionContextImpl(newlyBlock.getHeight(),
-		// txRequest, txDataset, txset, txBuffStorage,
-		// this);
-		// return newTxCtx;
-
-		return new LedgerTransactionContextImpl(newlyBlock.getHeight(), txRequest, txDataset, txset, txBuffStorage,
-				this);
+		// Reuse previous object to optimize performance;
+		return lastTxCtx;
 	}
 
 	@Override
@@ -188,9 +272,9 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 		newlyBlock.setTransactionSetHash(lastTxCtx.txset.getRootHash());
 
 		// compute block hash;
-		byte[] blockBodyBytes = BinaryEncodingUtils.encode(newlyBlock, BlockBody.class);
-		HashDigest blockHash = CryptoUtils.hashCrypto().getFunction(cryptoSetting.getHashAlgorithm())
-				.hash(blockBodyBytes);
+		Hasher blockHasher = CryptoUtils.hashCrypto().getFunction(cryptoSetting.getHashAlgorithm()).newHasher();
+		BinaryEncodingUtils.encode(newlyBlock, BlockBody.class, blockHasher.asOutputStream());
+		HashDigest blockHash = blockHasher.digest();
 		newlyBlock.setHash(blockHash);
 		if (newlyBlock.getLedgerHash() == null) {
 			// init GenesisBlock's ledger hash;
@@ -234,6 +318,11 @@ public class LedgerTransactionalEditor implements LedgerEditor {
 			throw new IllegalStateException("LedgerEditor has not prepared!");
 		}
 
+		if (groupCommitStorage != null) {
+			// 持久化屏障：之前的区块全部写入存储之后才提交新区块，使得任何时候最多只有最新的一个区块尚未持久化；
+			// 新区块在后台写入，与下一个区块的执行重叠；之前的写入失败时在此抛出异常，新区块不会被提交；
+			groupCommitStorage.sync();
+		}
 		bufferedStorage.flush();
 
 		committed = true;
@@ -0,0 +1,219 @@
+package com.jd.blockchain.ledger.core.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.jd.blockchain.ledger.ContractCodeDeployOperation;
+import com.jd.blockchain.ledger.ContractEventSendOperation;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation.KVWriteEntry;
+import com.jd.blockchain.ledger.DataAccountRegisterOperation;
+import com.jd.blockchain.ledger.Operation;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.UserRegisterOperation;
+import com.jd.blockchain.ledger.core.LedgerConsts;
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 交易的访问集合；
+ * <p>
+ * 不执行交易，只从交易内容中的操作解析出交易将要读取和写入的账本数据：<br>
+ * 注册用户、数据账户、合约时写入对应的账户；写入数据账户的键时读取该账户，并写入该键；<br>
+ * 合约调用访问的数据只有在执行时才能确定，除非已经声明（参见 {@link ContractAccessDeclaration}），否则视为可能访问任何数据；
+ * <p>
+ * 交易的签名者以及合约调用的目标合约都是在前一个区块的数据集中校验，不属于新区块中交易之间的数据依赖，因此不计入访问集合；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class TransactionAccessSet {
+
+	private static final Bytes USER_PREFIX = Bytes.fromString("USER" + LedgerConsts.KEY_SEPERATOR);
+
+	private static final Bytes DATA_ACCOUNT_PREFIX = Bytes.fromString("DATA" + LedgerConsts.KEY_SEPERATOR);
+
+	private static final Bytes CONTRACT_PREFIX = Bytes.fromString("CONTRACT" + LedgerConsts.KEY_SEPERATOR);
+
+	private static final Bytes KEY_SEPERATOR = Bytes.fromString(LedgerConsts.KEY_SEPERATOR);
+
+	private final Set<Bytes> readingKeys = new LinkedHashSet<>();
+
+	private final Set<Bytes> writingKeys = new LinkedHashSet<>();
+
+	private boolean wildcard;
+
+	/**
+	 * 解析交易内容的访问集合；合约调用都视为可能访问任何数据；
+	 *
+	 * @param content
+	 * @return
+	 */
+	public static TransactionAccessSet resolve(TransactionContent content) {
+		return resolve(content, null);
+	}
+
+	/**
+	 * 解析交易内容的访问集合；
+	 *
+	 * @param content
+	 *            交易内容；
+	 * @param contractDeclaration
+	 *            合约调用的数据访问声明；如果为 null，则合约调用都视为可能访问任何数据；
+	 * @return
+	 */
+	public static TransactionAccessSet resolve(TransactionContent content,
+			ContractAccessDeclaration contractDeclaration) {
+		TransactionAccessSet accessSet = new TransactionAccessSet();
+		Operation[] ops = content == null ? null : content.getOperations();
+		if (ops == null) {
+			return accessSet;
+		}
+		for (Operation op : ops) {
+			accessSet.add(op, contractDeclaration);
+		}
+		return accessSet;
+	}
+
+	private void add(Operation op, ContractAccessDeclaration contractDeclaration) {
+		if (op instanceof UserRegisterOperation) {
+			writeUser(((UserRegisterOperation) op).getUserID().getAddress());
+		} else if (op instanceof DataAccountRegisterOperation) {
+			writeDataAccount(((DataAccountRegisterOperation) op).getAccountID().getAddress());
+		} else if (op instanceof DataAccountKVSetOperation) {
+			DataAccountKVSetOperation kvOp = (DataAccountKVSetOperation) op;
+			readDataAccount(kvOp.getAccountAddress());
+			KVWriteEntry[] writeSet = kvOp.getWriteSet();
+			if (writeSet != null) {
+				for (KVWriteEntry kvw : writeSet) {
+					writeData(kvOp.getAccountAddress(), kvw.getKey());
+				}
+			}
+		} else if (op instanceof ContractCodeDeployOperation) {
+			writeContract(((ContractCodeDeployOperation) op).getContractID().getAddress());
+		} else if (op instanceof ContractEventSendOperation) {
+			if (contractDeclaration == null
+					|| !contractDeclaration.declare((ContractEventSendOperation) op, this)) {
+				wildcard = true;
+			}
+		} else {
+			// 未知的操作；
+			wildcard = true;
+		}
+	}
+
+	/**
+	 * 声明注册用户；
+	 *
+	 * @param address
+	 */
+	public void writeUser(Bytes address) {
+		Bytes key = new Bytes(USER_PREFIX, address);
+		readingKeys.add(key);
+		writingKeys.add(key);
+	}
+
+	/**
+	 * 声明读取数据账户；
+	 *
+	 * @param address
+	 */
+	public void readDataAccount(Bytes address) {
+		readingKeys.add(new Bytes(DATA_ACCOUNT_PREFIX, address));
+	}
+
+	/**
+	 * 声明注册数据账户；
+	 *
+	 * @param address
+	 */
+	public void writeDataAccount(Bytes address) {
+		Bytes key = new Bytes(DATA_ACCOUNT_PREFIX, address);
+		readingKeys.add(key);
+		writingKeys.add(key);
+	}
+
+	/**
+	 * 声明读取数据账户的键；
+	 *
+	 * @param address
+	 * @param key
+	 */
+	public void readData(Bytes address, String key) {
+		readDataAccount(address);
+		readingKeys.add(encodeDataKey(address, key));
+	}
+
+	/**
+	 * 声明写入数据账户的键；写入时需要校验键的版本，因此同时也读取该键；
+	 *
+	 * @param address
+	 * @param key
+	 */
+	public void writeData(Bytes address, String key) {
+		readDataAccount(address);
+		Bytes dataKey = encodeDataKey(address, key);
+		readingKeys.add(dataKey);
+		writingKeys.add(dataKey);
+	}
+
+	/**
+	 * 声明部署合约；
+	 *
+	 * @param address
+	 */
+	public void writeContract(Bytes address) {
+		Bytes key = new Bytes(CONTRACT_PREFIX, address);
+		readingKeys.add(key);
+		writingKeys.add(key);
+	}
+
+	private static Bytes encodeDataKey(Bytes address, String key) {
+		return new Bytes(new Bytes(new Bytes(DATA_ACCOUNT_PREFIX, address), KEY_SEPERATOR), Bytes.fromString(key));
+	}
+
+	/**
+	 * 是否可能访问任何数据；
+	 *
+	 * @return
+	 */
+	public boolean isWildcard() {
+		return wildcard;
+	}
+
+	public Set<Bytes> getReadingKeys() {
+		return Collections.unmodifiableSet(readingKeys);
+	}
+
+	public Set<Bytes> getWritingKeys() {
+		return Collections.unmodifiableSet(writingKeys);
+	}
+
+	/**
+	 * 与另一个交易是否存在数据依赖；即其中一个交易写入了另一个交易读取或写入的数据；
+	 *
+	 * @param other
+	 * @return
+	 */
+	public boolean conflictsWith(TransactionAccessSet other) {
+		if (wildcard || other.wildcard) {
+			return true;
+		}
+		return intersects(writingKeys, other.readingKeys) || intersects(writingKeys, other.writingKeys)
+				|| intersects(readingKeys, other.writingKeys);
+	}
+
+	private static boolean intersects(Set<Bytes> keys1, Set<Bytes> keys2) {
+		if (keys1.size() > keys2.size()) {
+			Set<Bytes> keys = keys1;
+			keys1 = keys2;
+			keys2 = keys;
+		}
+		for (Bytes key : keys1) {
+			if (keys2.contains(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
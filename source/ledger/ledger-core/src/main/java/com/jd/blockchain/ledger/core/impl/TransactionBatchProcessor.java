@@ -1,8 +1,16 @@
 package com.jd.blockchain.ledger.core.impl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +21,7 @@ import com.jd.blockchain.ledger.Operation;
 import com.jd.blockchain.ledger.TransactionRequest;
 import com.jd.blockchain.ledger.TransactionResponse;
 import com.jd.blockchain.ledger.TransactionState;
+import com.jd.blockchain.ledger.core.DataAccessRecorder;
 import com.jd.blockchain.ledger.core.LedgerDataSet;
 import com.jd.blockchain.ledger.core.LedgerEditor;
 import com.jd.blockchain.ledger.core.LedgerException;
@@ -20,11 +29,26 @@ import com.jd.blockchain.ledger.core.LedgerService;
 import com.jd.blockchain.ledger.core.LedgerTransactionContext;
 import com.jd.blockchain.ledger.core.OperationHandle;
 import com.jd.blockchain.ledger.core.TransactionRequestContext;
+import com.jd.blockchain.ledger.data.TransactionVerifier;
 import com.jd.blockchain.ledger.service.TransactionBatchProcess;
 import com.jd.blockchain.ledger.service.TransactionBatchResult;
 import com.jd.blockchain.ledger.service.TransactionBatchResultHandle;
 import com.jd.blockchain.utils.Bytes;
-
+import com.jd.blockchain.utils.Transactional;
+
+/**
+ * 交易批处理器；在新区块中按顺序执行一批交易；
+ * <p>
+ * 可选地启用推测执行：在 {@link #prefetch(TransactionRequest[])} 时，以新区块的起点数据为每一个交易创建隔离的数据集（参见
+ * {@link LedgerEditor#newIsolatedDataSet(boolean)}），在线程池中并行地预先执行交易，记录交易读取的键（参见
+ * {@link DataAccessRecorder}）、实际执行的操作以及执行结果；<br>
+ * 之后在 {@link #schedule(TransactionRequest)} 按区块顺序提交交易时，如果交易读取的键都未被区块中之前的交易写入，
+ * 则推测执行的结果仍然有效，只需在新区块的数据集中重放记录的操作，不必再执行合约；否则按常规方式重新执行；<br>
+ * 重放和重新执行都在新区块的数据集中按区块顺序进行，因此新区块的数据以及区块哈希与串行执行完全一致；
+ *
+ * @author huanghaiquan
+ *
+ */
 public class TransactionBatchProcessor implements TransactionBatchProcess {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TransactionBatchProcessor.class);
@@ -37,6 +61,43 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 
 	private OperationHandleRegisteration opHandles;
 
+	private TransactionVerifier txVerifier;
+
+	/**
+	 * 推测执行的线程池；如果为 null，则不启用推测执行；
+	 */
+	private ForkJoinPool speculativePool;
+
+	/**
+	 * 预先批量验证的交易签名的结果；以交易请求对象为键；
+	 */
+	private Map<TransactionRequest, Boolean> verifyResults = new IdentityHashMap<>();
+
+	/**
+	 * 推测执行的结果；以交易请求对象为键；
+	 */
+	private Map<TransactionRequest, SpeculativeTx> speculations = new IdentityHashMap<>();
+
+	/**
+	 * 新区块中已执行的交易写入的键；
+	 */
+	private Set<Bytes> dirtyKeys = new HashSet<>();
+
+	/**
+	 * 以推测执行的结果重放的交易数；
+	 */
+	private int replayedCount;
+
+	/**
+	 * 按顺序记录已在新区块的数据集中执行的交易；重放与推测执行的结果不一致时，据此重新执行新区块中之前的交易；
+	 */
+	private List<TransactionRequest> appliedRequests = new ArrayList<>();
+
+	/**
+	 * 新区块中的交易按数据依赖的分组；
+	 */
+	private TransactionPartition partition;
+
 	// 新创建的交易；
 	private LedgerBlock block;
 
@@ -56,10 +117,65 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 	 */
 	public TransactionBatchProcessor(LedgerEditor newBlockEditor, LedgerDataSet previousBlockDataset,
 			OperationHandleRegisteration opHandles, LedgerService ledgerService) {
+		this(newBlockEditor, previousBlockDataset, opHandles, ledgerService, null);
+	}
+
+	/**
+	 * @param newBlockEditor
+	 *            新区块的数据编辑器；
+	 * @param previousBlockDataset
+	 *            新区块的前一个区块的数据集；即未提交新区块之前的经过共识的账本最新数据集；
+	 * @param opHandles
+	 *            操作处理对象注册表；
+	 * @param txVerifier
+	 *            交易签名的验证器；如果为 null，则不验证交易签名；
+	 */
+	public TransactionBatchProcessor(LedgerEditor newBlockEditor, LedgerDataSet previousBlockDataset,
+			OperationHandleRegisteration opHandles, LedgerService ledgerService, TransactionVerifier txVerifier) {
+		this(newBlockEditor, previousBlockDataset, opHandles, ledgerService, txVerifier, null);
+	}
+
+	/**
+	 * @param newBlockEditor
+	 *            新区块的数据编辑器；
+	 * @param previousBlockDataset
+	 *            新区块的前一个区块的数据集；即未提交新区块之前的经过共识的账本最新数据集；
+	 * @param opHandles
+	 *            操作处理对象注册表；
+	 * @param txVerifier
+	 *            交易签名的验证器；如果为 null，则不验证交易签名；
+	 * @param speculativePool
+	 *            推测执行交易的线程池；如果为 null，则不启用推测执行；
+	 */
+	public TransactionBatchProcessor(LedgerEditor newBlockEditor, LedgerDataSet previousBlockDataset,
+			OperationHandleRegisteration opHandles, LedgerService ledgerService, TransactionVerifier txVerifier,
+			ForkJoinPool speculativePool) {
 		this.newBlockEditor = newBlockEditor;
 		this.previousBlockDataset = previousBlockDataset;
 		this.opHandles = opHandles;
 		this.ledgerService = ledgerService;
+		this.txVerifier = txVerifier;
+		this.speculativePool = speculativePool;
+	}
+
+	/**
+	 * 以推测执行的结果重放的交易数；
+	 * 
+	 * @return
+	 */
+	public int getReplayedCount() {
+		return replayedCount;
+	}
+
+	/**
+	 * 新区块中的交易按数据依赖的分组；在 {@link #prepare()} 之后有效；
+	 * <p>
+	 * 分组由交易内容静态地解析得出（参见 {@link TransactionAccessSet}），反映新区块可用的并行度；
+	 * 
+	 * @return
+	 */
+	public TransactionPartition getPartition() {
+		return partition;
 	}
 
 	/*
@@ -71,38 +187,35 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 	 */
 	@Override
 	public TransactionResponse schedule(TransactionRequest request) {
-		// 此调用将会验证交易签名，验签失败将会抛出异常，同时，不记录签名错误的交易到链上；
+		// 验证交易签名；不记录签名错误的交易到链上；
+		if (txVerifier != null && !verify(request)) {
+			LOGGER.warn(String.format("Transaction is rejected caused by the invalid signatures! --[TxHash=%s]",
+					request.getHash() == null ? null : request.getHash().toBase58()));
+			TxResponseHandle resp = new TxResponseHandle(request, TransactionState.LEDGER_ERROR);
+			responseList.add(resp);
+			return resp;
+		}
+
+		SpeculativeTx speculation = speculations.remove(request);
+		// 启用推测执行时，记录新区块中的交易写入的键；
+		DataAccessRecorder recorder = speculativePool == null ? null : DataAccessRecorder.begin();
 		LedgerTransactionContext txCtx = newBlockEditor.newTransaction(request);
 		TransactionState result;
 		try {
 			LedgerDataSet dataset = txCtx.getDataSet();
-			TransactionRequestContext reqCtx = new TransactionRequestContextImpl(request);
-			// TODO: 验证签名者的有效性；
-			for (Bytes edpAddr : reqCtx.getEndpoints()) {
-				if (!previousBlockDataset.getUserAccountSet().contains(edpAddr)) {
-					throw new LedgerException("The endpoint signer[" + edpAddr + "] was not registered!");
-				}
-			}
-			for (Bytes edpAddr : reqCtx.getNodes()) {
-				if (!previousBlockDataset.getUserAccountSet().contains(edpAddr)) {
-					throw new LedgerException("The node signer[" + edpAddr + "] was not registered!");
+			if (speculation != null && speculation.isValid(dirtyKeys)) {
+				replayedCount++;
+				if (!replay(speculation, dataset)) {
+					// 重放与推测执行的结果不一致；丢弃重放的写入，按常规方式执行；
+					replayedCount--;
+					LOGGER.warn(String.format(
+							"The replay of the speculative transaction is inconsistent and re-executing! --[TxHash=%s]",
+							request.getHash().toBase58()));
+					reexecuteApplied(dataset);
+					execute(request, dataset, previousBlockDataset, null);
 				}
-			}
-
-			// 执行操作；
-			Operation[] ops = request.getTransactionContent().getOperations();
-			OperationHandleContext handleContext = new OperationHandleContext() {
-				@Override
-				public void handle(Operation operation) {
-					//assert; Instance of operation are one of User related operations or DataAccount related operations;
-					OperationHandle hdl = opHandles.getHandle(operation.getClass());
-					hdl.process(operation, dataset, reqCtx, previousBlockDataset, this, ledgerService);
-				}
-			};
-			OperationHandle opHandle;
-			for (Operation op : ops) {
-				opHandle = opHandles.getHandle(op.getClass());
-				opHandle.process(op, dataset, reqCtx, previousBlockDataset, handleContext, ledgerService);
+			} else {
+				execute(request, dataset, previousBlockDataset, null);
 			}
 
 			// 提交交易（事务）；
@@ -119,6 +232,12 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 			txCtx.discardAndCommit(TransactionState.SYSTEM_ERROR);
 			LOGGER.warn(String.format("Transaction rollback caused by the system exception! --[TxHash=%s] --%s",
 					request.getHash().toBase58(), e.getMessage()), e);
+		} finally {
+			if (recorder != null) {
+				recorder.end();
+				dirtyKeys.addAll(recorder.getWritingKeys());
+				appliedRequests.add(request);
+			}
 		}
 
 		TxResponseHandle resp = new TxResponseHandle(request, result);
@@ -127,6 +246,217 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 		return resp;
 	}
 
+	/**
+	 * 验证交易签名；已经在 {@link #prefetch(TransactionRequest[])} 中批量验证的交易直接使用其结果，不再重新计算交易内容哈希；
+	 * 
+	 * @param request
+	 * @return
+	 */
+	private boolean verify(TransactionRequest request) {
+		Boolean verified = verifyResults.remove(request);
+		if (verified != null) {
+			return verified;
+		}
+		return txVerifier.verify(request);
+	}
+
+	/**
+	 * 执行交易中的操作；
+	 * 
+	 * @param request
+	 *            交易请求；
+	 * @param dataset
+	 *            交易操作的数据集；
+	 * @param previousDataset
+	 *            前一个区块的数据集；
+	 * @param speculation
+	 *            推测执行的记录；如果不为 null，则记录执行的每一个操作；
+	 */
+	private void execute(TransactionRequest request, LedgerDataSet dataset, LedgerDataSet previousDataset,
+			SpeculativeTx speculation) {
+		TransactionRequestContext reqCtx = new TransactionRequestContextImpl(request);
+		// TODO: 验证签名者的有效性；
+		for (Bytes edpAddr : reqCtx.getEndpoints()) {
+			if (!previousDataset.getUserAccountSet().contains(edpAddr)) {
+				throw new LedgerException("The endpoint signer[" + edpAddr + "] was not registered!");
+			}
+		}
+		for (Bytes edpAddr : reqCtx.getNodes()) {
+			if (!previousDataset.getUserAccountSet().contains(edpAddr)) {
+				throw new LedgerException("The node signer[" + edpAddr + "] was not registered!");
+			}
+		}
+
+		// 执行操作；
+		Operation[] ops = request.getTransactionContent().getOperations();
+		OperationHandleContext handleContext = new OperationHandleContext() {
+			@Override
+			public void handle(Operation operation) {
+				//assert; Instance of operation are one of User related operations or DataAccount related operations;
+				process(operation, dataset, previousDataset, reqCtx, this, speculation);
+			}
+		};
+		for (Operation op : ops) {
+			process(op, dataset, previousDataset, reqCtx, handleContext, speculation);
+		}
+	}
+
+	private void process(Operation op, LedgerDataSet dataset, LedgerDataSet previousDataset,
+			TransactionRequestContext reqCtx, OperationHandleContext handleContext, SpeculativeTx speculation) {
+		OperationHandle opHandle = opHandles.getHandle(op.getClass());
+		if (speculation == null) {
+			opHandle.process(op, dataset, reqCtx, previousDataset, handleContext, ledgerService);
+			return;
+		}
+		speculation.beginOperation(op);
+		boolean failed = true;
+		try {
+			opHandle.process(op, dataset, reqCtx, previousDataset, handleContext, ledgerService);
+			failed = false;
+		} finally {
+			speculation.endOperation(failed);
+		}
+	}
+
+	/**
+	 * 在新区块的数据集中重放推测执行记录的操作；
+	 * <p>
+	 * 只重放直接修改数据的操作；发起了其它操作的操作（例如合约调用）不再执行，由其发起的操作按记录的顺序重放；<br>
+	 * 每个操作重放的结果（成功或者引发异常）必须与推测执行时记录的一致；发起的操作引发的异常由发起方处理，其影响体现在之后记录的操作以及推测执行的最终结果中，
+	 * 如果结果不一致，则发起方在常规执行时的处理可能不同，已重放的写入不再有效，返回 false；<br>
+	 * 最后，如果推测执行以异常结束，则引发同一个异常；
+	 * 
+	 * @param speculation
+	 * @param dataset
+	 * @return 重放的结果与推测执行一致时返回 true；否则返回 false，此时数据集中已包含部分重放的写入，需由调用方丢弃；
+	 * @throws Exception
+	 */
+	private boolean replay(SpeculativeTx speculation, LedgerDataSet dataset) throws Exception {
+		TransactionRequestContext reqCtx = new TransactionRequestContextImpl(speculation.request);
+		OperationHandleContext handleContext = new OperationHandleContext() {
+			@Override
+			public void handle(Operation operation) {
+				process(operation, dataset, previousBlockDataset, reqCtx, this, null);
+			}
+		};
+		for (RecordedOperation recOp : speculation.operations) {
+			if (recOp.composite) {
+				continue;
+			}
+			boolean failed = false;
+			try {
+				process(recOp.operation, dataset, previousBlockDataset, reqCtx, handleContext, null);
+			} catch (Exception e) {
+				failed = true;
+			}
+			if (failed != recOp.failed) {
+				return false;
+			}
+		}
+		if (speculation.failure != null) {
+			throw speculation.failure;
+		}
+		return true;
+	}
+
+	/**
+	 * 丢弃新区块的数据集中未提交的写入，按顺序重新执行新区块中之前已执行的交易；
+	 * <p>
+	 * 新区块的数据集不支持单个交易的回滚，只能整体丢弃之后重新执行之前的交易；交易的执行是确定的，重新执行的结果与之前记录的结果一致；
+	 * 
+	 * @param dataset
+	 */
+	private void reexecuteApplied(LedgerDataSet dataset) {
+		((Transactional) dataset).cancel();
+		for (TransactionRequest applied : appliedRequests) {
+			try {
+				execute(applied, dataset, previousBlockDataset, null);
+			} catch (Exception e) {
+				// 交易的结果已经记录；失败的交易在第一次执行时同样引发了异常；
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.jd.blockchain.ledger.service.TransactionBatchProcess#prefetch(com.jd.
+	 * blockchain.ledger.TransactionRequest[])
+	 */
+	@Override
+	public void prefetch(TransactionRequest[] requests) {
+		boolean[] verifyResults = null;
+		if (txVerifier != null) {
+			// 并行地预先验证交易签名，执行交易时直接使用验证结果；
+			verifyResults = txVerifier.verify(requests);
+			for (int i = 0; i < requests.length; i++) {
+				this.verifyResults.put(requests[i], verifyResults[i]);
+			}
+		}
+		try {
+			newBlockEditor.prefetch(requests);
+		} catch (Exception e) {
+			// 预读只是优化，失败时在执行交易的过程中逐个读取；
+			LOGGER.warn("Fail on prefetching the ledger data of transactions! --" + e.getMessage(), e);
+		}
+		if (speculativePool != null && requests.length > 1) {
+			speculate(requests, verifyResults);
+		}
+	}
+
+	/**
+	 * 在线程池中并行地推测执行交易；签名验证不通过的交易不执行；
+	 * 
+	 * @param requests
+	 * @param verifyResults
+	 */
+	private void speculate(TransactionRequest[] requests, boolean[] verifyResults) {
+		List<ForkJoinTask<SpeculativeTx>> tasks = new ArrayList<>(requests.length);
+		for (int i = 0; i < requests.length; i++) {
+			if (verifyResults == null || verifyResults[i]) {
+				TransactionRequest request = requests[i];
+				tasks.add(speculativePool.submit(() -> speculate(request)));
+			} else {
+				tasks.add(null);
+			}
+		}
+		for (int i = 0; i < requests.length; i++) {
+			if (tasks.get(i) == null) {
+				continue;
+			}
+			try {
+				SpeculativeTx speculation = tasks.get(i).join();
+				if (speculation != null) {
+					speculations.put(requests[i], speculation);
+				}
+			} catch (RuntimeException e) {
+				// 推测执行只是优化，失败时按常规方式执行；
+				LOGGER.warn("Fail on speculating the transaction! --" + e.getMessage(), e);
+			}
+		}
+	}
+
+	private SpeculativeTx speculate(TransactionRequest request) {
+		LedgerDataSet dataset = newBlockEditor.newIsolatedDataSet(false);
+		if (dataset == null) {
+			return null;
+		}
+		// 前一个区块的数据集也以只读的隔离数据集代替，避免工作线程之间共享数据集；
+		LedgerDataSet previousDataset = newBlockEditor.newIsolatedDataSet(true);
+		SpeculativeTx speculation = new SpeculativeTx(request);
+		DataAccessRecorder recorder = DataAccessRecorder.begin();
+		try {
+			execute(request, dataset, previousDataset, speculation);
+		} catch (Exception e) {
+			speculation.failure = e;
+		} finally {
+			recorder.end();
+		}
+		speculation.access = recorder;
+		return speculation;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -138,6 +468,16 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 			throw new IllegalStateException("Batch result has already been prepared or canceled!");
 		}
 		block = newBlockEditor.prepare();
+		try {
+			partition = partitionTransactions();
+			LOGGER.info(String.format(
+					"Block[%s] has %s transactions in %s independent groups, the largest group has %s transactions! --[Parallelism=%.2f]",
+					block.getHeight(), partition.getTransactionCount(), partition.getGroupCount(),
+					partition.getMaxGroupSize(), partition.getParallelism()));
+		} catch (RuntimeException e) {
+			// 分组只是统计，不影响区块；
+			LOGGER.warn("Fail on partitioning the transactions of block! --" + e.getMessage(), e);
+		}
 		batchResult = new TransactionBatchResultHandleImpl();
 		return (TransactionBatchResultHandle) batchResult;
 	}
@@ -161,6 +501,15 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 		return batchResult;
 	}
 
+	private TransactionPartition partitionTransactions() {
+		TransactionAccessSet[] accessSets = new TransactionAccessSet[responseList.size()];
+		for (int i = 0; i < accessSets.length; i++) {
+			TxResponseHandle resp = (TxResponseHandle) responseList.get(i);
+			accessSets[i] = TransactionAccessSet.resolve(resp.request.getTransactionContent());
+		}
+		return TransactionPartition.partition(accessSets);
+	}
+
 	@Override
 	public long blockHeight() {
 		if (block != null) {
@@ -195,6 +544,99 @@ public class TransactionBatchProcessor implements TransactionBatchProcess {
 	protected void onCanceled() {
 	}
 
+	/**
+	 * 推测执行的交易；
+	 * 
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class SpeculativeTx {
+
+		private final TransactionRequest request;
+
+		/**
+		 * 按执行顺序记录的操作；
+		 */
+		private final List<RecordedOperation> operations = new ArrayList<>();
+
+		/**
+		 * 正在执行的操作；
+		 */
+		private final Deque<RecordedOperation> processing = new ArrayDeque<>();
+
+		/**
+		 * 推测执行引发的异常；正常结束时为 null；
+		 */
+		private Exception failure;
+
+		private DataAccessRecorder access;
+
+		public SpeculativeTx(TransactionRequest request) {
+			this.request = request;
+		}
+
+		private void beginOperation(Operation op) {
+			RecordedOperation initiator = processing.peek();
+			if (initiator != null) {
+				initiator.composite = true;
+			}
+			RecordedOperation recOp = new RecordedOperation(op, initiator != null);
+			operations.add(recOp);
+			processing.push(recOp);
+		}
+
+		private void endOperation(boolean failed) {
+			processing.pop().failed = failed;
+		}
+
+		/**
+		 * 推测执行的结果是否仍然有效；
+		 * <p>
+		 * 以系统异常结束的推测执行不作为有效结果，由常规执行重新判断；
+		 * 
+		 * @param dirtyKeys
+		 *            新区块中已执行的交易写入的键；
+		 * @return
+		 */
+		public boolean isValid(Set<Bytes> dirtyKeys) {
+			if (failure != null && !(failure instanceof LedgerException)) {
+				return false;
+			}
+			return !access.isReadingAny(dirtyKeys);
+		}
+	}
+
+	/**
+	 * 推测执行时记录的操作；
+	 * 
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class RecordedOperation {
+
+		private final Operation operation;
+
+		/**
+		 * 是否是由其它操作发起的操作；
+		 */
+		private final boolean nested;
+
+		/**
+		 * 是否发起了其它操作；
+		 */
+		private boolean composite;
+
+		/**
+		 * 推测执行时是否引发了异常；
+		 */
+		private boolean failed;
+
+		public RecordedOperation(Operation operation, boolean nested) {
+			this.operation = operation;
+			this.nested = nested;
+		}
+	}
+
 	private class TxResponseHandle implements TransactionResponse {
 
 		private TransactionRequest request;
@@ -2,6 +2,7 @@ package com.jd.blockchain.ledger.core.impl;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import com.jd.blockchain.ledger.LedgerBlock;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,11 +12,22 @@ import com.jd.blockchain.ledger.core.LedgerDataSet;
 import com.jd.blockchain.ledger.core.LedgerEditor;
 import com.jd.blockchain.ledger.core.LedgerRepository;
 import com.jd.blockchain.ledger.core.LedgerService;
+import com.jd.blockchain.ledger.data.TransactionVerifier;
 import com.jd.blockchain.ledger.service.TransactionBatchProcess;
 import com.jd.blockchain.ledger.service.TransactionEngine;
 
 public class TransactionEngineImpl implements TransactionEngine {
 
+	/**
+	 * 推测执行交易的并行度；小于或等于 1 时不启用推测执行；参见 {@link TransactionBatchProcessor}；
+	 */
+	private static final int SPECULATIVE_PARALLELISM;
+
+	static {
+		SPECULATIVE_PARALLELISM = Integer.getInteger("speculative-tx-parallelism", 0);
+		System.out.println("------ [[ speculative-tx-parallelism=" + SPECULATIVE_PARALLELISM + " ]] ------");
+	}
+
 	@Autowired
 	private LedgerService ledgerService;
 
@@ -24,6 +36,17 @@ public class TransactionEngineImpl implements TransactionEngine {
 
 	private Map<HashDigest, TransactionBatchProcessor> batchs = new ConcurrentHashMap<>();
 
+	/**
+	 * 交易签名的验证器；默认以 CPU 核数作为并行度；
+	 */
+	private TransactionVerifier txVerifier = TransactionVerifier.create(Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * 推测执行交易的线程池；如果为 null，则不启用推测执行；
+	 */
+	private ForkJoinPool speculativePool = SPECULATIVE_PARALLELISM > 1 ? new ForkJoinPool(SPECULATIVE_PARALLELISM)
+			: null;
+
 	public TransactionEngineImpl() {
 	}
 
@@ -32,6 +55,40 @@ public class TransactionEngineImpl implements TransactionEngine {
 		this.opHdlRegs = opHdlRegs;
 	}
 
+	public TransactionVerifier getTxVerifier() {
+		return txVerifier;
+	}
+
+	/**
+	 * 设置交易签名的验证器；
+	 * 
+	 * @param txVerifier
+	 *            如果为 null，则不验证交易签名；
+	 */
+	public void setTxVerifier(TransactionVerifier txVerifier) {
+		this.txVerifier = txVerifier;
+	}
+
+	/**
+	 * 推测执行交易的并行度；未启用时为 0；
+	 * 
+	 * @return
+	 */
+	public int getSpeculativeParallelism() {
+		return speculativePool == null ? 0 : speculativePool.getParallelism();
+	}
+
+	/**
+	 * 设置推测执行交易的并行度；对之后创建的交易批处理生效；
+	 * 
+	 * @param parallelism
+	 *            并行度；小于或等于 1 时不启用推测执行；
+	 */
+	public void setSpeculativeParallelism(int parallelism) {
+		// 不关闭原来的线程池，正在进行的批处理可能仍在使用；线程池的工作线程空闲后自动结束；
+		this.speculativePool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
 	@Override
 	public synchronized TransactionBatchProcess createNextBatch(HashDigest ledgerHash) {
 		TransactionBatchProcessor batch = batchs.get(ledgerHash);
@@ -81,7 +138,7 @@ public class TransactionEngineImpl implements TransactionEngine {
 		public InnerTransactionBatchProcessor(HashDigest ledgerHash, LedgerEditor newBlockEditor,
 				LedgerDataSet previousBlockDataset, OperationHandleRegisteration opHandles,
 				LedgerService ledgerService, long blockHeight) {
-			super(newBlockEditor, previousBlockDataset, opHandles, ledgerService);
+			super(newBlockEditor, previousBlockDataset, opHandles, ledgerService, txVerifier, speculativePool);
 			this.ledgerHash = ledgerHash;
 			this.blockHeight = blockHeight;
 		}
@@ -0,0 +1,157 @@
+package com.jd.blockchain.ledger.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 一批交易按数据依赖的分组；
+ * <p>
+ * 存在数据依赖（参见 {@link TransactionAccessSet#conflictsWith(TransactionAccessSet)}）的交易，直接或间接地划分在同一组；<br>
+ * 不同组的交易之间互不依赖，可以并行执行，各组内的交易仍然需要按原来的顺序执行；<br>
+ * 可能访问任何数据的交易与所有交易都存在依赖，此时全部交易划分为一组；
+ * <p>
+ * 可用的并行度以交易总数与最大的组的交易数之比表示，即按组并行执行时相对于串行执行的加速比的上限；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class TransactionPartition {
+
+	private final int transactionCount;
+
+	private final List<int[]> groups;
+
+	private final int maxGroupSize;
+
+	private TransactionPartition(int transactionCount, List<int[]> groups) {
+		this.transactionCount = transactionCount;
+		this.groups = Collections.unmodifiableList(groups);
+		int maxSize = 0;
+		for (int[] group : groups) {
+			maxSize = Math.max(maxSize, group.length);
+		}
+		this.maxGroupSize = maxSize;
+	}
+
+	/**
+	 * 对一批交易分组；
+	 *
+	 * @param accessSets
+	 *            按顺序排列的每一个交易的访问集合；
+	 * @return
+	 */
+	public static TransactionPartition partition(TransactionAccessSet[] accessSets) {
+		int count = accessSets.length;
+		int[] parents = new int[count];
+		boolean wildcard = false;
+		for (int i = 0; i < count; i++) {
+			parents[i] = i;
+			wildcard = wildcard || accessSets[i].isWildcard();
+		}
+		if (wildcard) {
+			for (int i = 1; i < count; i++) {
+				parents[i] = 0;
+			}
+		} else {
+			// 每一个键只需记录最近的写入者所在的组，以及此后的读取者；
+			Map<Bytes, Integer> writers = new HashMap<>();
+			Map<Bytes, List<Integer>> readers = new HashMap<>();
+			for (int i = 0; i < count; i++) {
+				TransactionAccessSet accessSet = accessSets[i];
+				for (Bytes key : accessSet.getReadingKeys()) {
+					Integer writer = writers.get(key);
+					if (writer != null) {
+						union(parents, writer, i);
+					}
+				}
+				for (Bytes key : accessSet.getWritingKeys()) {
+					Integer writer = writers.get(key);
+					if (writer != null) {
+						union(parents, writer, i);
+					}
+					List<Integer> keyReaders = readers.remove(key);
+					if (keyReaders != null) {
+						for (Integer reader : keyReaders) {
+							union(parents, reader, i);
+						}
+					}
+					writers.put(key, i);
+				}
+				for (Bytes key : accessSet.getReadingKeys()) {
+					if (!accessSet.getWritingKeys().contains(key)) {
+						readers.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+					}
+				}
+			}
+		}
+
+		// 各组按第一个交易的顺序排列，组内的交易保持原来的顺序；
+		Map<Integer, List<Integer>> groupMap = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			groupMap.computeIfAbsent(find(parents, i), k -> new ArrayList<>()).add(i);
+		}
+		List<int[]> groups = new ArrayList<>(groupMap.size());
+		for (List<Integer> members : groupMap.values()) {
+			int[] group = new int[members.size()];
+			for (int i = 0; i < group.length; i++) {
+				group[i] = members.get(i);
+			}
+			groups.add(group);
+		}
+		return new TransactionPartition(count, groups);
+	}
+
+	private static int find(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parents, int i, int j) {
+		int root1 = find(parents, i);
+		int root2 = find(parents, j);
+		if (root1 < root2) {
+			parents[root2] = root1;
+		} else if (root2 < root1) {
+			parents[root1] = root2;
+		}
+	}
+
+	public int getTransactionCount() {
+		return transactionCount;
+	}
+
+	/**
+	 * 交易的分组；每一组是交易在这一批中的序号，按升序排列；
+	 *
+	 * @return
+	 */
+	public List<int[]> getGroups() {
+		return groups;
+	}
+
+	public int getGroupCount() {
+		return groups.size();
+	}
+
+	public int getMaxGroupSize() {
+		return maxGroupSize;
+	}
+
+	/**
+	 * 可用的并行度；即交易总数与最大的组的交易数之比；没有交易时为 1；
+	 *
+	 * @return
+	 */
+	public double getParallelism() {
+		return maxGroupSize == 0 ? 1.0D : transactionCount * 1.0D / maxGroupSize;
+	}
+}
@@ -1,6 +1,9 @@
 package com.jd.blockchain.ledger.core.impl.handles;
 
+import com.jd.blockchain.contract.ContractCode;
+import com.jd.blockchain.contract.ContractEngine;
 import com.jd.blockchain.contract.ContractServiceProviders;
+import com.jd.blockchain.contract.model.ContractException;
 import com.jd.blockchain.contract.model.LocalContractEventContext;
 import com.jd.blockchain.ledger.ContractEventSendOperation;
 import com.jd.blockchain.ledger.Operation;
@@ -35,14 +38,27 @@ public class ContractEventSendOperationHandle implements OperationHandle {
 		try {
 			// 在调用方法前，需要加载上下文信息;
 			LocalContractEventContext localContractEventContext = new LocalContractEventContext(
-					requestContext.getRequest().getTransactionContent().getLedgerHash(),contract.getChainCode(), contractOP.getEvent());
+					requestContext.getRequest().getTransactionContent().getLedgerHash(), contractOP.getEvent());
 			localContractEventContext.setArgs(contractOP.getArgs()).setTransactionRequest(requestContext.getRequest()).
 					setLedgerContext(ledgerContext);
-			ContractServiceProviders.getProvider(CONTRACT_SERVICE_PROVIDER).getEngine().setupContract(
-					contract.getAddress().toBase58(),contract.getChaincodeVersion(),contract.getChainCode()).
-					processEvent(localContractEventContext);
+
+			// 先按合约地址和版本从合约引擎查找已加载的合约，只有未加载时才从账本读取合约代码；
+			ContractEngine engine = ContractServiceProviders.getProvider(CONTRACT_SERVICE_PROVIDER).getEngine();
+			String address = contract.getAddress().toBase58();
+			long version = contract.getChaincodeVersion();
+			ContractCode contractCode = engine.getContract(address, version);
+			if (contractCode == null) {
+				contractCode = engine.setupContract(address, version, contract.getChainCode(version));
+			}
+			contractCode.processEvent(localContractEventContext);
+		} catch (LedgerException e) {
+			throw e;
+		} catch (ContractException e) {
+			// 合约执行失败（包括执行预算耗尽），使交易失败；
+			throw new LedgerException(e.getMessage(), e);
 		} catch (Exception e) {
-			e.printStackTrace();
+			throw new LedgerException(String.format("Contract event processing failed! --[Address=%s][Event=%s] %s",
+					contractOP.getContractAddress(), contractOP.getEvent(), e.getMessage()), e);
 		}
 	}
 
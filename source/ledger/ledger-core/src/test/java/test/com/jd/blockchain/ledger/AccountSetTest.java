@@ -1,13 +1,17 @@
 package test.com.jd.blockchain.ledger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Iterator;
+
 import org.junit.Test;
 
 import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.AccountHeader;
 import com.jd.blockchain.ledger.BlockchainKeyGenerator;
 import com.jd.blockchain.ledger.BlockchainKeyPair;
 import com.jd.blockchain.ledger.core.AccountSet;
@@ -51,4 +55,38 @@ public class AccountSetTest {
 		assertEquals(userAcc.getPubKey(), reloadUserAcc.getPubKey());
 	}
 
+	/**
+	 * 测试按序号顺序遍历账户；
+	 */
+	@Test
+	public void testAccountIterator() {
+		OpeningAccessPolicy accessPolicy = new OpeningAccessPolicy();
+		MemoryKVStorage storage = new MemoryKVStorage();
+
+		CryptoConfig cryptoConf = new CryptoConfig();
+		cryptoConf.setAutoVerifyHash(true);
+		cryptoConf.setHashAlgorithm(CryptoAlgorithm.SHA256);
+
+		String keyPrefix = "";
+		AccountSet accset = new AccountSet(cryptoConf, keyPrefix, storage, storage, accessPolicy);
+		int count = 150;
+		for (int i = 0; i < count; i++) {
+			BlockchainKeyPair userKey = BlockchainKeyGenerator.getInstance().generate();
+			accset.register(userKey.getAddress(), userKey.getPubKey());
+		}
+		accset.commit();
+
+		AccountSet reloadAccSet = new AccountSet(accset.getRootHash(), cryptoConf, keyPrefix, storage, storage, true,
+				accessPolicy);
+		AccountHeader[] accounts = reloadAccSet.getAccounts(10, 130);
+		Iterator<AccountHeader> iterator = reloadAccSet.getAccountIterator(10, 130);
+		for (int i = 0; i < accounts.length; i++) {
+			assertTrue(iterator.hasNext());
+			AccountHeader account = iterator.next();
+			assertEquals(accounts[i].getAddress(), account.getAddress());
+			assertEquals(accounts[i].getPubKey(), account.getPubKey());
+		}
+		assertFalse(iterator.hasNext());
+	}
+
 }
@@ -1,12 +1,17 @@
 package test.com.jd.blockchain.ledger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,14 +43,18 @@ import com.jd.blockchain.ledger.core.CryptoConfig;
 import com.jd.blockchain.ledger.core.DataAccountSet;
 import com.jd.blockchain.ledger.core.LedgerDataSet;
 import com.jd.blockchain.ledger.core.LedgerEditor;
+import com.jd.blockchain.ledger.core.LedgerException;
 import com.jd.blockchain.ledger.core.LedgerRepository;
 import com.jd.blockchain.ledger.core.LedgerTransactionContext;
+import com.jd.blockchain.ledger.core.MerkleCommitEngine;
+import com.jd.blockchain.ledger.core.MerkleProofException;
 import com.jd.blockchain.ledger.core.UserAccount;
 import com.jd.blockchain.ledger.core.UserAccountSet;
 import com.jd.blockchain.ledger.core.impl.LedgerManager;
 import com.jd.blockchain.ledger.data.ConsensusParticipantData;
 import com.jd.blockchain.ledger.data.LedgerInitSettingData;
 import com.jd.blockchain.ledger.data.TxBuilder;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.utils.MemoryKVStorage;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.io.BytesUtils;
@@ -155,6 +164,168 @@ public class LedgerManagerTest {
 
 	}
 
+	@Test
+	public void testVerifyLedger() {
+		TamperableKVStorage storage = new TamperableKVStorage();
+		LedgerManager ledgerManager = new LedgerManager();
+		LedgerBlock genesisBlock = createGenesisBlock(ledgerManager, storage);
+		HashDigest ledgerHash = genesisBlock.getHash();
+		LedgerRepository ledgerRepo = ledgerManager.register(ledgerHash, storage);
+		LedgerBlock block1 = createDataAccountBlock(ledgerRepo);
+
+		// 校验区块以及全部的默克尔树节点；
+		LedgerManager verifier = new LedgerManager();
+		LedgerBlock verifiedBlock = verifier.verifyLedger(ledgerHash, storage, 1, block1.getHash());
+		assertEquals(block1.getHash(), verifiedBlock.getHash());
+		try {
+			// 最新的区块高于指定的高度；
+			verifier.verifyLedger(ledgerHash, storage, 0, ledgerHash);
+			fail("The ledger ahead of the expected height is verified!");
+		} catch (LedgerException e) {
+		}
+		try {
+			verifier.verifyLedger(ledgerHash, storage, 1, ledgerHash);
+			fail("Mismatched block hash is verified!");
+		} catch (LedgerException e) {
+		}
+
+		// 篡改用户的属性值，默克尔根不变，但是叶子节点的哈希不一致；
+		storage.tamper(BytesUtils.toBytes("Name"));
+		try {
+			verifier.verifyLedger(ledgerHash, storage, 1, block1.getHash());
+			fail("Tampered value is verified!");
+		} catch (MerkleProofException | LedgerException e) {
+		}
+	}
+
+	@Test
+	public void testCommitEngineLifecycle() {
+		MemoryKVStorage storage = new MemoryKVStorage();
+		LedgerManager ledgerManager = new LedgerManager();
+		HashDigest ledgerHash = createGenesisBlock(ledgerManager, storage).getHash();
+
+		MerkleCommitEngine engine = MerkleCommitEngine.create(2);
+		LedgerRepository ledgerRepo = ledgerManager.register(ledgerHash, storage, engine);
+		assertSame(engine, ledgerManager.getMerkleCommitEngine(ledgerHash));
+
+		// 以原来的提交引擎重新注册，提交引擎继续使用；
+		LedgerRepository reboundRepo = ledgerManager.register(ledgerHash, storage,
+				ledgerManager.getMerkleCommitEngine(ledgerHash));
+		assertFalse(engine.isClosed());
+		assertSame(reboundRepo, ledgerManager.getLedger(ledgerHash));
+		assertTrue(ledgerRepo != reboundRepo);
+		createDataAccountBlock(reboundRepo);
+
+		// 以不同的提交引擎重新注册，原来的提交引擎被关闭；
+		MerkleCommitEngine engine2 = MerkleCommitEngine.create(2);
+		ledgerManager.register(ledgerHash, storage, engine2);
+		assertTrue(engine.isClosed());
+		assertFalse(engine2.isClosed());
+
+		// 注销账本时关闭提交引擎；
+		ledgerManager.unregister(ledgerHash);
+		assertTrue(engine2.isClosed());
+		assertNull(ledgerManager.getMerkleCommitEngine(ledgerHash));
+	}
+
+	@Test
+	public void testHistoryCache() {
+		MemoryKVStorage storage = new MemoryKVStorage();
+		LedgerManager ledgerManager = new LedgerManager();
+		HashDigest ledgerHash = createGenesisBlock(ledgerManager, storage).getHash();
+		createDataAccountBlock(ledgerManager.register(ledgerHash, storage));
+
+		LedgerRepository reloadLedgerRepo = new LedgerManager().register(ledgerHash, storage);
+		LedgerBlock latestBlock = reloadLedgerRepo.getLatestBlock();
+		assertEquals(1, latestBlock.getHeight());
+
+		// 历史区块及其数据集被缓存，重复查询时复用；
+		LedgerBlock genesisBlock = reloadLedgerRepo.getBlock(0);
+		assertSame(genesisBlock, reloadLedgerRepo.getBlock(0));
+		LedgerDataSet genesisDataSet = reloadLedgerRepo.getDataSet(genesisBlock);
+		assertSame(genesisBlock, reloadLedgerRepo.getBlock(ledgerHash));
+		assertSame(genesisDataSet, reloadLedgerRepo.getDataSet(reloadLedgerRepo.getBlock(0)));
+		assertSame(genesisDataSet.getUserAccountSet(), reloadLedgerRepo.getUserAccountSet(genesisBlock));
+		assertSame(reloadLedgerRepo.getTransactionSet(genesisBlock),
+				reloadLedgerRepo.getTransactionSet(genesisBlock));
+
+		// 缓存的历史数据集不受后续区块的影响；
+		assertEquals(0, reloadLedgerRepo.getDataSet(genesisBlock).getDataAccountSet().getTotalCount());
+		assertEquals(1, reloadLedgerRepo.getDataAccountSet(latestBlock).getTotalCount());
+	}
+
+	@Test
+	public void testPrefetch() {
+		CountingKVStorage storage = new CountingKVStorage();
+		LedgerManager ledgerManager = new LedgerManager();
+		HashDigest ledgerHash = createGenesisBlock(ledgerManager, storage).getHash();
+		LedgerRepository ledgerRepo = ledgerManager.register(ledgerHash, storage);
+
+		LedgerEditor editor = ledgerRepo.createNextBlock();
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		BlockchainKeyPair dataKey = BlockchainKeyGenerator.getInstance().generate();
+		txBuilder.dataAccounts().register(dataKey.getIdentity());
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		txReqBuilder.signAsEndpoint(BlockchainKeyGenerator.getInstance().generate());
+		TransactionRequest txRequest = txReqBuilder.buildRequest();
+
+		// 预读交易将访问的账户，以批量读取访问原始存储；
+		int multiGetCount = storage.multiGetCount.get();
+		editor.prefetch(new TransactionRequest[] { txRequest });
+		assertTrue(storage.multiGetCount.get() > multiGetCount);
+
+		// 预读之后交易仍然正常执行；
+		LedgerTransactionContext txCtx = editor.newTransaction(txRequest);
+		txCtx.getDataSet().getDataAccountSet().register(dataKey.getAddress(), dataKey.getPubKey(), null);
+		txCtx.commit(TransactionState.SUCCESS);
+		LedgerBlock block1 = editor.prepare();
+		editor.commit();
+
+		assertEquals(1, block1.getHeight());
+		assertEquals(block1.getHash(), ledgerRepo.getLatestBlock().getHash());
+		assertEquals(1, ledgerRepo.getDataAccountSet(block1).getTotalCount());
+		assertNotNull(ledgerRepo.getDataAccountSet(block1).getDataAccount(dataKey.getAddress()));
+	}
+
+	/**
+	 * 创建账本，在创世区块中注册一个用户；
+	 */
+	private LedgerBlock createGenesisBlock(LedgerManager ledgerManager, MemoryKVStorage storage) {
+		LedgerEditor ldgEdt = ledgerManager.newLedger(createLedgerInitSetting(), storage);
+		TransactionRequest genesisTxReq = LedgerTestUtils.createTxRequest(null, signatureFunction);
+		LedgerTransactionContext txCtx = ldgEdt.newTransaction(genesisTxReq);
+		BlockchainKeyPair userKP = BlockchainKeyGenerator.getInstance().generate();
+		UserAccount userAccount = txCtx.getDataSet().getUserAccountSet().register(userKP.getAddress(),
+				userKP.getPubKey());
+		userAccount.setProperty("Name", "孙悟空", -1);
+		userAccount.setProperty("Age", "10000", -1);
+		txCtx.commit(TransactionState.SUCCESS);
+
+		LedgerBlock genesisBlock = ldgEdt.prepare();
+		ldgEdt.commit();
+		return genesisBlock;
+	}
+
+	/**
+	 * 生成新区块，注册一个数据账户；
+	 */
+	private LedgerBlock createDataAccountBlock(LedgerRepository ledgerRepo) {
+		LedgerEditor editor = ledgerRepo.createNextBlock();
+		TxBuilder txBuilder = new TxBuilder(ledgerRepo.getHash());
+		BlockchainKeyPair dataKey = BlockchainKeyGenerator.getInstance().generate();
+		txBuilder.dataAccounts().register(dataKey.getIdentity());
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		txReqBuilder.signAsEndpoint(BlockchainKeyGenerator.getInstance().generate());
+		TransactionRequest txRequest = txReqBuilder.buildRequest();
+
+		LedgerTransactionContext txCtx = editor.newTransaction(txRequest);
+		txCtx.getDataSet().getDataAccountSet().register(dataKey.getAddress(), dataKey.getPubKey(), null);
+		txCtx.commit(TransactionState.SUCCESS);
+		LedgerBlock block = editor.prepare();
+		editor.commit();
+		return block;
+	}
+
 
 
 	private void showStorageKeys(MemoryKVStorage storage) {
@@ -169,6 +340,87 @@ public class LedgerManagerTest {
 	}
 
 
+	/**
+	 * 记录批量读取次数的存储；
+	 */
+	private static class CountingKVStorage extends MemoryKVStorage {
+
+		private final AtomicInteger multiGetCount = new AtomicInteger();
+
+		@Override
+		public VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+			multiGetCount.incrementAndGet();
+			return super.multiGetLatest(keys);
+		}
+	}
+
+	/**
+	 * 可以篡改读取的值的存储；
+	 */
+	private static class TamperableKVStorage extends MemoryKVStorage {
+
+		private volatile byte[] tamperedKeySuffix;
+
+		/**
+		 * 篡改以指定后缀结尾的键的值；
+		 */
+		public void tamper(byte[] keySuffix) {
+			this.tamperedKeySuffix = keySuffix;
+		}
+
+		@Override
+		public byte[] get(Bytes key, long version) {
+			byte[] value = super.get(key, version);
+			return isTampered(key) ? alter(value) : value;
+		}
+
+		@Override
+		public VersioningKVEntry getEntry(Bytes key, long version) {
+			VersioningKVEntry entry = super.getEntry(key, version);
+			if (entry == null || !isTampered(key)) {
+				return entry;
+			}
+			byte[] value = alter(entry.getValue());
+			return new VersioningKVEntry() {
+				@Override
+				public Bytes getKey() {
+					return entry.getKey();
+				}
+
+				@Override
+				public long getVersion() {
+					return entry.getVersion();
+				}
+
+				@Override
+				public byte[] getValue() {
+					return value;
+				}
+			};
+		}
+
+		private boolean isTampered(Bytes key) {
+			byte[] suffix = tamperedKeySuffix;
+			if (suffix == null) {
+				return false;
+			}
+			byte[] keyBytes = key.toBytes();
+			if (keyBytes.length < suffix.length) {
+				return false;
+			}
+			return Arrays.equals(suffix, Arrays.copyOfRange(keyBytes, keyBytes.length - suffix.length, keyBytes.length));
+		}
+
+		private static byte[] alter(byte[] value) {
+			if (value == null || value.length == 0) {
+				return value;
+			}
+			byte[] tampered = value.clone();
+			tampered[tampered.length - 1] ^= 0x01;
+			return tampered;
+		}
+	}
+
 	private LedgerInitSetting createLedgerInitSetting() {
 		CryptoConfig defCryptoSetting = new CryptoConfig();
 		defCryptoSetting.setAutoVerifyHash(true);
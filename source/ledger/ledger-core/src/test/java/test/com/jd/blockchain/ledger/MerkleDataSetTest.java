@@ -1,12 +1,15 @@
 package test.com.jd.blockchain.ledger;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
@@ -364,4 +367,99 @@ public class MerkleDataSetTest {
 		private long maxVersion;
 
 	}
+	/**
+	 * 测试批量生成默克尔证明；
+	 */
+	/**
+	 * 测试按序号顺序遍历数据项；
+	 */
+	@Test
+	public void testIterator() {
+		String keyPrefix = "";
+		CryptoConfig cryptoConfig = new CryptoConfig();
+		cryptoConfig.setHashAlgorithm(CryptoAlgorithm.SHA256);
+		cryptoConfig.setAutoVerifyHash(true);
+
+		MemoryKVStorage storage = new MemoryKVStorage();
+
+		MerkleDataSet mds = new MerkleDataSet(cryptoConfig, keyPrefix, storage, storage);
+		int count = 300;
+		for (int i = 0; i < count; i++) {
+			mds.setValue("KEY-" + i, ("VALUE-" + i).getBytes(), -1);
+		}
+		mds.commit();
+		HashDigest rootHash = mds.getRootHash();
+
+		// 修改部分键的值，之前的快照中仍然是原来的版本；
+		for (int i = 0; i < count; i += 3) {
+			mds.setValue("KEY-" + i, ("VALUE-" + i + "-1").getBytes(), 0);
+		}
+		mds.commit();
+
+		MerkleDataSet mdsReload = new MerkleDataSet(mds.getRootHash(), cryptoConfig, keyPrefix, storage, storage,
+				true);
+		Iterator<VersioningKVEntry> entries = mdsReload.iterator(20, 200);
+		for (int i = 20; i < 220; i++) {
+			assertTrue(entries.hasNext());
+			VersioningKVEntry entry = entries.next();
+			assertEquals(Bytes.fromString("KEY-" + i), entry.getKey());
+			assertEquals(mdsReload.getVersion(entry.getKey()), entry.getVersion());
+			assertArrayEquals(mdsReload.getValue(entry.getKey()), entry.getValue());
+		}
+		assertFalse(entries.hasNext());
+
+		MerkleDataSet mdsHis = new MerkleDataSet(rootHash, cryptoConfig, keyPrefix, storage, storage, true);
+		entries = mdsHis.iterator(0, count);
+		int n = 0;
+		while (entries.hasNext()) {
+			VersioningKVEntry entry = entries.next();
+			assertEquals(0, entry.getVersion());
+			assertArrayEquals(("VALUE-" + n).getBytes(), entry.getValue());
+			n++;
+		}
+		assertEquals(count, n);
+
+		byte[][] values = mdsReload.getLatestValues(297, 3);
+		assertArrayEquals("VALUE-297-1".getBytes(), values[0]);
+		assertArrayEquals("VALUE-298".getBytes(), values[1]);
+		assertArrayEquals("VALUE-299".getBytes(), values[2]);
+	}
+
+	@Test
+	public void testBatchProofs() {
+		String keyPrefix = "";
+		CryptoConfig cryptoConfig = new CryptoConfig();
+		cryptoConfig.setHashAlgorithm(CryptoAlgorithm.SHA256);
+		cryptoConfig.setAutoVerifyHash(true);
+
+		MemoryKVStorage storage = new MemoryKVStorage();
+
+		MerkleDataSet mds = new MerkleDataSet(cryptoConfig, keyPrefix, storage, storage);
+		int count = 1000;
+		for (int i = 0; i < count; i++) {
+			mds.setValue("KEY-" + i, ("VALUE-" + i).getBytes(), -1);
+		}
+		mds.commit();
+
+		Bytes[] keys = new Bytes[count + 2];
+		for (int i = 0; i < count; i++) {
+			keys[i] = Bytes.fromString("KEY-" + (count - 1 - i));
+		}
+		keys[count] = Bytes.fromString("NOT-EXISTING-KEY");
+		keys[count + 1] = keys[0];
+
+		MerkleProof[] proofs = mds.getProofs(keys);
+		assertEquals(keys.length, proofs.length);
+		for (int i = 0; i < keys.length; i++) {
+			MerkleProof expProof = mds.getProof(keys[i]);
+			if (expProof == null) {
+				assertNull(proofs[i]);
+			} else {
+				assertEquals(expProof, proofs[i]);
+				assertEquals(keys[i], proofs[i].getDataNode().getKey());
+				assertEquals(mds.getRootHash(), proofs[i].getRootHash());
+			}
+		}
+		assertNull(proofs[count]);
+	}
 }
@@ -1,11 +1,16 @@
 package test.com.jd.blockchain.ledger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -17,10 +22,13 @@ import org.mockito.Mockito;
 import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.CryptoSetting;
+import com.jd.blockchain.ledger.core.MerkleCommitEngine;
 import com.jd.blockchain.ledger.core.MerkleDataNode;
 import com.jd.blockchain.ledger.core.MerkleNode;
+import com.jd.blockchain.ledger.core.MerkleNodeCache;
 import com.jd.blockchain.ledger.core.MerkleProof;
 import com.jd.blockchain.ledger.core.MerkleTree;
+import com.jd.blockchain.ledger.core.MerkleTreeContext;
 import com.jd.blockchain.storage.service.utils.ExistancePolicyKVStorageMap;
 import com.jd.blockchain.utils.Bytes;
 
@@ -79,6 +87,277 @@ public class MerkleTreeTest {
 		}
 	}
 
+	/**
+	 * 测试按序号顺序遍历数据节点；
+	 */
+	@Test
+	public void testIterator() {
+		Random rand = new Random();
+
+		CryptoSetting setting = Mockito.mock(CryptoSetting.class);
+		when(setting.getHashAlgorithm()).thenReturn(CryptoAlgorithm.SHA256);
+		when(setting.getAutoVerifyHash()).thenReturn(true);
+
+		ExistancePolicyKVStorageMap kvs1 = new ExistancePolicyKVStorageMap();
+		MerkleTree mkt = new MerkleTree(setting, Bytes.fromString(keyPrefix), kvs1);
+
+		// 数据节点跨越多个层级的路径节点；
+		int count = 600;
+		byte[] dataBuf = new byte[16];
+		for (int i = 0; i < count; i++) {
+			rand.nextBytes(dataBuf);
+			mkt.setData(i, "KEY-" + i, 0, dataBuf);
+		}
+		mkt.commit();
+		HashDigest rootHash = mkt.getRootHash();
+
+		// 重新加载，遍历的结果与逐个读取的一致；
+		mkt = new MerkleTree(rootHash, setting, keyPrefix, kvs1, false);
+		MerkleTree mkt2 = new MerkleTree(rootHash, setting, keyPrefix, kvs1, false);
+		Iterator<MerkleDataNode> iterator = mkt.iterator(10, 500);
+		for (int i = 10; i < 510; i++) {
+			assertTrue(iterator.hasNext());
+			MerkleDataNode dataNode = iterator.next();
+			MerkleDataNode expDataNode = mkt2.getData(i);
+			assertEquals(i, dataNode.getSN());
+			assertEquals(expDataNode.getNodeHash(), dataNode.getNodeHash());
+			assertEquals(expDataNode.getKey(), dataNode.getKey());
+			assertEquals(expDataNode.getVersion(), dataNode.getVersion());
+		}
+		assertFalse(iterator.hasNext());
+
+		// 超出数据节点的范围时只返回存在的数据节点；
+		iterator = mkt.iterator(590, 100);
+		int n = 0;
+		while (iterator.hasNext()) {
+			assertEquals(590 + n, iterator.next().getSN());
+			n++;
+		}
+		assertEquals(10, n);
+		assertFalse(mkt.iterator(count, 10).hasNext());
+
+		// 未提交的数据节点优先于已提交的数据节点；
+		rand.nextBytes(dataBuf);
+		MerkleDataNode updatedNode = mkt.setData(5, "KEY-5", 1, dataBuf);
+		MerkleDataNode newNode = mkt.setData(count, "KEY-" + count, 0, dataBuf);
+		iterator = mkt.iterator(0, Long.MAX_VALUE);
+		n = 0;
+		while (iterator.hasNext()) {
+			MerkleDataNode dataNode = iterator.next();
+			assertEquals(n, dataNode.getSN());
+			if (n == 5) {
+				assertSame(updatedNode, dataNode);
+			}
+			if (n == count) {
+				assertSame(newNode, dataNode);
+			}
+			n++;
+		}
+		assertEquals(count + 1, n);
+	}
+
+	/**
+	 * 测试通过节点缓存加载默克尔树；
+	 */
+	@Test
+	public void testNodeCache() {
+		Random rand = new Random();
+
+		CryptoSetting setting = Mockito.mock(CryptoSetting.class);
+		when(setting.getHashAlgorithm()).thenReturn(CryptoAlgorithm.SHA256);
+		when(setting.getAutoVerifyHash()).thenReturn(true);
+
+		ExistancePolicyKVStorageMap kvs1 = new ExistancePolicyKVStorageMap();
+		MerkleNodeCache nodeCache = new MerkleNodeCache(1024 * 1024);
+		MerkleTree mkt = new MerkleTree(null, setting, Bytes.fromString(keyPrefix), kvs1, false, nodeCache);
+
+		int count = 1024;
+		byte[] dataBuf = new byte[16];
+		MerkleDataNode[] dataNodes = new MerkleDataNode[count];
+		for (int i = 0; i < count; i++) {
+			rand.nextBytes(dataBuf);
+			dataNodes[i] = mkt.setData(i, "KEY-" + i, 0, dataBuf);
+		}
+		mkt.commit();
+		HashDigest rootHash = mkt.getRootHash();
+
+		// 新提交的节点都已放入缓存，因此即使从空的存储中也能完整地加载默克尔树；
+		assertTrue(nodeCache.getNodeCount() > count);
+		ExistancePolicyKVStorageMap emptyStorage = new ExistancePolicyKVStorageMap();
+		MerkleTree cachedMkt = new MerkleTree(rootHash, setting, Bytes.fromString(keyPrefix), emptyStorage, true,
+				nodeCache);
+		assertEquals(count, cachedMkt.getDataCount());
+		for (int i = 0; i < count; i++) {
+			MerkleDataNode dataNode = cachedMkt.getData(i);
+			assertEquals(dataNodes[i].getNodeHash(), dataNode.getNodeHash());
+			assertEquals(dataNodes[i].getKey(), dataNode.getKey());
+		}
+		assertEquals(0, nodeCache.getMissCount());
+		assertTrue(nodeCache.getHitCount() > count);
+
+		// 通过缓存加载的树被修改后，不影响缓存中的节点；
+		ExistancePolicyKVStorageMap kvs2 = new ExistancePolicyKVStorageMap();
+		MerkleTree mkt1 = new MerkleTree(rootHash, setting, Bytes.fromString(keyPrefix), kvs2, false, nodeCache);
+		MerkleTree mkt2 = new MerkleTree(rootHash, setting, Bytes.fromString(keyPrefix), kvs1, false);
+		rand.nextBytes(dataBuf);
+		mkt1.setData(count, "KEY-" + count, 0, dataBuf);
+		mkt2.setData(count, "KEY-" + count, 0, dataBuf);
+		mkt1.commit();
+		mkt2.commit();
+		assertEquals(mkt2.getRootHash(), mkt1.getRootHash());
+
+		cachedMkt = new MerkleTree(rootHash, setting, Bytes.fromString(keyPrefix), emptyStorage, true, nodeCache);
+		assertEquals(count, cachedMkt.getDataCount());
+		assertEquals(rootHash, cachedMkt.getRootHash());
+
+		// 超出容量时淘汰节点；
+		MerkleNodeCache smallCache = new MerkleNodeCache(4 * 1024);
+		MerkleTree mkt3 = new MerkleTree(rootHash, setting, Bytes.fromString(keyPrefix), kvs1, true, smallCache);
+		for (int i = 0; i < count; i++) {
+			mkt3.getData(i);
+		}
+		assertTrue(smallCache.getWeight() <= smallCache.getCapacity());
+		assertTrue(smallCache.getEvictionCount() > 0);
+	}
+
+	/**
+	 * 测试以并行方式提交的默克尔树与以串行方式提交的默克尔树一致；
+	 */
+	@Test
+	public void testParallelCommit() {
+		Random rand = new Random();
+
+		CryptoSetting setting = Mockito.mock(CryptoSetting.class);
+		when(setting.getHashAlgorithm()).thenReturn(CryptoAlgorithm.SHA256);
+		when(setting.getAutoVerifyHash()).thenReturn(true);
+
+		// 采用较小的分区，使每一层都以并行方式计算；
+		MerkleCommitEngine parallelEngine = MerkleCommitEngine.create(4, 4);
+		assertTrue(parallelEngine.isParallel());
+		assertEquals(4, parallelEngine.getParallelism());
+		assertFalse(MerkleCommitEngine.create(1).isParallel());
+
+		ExistancePolicyKVStorageMap kvs1 = new ExistancePolicyKVStorageMap();
+		ExistancePolicyKVStorageMap kvs2 = new ExistancePolicyKVStorageMap();
+		MerkleTree serialMkt = new MerkleTree(setting, Bytes.fromString(keyPrefix), kvs1);
+		MerkleTree parallelMkt = new MerkleTree(null, setting, Bytes.fromString(keyPrefix), kvs2, false,
+				new MerkleTreeContext(null, parallelEngine));
+
+		try {
+			// 多次提交，包括新增数据节点和更新已有的数据节点；
+			int count = 5000;
+			byte[] dataBuf = new byte[16];
+			long sn = 0;
+			for (int r = 0; r < 3; r++) {
+				for (int i = 0; i < count; i++) {
+					rand.nextBytes(dataBuf);
+					serialMkt.setData(sn, "KEY-" + sn, r, dataBuf);
+					parallelMkt.setData(sn, "KEY-" + sn, r, dataBuf);
+					sn++;
+				}
+				for (int i = 0; i < 100; i++) {
+					long updatingSN = rand.nextInt(count);
+					rand.nextBytes(dataBuf);
+					serialMkt.setData(updatingSN, "KEY-" + updatingSN, r + 1, dataBuf);
+					parallelMkt.setData(updatingSN, "KEY-" + updatingSN, r + 1, dataBuf);
+				}
+				serialMkt.commit();
+				parallelMkt.commit();
+
+				assertEquals(serialMkt.getRootHash(), parallelMkt.getRootHash());
+				assertEquals(serialMkt.getDataCount(), parallelMkt.getDataCount());
+				assertEquals(sn, parallelMkt.getDataCount());
+			}
+			assertEquals(kvs1.getCount(), kvs2.getCount());
+
+			// 重新加载；
+			MerkleTree reloadedMkt = new MerkleTree(parallelMkt.getRootHash(), setting, keyPrefix, kvs2, true);
+			assertEquals(sn, reloadedMkt.getDataCount());
+			for (int i = 0; i < sn; i++) {
+				assertEquals(serialMkt.getData(i).getNodeHash(), reloadedMkt.getData(i).getNodeHash());
+			}
+		} finally {
+			parallelEngine.close();
+		}
+	}
+
+	/**
+	 * 测试批量生成默克尔证明以及多重证明的编码；
+	 */
+	@Test
+	public void testBatchProofs() {
+		Random rand = new Random();
+
+		CryptoSetting setting = Mockito.mock(CryptoSetting.class);
+		when(setting.getHashAlgorithm()).thenReturn(CryptoAlgorithm.SHA256);
+		when(setting.getAutoVerifyHash()).thenReturn(true);
+
+		ExistancePolicyKVStorageMap kvs1 = new ExistancePolicyKVStorageMap();
+		MerkleTree mkt = new MerkleTree(setting, Bytes.fromString(keyPrefix), kvs1);
+		int count = 5000;
+		byte[] dataBuf = new byte[16];
+		for (int i = 0; i < count; i++) {
+			rand.nextBytes(dataBuf);
+			mkt.setData(i, "KEY-" + i, 0, dataBuf);
+		}
+		mkt.commit();
+		HashDigest rootHash = mkt.getRootHash();
+
+		// 乱序的序列号，包括重复的以及不存在的序列号；
+		long[] sns = new long[1000];
+		for (int i = 0; i < sns.length; i++) {
+			sns[i] = rand.nextInt(count);
+		}
+		sns[10] = sns[20];
+		sns[30] = count + 100;
+
+		// 从存储中重新加载，以检查批量加载的路径；
+		mkt = new MerkleTree(rootHash, setting, keyPrefix, kvs1, true);
+		MerkleProof[] proofs = mkt.getProofs(sns);
+		assertEquals(sns.length, proofs.length);
+		int existing = 0;
+		for (int i = 0; i < sns.length; i++) {
+			MerkleProof expProof = mkt.getProof(sns[i]);
+			if (expProof == null) {
+				assertNull(proofs[i]);
+				continue;
+			}
+			existing++;
+			assertEquals(sns[i], proofs[i].getSN());
+			assertEquals(expProof, proofs[i]);
+			assertEquals(expProof.toString(), proofs[i].toString());
+			assertEquals(rootHash, proofs[i].getRootHash());
+		}
+		assertNull(proofs[30]);
+		// 证明之间共享公共路径节点；
+		assertSame(proofs[0].getNode(proofs[0].getLevels()), proofs[1].getNode(proofs[1].getLevels()));
+
+		// 编码多重证明；
+		byte[] multiProofBytes = MerkleTree.encodeMultiProof(proofs);
+		int totalSize = 0;
+		for (MerkleProof proof : proofs) {
+			if (proof != null) {
+				totalSize += MerkleTree.encodeMultiProof(proof).length;
+			}
+		}
+		assertTrue(multiProofBytes.length < totalSize);
+
+		MerkleProof[] decodedProofs = MerkleTree.decodeMultiProof(multiProofBytes);
+		assertEquals(existing, decodedProofs.length);
+		long lastSN = -1;
+		for (MerkleProof decodedProof : decodedProofs) {
+			assertTrue(decodedProof.getSN() >= lastSN);
+			lastSN = decodedProof.getSN();
+			MerkleProof expProof = mkt.getProof(decodedProof.getSN());
+			assertEquals(expProof, decodedProof);
+			assertEquals(expProof.toString(), decodedProof.toString());
+			assertEquals(expProof.getDataNode().getKey(), decodedProof.getDataNode().getKey());
+			assertEquals(expProof.getDataNode().getVersion(), decodedProof.getDataNode().getVersion());
+		}
+
+		assertEquals(0, MerkleTree.decodeMultiProof(MerkleTree.encodeMultiProof()).length);
+	}
+
 	/**
 	 * 测试以单次提交的方式顺序地插入数据；
 	 */
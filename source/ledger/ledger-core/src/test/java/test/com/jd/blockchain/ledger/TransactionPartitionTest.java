@@ -0,0 +1,145 @@
+package test.com.jd.blockchain.ledger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jd.blockchain.binaryproto.DataContractRegistry;
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.CryptoUtils;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.BlockchainKeyGenerator;
+import com.jd.blockchain.ledger.BlockchainKeyPair;
+import com.jd.blockchain.ledger.ContractEventSendOperation;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation;
+import com.jd.blockchain.ledger.DataAccountRegisterOperation;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.UserRegisterOperation;
+import com.jd.blockchain.ledger.core.impl.ContractAccessDeclaration;
+import com.jd.blockchain.ledger.core.impl.TransactionAccessSet;
+import com.jd.blockchain.ledger.core.impl.TransactionPartition;
+import com.jd.blockchain.ledger.data.TxBuilder;
+import com.jd.blockchain.utils.Bytes;
+
+public class TransactionPartitionTest {
+
+	static {
+		DataContractRegistry.register(TransactionContent.class);
+		DataContractRegistry.register(UserRegisterOperation.class);
+		DataContractRegistry.register(DataAccountRegisterOperation.class);
+		DataContractRegistry.register(DataAccountKVSetOperation.class);
+		DataContractRegistry.register(ContractEventSendOperation.class);
+	}
+
+	private HashDigest ledgerHash = randomHash();
+
+	private Bytes accountA = BlockchainKeyGenerator.getInstance().generate().getAddress();
+
+	private Bytes accountB = BlockchainKeyGenerator.getInstance().generate().getAddress();
+
+	private BlockchainKeyPair accountC = BlockchainKeyGenerator.getInstance().generate();
+
+	private Bytes contract = BlockchainKeyGenerator.getInstance().generate().getAddress();
+
+	@Test
+	public void testPartition() {
+		TransactionContent[] contents = createContents();
+		TransactionAccessSet[] accessSets = new TransactionAccessSet[contents.length];
+		for (int i = 0; i < contents.length; i++) {
+			accessSets[i] = TransactionAccessSet.resolve(contents[i]);
+		}
+		assertTrue(accessSets[0].conflictsWith(accessSets[2]));
+		assertFalse(accessSets[0].conflictsWith(accessSets[1]));
+		// 写入同一个数据账户的不同的键，互不依赖；
+		assertFalse(accessSets[0].conflictsWith(accessSets[5]));
+		// 依赖同一批中注册的数据账户；
+		assertTrue(accessSets[3].conflictsWith(accessSets[4]));
+
+		TransactionPartition partition = TransactionPartition.partition(accessSets);
+		assertEquals(7, partition.getTransactionCount());
+		assertEquals(5, partition.getGroupCount());
+		assertArrayEquals(new int[] { 0, 2 }, partition.getGroups().get(0));
+		assertArrayEquals(new int[] { 1 }, partition.getGroups().get(1));
+		assertArrayEquals(new int[] { 3, 4 }, partition.getGroups().get(2));
+		assertArrayEquals(new int[] { 5 }, partition.getGroups().get(3));
+		assertArrayEquals(new int[] { 6 }, partition.getGroups().get(4));
+		assertEquals(2, partition.getMaxGroupSize());
+		assertEquals(3.5D, partition.getParallelism(), 0.0001D);
+	}
+
+	@Test
+	public void testContractWildcard() {
+		TransactionContent[] contents = createContents();
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.contractEvents().send(contract, "transfer", new byte[] { 1 });
+		TransactionContent contractContent = txBuilder.prepareContent();
+
+		// 未声明访问数据的合约调用与所有交易都存在依赖；
+		TransactionAccessSet[] accessSets = new TransactionAccessSet[contents.length + 1];
+		for (int i = 0; i < contents.length; i++) {
+			accessSets[i] = TransactionAccessSet.resolve(contents[i]);
+		}
+		accessSets[contents.length] = TransactionAccessSet.resolve(contractContent);
+		assertTrue(accessSets[contents.length].isWildcard());
+		TransactionPartition partition = TransactionPartition.partition(accessSets);
+		assertEquals(1, partition.getGroupCount());
+		assertEquals(1.0D, partition.getParallelism(), 0.0001D);
+
+		// 已声明访问数据的合约调用；
+		ContractAccessDeclaration declaration = (op, accessSet) -> {
+			if (!contract.equals(op.getContractAddress())) {
+				return false;
+			}
+			accessSet.writeData(accountB, "b");
+			return true;
+		};
+		accessSets[contents.length] = TransactionAccessSet.resolve(contractContent, declaration);
+		assertFalse(accessSets[contents.length].isWildcard());
+		partition = TransactionPartition.partition(accessSets);
+		assertEquals(5, partition.getGroupCount());
+		assertArrayEquals(new int[] { 1, 7 }, partition.getGroups().get(1));
+	}
+
+	private TransactionContent[] createContents() {
+		TransactionContent[] contents = new TransactionContent[7];
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(accountA).set("a", "a-0", -1);
+		contents[0] = txBuilder.prepareContent();
+
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(accountB).set("b", "b-0", -1);
+		contents[1] = txBuilder.prepareContent();
+
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(accountA).set("a", "a-1", 0);
+		contents[2] = txBuilder.prepareContent();
+
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(accountC.getIdentity());
+		contents[3] = txBuilder.prepareContent();
+
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(accountC.getAddress()).set("c", "c-0", -1);
+		contents[4] = txBuilder.prepareContent();
+
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(accountA).set("x", "x-0", -1);
+		contents[5] = txBuilder.prepareContent();
+
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.users().register(BlockchainKeyGenerator.getInstance().generate().getIdentity());
+		contents[6] = txBuilder.prepareContent();
+		return contents;
+	}
+
+	private static HashDigest randomHash() {
+		byte[] data = new byte[64];
+		new Random().nextBytes(data);
+		return CryptoUtils.hash(CryptoAlgorithm.SHA256).hash(data);
+	}
+}
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.security.KeyFactory;
+import java.util.Iterator;
 import java.util.Random;
 
 import com.jd.blockchain.binaryproto.DataContractRegistry;
@@ -131,6 +132,11 @@ public class TransactionSetTest {
 		assertEquals(tx.getUserAccountSetHash(), reloadTx.getUserAccountSetHash());
 		assertEquals(TransactionState.SUCCESS, reloadTx.getExecutionState());
 
+		Iterator<LedgerTransaction> txIterator = reloadTxset.getTxIterator(0, 1);
+		assertTrue(txIterator.hasNext());
+		assertEquals(tx.getHash(), txIterator.next().getHash());
+		assertFalse(txIterator.hasNext());
+
 		DigitalSignature[] expEndpointSignatures = tx.getEndpointSignatures();
 		DigitalSignature[] actualEndpointSignatures = reloadTx.getEndpointSignatures();
 		assertEquals(expEndpointSignatures.length, actualEndpointSignatures.length);
@@ -0,0 +1,342 @@
+package test.com.jd.blockchain.ledger;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.jd.blockchain.binaryproto.DataContractRegistry;
+import com.jd.blockchain.crypto.AddressEncoding;
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.CryptoUtils;
+import com.jd.blockchain.crypto.asymmetric.CryptoKeyPair;
+import com.jd.blockchain.crypto.asymmetric.SignatureFunction;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.BlockBody;
+import com.jd.blockchain.ledger.BlockchainKeyGenerator;
+import com.jd.blockchain.ledger.BlockchainKeyPair;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation;
+import com.jd.blockchain.ledger.DataAccountRegisterOperation;
+import com.jd.blockchain.ledger.LedgerBlock;
+import com.jd.blockchain.ledger.LedgerInitSetting;
+import com.jd.blockchain.ledger.Operation;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.ledger.TransactionRequestBuilder;
+import com.jd.blockchain.ledger.TransactionResponse;
+import com.jd.blockchain.ledger.TransactionState;
+import com.jd.blockchain.ledger.UserRegisterOperation;
+import com.jd.blockchain.ledger.core.CryptoConfig;
+import com.jd.blockchain.ledger.core.DataAccount;
+import com.jd.blockchain.ledger.core.LedgerDataSet;
+import com.jd.blockchain.ledger.core.LedgerEditor;
+import com.jd.blockchain.ledger.core.LedgerException;
+import com.jd.blockchain.ledger.core.LedgerRepository;
+import com.jd.blockchain.ledger.core.LedgerService;
+import com.jd.blockchain.ledger.core.LedgerTransactionContext;
+import com.jd.blockchain.ledger.core.OperationHandle;
+import com.jd.blockchain.ledger.core.TransactionRequestContext;
+import com.jd.blockchain.ledger.core.impl.DefaultOperationHandleRegisteration;
+import com.jd.blockchain.ledger.core.impl.LedgerManager;
+import com.jd.blockchain.ledger.core.impl.OperationHandleContext;
+import com.jd.blockchain.ledger.core.impl.OperationHandleRegisteration;
+import com.jd.blockchain.ledger.core.impl.TransactionBatchProcessor;
+import com.jd.blockchain.ledger.data.ConsensusParticipantData;
+import com.jd.blockchain.ledger.data.LedgerInitSettingData;
+import com.jd.blockchain.ledger.data.TxBuilder;
+import com.jd.blockchain.ledger.service.TransactionBatchResultHandle;
+import com.jd.blockchain.storage.service.utils.MemoryKVStorage;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesUtils;
+import com.jd.blockchain.utils.net.NetworkAddress;
+
+public class TransactionSpeculationTest {
+
+	static {
+		DataContractRegistry.register(TransactionContent.class);
+		DataContractRegistry.register(UserRegisterOperation.class);
+		DataContractRegistry.register(DataAccountRegisterOperation.class);
+		DataContractRegistry.register(DataAccountKVSetOperation.class);
+		DataContractRegistry.register(BlockBody.class);
+	}
+
+	private static SignatureFunction signatureFunction = CryptoUtils.sign(CryptoAlgorithm.ED25519);
+
+	/**
+	 * 推测执行与串行执行生成的区块完全一致；
+	 */
+	@Test
+	public void testSpeculativeExecution() {
+		LedgerInitSetting initSetting = createLedgerInitSetting();
+		TransactionRequest genesisTxReq = LedgerTestUtils.createTxRequest(null, signatureFunction);
+		BlockchainKeyPair userKey = BlockchainKeyGenerator.getInstance().generate();
+
+		LedgerManager serialManager = new LedgerManager();
+		LedgerRepository serialLedger = createLedger(serialManager, initSetting, genesisTxReq, userKey);
+		LedgerManager speculativeManager = new LedgerManager();
+		LedgerRepository speculativeLedger = createLedger(speculativeManager, initSetting, genesisTxReq, userKey);
+		HashDigest ledgerHash = serialLedger.getHash();
+		assertEquals(ledgerHash, speculativeLedger.getHash());
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		// 第 1 个区块：注册数据账户；
+		BlockchainKeyPair dataKey1 = BlockchainKeyGenerator.getInstance().generate();
+		BlockchainKeyPair dataKey2 = BlockchainKeyGenerator.getInstance().generate();
+		List<TransactionRequest> requests = new ArrayList<>();
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(dataKey1.getIdentity());
+		requests.add(sign(txBuilder, userKey));
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(dataKey2.getIdentity());
+		requests.add(sign(txBuilder, userKey));
+
+		assertSameBlock(serialManager, serialLedger, speculativeManager, speculativeLedger, pool, requests);
+
+		// 第 2 个区块：写入互不相关的数据账户，以及依赖同一区块中之前的交易的写入；
+		BlockchainKeyPair dataKey3 = BlockchainKeyGenerator.getInstance().generate();
+		requests = new ArrayList<>();
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey1.getAddress()).set("A", "A-0", -1);
+		requests.add(sign(txBuilder, userKey));
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey2.getAddress()).set("B", "B-0", -1);
+		requests.add(sign(txBuilder, userKey));
+		// 依赖第 1 个交易写入的版本；
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey1.getAddress()).set("A", "A-1", 0);
+		requests.add(sign(txBuilder, userKey));
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(dataKey3.getIdentity());
+		requests.add(sign(txBuilder, userKey));
+		// 依赖前一个交易注册的数据账户；
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey3.getAddress()).set("C", "C-0", -1);
+		requests.add(sign(txBuilder, userKey));
+		// 未注册的签名者；
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey2.getAddress()).set("D", "D-0", -1);
+		requests.add(sign(txBuilder, BlockchainKeyGenerator.getInstance().generate()));
+
+		int replayedCount = assertSameBlock(serialManager, serialLedger, speculativeManager, speculativeLedger, pool,
+				requests);
+		// 前两个交易、注册数据账户的交易以及签名者未注册的交易可以直接重放，另外两个交易重新执行；
+		assertEquals(4, replayedCount);
+
+		DataAccount account1 = speculativeLedger.getDataAccountSet(speculativeLedger.getLatestBlock())
+				.getDataAccount(dataKey1.getAddress());
+		assertEquals(1, account1.getDataVersion("A"));
+		DataAccount account3 = speculativeLedger.getDataAccountSet(speculativeLedger.getLatestBlock())
+				.getDataAccount(dataKey3.getAddress());
+		assertEquals(0, account3.getDataVersion("C"));
+
+		pool.shutdown();
+	}
+
+	/**
+	 * 重放时发起的操作的结果与推测执行不一致，丢弃重放的结果重新执行，生成的区块与串行执行一致；
+	 */
+	@Test
+	public void testReplayMismatch() {
+		LedgerInitSetting initSetting = createLedgerInitSetting();
+		TransactionRequest genesisTxReq = LedgerTestUtils.createTxRequest(null, signatureFunction);
+		BlockchainKeyPair userKey = BlockchainKeyGenerator.getInstance().generate();
+
+		LedgerManager serialManager = new LedgerManager();
+		LedgerRepository serialLedger = createLedger(serialManager, initSetting, genesisTxReq, userKey);
+		LedgerManager speculativeManager = new LedgerManager();
+		LedgerRepository speculativeLedger = createLedger(speculativeManager, initSetting, genesisTxReq, userKey);
+		HashDigest ledgerHash = serialLedger.getHash();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		// 第 1 个区块：注册数据账户；
+		BlockchainKeyPair dataKey1 = BlockchainKeyGenerator.getInstance().generate();
+		BlockchainKeyPair dataKey2 = BlockchainKeyGenerator.getInstance().generate();
+		List<TransactionRequest> requests = new ArrayList<>();
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(dataKey1.getIdentity());
+		txBuilder.dataAccounts().register(dataKey2.getIdentity());
+		requests.add(sign(txBuilder, userKey));
+		assertSameBlock(serialManager, serialLedger, speculativeManager, speculativeLedger, pool, requests);
+
+		// 第 2 个区块：一个无关的交易之后，发起的操作在推测执行时成功，在重放和串行执行时失败；
+		CompositeOperationHandles serialHandles = new CompositeOperationHandles(ledgerHash, dataKey1.getAddress());
+		CompositeOperationHandles speculativeHandles = new CompositeOperationHandles(ledgerHash,
+				dataKey1.getAddress());
+		requests = new ArrayList<>();
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey2.getAddress()).set("B", "B-0", -1);
+		requests.add(sign(txBuilder, userKey));
+		txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(dataKey1.getAddress()).set(CompositeOperationHandles.COMPOSITE_KEY, "C-0", -1);
+		requests.add(sign(txBuilder, userKey));
+
+		int replayedCount = assertSameBlock(serialManager, serialLedger, serialHandles, speculativeManager,
+				speculativeLedger, speculativeHandles, pool, requests);
+		// 只有无关的交易可以直接重放；
+		assertEquals(1, replayedCount);
+
+		DataAccount account1 = speculativeLedger.getDataAccountSet(speculativeLedger.getLatestBlock())
+				.getDataAccount(dataKey1.getAddress());
+		assertEquals(-1, account1.getDataVersion(CompositeOperationHandles.NESTED_KEY));
+		assertEquals(0, account1.getDataVersion(CompositeOperationHandles.FALLBACK_KEY));
+		DataAccount account2 = speculativeLedger.getDataAccountSet(speculativeLedger.getLatestBlock())
+				.getDataAccount(dataKey2.getAddress());
+		assertEquals(0, account2.getDataVersion("B"));
+
+		pool.shutdown();
+	}
+
+	private int assertSameBlock(LedgerManager serialManager, LedgerRepository serialLedger,
+			LedgerManager speculativeManager, LedgerRepository speculativeLedger, ForkJoinPool pool,
+			List<TransactionRequest> requests) {
+		return assertSameBlock(serialManager, serialLedger, new DefaultOperationHandleRegisteration(),
+				speculativeManager, speculativeLedger, new DefaultOperationHandleRegisteration(), pool, requests);
+	}
+
+	private int assertSameBlock(LedgerManager serialManager, LedgerRepository serialLedger,
+			OperationHandleRegisteration serialHandles, LedgerManager speculativeManager,
+			LedgerRepository speculativeLedger, OperationHandleRegisteration speculativeHandles, ForkJoinPool pool,
+			List<TransactionRequest> requests) {
+		TransactionRequest[] reqs = requests.toArray(new TransactionRequest[requests.size()]);
+
+		TransactionBatchProcessor serialBatch = new TransactionBatchProcessor(serialLedger.createNextBlock(),
+				serialLedger.getDataSet(serialLedger.getLatestBlock()), serialHandles, serialManager);
+		TransactionBatchProcessor speculativeBatch = new TransactionBatchProcessor(
+				speculativeLedger.createNextBlock(), speculativeLedger.getDataSet(speculativeLedger.getLatestBlock()),
+				speculativeHandles, speculativeManager, null, pool);
+
+		serialBatch.prefetch(reqs);
+		speculativeBatch.prefetch(reqs);
+		if (serialHandles instanceof CompositeOperationHandles) {
+			((CompositeOperationHandles) serialHandles).failNested = true;
+		}
+		if (speculativeHandles instanceof CompositeOperationHandles) {
+			((CompositeOperationHandles) speculativeHandles).failNested = true;
+		}
+		for (TransactionRequest req : reqs) {
+			TransactionResponse serialResp = serialBatch.schedule(req);
+			TransactionResponse speculativeResp = speculativeBatch.schedule(req);
+			assertEquals(serialResp.getExecutionState(), speculativeResp.getExecutionState());
+		}
+
+		TransactionBatchResultHandle serialResult = serialBatch.prepare();
+		TransactionBatchResultHandle speculativeResult = speculativeBatch.prepare();
+		assertEquals(serialResult.getBlock().getHash(), speculativeResult.getBlock().getHash());
+		serialResult.commit();
+		speculativeResult.commit();
+
+		assertEquals(reqs.length, speculativeBatch.getPartition().getTransactionCount());
+		assertEquals(0, serialBatch.getReplayedCount());
+		return speculativeBatch.getReplayedCount();
+	}
+
+	private static TransactionRequest sign(TxBuilder txBuilder, BlockchainKeyPair endpointKey) {
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		txReqBuilder.signAsEndpoint(endpointKey);
+		return txReqBuilder.buildRequest();
+	}
+
+	private LedgerRepository createLedger(LedgerManager ledgerManager, LedgerInitSetting initSetting,
+			TransactionRequest genesisTxReq, BlockchainKeyPair userKey) {
+		MemoryKVStorage storage = new MemoryKVStorage();
+		LedgerEditor ldgEdt = ledgerManager.newLedger(initSetting, storage);
+		LedgerTransactionContext txCtx = ldgEdt.newTransaction(genesisTxReq);
+		txCtx.getDataSet().getUserAccountSet().register(userKey.getAddress(), userKey.getPubKey());
+		txCtx.commit(TransactionState.SUCCESS);
+		LedgerBlock genesisBlock = ldgEdt.prepare();
+		ldgEdt.commit();
+		return ledgerManager.register(genesisBlock.getHash(), storage);
+	}
+
+	/**
+	 * 以写入指定键的操作模拟发起其它操作的操作；发起的操作失败时，由发起方写入另一个键；
+	 * <p>
+	 * 通过 {@link #failNested} 模拟发起的操作在推测执行之后结果发生变化；
+	 */
+	private static class CompositeOperationHandles implements OperationHandleRegisteration {
+
+		private static final String COMPOSITE_KEY = "COMPOSITE";
+
+		private static final String NESTED_KEY = "NESTED";
+
+		private static final String FALLBACK_KEY = "FALLBACK";
+
+		private OperationHandleRegisteration defaultHandles = new DefaultOperationHandleRegisteration();
+
+		private Operation nestedOp;
+
+		private Operation fallbackOp;
+
+		private volatile boolean failNested;
+
+		public CompositeOperationHandles(HashDigest ledgerHash, Bytes accountAddress) {
+			TxBuilder txBuilder = new TxBuilder(ledgerHash);
+			txBuilder.dataAccount(accountAddress).set(NESTED_KEY, "N-0", -1);
+			nestedOp = txBuilder.prepareContent().getOperations()[0];
+			txBuilder = new TxBuilder(ledgerHash);
+			txBuilder.dataAccount(accountAddress).set(FALLBACK_KEY, "F-0", -1);
+			fallbackOp = txBuilder.prepareContent().getOperations()[0];
+		}
+
+		@Override
+		public OperationHandle getHandle(Class<?> operationType) {
+			OperationHandle handle = defaultHandles.getHandle(operationType);
+			if (!DataAccountKVSetOperation.class.isAssignableFrom(operationType)) {
+				return handle;
+			}
+			return new OperationHandle() {
+				@Override
+				public boolean support(Class<?> operationType) {
+					return handle.support(operationType);
+				}
+
+				@Override
+				public void process(Operation op, LedgerDataSet newBlockDataset,
+						TransactionRequestContext requestContext, LedgerDataSet previousBlockDataset,
+						OperationHandleContext handleContext, LedgerService ledgerService) {
+					String key = ((DataAccountKVSetOperation) op).getWriteSet()[0].getKey();
+					if (COMPOSITE_KEY.equals(key)) {
+						try {
+							handleContext.handle(nestedOp);
+						} catch (LedgerException e) {
+							handleContext.handle(fallbackOp);
+						}
+						return;
+					}
+					if (NESTED_KEY.equals(key) && failNested) {
+						throw new LedgerException("Nested operation fail!");
+					}
+					handle.process(op, newBlockDataset, requestContext, previousBlockDataset, handleContext,
+							ledgerService);
+				}
+			};
+		}
+	}
+
+	private LedgerInitSetting createLedgerInitSetting() {
+		CryptoConfig defCryptoSetting = new CryptoConfig();
+		defCryptoSetting.setAutoVerifyHash(true);
+		defCryptoSetting.setHashAlgorithm(CryptoAlgorithm.SHA256);
+
+		LedgerInitSettingData initSetting = new LedgerInitSettingData();
+		initSetting.setLedgerSeed(BytesUtils.toBytes("A Test Ledger seed!", "UTF-8"));
+		initSetting.setCryptoSetting(defCryptoSetting);
+		ConsensusParticipantData[] parties = new ConsensusParticipantData[4];
+		for (int i = 0; i < parties.length; i++) {
+			parties[i] = new ConsensusParticipantData();
+			parties[i].setId(i);
+			parties[i].setName("Node-" + i);
+			CryptoKeyPair kp = CryptoUtils.sign(CryptoAlgorithm.ED25519).generateKeyPair();
+			parties[i].setPubKey(kp.getPubKey());
+			parties[i].setAddress(AddressEncoding.generateAddress(kp.getPubKey()).toBase58());
+			parties[i].setHostAddress(new NetworkAddress("127.0.0.1", 9000 + i * 10));
+		}
+		initSetting.setConsensusParticipants(parties);
+		return initSetting;
+	}
+}
@@ -0,0 +1,35 @@
+package com.jd.blockchain.ledger.data;
+
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.ledger.TransactionResponse;
+import com.jd.blockchain.utils.concurrent.AsyncFuture;
+
+/**
+ * 异步的交易服务；
+ * <p>
+ * 提交交易请求后立即返回，不必等待交易所在的区块提交，交易的结果通过 {@link AsyncFuture} 回调获得；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public interface AsyncTransactionService extends TransactionService {
+
+	/**
+	 * 异步地处理交易请求；
+	 * <p>
+	 * 如果待处理的交易过多，返回的 {@link AsyncFuture} 以异常结束，由调用者决定是否重试；
+	 * 
+	 * @param txRequest
+	 * @return
+	 */
+	AsyncFuture<TransactionResponse> processAsync(TransactionRequest txRequest);
+
+	/**
+	 * 同步地处理交易请求；此方法将堵塞当前线程直至交易处理完成；
+	 */
+	@Override
+	default TransactionResponse process(TransactionRequest txRequest) {
+		return processAsync(txRequest).get();
+	}
+
+}
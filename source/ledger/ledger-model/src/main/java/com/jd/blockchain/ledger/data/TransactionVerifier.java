@@ -0,0 +1,404 @@
+package com.jd.blockchain.ledger.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.CryptoUtils;
+import com.jd.blockchain.crypto.asymmetric.PrivKey;
+import com.jd.blockchain.crypto.asymmetric.PubKey;
+import com.jd.blockchain.crypto.asymmetric.SignatureDigest;
+import com.jd.blockchain.crypto.asymmetric.SignatureFunction;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.crypto.hash.Hasher;
+import com.jd.blockchain.ledger.DigitalSignature;
+import com.jd.blockchain.ledger.NodeRequest;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.TransactionContentBody;
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesUtils;
+
+/**
+ * 交易请求的签名验证器；
+ * <p>
+ * 验证交易请求的全部终端签名和节点签名，签名的内容是交易内容的序列化结果（参见 {@link PreparedTx#sign}）；<br>
+ * 同时兼容以交易内容哈希作为签名内容的方式（参见 {@link TxRequestBuilder#sign(TransactionContent, PrivKey)}）；<br>
+ * 节点签名还兼容旧版网关的签名方式：以网关收到的交易请求（包括交易内容、终端签名、之前的节点签名以及客户端计算的请求哈希，参见
+ * {@link TxRequestBuilder#buildRequest()}）的序列化结果为签名内容；使得共识节点升级之后，尚未升级的网关提交的交易仍然有效；
+ * <p>
+ * 交易内容哈希由客户端提供，因此在验证任何签名、查询缓存之前，先根据交易内容重新计算哈希并与之比较，不一致的交易请求直接视为验证不通过；<br>
+ * 这使得以哈希为签名内容的签名以及以哈希为键的缓存都与交易内容绑定；
+ * <p>
+ * 批量验证时交易请求分段在线程池中并行执行，每一段的签名按算法分组批量验证；<br>
+ * 验证通过的签名以交易内容哈希、公钥和签名摘要为键记录在有界的缓存中，再次验证同一个签名时直接返回结果，
+ * 例如共识之前已经预先验证的交易在执行时不再重复验证；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class TransactionVerifier {
+
+	/**
+	 * 默认的缓存的签名数量；
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 64 * 1024;
+
+	/**
+	 * 串行且不缓存结果的验证器；
+	 */
+	public static final TransactionVerifier SERIAL = new TransactionVerifier(null, 0);
+
+	private final ForkJoinPool pool;
+
+	private final Map<Bytes, Boolean> verifiedCache;
+
+	/**
+	 * @param pool
+	 *            并行验证的线程池；如果为 null，则以串行方式验证；
+	 * @param cacheSize
+	 *            缓存的签名数量；小于或等于 0 时不缓存；
+	 */
+	public TransactionVerifier(ForkJoinPool pool, int cacheSize) {
+		this.pool = pool;
+		this.verifiedCache = cacheSize > 0 ? Collections.synchronizedMap(new VerifiedCache(cacheSize)) : null;
+	}
+
+	/**
+	 * 创建验证器；
+	 *
+	 * @param parallelism
+	 *            并行度；小于或等于 1 时以串行方式验证；
+	 * @return
+	 */
+	public static TransactionVerifier create(int parallelism) {
+		return create(parallelism, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * 创建验证器；
+	 *
+	 * @param parallelism
+	 *            并行度；小于或等于 1 时以串行方式验证；
+	 * @param cacheSize
+	 *            缓存的签名数量；小于或等于 0 时不缓存；
+	 * @return
+	 */
+	public static TransactionVerifier create(int parallelism, int cacheSize) {
+		return new TransactionVerifier(parallelism > 1 ? new ForkJoinPool(parallelism) : null, cacheSize);
+	}
+
+	/**
+	 * 并行度；串行方式时为 1；
+	 *
+	 * @return
+	 */
+	public int getParallelism() {
+		return pool == null ? 1 : pool.getParallelism();
+	}
+
+	/**
+	 * 批量验证交易请求；
+	 * <p>
+	 * 交易请求按并行度分为若干段，每一段的签名按算法分组后以
+	 * {@link SignatureFunction#verifyBatch(SignatureDigest[], PubKey[], byte[][])} 批量验证；
+	 *
+	 * @param requests
+	 *            交易请求列表；
+	 * @return 按顺序对应每一个交易请求的验证结果；
+	 */
+	public boolean[] verify(TransactionRequest[] requests) {
+		boolean[] results = new boolean[requests.length];
+		if (pool == null || requests.length < 2) {
+			verifyRange(requests, 0, requests.length, results);
+			return results;
+		}
+		int partitions = Math.min(pool.getParallelism(), requests.length);
+		int partitionSize = (requests.length + partitions - 1) / partitions;
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+		for (int from = 0; from < requests.length; from += partitionSize) {
+			final int start = from;
+			final int end = Math.min(from + partitionSize, requests.length);
+			tasks.add(pool.submit(() -> verifyRange(requests, start, end, results)));
+		}
+		for (ForkJoinTask<?> task : tasks) {
+			task.join();
+		}
+		return results;
+	}
+
+	/**
+	 * 验证交易请求的全部终端签名和节点签名；
+	 *
+	 * @param request
+	 *            交易请求；
+	 * @return 全部签名都验证通过时返回 true；
+	 */
+	public boolean verify(TransactionRequest request) {
+		boolean[] results = new boolean[1];
+		verifyRange(new TransactionRequest[] { request }, 0, 1, results);
+		return results[0];
+	}
+
+	/**
+	 * 验证指定范围的交易请求，结果写入 results 的对应位置；
+	 * <p>
+	 * 先收集未缓存的签名，按算法分组后以交易内容的序列化结果为签名内容批量验证；<br>
+	 * 未通过的签名再以交易内容哈希为签名内容逐个验证；
+	 */
+	private void verifyRange(TransactionRequest[] requests, int from, int to, boolean[] results) {
+		Map<CryptoAlgorithm, List<PendingSignature>> pendings = new LinkedHashMap<>();
+		List<PendingSignature> all = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			results[i] = true;
+			TransactionContent txContent = requests[i].getTransactionContent();
+			if (txContent == null) {
+				results[i] = false;
+				continue;
+			}
+			SignedContent content = new SignedContent(requests[i]);
+			if (!content.verifyHash()) {
+				// 声明的哈希与交易内容不一致；
+				results[i] = false;
+				continue;
+			}
+			if (!collect(requests[i].getEndpointSignatures(), false, content, i, pendings, all)
+					|| !collect(requests[i].getNodeSignatures(), true, content, i, pendings, all)) {
+				results[i] = false;
+			}
+		}
+
+		for (Map.Entry<CryptoAlgorithm, List<PendingSignature>> entry : pendings.entrySet()) {
+			List<PendingSignature> group = entry.getValue();
+			SignatureDigest[] digests = new SignatureDigest[group.size()];
+			PubKey[] pubKeys = new PubKey[group.size()];
+			byte[][] datas = new byte[group.size()][];
+			for (int i = 0; i < digests.length; i++) {
+				PendingSignature pending = group.get(i);
+				digests[i] = pending.digest;
+				pubKeys[i] = pending.pubKey;
+				datas[i] = results[pending.index] ? pending.content.getContentBytes() : null;
+			}
+			boolean[] passes;
+			SignatureFunction signatureFunction;
+			try {
+				signatureFunction = CryptoUtils.sign(entry.getKey());
+				passes = signatureFunction.verifyBatch(digests, pubKeys, datas);
+			} catch (RuntimeException e) {
+				// 不支持的算法视为验证不通过；
+				signatureFunction = null;
+				passes = new boolean[digests.length];
+			}
+			for (int i = 0; i < passes.length; i++) {
+				PendingSignature pending = group.get(i);
+				pending.pass = passes[i] || (signatureFunction != null && results[pending.index]
+						&& (verifyHash(signatureFunction, pending) || verifyLegacyNode(signatureFunction, pending)));
+			}
+		}
+
+		for (PendingSignature pending : all) {
+			if (!pending.pass) {
+				results[pending.index] = false;
+			} else if (pending.cacheKey != null) {
+				verifiedCache.put(pending.cacheKey, Boolean.TRUE);
+			}
+		}
+	}
+
+	/**
+	 * 收集未缓存的签名；
+	 * 
+	 * @return 签名格式正确时返回 true；
+	 */
+	private boolean collect(DigitalSignature[] signatures, boolean node, SignedContent content, int index,
+			Map<CryptoAlgorithm, List<PendingSignature>> pendings, List<PendingSignature> all) {
+		if (signatures == null) {
+			return true;
+		}
+		for (int n = 0; n < signatures.length; n++) {
+			DigitalSignature signature = signatures[n];
+			PubKey pubKey = signature.getPubKey();
+			SignatureDigest digest = signature.getDigest();
+			if (pubKey == null || digest == null) {
+				return false;
+			}
+			Bytes cacheKey = null;
+			if (verifiedCache != null && content.hashBytes != null) {
+				cacheKey = new Bytes(BytesUtils.concat(content.hashBytes, pubKey.toBytes(), digest.toBytes()));
+				if (verifiedCache.containsKey(cacheKey)) {
+					continue;
+				}
+			}
+			CryptoAlgorithm algorithm;
+			try {
+				algorithm = pubKey.getAlgorithm();
+			} catch (RuntimeException e) {
+				return false;
+			}
+			PendingSignature pending = new PendingSignature(index, pubKey, digest, content, cacheKey, node ? n : -1);
+			pendings.computeIfAbsent(algorithm, k -> new ArrayList<>()).add(pending);
+			all.add(pending);
+		}
+		return true;
+	}
+
+	private static boolean verifyHash(SignatureFunction signatureFunction, PendingSignature pending) {
+		if (pending.content.hashBytes == null) {
+			return false;
+		}
+		try {
+			return signatureFunction.verify(pending.digest, pending.pubKey, pending.content.hashBytes);
+		} catch (RuntimeException e) {
+			// 格式错误的公钥、签名，都视为验证不通过；
+			return false;
+		}
+	}
+
+	/**
+	 * 以旧版网关的签名方式验证节点签名；
+	 * <p>
+	 * 旧版网关对其收到的交易请求的序列化结果签名，之后才加入自身的签名并重新计算请求哈希；因此按签名的顺序还原网关收到的交易请求：
+	 * 包括交易内容、全部终端签名、排在该签名之前的节点签名，以及客户端以 SHA256 计算的请求哈希；
+	 */
+	private static boolean verifyLegacyNode(SignatureFunction signatureFunction, PendingSignature pending) {
+		if (pending.nodeIndex < 0) {
+			return false;
+		}
+		try {
+			byte[] requestBytes = pending.content.getLegacyRequestBytes(pending.nodeIndex);
+			return signatureFunction.verify(pending.digest, pending.pubKey, requestBytes);
+		} catch (RuntimeException e) {
+			// 格式错误的公钥、签名，都视为验证不通过；
+			return false;
+		}
+	}
+
+	/**
+	 * 待验证的签名；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class PendingSignature {
+
+		private final int index;
+
+		private final PubKey pubKey;
+
+		private final SignatureDigest digest;
+
+		private final SignedContent content;
+
+		private final Bytes cacheKey;
+
+		/**
+		 * 在节点签名列表中的位置；终端签名为 -1；
+		 */
+		private final int nodeIndex;
+
+		private boolean pass;
+
+		public PendingSignature(int index, PubKey pubKey, SignatureDigest digest, SignedContent content,
+				Bytes cacheKey, int nodeIndex) {
+			this.index = index;
+			this.pubKey = pubKey;
+			this.digest = digest;
+			this.content = content;
+			this.cacheKey = cacheKey;
+			this.nodeIndex = nodeIndex;
+		}
+	}
+
+	/**
+	 * 签名的内容；交易内容的序列化结果在首次使用时才生成；
+	 * <p>
+	 * 声明的交易内容哈希必须先经过 {@link #verifyHash()} 校验之后才能作为签名内容和缓存的键；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class SignedContent {
+
+		private final TransactionRequest request;
+
+		private final TransactionContent txContent;
+
+		private final byte[] hashBytes;
+
+		private byte[] contentBytes;
+
+		public SignedContent(TransactionRequest request) {
+			this.request = request;
+			this.txContent = request.getTransactionContent();
+			this.hashBytes = txContent.getHash() == null ? null : txContent.getHash().toBytes();
+		}
+
+		/**
+		 * 根据交易内容重新计算哈希，校验是否与声明的哈希一致；未声明哈希时返回 true；
+		 * 
+		 * @return
+		 */
+		public boolean verifyHash() {
+			HashDigest hash = txContent.getHash();
+			if (hash == null) {
+				return true;
+			}
+			try {
+				Hasher hasher = CryptoUtils.hash(hash.getAlgorithm()).newHasher();
+				BinaryEncodingUtils.encode(txContent, TransactionContentBody.class, hasher.asOutputStream());
+				return hasher.digest().equals(hash);
+			} catch (RuntimeException e) {
+				// 不支持的哈希算法或者格式错误的交易内容，都视为验证不通过；
+				return false;
+			}
+		}
+
+		public byte[] getContentBytes() {
+			if (contentBytes == null) {
+				contentBytes = BinaryEncodingUtils.encode(txContent, TransactionContent.class);
+			}
+			return contentBytes;
+		}
+
+		/**
+		 * 旧版网关在加入第 nodeIndex 个节点签名时签名的交易请求的序列化结果；参见 {@link TransactionVerifier#verifyLegacyNode}；
+		 * 
+		 * @param nodeIndex
+		 * @return
+		 */
+		public byte[] getLegacyRequestBytes(int nodeIndex) {
+			TxRequestMessage txMessage = new TxRequestMessage(txContent);
+			txMessage.addEndpointSignatures(request.getEndpointSignatures());
+			DigitalSignature[] nodeSignatures = request.getNodeSignatures();
+			for (int i = 0; i < nodeIndex; i++) {
+				txMessage.addNodeSignatures(nodeSignatures[i]);
+			}
+			Hasher hasher = CryptoUtils.hash(CryptoAlgorithm.SHA256).newHasher();
+			BinaryEncodingUtils.encode(txMessage, NodeRequest.class, hasher.asOutputStream());
+			txMessage.setHash(hasher.digest());
+			return BinaryEncodingUtils.encode(txMessage, TransactionRequest.class);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class VerifiedCache extends LinkedHashMap<Bytes, Boolean> {
+
+		private final int maxSize;
+
+		public VerifiedCache(int maxSize) {
+			super(16, 0.75F, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Bytes, Boolean> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import com.jd.blockchain.binaryproto.DataContractRegistry;
 import com.jd.blockchain.crypto.CryptoAlgorithm;
 import com.jd.blockchain.crypto.CryptoUtils;
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.ledger.TransactionBuilder;
 import com.jd.blockchain.ledger.TransactionContent;
 import com.jd.blockchain.ledger.TransactionContentBody;
@@ -43,8 +44,9 @@ public class TxBuilder implements TransactionBuilder {
 		TxContentBlob txContent = new TxContentBlob(ledgerHash);
 		txContent.addOperations(opFactory.getOperations());
 		
-		byte[] contentBodyBytes = BinaryEncodingUtils.encode(txContent, TransactionContentBody.class);
-		HashDigest contentHash = CryptoUtils.hash(defaultHashAlgorithm).hash(contentBodyBytes);
+		Hasher hasher = CryptoUtils.hash(defaultHashAlgorithm).newHasher();
+		BinaryEncodingUtils.encode(txContent, TransactionContentBody.class, hasher.asOutputStream());
+		HashDigest contentHash = hasher.digest();
 		txContent.setHash(contentHash);
 		
 		return txContent;
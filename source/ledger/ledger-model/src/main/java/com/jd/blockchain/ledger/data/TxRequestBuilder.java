@@ -11,6 +11,7 @@ import com.jd.blockchain.crypto.asymmetric.PrivKey;
 import com.jd.blockchain.crypto.asymmetric.PubKey;
 import com.jd.blockchain.crypto.asymmetric.SignatureDigest;
 import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.crypto.hash.Hasher;
 import com.jd.blockchain.ledger.DigitalSignature;
 import com.jd.blockchain.ledger.NodeRequest;
 import com.jd.blockchain.ledger.TransactionContent;
@@ -83,8 +84,9 @@ public class TxRequestBuilder implements TransactionRequestBuilder {
 		txMessage.addEndpointSignatures(endpointSignatures);
 		txMessage.addNodeSignatures(nodeSignatures);
 
-		byte[] reqBytes = BinaryEncodingUtils.encode(txMessage, NodeRequest.class);
-		HashDigest reqHash = CryptoUtils.hash(CryptoAlgorithm.SHA256).hash(reqBytes);
+		Hasher hasher = CryptoUtils.hash(CryptoAlgorithm.SHA256).newHasher();
+		BinaryEncodingUtils.encode(txMessage, NodeRequest.class, hasher.asOutputStream());
+		HashDigest reqHash = hasher.digest();
 		txMessage.setHash(reqHash);
 
 		return txMessage;
@@ -21,6 +21,18 @@ public interface TransactionBatchProcess {
 	 */
 	TransactionResponse schedule(TransactionRequest request);
 
+	/**
+	 * 预读将要安排执行的一批交易请求所访问的账户和数据；
+	 * 
+	 * <p>
+	 * 
+	 * 在逐个调用 {@link #schedule(TransactionRequest)} 之前调用，以批量读取代替执行过程中对存储的逐个访问；预读不执行交易，也不影响交易的执行结果；
+	 * 
+	 * @param requests
+	 *            交易请求；
+	 */
+	void prefetch(TransactionRequest[] requests);
+
 	/**
 	 * 完成本次批量执行；生成待提交的结果；
 	 * 
@@ -0,0 +1,175 @@
+package test.com.jd.blockchain.ledger.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
+import com.jd.blockchain.binaryproto.DataContractRegistry;
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.CryptoUtils;
+import com.jd.blockchain.crypto.asymmetric.SignatureDigest;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.BlockchainKeyGenerator;
+import com.jd.blockchain.ledger.BlockchainKeyPair;
+import com.jd.blockchain.ledger.DataAccountRegisterOperation;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.ledger.TransactionRequestBuilder;
+import com.jd.blockchain.ledger.data.DigitalSignatureBlob;
+import com.jd.blockchain.ledger.data.TransactionVerifier;
+import com.jd.blockchain.ledger.data.TxBuilder;
+import com.jd.blockchain.ledger.data.TxContentBlob;
+import com.jd.blockchain.ledger.data.TxRequestMessage;
+
+public class TransactionVerifierTest {
+
+	static {
+		DataContractRegistry.register(TransactionRequest.class);
+		DataContractRegistry.register(DataAccountRegisterOperation.class);
+	}
+
+	@Test
+	public void testVerify() {
+		TransactionVerifier verifier = TransactionVerifier.create(4);
+
+		// 以交易内容的序列化结果签名；
+		TransactionRequest contentSignedRequest = createRequest(false, false);
+		// 以交易内容哈希签名；
+		TransactionRequest hashSignedRequest = createRequest(true, false);
+		// 签名错误；
+		TransactionRequest badRequest = createRequest(false, true);
+		// 反序列化的交易请求；
+		TransactionRequest decodedRequest = BinaryEncodingUtils
+				.decode(BinaryEncodingUtils.encode(contentSignedRequest, TransactionRequest.class));
+
+		assertTrue(verifier.verify(contentSignedRequest));
+		assertTrue(verifier.verify(hashSignedRequest));
+		assertFalse(verifier.verify(badRequest));
+		assertTrue(verifier.verify(decodedRequest));
+		assertTrue(TransactionVerifier.SERIAL.verify(decodedRequest));
+		assertFalse(TransactionVerifier.SERIAL.verify(badRequest));
+
+		TransactionRequest[] requests = new TransactionRequest[] { contentSignedRequest, badRequest, hashSignedRequest,
+				decodedRequest, createRequest(false, false), createRequest(false, true) };
+		boolean[] expected = { true, false, true, true, true, false };
+		assertArrayEquals(expected, verifier.verify(requests));
+		// 再次验证时结果一致；
+		assertArrayEquals(expected, verifier.verify(requests));
+		assertArrayEquals(expected, TransactionVerifier.SERIAL.verify(requests));
+	}
+
+	@Test
+	public void testVerifyTamperedContent() {
+		TransactionVerifier verifier = TransactionVerifier.create(4);
+
+		TransactionRequest hashSignedRequest = createRequest(true, false);
+		TransactionRequest contentSignedRequest = createRequest(false, false);
+		// 验证通过的签名进入缓存；
+		assertTrue(verifier.verify(hashSignedRequest));
+		assertTrue(verifier.verify(contentSignedRequest));
+
+		// 篡改操作，但沿用原来声明的哈希和签名；
+		TransactionRequest tamperedHashSignedRequest = tamperOperations(hashSignedRequest);
+		TransactionRequest tamperedContentSignedRequest = tamperOperations(contentSignedRequest);
+
+		assertFalse(verifier.verify(tamperedHashSignedRequest));
+		assertFalse(verifier.verify(tamperedContentSignedRequest));
+		assertFalse(TransactionVerifier.SERIAL.verify(tamperedHashSignedRequest));
+		assertFalse(TransactionVerifier.SERIAL.verify(tamperedContentSignedRequest));
+		assertArrayEquals(new boolean[] { true, false, true, false }, verifier.verify(new TransactionRequest[] {
+				hashSignedRequest, tamperedHashSignedRequest, contentSignedRequest, tamperedContentSignedRequest }));
+	}
+
+	@Test
+	public void testVerifyLegacyNodeSignature() {
+		TransactionVerifier verifier = TransactionVerifier.create(4);
+
+		TransactionRequest legacyRequest = createLegacyGatewayRequest(false);
+		TransactionRequest badLegacyRequest = createLegacyGatewayRequest(true);
+		TransactionRequest decodedLegacyRequest = BinaryEncodingUtils
+				.decode(BinaryEncodingUtils.encode(legacyRequest, TransactionRequest.class));
+
+		// 尚未升级的网关以其收到的交易请求为签名内容；
+		assertTrue(verifier.verify(legacyRequest));
+		assertTrue(TransactionVerifier.SERIAL.verify(decodedLegacyRequest));
+		assertFalse(verifier.verify(badLegacyRequest));
+		assertFalse(TransactionVerifier.SERIAL.verify(badLegacyRequest));
+		assertArrayEquals(new boolean[] { true, false, true },
+				verifier.verify(new TransactionRequest[] { legacyRequest, badLegacyRequest, decodedLegacyRequest }));
+	}
+
+	/**
+	 * 按旧版网关的方式加入节点签名：对收到的交易请求的序列化结果签名，之后重新计算请求哈希；
+	 */
+	private TransactionRequest createLegacyGatewayRequest(boolean tampered) {
+		byte[] seed = new byte[32];
+		new Random().nextBytes(seed);
+		HashDigest ledgerHash = CryptoUtils.hash(CryptoAlgorithm.SHA256).hash(seed);
+
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(BlockchainKeyGenerator.getInstance().generate().getIdentity());
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		txReqBuilder.signAsEndpoint(BlockchainKeyGenerator.getInstance().generate());
+		TransactionRequest endpointRequest = txReqBuilder.buildRequest();
+
+		TxRequestMessage txMessage = new TxRequestMessage(endpointRequest);
+		byte[] endpointRequestBytes = BinaryEncodingUtils.encode(txMessage, TransactionRequest.class);
+		if (tampered) {
+			endpointRequestBytes[endpointRequestBytes.length - 1]++;
+		}
+		BlockchainKeyPair nodeKey = BlockchainKeyGenerator.getInstance().generate();
+		SignatureDigest nodeDigest = CryptoUtils.sign(CryptoAlgorithm.ED25519).sign(nodeKey.getPrivKey(),
+				endpointRequestBytes);
+		txMessage.addNodeSignatures(new DigitalSignatureBlob(nodeKey.getPubKey(), nodeDigest));
+		txMessage.setHash(CryptoUtils.hash(CryptoAlgorithm.SHA256)
+				.hash(BinaryEncodingUtils.encode(txMessage, TransactionRequest.class)));
+		return txMessage;
+	}
+
+	private TransactionRequest tamperOperations(TransactionRequest request) {
+		TransactionContent origContent = request.getTransactionContent();
+		TxBuilder txBuilder = new TxBuilder(origContent.getLedgerHash());
+		txBuilder.dataAccounts().register(BlockchainKeyGenerator.getInstance().generate().getIdentity());
+		TxContentBlob tamperedContent = (TxContentBlob) txBuilder.prepareRequest().getTransactionContent();
+		tamperedContent.setHash(origContent.getHash());
+
+		TxRequestMessage tamperedRequest = new TxRequestMessage(tamperedContent);
+		tamperedRequest.addEndpointSignatures(request.getEndpointSignatures());
+		tamperedRequest.addNodeSignatures(request.getNodeSignatures());
+		return tamperedRequest;
+	}
+
+	private TransactionRequest createRequest(boolean signHash, boolean tampered) {
+		byte[] seed = new byte[32];
+		new Random().nextBytes(seed);
+		HashDigest ledgerHash = CryptoUtils.hash(CryptoAlgorithm.SHA256).hash(seed);
+
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccounts().register(BlockchainKeyGenerator.getInstance().generate().getIdentity());
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		BlockchainKeyPair userKey = BlockchainKeyGenerator.getInstance().generate();
+		BlockchainKeyPair nodeKey = BlockchainKeyGenerator.getInstance().generate();
+		if (signHash) {
+			txReqBuilder.signAsEndpoint(userKey);
+			txReqBuilder.signAsNode(nodeKey);
+		} else {
+			byte[] contentBytes = BinaryEncodingUtils.encode(txReqBuilder.getTransactionContent(),
+					TransactionContent.class);
+			SignatureDigest userDigest = CryptoUtils.sign(CryptoAlgorithm.ED25519).sign(userKey.getPrivKey(),
+					contentBytes);
+			if (tampered) {
+				contentBytes[contentBytes.length - 1]++;
+			}
+			SignatureDigest nodeDigest = CryptoUtils.sign(CryptoAlgorithm.ED25519).sign(nodeKey.getPrivKey(),
+					contentBytes);
+			txReqBuilder.addEndpointSignature(new DigitalSignatureBlob(userKey.getPubKey(), userDigest));
+			txReqBuilder.addNodeSignature(new DigitalSignatureBlob(nodeKey.getPubKey(), nodeDigest));
+		}
+		return txReqBuilder.buildRequest();
+	}
+}
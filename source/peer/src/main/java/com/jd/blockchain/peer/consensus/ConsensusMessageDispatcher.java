@@ -21,6 +21,7 @@ import com.jd.blockchain.consensus.service.StateSnapshot;
 
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -72,10 +73,25 @@ public class ConsensusMessageDispatcher implements MessageHandle {
 		if (!realmProcessor.getCurrBatchId().equalsIgnoreCase(batchId)) {
 			throw new IllegalArgumentException("BatchId is not begin!");
 		}
-		TransactionRequest txRequest = BinaryEncodingUtils.decode(message);
+		TransactionRequest txRequest = realmProcessor.takePrefetched(message);
+		if (txRequest == null) {
+			txRequest = BinaryEncodingUtils.decode(message);
+		}
 		return realmProcessor.schedule(txRequest);
 	}
 
+	@Override
+	public void prefetchOrdered(byte[][] messages, String realmName, String batchId) {
+		RealmProcessor realmProcessor = realmProcessorMap.get(realmName);
+		if (realmProcessor == null) {
+			throw new IllegalArgumentException("RealmName is not init!");
+		}
+		if (!realmProcessor.getCurrBatchId().equalsIgnoreCase(batchId)) {
+			throw new IllegalArgumentException("BatchId is not begin!");
+		}
+		realmProcessor.prefetch(messages);
+	}
+
 	@Override
 	public StateSnapshot completeBatch(String realmName, String batchId) {
 		RealmProcessor realmProcessor = realmProcessorMap.get(realmName);
@@ -142,6 +158,11 @@ public class ConsensusMessageDispatcher implements MessageHandle {
 
 		private Map<TransactionResponse, CompletableAsyncFuture<byte[]>> txResponseMap;
 
+		/**
+		 * 预读时已解码的交易请求，以消息内容的实例为键，处理消息时不再重复解码；
+		 */
+		private final Map<byte[], TransactionRequest> prefetchedRequests = new IdentityHashMap<>();
+
 		private TransactionBatchResultHandle batchResultHandle;
 
 		private final AtomicLong batchIdIndex = new AtomicLong();
@@ -192,6 +213,19 @@ public class ConsensusMessageDispatcher implements MessageHandle {
 			return currBatchId;
 		}
 
+		public void prefetch(byte[][] messages) {
+			TransactionRequest[] txRequests = new TransactionRequest[messages.length];
+			for (int i = 0; i < messages.length; i++) {
+				txRequests[i] = BinaryEncodingUtils.decode(messages[i]);
+				prefetchedRequests.put(messages[i], txRequests[i]);
+			}
+			getTxBatchProcess().prefetch(txRequests);
+		}
+
+		public TransactionRequest takePrefetched(byte[] message) {
+			return prefetchedRequests.remove(message);
+		}
+
 		public AsyncFuture<byte[]> schedule(TransactionRequest txRequest) {
 			CompletableAsyncFuture<byte[]> asyncTxResult = new CompletableAsyncFuture<>();
 			TransactionResponse resp = getTxBatchProcess().schedule(txRequest);
@@ -234,6 +268,7 @@ public class ConsensusMessageDispatcher implements MessageHandle {
 					throw new IllegalArgumentException("BatchResultHandle is null, complete() is not execute !");
 				}
 				batchResultHandle.commit();
+				prefetchedRequests.clear();
 				currBatchId = null;
 				txResponseMap = null;
 				txBatchProcess = null;
@@ -245,6 +280,7 @@ public class ConsensusMessageDispatcher implements MessageHandle {
 		public void rollback(int reasonCode) {
 			try {
 				realmLock.lock();
+				prefetchedRequests.clear();
 				batchResultHandle.cancel(TransactionState.valueOf((byte)reasonCode));
 			} finally {
 				realmLock.unlock();
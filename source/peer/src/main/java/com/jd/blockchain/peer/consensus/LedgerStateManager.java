@@ -1,43 +1,353 @@
 package com.jd.blockchain.peer.consensus;
 
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import com.jd.blockchain.consensus.service.StateMachineReplicate;
 import com.jd.blockchain.consensus.service.StateSnapshot;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.LedgerBlock;
+import com.jd.blockchain.ledger.core.LedgerManage;
+import com.jd.blockchain.ledger.core.LedgerRepository;
+import com.jd.blockchain.ledger.core.MerkleCommitEngine;
+import com.jd.blockchain.peer.PeerServerBooter;
+import com.jd.blockchain.storage.service.CheckpointStorageService;
+import com.jd.blockchain.storage.service.DbConnection;
+import com.jd.blockchain.storage.service.DbConnectionFactory;
+import com.jd.blockchain.storage.service.KVStorageService;
+import com.jd.blockchain.storage.service.utils.CheckpointArchive;
+import com.jd.blockchain.tools.initializer.LedgerBindingConfig;
+import com.jd.blockchain.utils.codec.Base58Utils;
+import com.jd.blockchain.utils.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+/**
+ * 账本的状态管理；
+ * <p>
+ * 以账本的区块高度作为状态编号，以区块哈希作为状态快照；
+ * <p>
+ * 账本的状态数据是账本存储的检查点（参见 {@link CheckpointStorageService}），以分块的归档流（参见
+ * {@link CheckpointArchive}）发送给落后的节点；共识的状态传输只携带检查点的描述，归档流由共识实现以独立的点对点连接传输；接收方还原检查点之后，先校验区块哈希以及全部的默克尔树节点，
+ * 校验通过之后以检查点作为账本的存储重新注册账本；
+ * <p>
+ * 检查点在共识保存状态快照时创建（参见 {@link #retainState(String, long)}），其最新的区块恰好是快照的区块；
+ * 每个账本只保留最近一个检查点，被新的检查点替代之后，在读取完毕时删除；
+ * <p>
+ * 检查点的工作目录由系统属性 “ledger.checkpoint.dir” 指定，默认为临时目录下的 “jdchain-checkpoints”；
+ * 还原的检查点会成为账本的数据库，因此生产环境应指定为持久的目录；
+ *
+ * @author huanghaiquan
+ *
+ */
 @Component
-public class LedgerStateManager implements StateMachineReplicate{
+public class LedgerStateManager implements StateMachineReplicate {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LedgerStateManager.class);
+
+	private static final String CHECKPOINT_DIR = System.getProperty("ledger.checkpoint.dir",
+			new File(System.getProperty("java.io.tmpdir"), "jdchain-checkpoints").getPath());
+
+	@Autowired
+	private LedgerManage ledgerManager;
+
+	@Autowired
+	private DbConnectionFactory connFactory;
+
+	/**
+	 * 由检查点建立的账本的数据库连接；
+	 */
+	private final Map<HashDigest, DbConnection> stateConnections = new HashMap<>();
+
+	/**
+	 * 各个账本保留的最近一个检查点；
+	 */
+	private final Map<HashDigest, RetainedCheckpoint> retainedCheckpoints = new HashMap<>();
 
 	@Override
 	public long getLatestStateID(String realmName) {
-		// TODO Auto-generated method stub
-		return 0;
+		return getLedger(realmName).retrieveLatestBlockHeight();
 	}
 
 	@Override
 	public StateSnapshot getSnapshot(String realmName, long stateId) {
-		// TODO Auto-generated method stub
-		return null;
+		HashDigest blockHash = getLedger(realmName).getBlockHash(stateId);
+		if (blockHash == null) {
+			return null;
+		}
+		return new BlockStateSnapshot(stateId, blockHash.toBytes());
 	}
 
 	@Override
 	public Iterator<StateSnapshot> getSnapshots(String realmName, long fromStateId, long toStateId) {
-		// TODO Auto-generated method stub
-		return null;
+		LedgerRepository ledger = getLedger(realmName);
+		long latestHeight = ledger.retrieveLatestBlockHeight();
+		List<StateSnapshot> snapshots = new ArrayList<>();
+		for (long height = Math.max(0, fromStateId); height <= Math.min(toStateId, latestHeight); height++) {
+			snapshots.add(new BlockStateSnapshot(height, ledger.getBlockHash(height).toBytes()));
+		}
+		return snapshots.iterator();
 	}
 
+	/**
+	 * 创建账本存储的检查点并保留，替代之前保留的检查点；
+	 * <p>
+	 * 状态编号必须是账本最新的区块高度，使得检查点的最新区块恰好是状态编号对应的区块；<br>
+	 * 已保留相同高度的检查点时不重复创建；账本的存储不支持检查点时不处理；
+	 */
+	@Override
+	public void retainState(String realmName, long stateId) {
+		HashDigest ledgerHash = decodeLedgerHash(realmName);
+		KVStorageService storageService = ledgerManager.getStorageService(ledgerHash);
+		if (!(storageService instanceof CheckpointStorageService)) {
+			return;
+		}
+		long latestHeight = getLedger(realmName).retrieveLatestBlockHeight();
+		if (stateId != latestHeight) {
+			throw new IllegalStateException("The state[" + stateId + "] of ledger[" + realmName
+					+ "] is not the latest block height[" + latestHeight + "]!");
+		}
+		synchronized (retainedCheckpoints) {
+			RetainedCheckpoint previous = retainedCheckpoints.get(ledgerHash);
+			if (previous != null && previous.height == stateId) {
+				return;
+			}
+			File checkpointDir = new File(CHECKPOINT_DIR, realmName + "-" + stateId + "-" + System.nanoTime());
+			checkpointDir.getParentFile().mkdirs();
+			((CheckpointStorageService) storageService).createCheckpoint(checkpointDir.getPath());
+			LOGGER.info("Create checkpoint of ledger[{}] at height[{}]! --{}", realmName, stateId, checkpointDir);
+
+			retainedCheckpoints.put(ledgerHash, new RetainedCheckpoint(stateId, checkpointDir));
+			if (previous != null) {
+				previous.release();
+			}
+		}
+	}
+
+	/**
+	 * 返回保留的检查点的归档流；
+	 * <p>
+	 * 检查点的最新区块高度必须等于指定的状态编号；
+	 */
 	@Override
 	public InputStream readState(String realmName, long stateId) {
-		// TODO Auto-generated method stub
-		return null;
+		HashDigest ledgerHash = decodeLedgerHash(realmName);
+		RetainedCheckpoint checkpoint;
+		synchronized (retainedCheckpoints) {
+			checkpoint = retainedCheckpoints.get(ledgerHash);
+		}
+		if (checkpoint == null || checkpoint.height != stateId) {
+			throw new IllegalStateException("No checkpoint of ledger[" + realmName + "] is retained at state["
+					+ stateId + "]! --[Retained=" + (checkpoint == null ? null : checkpoint.height) + "]");
+		}
+		return checkpoint.open();
 	}
 
+	/**
+	 * 还原并校验检查点，校验通过后以检查点作为账本的存储重新注册账本；
+	 * <p>
+	 * 检查点还原到工作目录下以账本哈希和区块高度命名的目录中，以 RocksDB 打开后校验快照指定的区块哈希以及全部的默克尔树节点；
+	 * 检查点的最新区块必须恰好是快照的区块，更高的区块由共识之后重放的请求生成；<br>
+	 * 校验失败时关闭数据库连接、删除还原的目录并抛出异常；<br>
+	 * 校验通过后以检查点的存储重新注册账本，沿用账本当前的默克尔树提交引擎，并关闭之前由检查点建立的数据库连接；
+	 * <p>
+	 * 最后把绑定配置文件中账本的数据库地址更新为检查点，使节点重启之后从检查点启动，参见 {@link #updateBinding(HashDigest, String)}；
+	 */
 	@Override
 	public void setupState(String realmName, StateSnapshot snapshot, InputStream state) {
-		// TODO Auto-generated method stub
-		
+		HashDigest ledgerHash = decodeLedgerHash(realmName);
+		LedgerRepository ledger = ledgerManager.getLedger(ledgerHash);
+		if (ledger != null && ledger.retrieveLatestBlockHeight() >= snapshot.getId()) {
+			throw new IllegalStateException("The ledger[" + realmName + "] is not behind the state[" + snapshot.getId()
+					+ "], cann't setup state from checkpoint!");
+		}
+
+		File checkpointDir = new File(CHECKPOINT_DIR,
+				realmName + "-" + snapshot.getId() + "-" + System.nanoTime());
+		int count = CheckpointArchive.extract(state, checkpointDir);
+
+		String dbUri = "rocksdb://" + checkpointDir.getAbsolutePath();
+		DbConnection conn = null;
+		LedgerBlock block;
+		try {
+			conn = connFactory.connect(dbUri);
+			block = ledgerManager.verifyLedger(ledgerHash, conn.getStorageService(), snapshot.getId(),
+					new HashDigest(snapshot.getSnapshot()));
+		} catch (RuntimeException e) {
+			LOGGER.error("Error occurred on verifying checkpoint of ledger[" + realmName + "]! --" + e.getMessage(),
+					e);
+			closeConnection(conn);
+			deleteDir(checkpointDir);
+			throw e;
+		}
+
+		synchronized (stateConnections) {
+			MerkleCommitEngine merkleCommitEngine = ledgerManager.getMerkleCommitEngine(ledgerHash);
+			if (merkleCommitEngine == null) {
+				ledgerManager.register(ledgerHash, conn.getStorageService());
+			} else {
+				// 重新注册替换当前的实例；同一个提交引擎不会被关闭；
+				ledgerManager.register(ledgerHash, conn.getStorageService(), merkleCommitEngine);
+			}
+			closeConnection(stateConnections.put(ledgerHash, conn));
+		}
+		LOGGER.info("Setup state of ledger[{}] at height[{}] from checkpoint with {} files! --[BlockHash={}][DB={}]",
+				realmName, block.getHeight(), count, block.getHash().toBase58(), dbUri);
+
+		updateBinding(ledgerHash, dbUri);
+	}
+
+	/**
+	 * 把绑定配置文件中账本的数据库地址更新为指定的地址；
+	 * <p>
+	 * 以内置的默认配置启动的节点没有可更新的绑定配置文件；更新失败时同样只输出日志，此时需要在重启节点之前手动把绑定配置中账本的
+	 * “db.uri” 修改为日志中的数据库地址，否则节点重启后从原来的数据库启动，回退到装载检查点之前的高度，再由共识重新传输状态；
+	 * 
+	 * @param ledgerHash
+	 * @param dbUri
+	 */
+	private void updateBinding(HashDigest ledgerHash, String dbUri) {
+		String bindingFile = PeerServerBooter.ledgerBindConfigFile;
+		if (bindingFile == null) {
+			LOGGER.warn("No ledger binding file to update, set the db uri of ledger[{}] to [{}] manually before restart!",
+					ledgerHash.toBase58(), dbUri);
+			return;
+		}
+		try {
+			File file = new File(bindingFile);
+			LedgerBindingConfig bindingConfig = LedgerBindingConfig.resolve(file);
+			LedgerBindingConfig.BindingConfig binding = bindingConfig.getLedger(ledgerHash);
+			if (binding == null) {
+				throw new IllegalStateException("The ledger is not found in the binding file! --" + bindingFile);
+			}
+			binding.getDbConnection().setConnectionUri(dbUri);
+			bindingConfig.store(file);
+			LOGGER.info("Update the db uri of ledger[{}] in binding file[{}]! --{}", ledgerHash.toBase58(),
+					bindingFile, dbUri);
+		} catch (RuntimeException e) {
+			LOGGER.error("Error occurred on updating the ledger binding file[" + bindingFile
+					+ "], set the db uri of ledger[" + ledgerHash.toBase58() + "] to [" + dbUri
+					+ "] manually before restart! --" + e.getMessage(), e);
+		}
+	}
+
+	private LedgerRepository getLedger(String realmName) {
+		LedgerRepository ledger = ledgerManager.getLedger(decodeLedgerHash(realmName));
+		if (ledger == null) {
+			throw new IllegalArgumentException("The ledger[" + realmName + "] is not registered!");
+		}
+		return ledger;
+	}
+
+	private static HashDigest decodeLedgerHash(String realmName) {
+		return new HashDigest(Base58Utils.decode(realmName));
+	}
+
+	private static void closeConnection(DbConnection conn) {
+		if (conn == null) {
+			return;
+		}
+		try {
+			conn.close();
+		} catch (IOException e) {
+			LOGGER.warn("Error occurred on closing db connection! --" + e.getMessage(), e);
+		}
+	}
+
+	private static void deleteDir(File dir) {
+		FileUtils.deleteFile(dir, true);
+		dir.delete();
+	}
+
+	/**
+	 * 保留的检查点；
+	 * <p>
+	 * 被替代之后，在全部的归档流关闭时删除检查点目录；
+	 */
+	private static final class RetainedCheckpoint {
+
+		private final long height;
+
+		private final File dir;
+
+		private int readers;
+
+		private boolean released;
+
+		public RetainedCheckpoint(long height, File dir) {
+			this.height = height;
+			this.dir = dir;
+		}
+
+		public synchronized InputStream open() {
+			if (released) {
+				throw new IllegalStateException("The checkpoint has been released! --" + dir);
+			}
+			InputStream in = CheckpointArchive.open(dir);
+			readers++;
+			return new FilterInputStream(in) {
+
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException {
+					if (closed) {
+						return;
+					}
+					closed = true;
+					try {
+						super.close();
+					} finally {
+						closeReader();
+					}
+				}
+			};
+		}
+
+		private synchronized void closeReader() {
+			readers--;
+			if (released && readers == 0) {
+				deleteDir(dir);
+			}
+		}
+
+		public synchronized void release() {
+			released = true;
+			if (readers == 0) {
+				deleteDir(dir);
+			}
+		}
+	}
+
+	private static final class BlockStateSnapshot implements StateSnapshot {
+
+		private long id;
+
+		private byte[] snapshotBytes;
+
+		public BlockStateSnapshot(long id, byte[] snapshotBytes) {
+			this.id = id;
+			this.snapshotBytes = snapshotBytes;
+		}
+
+		@Override
+		public long getId() {
+			return id;
+		}
+
+		@Override
+		public byte[] getSnapshot() {
+			return snapshotBytes;
+		}
 	}
 
 }
@@ -9,9 +9,16 @@ import com.jd.blockchain.sdk.BlockchainQueryService;
 import com.jd.blockchain.utils.Bytes;
 import com.jd.blockchain.utils.QueryUtil;
 import com.jd.blockchain.utils.ValueType;
+import com.jd.blockchain.utils.web.model.JsonLinesWriter;
+import com.jd.blockchain.utils.web.model.QueryCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.servlet.http.HttpServletResponse;
+
 @RestController
 @RequestMapping(path = "/")
 public class LedgerQueryController implements BlockchainQueryService {
@@ -417,4 +424,152 @@ public class LedgerQueryController implements BlockchainQueryService {
         return contractAccountSet.getAccounts(pages[0],pages[1]);
     }
 
+	/**
+	 * 以 JSON Lines 格式流式返回数据账户的键值数据；
+	 * <p>
+	 * 结果逐条写入响应，不受分页查询的数量上限的限制，也不在内存中累积；<br>
+	 * 如果之后还有更多的结果，则以响应头 {@link QueryCursor#HEADER_NAME} 返回续传游标；以续传游标继续查询时，从同一个区块的数据快照中继续返回结果；
+	 * 
+	 * @param ledgerHash
+	 * @param address
+	 * @param fromIndex
+	 *            起始的序号；指定了续传游标时忽略此参数；
+	 * @param count
+	 *            返回的数量；小于 0 时返回之后的全部结果；
+	 * @param cursor
+	 *            续传游标；
+	 * @param response
+	 * @throws IOException
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/accounts/address/{address}/entries/stream")
+	public void streamDataEntries(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+								  @PathVariable(name = "address") String address,
+								  @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+								  @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+								  @RequestParam(name = "cursor", required = false) String cursor,
+								  HttpServletResponse response) throws IOException {
+		LedgerRepository ledger = ledgerService.getLedger(ledgerHash);
+		QueryCursor startCursor = resolveCursor(ledger, cursor, fromIndex);
+		LedgerBlock block = ledger.getBlock(startCursor.getBlockHeight());
+		DataAccount dataAccount = ledger.getDataAccountSet(block).getDataAccount(Bytes.fromBase58(address));
+		if (dataAccount == null) {
+			throw new IllegalArgumentException("Data account[" + address + "] doesn't exist!");
+		}
+		long totalCount = dataAccount.getDataEntriesTotalCount();
+		long[] range = QueryCursor.range(startCursor.getIndex(), count, totalCount);
+		writeStream(response, block.getHeight(), range, totalCount,
+				dataAccount.getDataEntryIterator(range[0], range[1]));
+	}
+
+	/**
+	 * 以 JSON Lines 格式流式返回用户账户；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/users/stream")
+	public void streamUsers(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+							@RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+							@RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+							@RequestParam(name = "cursor", required = false) String cursor,
+							HttpServletResponse response) throws IOException {
+		LedgerRepository ledger = ledgerService.getLedger(ledgerHash);
+		QueryCursor startCursor = resolveCursor(ledger, cursor, fromIndex);
+		LedgerBlock block = ledger.getBlock(startCursor.getBlockHeight());
+		UserAccountSet userAccountSet = ledger.getUserAccountSet(block);
+		long totalCount = userAccountSet.getTotalCount();
+		long[] range = QueryCursor.range(startCursor.getIndex(), count, totalCount);
+		writeStream(response, block.getHeight(), range, totalCount,
+				userAccountSet.getAccountIterator(range[0], range[1]));
+	}
+
+	/**
+	 * 以 JSON Lines 格式流式返回数据账户；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/accounts/stream")
+	public void streamDataAccounts(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+								   @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+								   @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+								   @RequestParam(name = "cursor", required = false) String cursor,
+								   HttpServletResponse response) throws IOException {
+		LedgerRepository ledger = ledgerService.getLedger(ledgerHash);
+		QueryCursor startCursor = resolveCursor(ledger, cursor, fromIndex);
+		LedgerBlock block = ledger.getBlock(startCursor.getBlockHeight());
+		DataAccountSet dataAccountSet = ledger.getDataAccountSet(block);
+		long totalCount = dataAccountSet.getTotalCount();
+		long[] range = QueryCursor.range(startCursor.getIndex(), count, totalCount);
+		writeStream(response, block.getHeight(), range, totalCount,
+				dataAccountSet.getAccountIterator(range[0], range[1]));
+	}
+
+	/**
+	 * 以 JSON Lines 格式流式返回合约账户；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/contracts/stream")
+	public void streamContractAccounts(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+									   @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+									   @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+									   @RequestParam(name = "cursor", required = false) String cursor,
+									   HttpServletResponse response) throws IOException {
+		LedgerRepository ledger = ledgerService.getLedger(ledgerHash);
+		QueryCursor startCursor = resolveCursor(ledger, cursor, fromIndex);
+		LedgerBlock block = ledger.getBlock(startCursor.getBlockHeight());
+		ContractAccountSet contractAccountSet = ledger.getContractAccountSet(block);
+		long totalCount = contractAccountSet.getTotalCount();
+		long[] range = QueryCursor.range(startCursor.getIndex(), count, totalCount);
+		writeStream(response, block.getHeight(), range, totalCount,
+				contractAccountSet.getAccountIterator(range[0], range[1]));
+	}
+
+	/**
+	 * 以 JSON Lines 格式流式返回指定区块中的交易；参见 {@link #streamDataEntries(HashDigest, String, long, long, String, HttpServletResponse)}；
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "ledgers/{ledgerHash}/blocks/height/{blockHeight}/txs/stream")
+	public void streamTransactions(@PathVariable(name = "ledgerHash") HashDigest ledgerHash,
+								   @PathVariable(name = "blockHeight") long blockHeight,
+								   @RequestParam(name = "fromIndex", required = false, defaultValue = "0") long fromIndex,
+								   @RequestParam(name = "count", required = false, defaultValue = "-1") long count,
+								   @RequestParam(name = "cursor", required = false) String cursor,
+								   HttpServletResponse response) throws IOException {
+		LedgerRepository ledger = ledgerService.getLedger(ledgerHash);
+		if (blockHeight < 0 || blockHeight > ledger.getLatestBlockHeight()) {
+			throw new IllegalArgumentException("Block height[" + blockHeight + "] is out of range!");
+		}
+		if (cursor != null && !cursor.isEmpty()) {
+			fromIndex = QueryCursor.decode(cursor).getIndex();
+		}
+		LedgerBlock block = ledger.getBlock(blockHeight);
+		TransactionSet transactionSet = ledger.getTransactionSet(block);
+		long lastHeightTxTotalNums = 0;
+		if (blockHeight > 0) {
+			lastHeightTxTotalNums = ledger.getTransactionSet(ledger.getBlock(blockHeight - 1)).getTotalCount();
+		}
+		// 只返回当前区块的增量交易；
+		long totalCount = transactionSet.getTotalCount() - lastHeightTxTotalNums;
+		long[] range = QueryCursor.range(fromIndex, count, totalCount);
+		writeStream(response, blockHeight, range, totalCount,
+				transactionSet.getTxIterator(lastHeightTxTotalNums + range[0], range[1]));
+	}
+
+	/**
+	 * 解析续传游标；未指定续传游标时，从最新区块的指定序号开始查询；
+	 */
+	private QueryCursor resolveCursor(LedgerRepository ledger, String cursor, long fromIndex) {
+		if (cursor == null || cursor.isEmpty()) {
+			return new QueryCursor(ledger.getLatestBlockHeight(), Math.max(0, fromIndex));
+		}
+		QueryCursor queryCursor = QueryCursor.decode(cursor);
+		if (queryCursor.getBlockHeight() < 0 || queryCursor.getBlockHeight() > ledger.getLatestBlockHeight()) {
+			throw new IllegalArgumentException("The block height of query cursor is out of range!");
+		}
+		return queryCursor;
+	}
+
+	private void writeStream(HttpServletResponse response, long blockHeight, long[] range, long totalCount,
+			Iterator<?> results) throws IOException {
+		response.setContentType(JsonLinesWriter.CONTENT_TYPE_VALUE);
+		QueryCursor nextCursor = QueryCursor.next(blockHeight, range, totalCount);
+		if (nextCursor != null) {
+			response.setHeader(QueryCursor.HEADER_NAME, nextCursor.encode());
+		}
+		new JsonLinesWriter(response.getOutputStream()).writeAll(results);
+	}
+
 }
@@ -38,6 +38,7 @@ import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.core.LedgerAdminAccount;
 import com.jd.blockchain.ledger.core.LedgerManage;
 import com.jd.blockchain.ledger.core.LedgerRepository;
+import com.jd.blockchain.ledger.core.MerkleCommitEngine;
 import com.jd.blockchain.manage.GatewayIncomingSetting;
 import com.jd.blockchain.manage.LedgerIncomingSetting;
 import com.jd.blockchain.peer.ConsensusRealm;
@@ -283,7 +284,9 @@ public class ManagementController implements LedgerBindingConfigAware, PeerManag
 		LedgerBindingConfig.BindingConfig bindingConfig = config.getLedger(ledgerHash);
 		DbConnection dbConnNew = connFactory.connect(bindingConfig.getDbConnection().getUri(),
 				bindingConfig.getDbConnection().getPassword());
-		LedgerRepository ledgerRepository = ledgerManager.register(ledgerHash, dbConnNew.getStorageService());
+		MerkleCommitEngine merkleCommitEngine = MerkleCommitEngine.create(bindingConfig.getMerkleCommitParallelism());
+		LedgerRepository ledgerRepository = ledgerManager.register(ledgerHash, dbConnNew.getStorageService(),
+				merkleCommitEngine);
 
 		// load provider;
 		LedgerAdminAccount ledgerAdminAccount = ledgerRepository.getAdminAccount();
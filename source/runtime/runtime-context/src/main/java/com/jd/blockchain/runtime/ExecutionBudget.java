@@ -0,0 +1,111 @@
+package com.jd.blockchain.runtime;
+
+/**
+ * 动态模块代码的执行预算；
+ * <p>
+ * 以 {@link JarBytesClassLoader} 计量方式加载的类，在每一个方法的入口以及每一个向后跳转（循环）处调用 {@link #consume()}，消耗当前线程的一个执行步数；<br>
+ * 执行步数只取决于代码本身和输入，与机器的快慢无关，因此预算耗尽的结果在所有节点上都是一致的；<br>
+ * 预算耗尽之后，每一次消耗都会抛出 {@link ExecutionBudgetExceededException}，即使被代码捕获也无法继续执行循环或者调用方法；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public final class ExecutionBudget {
+
+	private static final ThreadLocal<Meter> METER = new ThreadLocal<>();
+
+	private ExecutionBudget() {
+	}
+
+	/**
+	 * 在当前线程开始计量；
+	 * 
+	 * @param limit
+	 *            最大的执行步数；
+	 * @return
+	 */
+	public static Meter begin(long limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("The execution budget is negative!");
+		}
+		if (METER.get() != null) {
+			throw new IllegalStateException("The execution budget of current thread has been began!");
+		}
+		Meter meter = new Meter(limit);
+		METER.set(meter);
+		return meter;
+	}
+
+	/**
+	 * 消耗当前线程的一个执行步数；如果当前线程未开始计量，则忽略；
+	 * <p>
+	 * 由计量的代码调用；
+	 */
+	public static void consume() {
+		Meter meter = METER.get();
+		if (meter != null) {
+			meter.consume();
+		}
+	}
+
+	/**
+	 * 执行步数的计量；
+	 * 
+	 * @author huanghaiquan
+	 *
+	 */
+	public static final class Meter implements AutoCloseable {
+
+		private final long limit;
+
+		private long consumed;
+
+		private boolean closed;
+
+		private Meter(long limit) {
+			this.limit = limit;
+		}
+
+		private void consume() {
+			if (++consumed > limit) {
+				throw new ExecutionBudgetExceededException(limit);
+			}
+		}
+
+		public long getLimit() {
+			return limit;
+		}
+
+		/**
+		 * 已消耗的执行步数；
+		 * 
+		 * @return
+		 */
+		public long getConsumed() {
+			return Math.min(consumed, limit);
+		}
+
+		/**
+		 * 预算是否已经耗尽；
+		 * 
+		 * @return
+		 */
+		public boolean isExceeded() {
+			return consumed > limit;
+		}
+
+		/**
+		 * 结束当前线程的计量；
+		 */
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (METER.get() == this) {
+				METER.remove();
+			}
+		}
+	}
+}
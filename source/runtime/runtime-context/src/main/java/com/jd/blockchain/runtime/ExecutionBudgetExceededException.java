@@ -0,0 +1,24 @@
+package com.jd.blockchain.runtime;
+
+/**
+ * 执行预算耗尽；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public class ExecutionBudgetExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = -2283452154788436112L;
+
+	private final long limit;
+
+	public ExecutionBudgetExceededException(long limit) {
+		super("Execution budget exceeded! --[Limit=" + limit + "]");
+		this.limit = limit;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+}
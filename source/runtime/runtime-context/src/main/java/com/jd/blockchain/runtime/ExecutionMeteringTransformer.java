@@ -0,0 +1,120 @@
+package com.jd.blockchain.runtime;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * 在类的字节码中插入执行步数的计量；参见 {@link ExecutionBudget}；
+ * <p>
+ * 在每一个方法（类的初始化方法除外）的入口，以及每一个跳转到已经出现过的标签（即向后跳转，构成循环）的指令之前，插入对 {@link ExecutionBudget#consume()} 的调用；<br>
+ * 插入的调用不使用操作数栈，也不改变局部变量，因此不需要重新计算栈帧；
+ * 
+ * @author huanghaiquan
+ *
+ */
+class ExecutionMeteringTransformer {
+
+	private static final String BUDGET_CLASS = ExecutionBudget.class.getName().replace('.', '/');
+
+	private static final String CONSUME_METHOD = "consume";
+
+	private static final String CONSUME_DESC = "()V";
+
+	private static final String CLASS_INIT_METHOD = "<clinit>";
+
+	private ExecutionMeteringTransformer() {
+	}
+
+	static byte[] transform(byte[] classBytes) {
+		ClassReader reader = new ClassReader(classBytes);
+		ClassWriter writer = new ClassWriter(0);
+		reader.accept(new MeteringClassVisitor(writer), 0);
+		return writer.toByteArray();
+	}
+
+	private static void visitConsume(MethodVisitor mv) {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, BUDGET_CLASS, CONSUME_METHOD, CONSUME_DESC, false);
+	}
+
+	private static class MeteringClassVisitor extends ClassVisitor {
+
+		MeteringClassVisitor(ClassVisitor cv) {
+			super(Opcodes.ASM5, cv);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+				String[] exceptions) {
+			MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+			// 类的初始化只在首次加载时执行，在各个节点上发生的时机可能不同，因此不计量；
+			if (mv == null || CLASS_INIT_METHOD.equals(name)) {
+				return mv;
+			}
+			return new MeteringMethodVisitor(mv);
+		}
+	}
+
+	private static class MeteringMethodVisitor extends MethodVisitor {
+
+		private final Set<Label> visitedLabels = new HashSet<>();
+
+		MeteringMethodVisitor(MethodVisitor mv) {
+			super(Opcodes.ASM5, mv);
+		}
+
+		@Override
+		public void visitCode() {
+			super.visitCode();
+			visitConsume(mv);
+		}
+
+		@Override
+		public void visitLabel(Label label) {
+			super.visitLabel(label);
+			visitedLabels.add(label);
+		}
+
+		@Override
+		public void visitJumpInsn(int opcode, Label label) {
+			if (visitedLabels.contains(label)) {
+				visitConsume(mv);
+			}
+			super.visitJumpInsn(opcode, label);
+		}
+
+		@Override
+		public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+			if (containsVisited(dflt, labels)) {
+				visitConsume(mv);
+			}
+			super.visitTableSwitchInsn(min, max, dflt, labels);
+		}
+
+		@Override
+		public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+			if (containsVisited(dflt, labels)) {
+				visitConsume(mv);
+			}
+			super.visitLookupSwitchInsn(dflt, keys, labels);
+		}
+
+		private boolean containsVisited(Label dflt, Label[] labels) {
+			if (visitedLabels.contains(dflt)) {
+				return true;
+			}
+			for (Label label : labels) {
+				if (visitedLabels.contains(label)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
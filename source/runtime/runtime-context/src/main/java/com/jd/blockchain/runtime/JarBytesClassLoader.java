@@ -0,0 +1,173 @@
+package com.jd.blockchain.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+/**
+ * 直接从内存中的 jar 包数据加载类和资源的 ClassLoader；
+ * <p>
+ * 创建时只把 jar 包解压为各个条目的字节数组，类在首次加载时才定义；类的字节数组在定义之后仍然保留，可以通过 {@link #getResource(String)} 读取；<br>
+ * 不需要把 jar 包写入临时文件，也不持有任何文件句柄，当不再被引用时即可被回收；<br>
+ * 以计量方式创建时，加载的类都插入了执行步数的计量（参见 {@link ExecutionBudget}）；
+ * 
+ * @author huanghaiquan
+ *
+ */
+public class JarBytesClassLoader extends ClassLoader {
+
+	private static final String PROTOCOL = "jarbytes";
+
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private final String name;
+
+	private final String mainClass;
+
+	private final boolean metered;
+
+	private final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+
+	private final URLStreamHandler resourceHandler = new ResourceHandler();
+
+	/**
+	 * @param name
+	 *            名称；用于资源的 URL；
+	 * @param jarBytes
+	 *            jar 包数据；
+	 * @param parent
+	 */
+	public JarBytesClassLoader(String name, byte[] jarBytes, ClassLoader parent) {
+		this(name, jarBytes, parent, false);
+	}
+
+	/**
+	 * @param name
+	 *            名称；用于资源的 URL；
+	 * @param jarBytes
+	 *            jar 包数据；
+	 * @param parent
+	 * @param metered
+	 *            是否对加载的类计量执行步数；
+	 */
+	public JarBytesClassLoader(String name, byte[] jarBytes, ClassLoader parent, boolean metered) {
+		super(parent);
+		this.name = name;
+		this.metered = metered;
+		try (JarInputStream in = new JarInputStream(new ByteArrayInputStream(jarBytes))) {
+			Manifest manifest = in.getManifest();
+			this.mainClass = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+			JarEntry entry;
+			while ((entry = in.getNextJarEntry()) != null) {
+				if (!entry.isDirectory()) {
+					entries.put(entry.getName(), readEntry(in));
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Illegal jar bytes! --" + e.getMessage(), e);
+		}
+	}
+
+	private static byte[] readEntry(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int len;
+		while ((len = in.read(buffer)) > 0) {
+			out.write(buffer, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 是否对加载的类计量执行步数；
+	 * 
+	 * @return
+	 */
+	public boolean isMetered() {
+		return metered;
+	}
+
+	/**
+	 * jar 包清单中声明的主类；如果未声明，则返回 null；
+	 * 
+	 * @return
+	 */
+	public String getMainClass() {
+		return mainClass;
+	}
+
+	@Override
+	protected Class<?> findClass(String className) throws ClassNotFoundException {
+		String path = className.replace('.', '/') + CLASS_FILE_SUFFIX;
+		// 不移除类的字节数组：转换或者定义失败时可以重试，类定义之后也仍然可以作为资源读取；
+		byte[] classBytes = entries.get(path);
+		if (classBytes == null) {
+			throw new ClassNotFoundException(className);
+		}
+		if (metered) {
+			try {
+				classBytes = ExecutionMeteringTransformer.transform(classBytes);
+			} catch (RuntimeException e) {
+				throw new ClassNotFoundException(className + " cann't be metered! --" + e.getMessage(), e);
+			}
+		}
+		return defineClass(className, classBytes, 0, classBytes.length);
+	}
+
+	@Override
+	protected URL findResource(String resourceName) {
+		if (!entries.containsKey(resourceName)) {
+			return null;
+		}
+		try {
+			return new URL(PROTOCOL, null, -1, "/" + name + "/" + resourceName, resourceHandler);
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+
+	@Override
+	protected Enumeration<URL> findResources(String resourceName) throws IOException {
+		URL url = findResource(resourceName);
+		if (url == null) {
+			return Collections.emptyEnumeration();
+		}
+		return Collections.enumeration(Collections.singletonList(url));
+	}
+
+	private class ResourceHandler extends URLStreamHandler {
+
+		@Override
+		protected URLConnection openConnection(URL url) throws IOException {
+			String prefix = "/" + name + "/";
+			String resourceName = url.getPath().substring(prefix.length());
+			byte[] content = entries.get(resourceName);
+			if (content == null) {
+				throw new IOException("Resource not found! --" + url);
+			}
+			return new URLConnection(url) {
+				@Override
+				public void connect() {
+				}
+
+				@Override
+				public InputStream getInputStream() {
+					return new ByteArrayInputStream(content);
+				}
+			};
+		}
+	}
+}
@@ -2,18 +2,32 @@ package com.jd.blockchain.runtime;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jd.blockchain.utils.codec.HexUtils;
 import com.jd.blockchain.utils.io.FileUtils;
 import com.jd.blockchain.utils.io.RuntimeIOException;
-
+import com.jd.blockchain.utils.security.ShaUtils;
+
+/**
+ * 运行时上下文；
+ * <p>
+ * 动态模块按 jar 包内容的哈希寻址：内容相同的 jar 包只加载一次，不同名称的模块共享同一个 ClassLoader；<br>
+ * jar 包直接在内存中加载（参见 {@link JarBytesClassLoader}），同时加载的 jar 包数量有上限，超出时淘汰最久未使用的，被淘汰的模块在下次访问时重新加载；<br>
+ * 每一个 jar 包以其哈希为文件名在运行时目录中保存一份，模块名称与哈希的对应关系记录在清单中，启动时从清单预加载；<br>
+ * 动态模块的类都计量执行步数，由调用者通过 {@link ExecutionBudget} 限制执行；
+ */
 public abstract class RuntimeContext {
 	
 	public static interface Environment{
@@ -21,7 +35,24 @@ public abstract class RuntimeContext {
 		boolean isProductMode();
 		
 	}
-	
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RuntimeContext.class);
+
+	/**
+	 * 同时加载的 jar 包数量的上限；
+	 */
+	public static final int MAX_LOADED_JARS;
+
+	private static final String MODULE_DIR = "modules";
+
+	private static final String MODULE_MANIFEST = "modules.manifest";
+
+	private static final String MODULE_JAR_SUFFIX = ".mdl";
+
+	static {
+		MAX_LOADED_JARS = Integer.getInteger("runtime-max-loaded-jars", 1024);
+		System.out.println("------ [[ runtime-max-loaded-jars=" + MAX_LOADED_JARS + " ]] ------");
+	}
 
 	private static final Object mutex = new Object();
 	private static volatile RuntimeContext runtimeContext;
@@ -30,7 +61,9 @@ public abstract class RuntimeContext {
 		if (runtimeContext == null) {
 			synchronized (mutex) {
 				if (runtimeContext == null) {
-					runtimeContext = new DefaultRuntimeContext();
+					DefaultRuntimeContext defaultContext = new DefaultRuntimeContext();
+					defaultContext.preloadDynamicModules();
+					runtimeContext = defaultContext;
 				}
 			}
 		}
@@ -44,19 +77,61 @@ public abstract class RuntimeContext {
 		RuntimeContext.runtimeContext = runtimeContext;
 	}
 
-	private Map<String, Module> modules = new ConcurrentHashMap<>();
+	private final Object moduleMutex = new Object();
+
+	/**
+	 * 模块名称与 jar 包哈希的对应关系；
+	 */
+	private Map<String, String> moduleHashes = new ConcurrentHashMap<>();
+
+	/**
+	 * 已加载的模块；
+	 */
+	private Map<String, DefaultModule> modules = new ConcurrentHashMap<>();
+
+	/**
+	 * 已加载的 jar 包；按访问顺序淘汰；
+	 */
+	private Map<String, LoadedJar> loadedJars = Collections.synchronizedMap(new LoadedJarCache(MAX_LOADED_JARS));
 	
 	public RuntimeContext() {
 	}
 
-	private File getDynamicModuleJarFile(String name) {
-		name = name + ".mdl";
-		return new File(getRuntimeDir(), name);
+	private File getModuleDir() {
+		return new File(getRuntimeDir(), MODULE_DIR);
+	}
+
+	private File getDynamicModuleJarFile(String hash) {
+		return new File(getModuleDir(), hash + MODULE_JAR_SUFFIX);
 	}
 
 	public Module getDynamicModule(String name) {
-		return modules.get(name);
-		
+		DefaultModule module = modules.get(name);
+		if (module != null) {
+			// 更新 jar 包的访问顺序；
+			loadedJars.get(module.jar.hash);
+			return module;
+		}
+		String hash = moduleHashes.get(name);
+		if (hash == null) {
+			return null;
+		}
+		// 已被淘汰，或者尚未加载，从保存的 jar 包重新加载；
+		synchronized (moduleMutex) {
+			module = modules.get(name);
+			if (module != null) {
+				return module;
+			}
+			LoadedJar jar = loadedJars.get(hash);
+			if (jar == null) {
+				File jarFile = getDynamicModuleJarFile(hash);
+				if (!jarFile.isFile()) {
+					return null;
+				}
+				jar = loadJar(hash, FileUtils.readBytes(jarFile));
+			}
+			return bindModule(name, jar);
+		}
 	}
 
 	public List<Module> getDynamicModules() {
@@ -64,49 +139,129 @@ public abstract class RuntimeContext {
 	}
 
 	public Module createDynamicModule(String name, byte[] jarBytes) {
-		Module module = modules.get(name);
+		Module module = getDynamicModule(name);
 		if (module != null) {
 			return module;
 		}
-		synchronized (DefaultRuntimeContext.class) {
+		String hash = HexUtils.encode(ShaUtils.hash_256(jarBytes));
+		synchronized (moduleMutex) {
 			module = modules.get(name);
 			if (module != null) {
 				return module;
 			}
+			LoadedJar jar = loadedJars.get(hash);
+			if (jar == null) {
+				jar = loadJar(hash, jarBytes);
+			}
+			saveDynamicModule(name, hash, jarBytes);
+			return bindModule(name, jar);
 		}
+	}
 
-		// Save File to Disk;
-		File jarFile = getDynamicModuleJarFile(name);
-		if (jarFile.exists()) {
-			if (jarFile.isFile()) {
-				FileUtils.deleteFile(jarFile);
-			} else {
-				throw new IllegalStateException("Code storage confliction! --" + jarFile.getAbsolutePath());
+	/**
+	 * 从运行时目录的清单中预加载动态模块；加载的 jar 包数量不超过上限；
+	 */
+	public void preloadDynamicModules() {
+		File manifestFile = new File(getModuleDir(), MODULE_MANIFEST);
+		if (!manifestFile.isFile()) {
+			return;
+		}
+		Properties manifest = FileUtils.readProperties(manifestFile, FileUtils.DEFAULT_CHARSET);
+		for (String name : manifest.stringPropertyNames()) {
+			moduleHashes.putIfAbsent(name, manifest.getProperty(name));
+		}
+		synchronized (moduleMutex) {
+			for (Map.Entry<String, String> entry : moduleHashes.entrySet()) {
+				String name = entry.getKey();
+				String hash = entry.getValue();
+				if (modules.containsKey(name)) {
+					continue;
+				}
+				LoadedJar jar = loadedJars.get(hash);
+				if (jar == null) {
+					File jarFile = getDynamicModuleJarFile(hash);
+					if (loadedJars.size() >= MAX_LOADED_JARS || !jarFile.isFile()) {
+						continue;
+					}
+					try {
+						jar = loadJar(hash, FileUtils.readBytes(jarFile));
+					} catch (RuntimeException e) {
+						LOGGER.error(String.format("Error occurred while preloading dynamic module! --[Name=%s][Hash=%s] %s",
+								name, hash, e.getMessage()), e);
+						continue;
+					}
+				}
+				bindModule(name, jar);
 			}
 		}
-		FileUtils.writeBytes(jarBytes, jarFile);
+	}
 
-		try {
-			URL jarURL = jarFile.toURI().toURL();
-			ClassLoader moduleClassLoader = createDynamicModuleClassLoader(jarURL);
+	private LoadedJar loadJar(String hash, byte[] jarBytes) {
+		LoadedJar jar = new LoadedJar(hash, createDynamicModuleClassLoader(hash, jarBytes));
+		loadedJars.put(hash, jar);
+		return jar;
+	}
 
-			Attributes m = new JarFile(jarFile).getManifest().getMainAttributes();
-			String contractMainClass = m.getValue(Attributes.Name.MAIN_CLASS);
-			module = new DefaultModule(name, moduleClassLoader, contractMainClass);
-			modules.put(name, module);
+	private DefaultModule bindModule(String name, LoadedJar jar) {
+		DefaultModule module = new DefaultModule(name, jar);
+		jar.moduleNames.add(name);
+		DefaultModule previous = modules.put(name, module);
+		// 名称改为绑定到新的 jar 包时，从原来的 jar 包中移除该名称，避免原 jar 包被淘汰时移除新绑定的模块；
+		if (previous != null && previous.jar != jar) {
+			previous.jar.moduleNames.remove(name);
+		}
+		moduleHashes.put(name, jar.hash);
+		return module;
+	}
 
-			return module;
-		} catch (IOException e) {
-			throw new IllegalStateException(e.getMessage(), e);
+	/**
+	 * 保存 jar 包并记录到清单中；内容相同的 jar 包只保存一次；
+	 */
+	private void saveDynamicModule(String name, String hash, byte[] jarBytes) {
+		File moduleDir = getModuleDir();
+		if (!moduleDir.isDirectory() && !moduleDir.mkdirs()) {
+			throw new RuntimeIOException("Cann't create module directory! --" + moduleDir.getAbsolutePath());
+		}
+		File jarFile = getDynamicModuleJarFile(hash);
+		if (!jarFile.exists()) {
+			File tempFile = new File(moduleDir, hash + ".tmp");
+			FileUtils.writeBytes(jarBytes, tempFile);
+			if (!tempFile.renameTo(jarFile)) {
+				FileUtils.deleteFile(tempFile, true);
+				throw new IllegalStateException("Code storage confliction! --" + jarFile.getAbsolutePath());
+			}
+		} else if (!jarFile.isFile()) {
+			throw new IllegalStateException("Code storage confliction! --" + jarFile.getAbsolutePath());
+		}
+		if (!hash.equals(moduleHashes.get(name))) {
+			String line = name + "=" + hash + "\n";
+			FileUtils.appendBytes(line.getBytes(StandardCharsets.UTF_8), new File(moduleDir, MODULE_MANIFEST));
+		}
+	}
+
+	private void releaseJar(LoadedJar jar) {
+		for (String name : jar.moduleNames) {
+			DefaultModule module = modules.get(name);
+			if (module != null && module.jar == jar) {
+				modules.remove(name, module);
+			}
 		}
 	}
 
-	
 	public abstract Environment getEnvironment();
 	
 	protected abstract String getRuntimeDir();
 
-	protected abstract URLClassLoader createDynamicModuleClassLoader(URL jarURL);
+	/**
+	 * 创建动态模块的 ClassLoader；
+	 * 
+	 * @param name
+	 *            jar 包的哈希；
+	 * @param jarBytes
+	 *            jar 包数据；
+	 * @return
+	 */
+	protected abstract JarBytesClassLoader createDynamicModuleClassLoader(String name, byte[] jarBytes);
 
 	// ------------------------- inner types --------------------------
 	
@@ -129,19 +284,16 @@ public abstract class RuntimeContext {
 
 		private String name;
 
-		private ClassLoader moduleClassLoader;
-
-		private String MainClass;
+		private LoadedJar jar;
 
-		public DefaultModule(String name, ClassLoader cl, String mainClass) {
+		public DefaultModule(String name, LoadedJar jar) {
 			this.name = name;
-			this.moduleClassLoader = cl;
-			this.MainClass = mainClass;
+			this.jar = jar;
 		}
 
 		@Override
 		public String getMainClass() {
-			return MainClass;
+			return jar.classLoader.getMainClass();
 		}
 
 
@@ -157,11 +309,52 @@ public abstract class RuntimeContext {
 
 		@Override
 		protected ClassLoader getModuleClassLoader() {
-			return moduleClassLoader;
+			return jar.classLoader;
 		}
 
 	}
 
+	/**
+	 * 已加载的 jar 包，以及使用它的模块；
+	 */
+	private static class LoadedJar {
+
+		private final String hash;
+
+		private final JarBytesClassLoader classLoader;
+
+		private final Set<String> moduleNames = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+		LoadedJar(String hash, JarBytesClassLoader classLoader) {
+			this.hash = hash;
+			this.classLoader = classLoader;
+		}
+	}
+
+	/**
+	 * 按访问顺序淘汰 jar 包；被淘汰的 jar 包的模块同时移除，ClassLoader 不再被引用后即可被回收；
+	 */
+	private class LoadedJarCache extends LinkedHashMap<String, LoadedJar> {
+
+		private static final long serialVersionUID = 5312646227564658765L;
+
+		private final int capacity;
+
+		LoadedJarCache(int capacity) {
+			super(16, 0.75F, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LoadedJar> eldest) {
+			if (size() > capacity) {
+				releaseJar(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * Default RuntimeContext is a context of that:<br>
 	 * all modules are running in a single class loader;
@@ -201,8 +394,8 @@ public abstract class RuntimeContext {
 		}
 
 		@Override
-		protected URLClassLoader createDynamicModuleClassLoader(URL jarURL) {
-			return new URLClassLoader(new URL[] { jarURL }, RuntimeContext.class.getClassLoader());
+		protected JarBytesClassLoader createDynamicModuleClassLoader(String name, byte[] jarBytes) {
+			return new JarBytesClassLoader(name, jarBytes, RuntimeContext.class.getClassLoader(), true);
 		}
 
 	}
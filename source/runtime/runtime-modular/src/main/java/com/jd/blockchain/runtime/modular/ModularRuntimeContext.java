@@ -1,8 +1,6 @@
 package com.jd.blockchain.runtime.modular;
 
-import java.net.URL;
-import java.net.URLClassLoader;
-
+import com.jd.blockchain.runtime.JarBytesClassLoader;
 import com.jd.blockchain.runtime.RuntimeContext;
 
 public class ModularRuntimeContext extends RuntimeContext {
@@ -24,6 +22,7 @@ public class ModularRuntimeContext extends RuntimeContext {
 	
 	void register() {
 		RuntimeContext.set(this);
+		preloadDynamicModules();
 	}
 
 	@Override
@@ -37,8 +36,8 @@ public class ModularRuntimeContext extends RuntimeContext {
 	}
 
 	@Override
-	protected URLClassLoader createDynamicModuleClassLoader(URL jarURL) {
-		return new URLClassLoader(new URL[] {jarURL}, libModule.getModuleClassLoader());
+	protected JarBytesClassLoader createDynamicModuleClassLoader(String name, byte[] jarBytes) {
+		return new JarBytesClassLoader(name, jarBytes, libModule.getModuleClassLoader(), true);
 	}
 
 	// --------------------------- inner types -----------------------------
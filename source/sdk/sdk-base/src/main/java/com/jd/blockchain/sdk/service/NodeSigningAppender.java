@@ -1,5 +1,7 @@
 package com.jd.blockchain.sdk.service;
 
+import java.util.concurrent.Semaphore;
+
 import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
 import com.jd.blockchain.binaryproto.DataContractRegistry;
 import com.jd.blockchain.consensus.MessageService;
@@ -10,23 +12,37 @@ import com.jd.blockchain.crypto.asymmetric.CryptoKeyPair;
 import com.jd.blockchain.crypto.asymmetric.SignatureDigest;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.NodeRequest;
+import com.jd.blockchain.ledger.TransactionContent;
 import com.jd.blockchain.ledger.TransactionRequest;
 import com.jd.blockchain.ledger.TransactionResponse;
+import com.jd.blockchain.ledger.data.AsyncTransactionService;
 import com.jd.blockchain.ledger.data.DigitalSignatureBlob;
-import com.jd.blockchain.ledger.data.TransactionService;
 import com.jd.blockchain.ledger.data.TxRequestMessage;
 import com.jd.blockchain.utils.concurrent.AsyncFuture;
+import com.jd.blockchain.utils.concurrent.CompletableAsyncFuture;
 
 /**
  * {@link NodeSigningAppender} 以装饰者模式实现，为交易请求附加上节点签名；
+ * <p>
+ * 交易请求以异步的方式提交到共识客户端（参见 {@link MessageService#sendOrdered(byte[])}），调用者的线程不等待交易所在的区块提交，
+ * 待处理的交易也不占用线程；<br>
+ * 待处理的交易数量有上限，超出时新的交易立即以异常结束，不阻塞调用者的线程，从而对调用者形成反压；
  * 
  * @author huanghaiquan
  *
  */
-public class NodeSigningAppender implements TransactionService {
+public class NodeSigningAppender implements AsyncTransactionService {
+
+	/**
+	 * 默认的待处理交易数量上限；
+	 */
+	public static final int DEFAULT_MAX_PENDING_COUNT;
 
 	static {
 		DataContractRegistry.register(NodeRequest.class);
+
+		DEFAULT_MAX_PENDING_COUNT = Integer.getInteger("gateway-max-pending-tx", 20000);
+		System.out.println(String.format("------ [[ gateway-max-pending-tx=%s ]] ------", DEFAULT_MAX_PENDING_COUNT));
 	}
 
 //	private TransactionService consensusService;
@@ -39,10 +55,33 @@ public class NodeSigningAppender implements TransactionService {
 	
 	private CryptoAlgorithm hashAlgorithm;
 
+	private final int maxPendingCount;
+
+	private final Semaphore pendingPermits;
+
+	private volatile boolean closed;
+
 	public NodeSigningAppender(CryptoAlgorithm hashAlgorithm, CryptoKeyPair nodeKeyPair, ConsensusClient consensusClient) {
+		this(hashAlgorithm, nodeKeyPair, consensusClient, DEFAULT_MAX_PENDING_COUNT);
+	}
+
+	/**
+	 * @param hashAlgorithm
+	 * @param nodeKeyPair
+	 * @param consensusClient
+	 * @param maxPendingCount
+	 *            待处理交易数量的上限；
+	 */
+	public NodeSigningAppender(CryptoAlgorithm hashAlgorithm, CryptoKeyPair nodeKeyPair, ConsensusClient consensusClient,
+			int maxPendingCount) {
+		if (maxPendingCount < 1) {
+			throw new IllegalArgumentException("The max pending count must be positive!");
+		}
 		this.hashAlgorithm = hashAlgorithm;
 		this.nodeKeyPair = nodeKeyPair;
 		this.consensusClient = consensusClient;
+		this.maxPendingCount = maxPendingCount;
+		this.pendingPermits = new Semaphore(maxPendingCount);
 	}
 
 //	public NodeSigningAppender(CryptoAlgorithm hashAlgorithm, TransactionService reallyService, CryptoKeyPair nodeKeyPair) {
@@ -57,15 +96,52 @@ public class NodeSigningAppender implements TransactionService {
 		return this;
 	}
 
+	/**
+	 * 待处理的交易数量；
+	 * 
+	 * @return
+	 */
+	public int getPendingCount() {
+		return maxPendingCount - pendingPermits.availablePermits();
+	}
+
+	public int getMaxPendingCount() {
+		return maxPendingCount;
+	}
+
 	@Override
-	public TransactionResponse process(TransactionRequest txRequest) {
+	public AsyncFuture<TransactionResponse> processAsync(TransactionRequest txRequest) {
+		CompletableAsyncFuture<TransactionResponse> future = new CompletableAsyncFuture<>();
+		if (closed) {
+			future.error(new IllegalStateException("The transaction service has been closed!"));
+			return future;
+		}
+		byte[] nodeRequestBytes;
+		try {
+			nodeRequestBytes = signAndEncode(txRequest);
+		} catch (Exception e) {
+			future.error(e);
+			return future;
+		}
+
+		// 不等待，立即失败；
+		if (!pendingPermits.tryAcquire()) {
+			future.error(new IllegalStateException(
+					String.format("Too many pending transactions! --[MaxPendingCount=%s]", maxPendingCount)));
+			return future;
+		}
+		send(nodeRequestBytes, future);
+		return future;
+	}
+
+	private byte[] signAndEncode(TransactionRequest txRequest) {
 		TxRequestMessage txMessage = new TxRequestMessage(txRequest);
 
-		// 生成网关签名；
-		byte[] endpointRequestBytes = BinaryEncodingUtils.encode(txMessage, TransactionRequest.class);
+		// 生成网关签名；与终端签名一样以交易内容为签名的内容，使共识节点可以验证（参见 TransactionVerifier）；
+		byte[] txContentBytes = BinaryEncodingUtils.encode(txMessage.getTransactionContent(), TransactionContent.class);
 
 		CryptoAlgorithm signAlgorithm = nodeKeyPair.getPrivKey().getAlgorithm();
-		SignatureDigest signDigest = CryptoUtils.sign(signAlgorithm).sign(nodeKeyPair.getPrivKey(), endpointRequestBytes);
+		SignatureDigest signDigest = CryptoUtils.sign(signAlgorithm).sign(nodeKeyPair.getPrivKey(), txContentBytes);
 		txMessage.addNodeSignatures(new DigitalSignatureBlob(nodeKeyPair.getPubKey(), signDigest));
 
 		// 计算交易哈希；
@@ -73,8 +149,45 @@ public class NodeSigningAppender implements TransactionService {
 		HashDigest txHash = CryptoUtils.hash(hashAlgorithm).hash(nodeRequestBytes);
 		txMessage.setHash(txHash);
 
-		AsyncFuture<byte[]> result =  messageService.sendOrdered(BinaryEncodingUtils.encode(txMessage, TransactionRequest.class));
+		return BinaryEncodingUtils.encode(txMessage, TransactionRequest.class);
+	}
+
+	/**
+	 * 提交到共识客户端；
+	 * <p>
+	 * 共识客户端只发出请求，不等待交易的结果；结果以回调的方式处理；
+	 * 
+	 * @param nodeRequestBytes
+	 * @param future
+	 */
+	private void send(byte[] nodeRequestBytes, CompletableAsyncFuture<TransactionResponse> future) {
+		AsyncFuture<byte[]> result;
+		try {
+			result = messageService.sendOrdered(nodeRequestBytes);
+		} catch (Exception e) {
+			pendingPermits.release();
+			future.error(e);
+			return;
+		}
+		result.whenComplete((responseBytes, error) -> {
+			pendingPermits.release();
+			if (error != null) {
+				future.error(error);
+				return;
+			}
+			try {
+				TransactionResponse response = BinaryEncodingUtils.decode(responseBytes);
+				future.complete(response);
+			} catch (Exception e) {
+				future.error(e);
+			}
+		});
+	}
 
-		return BinaryEncodingUtils.decode(result.get());
+	/**
+	 * 关闭；不再接受新的交易，已提交的交易仍然会处理完成；
+	 */
+	public void close() {
+		closed = true;
 	}
 }
@@ -7,6 +7,7 @@ import com.jd.blockchain.consensus.client.ConsensusClient;
 import com.jd.blockchain.crypto.asymmetric.CryptoKeyPair;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.CryptoSetting;
+import com.jd.blockchain.ledger.data.AsyncTransactionService;
 import com.jd.blockchain.ledger.data.TransactionService;
 import com.jd.blockchain.manage.GatewayIncomingSetting;
 import com.jd.blockchain.manage.LedgerIncomingSetting;
@@ -74,7 +75,7 @@ public class PeerBlockchainServiceFactory implements BlockchainServiceFactory, C
 	 * 
 	 * @return
 	 */
-	public TransactionService getTransactionService() {
+	public AsyncTransactionService getTransactionService() {
 		return peerServiceProxy;
 	}
 
@@ -257,6 +258,9 @@ public class PeerBlockchainServiceFactory implements BlockchainServiceFactory, C
 		try {
 			for (Map.Entry<HashDigest, LedgerAccessContextImpl> entry : accessContextMap.entrySet()) {
 				LedgerAccessContextImpl ctx = entry.getValue();
+				if (ctx.txProcService instanceof NodeSigningAppender) {
+					((NodeSigningAppender) ctx.txProcService).close();
+				}
 				ctx.consensusClient.close();
 			}
 			httpConnectionManager.close();
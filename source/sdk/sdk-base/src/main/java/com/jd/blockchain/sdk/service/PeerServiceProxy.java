@@ -3,11 +3,14 @@ package com.jd.blockchain.sdk.service;
 import com.jd.blockchain.crypto.hash.HashDigest;
 import com.jd.blockchain.ledger.TransactionRequest;
 import com.jd.blockchain.ledger.TransactionResponse;
+import com.jd.blockchain.ledger.data.AsyncTransactionService;
 import com.jd.blockchain.ledger.data.TransactionService;
 import com.jd.blockchain.sdk.BlockchainException;
 import com.jd.blockchain.sdk.BlockchainQueryService;
 import com.jd.blockchain.sdk.LedgerAccessContext;
 import com.jd.blockchain.sdk.proxy.BlockchainServiceProxy;
+import com.jd.blockchain.utils.concurrent.AsyncFuture;
+import com.jd.blockchain.utils.concurrent.CompletableAsyncFuture;
 
 import java.util.HashMap;
 import java.util.List;
@@ -21,7 +24,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * @author huanghaiquan
  *
  */
-public class PeerServiceProxy extends BlockchainServiceProxy implements TransactionService {
+public class PeerServiceProxy extends BlockchainServiceProxy implements AsyncTransactionService {
 
 	private final Lock accessLock = new ReentrantLock();
 
@@ -88,4 +91,16 @@ public class PeerServiceProxy extends BlockchainServiceProxy implements Transact
 		TransactionService targetTxService = getTransactionService(txRequest.getTransactionContent().getLedgerHash());
 		return targetTxService.process(txRequest);
 	}
+
+	/**
+	 * 异步地处理网关的交易转发；如果目标账本的交易服务不支持异步处理，则在当前线程同步处理；
+	 */
+	@Override
+	public AsyncFuture<TransactionResponse> processAsync(TransactionRequest txRequest) {
+		TransactionService targetTxService = getTransactionService(txRequest.getTransactionContent().getLedgerHash());
+		if (targetTxService instanceof AsyncTransactionService) {
+			return ((AsyncTransactionService) targetTxService).processAsync(txRequest);
+		}
+		return CompletableAsyncFuture.completeFuture(targetTxService.process(txRequest));
+	}
 }
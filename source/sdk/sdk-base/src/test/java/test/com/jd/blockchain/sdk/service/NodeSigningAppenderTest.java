@@ -0,0 +1,112 @@
+package test.com.jd.blockchain.sdk.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
+import com.jd.blockchain.binaryproto.DataContractRegistry;
+import com.jd.blockchain.consensus.MessageService;
+import com.jd.blockchain.consensus.client.ConsensusClient;
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.CryptoUtils;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.BlockchainKeyGenerator;
+import com.jd.blockchain.ledger.BlockchainKeyPair;
+import com.jd.blockchain.ledger.DataAccountKVSetOperation;
+import com.jd.blockchain.ledger.TransactionContent;
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.ledger.TransactionRequestBuilder;
+import com.jd.blockchain.ledger.TransactionResponse;
+import com.jd.blockchain.ledger.TransactionState;
+import com.jd.blockchain.ledger.data.TxBuilder;
+import com.jd.blockchain.ledger.data.TxResponseMessage;
+import com.jd.blockchain.sdk.service.NodeSigningAppender;
+import com.jd.blockchain.utils.concurrent.AsyncFuture;
+import com.jd.blockchain.utils.concurrent.CompletableAsyncFuture;
+
+public class NodeSigningAppenderTest {
+
+	static {
+		DataContractRegistry.register(TransactionContent.class);
+		DataContractRegistry.register(TransactionRequest.class);
+		DataContractRegistry.register(TransactionResponse.class);
+		DataContractRegistry.register(DataAccountKVSetOperation.class);
+	}
+
+	/**
+	 * 待处理的交易达到上限时，新的交易以异常结束；已提交的交易完成后可以继续提交；
+	 */
+	@Test
+	public void testPendingLimit() throws InterruptedException {
+		BlockingQueue<CompletableAsyncFuture<byte[]>> consensusResults = new LinkedBlockingQueue<>();
+		MessageService messageService = mock(MessageService.class);
+		when(messageService.sendOrdered(any(byte[].class))).then(invocation -> {
+			CompletableAsyncFuture<byte[]> result = new CompletableAsyncFuture<>();
+			consensusResults.add(result);
+			return result;
+		});
+		ConsensusClient consensusClient = mock(ConsensusClient.class);
+		when(consensusClient.getMessageService()).thenReturn(messageService);
+
+		BlockchainKeyPair nodeKey = BlockchainKeyGenerator.getInstance().generate();
+		NodeSigningAppender signingAppender = new NodeSigningAppender(CryptoAlgorithm.SHA256, nodeKey,
+				consensusClient, 2).init();
+
+		HashDigest ledgerHash = randomHash();
+		AsyncFuture<TransactionResponse> future1 = signingAppender.processAsync(createRequest(ledgerHash));
+		AsyncFuture<TransactionResponse> future2 = signingAppender.processAsync(createRequest(ledgerHash));
+		AsyncFuture<TransactionResponse> future3 = signingAppender.processAsync(createRequest(ledgerHash));
+
+		assertEquals(2, signingAppender.getPendingCount());
+		assertTrue(future3.isDone());
+		assertTrue(future3.isExceptionally());
+
+		CompletableAsyncFuture<byte[]> consensusResult1 = consensusResults.poll(5, TimeUnit.SECONDS);
+		TxResponseMessage response = new TxResponseMessage(ledgerHash);
+		response.setExecutionState(TransactionState.SUCCESS);
+		consensusResult1.complete(BinaryEncodingUtils.encode(response, TransactionResponse.class));
+
+		assertTrue(future1.isDone());
+		assertFalse(future1.isExceptionally());
+		assertEquals(TransactionState.SUCCESS, future1.get().getExecutionState());
+		assertFalse(future2.isDone());
+		assertEquals(1, signingAppender.getPendingCount());
+
+		AsyncFuture<TransactionResponse> future4 = signingAppender.processAsync(createRequest(ledgerHash));
+		assertFalse(future4.isDone());
+
+		CompletableAsyncFuture<byte[]> consensusResult2 = consensusResults.poll(5, TimeUnit.SECONDS);
+		consensusResult2.error(new IllegalStateException("Consensus error!"));
+		assertTrue(future2.isExceptionally());
+
+		// 关闭之后不再接受新的交易；
+		signingAppender.close();
+		AsyncFuture<TransactionResponse> future5 = signingAppender.processAsync(createRequest(ledgerHash));
+		assertTrue(future5.isExceptionally());
+	}
+
+	private static TransactionRequest createRequest(HashDigest ledgerHash) {
+		TxBuilder txBuilder = new TxBuilder(ledgerHash);
+		txBuilder.dataAccount(BlockchainKeyGenerator.getInstance().generate().getAddress()).set("A", "A-0", -1);
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		txReqBuilder.signAsEndpoint(BlockchainKeyGenerator.getInstance().generate());
+		return txReqBuilder.buildRequest();
+	}
+
+	private static HashDigest randomHash() {
+		byte[] data = new byte[64];
+		new Random().nextBytes(data);
+		return CryptoUtils.hash(CryptoAlgorithm.SHA256).hash(data);
+	}
+}
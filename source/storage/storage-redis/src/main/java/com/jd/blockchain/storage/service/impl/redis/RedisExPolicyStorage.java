@@ -1,7 +1,13 @@
 package com.jd.blockchain.storage.service.impl.redis;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesBuffers;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -9,6 +15,8 @@ import redis.clients.util.SafeEncoder;
 
 public class RedisExPolicyStorage implements ExPolicyKVStorage {
 
+	private final ThreadLocal<Batch> batchThreadLocal = new ThreadLocal<>();
+
 	private JedisPool jedisPool;
 
 	public RedisExPolicyStorage(JedisPool jedisPool) {
@@ -17,51 +25,191 @@ public class RedisExPolicyStorage implements ExPolicyKVStorage {
 
 	@Override
 	public byte[] get(Bytes key) {
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			byte[] value = batch.values.get(key);
+			if (value != null) {
+				return value;
+			}
+		}
 		try (Jedis jedis = jedisPool.getResource()) {
 //			byte[] keyBytes = SafeEncoder.encode(key);
 //			byte[] valueBytes = jedis.get(keyBytes);
-			byte[] valueBytes = jedis.get(key.toBytes());
+			byte[] valueBytes = jedis.get(BytesBuffers.flatten(key));
 			return valueBytes;
 		}
 	}
 	
+	/**
+	 * 以一次 MGET 读取批量中未写入的全部键；
+	 */
+	@Override
+	public byte[][] multiGet(Bytes[] keys) {
+		byte[][] values = new byte[keys.length][];
+		Batch batch = batchThreadLocal.get();
+		int[] indexes = new int[keys.length];
+		List<byte[]> keyBytes = new ArrayList<>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			byte[] value = batch == null ? null : batch.values.get(keys[i]);
+			if (value != null) {
+				values[i] = value;
+			} else {
+				indexes[keyBytes.size()] = i;
+				// 多个键同时发送，不能使用线程内复用的缓冲区；
+				keyBytes.add(keys[i].toBytes());
+			}
+		}
+		if (keyBytes.isEmpty()) {
+			return values;
+		}
+		List<byte[]> results;
+		try (Jedis jedis = jedisPool.getResource()) {
+			results = jedis.mget(keyBytes.toArray(new byte[keyBytes.size()][]));
+		}
+		for (int j = 0; j < results.size(); j++) {
+			values[indexes[j]] = results.get(j);
+		}
+		return values;
+	}
+
 	@Override
 	public boolean exist(Bytes key) {
+		Batch batch = batchThreadLocal.get();
+		if (batch != null && batch.values.containsKey(key)) {
+			return true;
+		}
 		try (Jedis jedis = jedisPool.getResource()) {
 //			byte[] keyBytes = SafeEncoder.encode(key);
 //			return jedis.exists(keyBytes);
-			return jedis.exists(key.toBytes());
+			return jedis.exists(BytesBuffers.flatten(key));
 		}
 	}
 
 	@Override
 	public boolean set(Bytes key, byte[] value, ExPolicy ex) {
+		byte[] nxxx;
+		switch (ex) {
+		case EXISTING:
+			nxxx = RedisConsts.XX;
+			break;
+		case NOT_EXISTING:
+			nxxx = RedisConsts.NX;
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported ExPolicy[" + ex.toString() + "]!");
+		}
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			return batch.set(key, value, ex, nxxx);
+		}
 		try (Jedis jedis = jedisPool.getResource()) {
-			byte[] nxxx;
-			switch (ex) {
-			case EXISTING:
-				nxxx = RedisConsts.XX;
-				break;
-			case NOT_EXISTING:
-				nxxx = RedisConsts.NX;
-				break;
-			default:
-				throw new IllegalArgumentException("Unsupported ExPolicy[" + ex.toString() + "]!");
-			}
 //			byte[] keyBytes = SafeEncoder.encode(key);
 //			String retn = jedis.set(keyBytes, value, nxxx);
-			String retn = jedis.set(key.toBytes(), value, nxxx);
+			String retn = jedis.set(BytesBuffers.flatten(key), value, nxxx);
 			return RedisConsts.OK.equalsIgnoreCase(retn);
 		}
 	}
 
+	/**
+	 * 开始批量写入；批量以线程为单位，可以嵌套，嵌套的批量合并到最外层的批量中一起提交；
+	 * <p>
+	 * 批量写入期间的写入操作在当前线程中缓存，直到 {@link #batchCommit()} 时以一个脚本（参见
+	 * {@link RedisScript#SET_WITH_POLICIES}）原子性地提交到 Redis；<br>
+	 * 写入时只对同一批量中已写入的键校验存在性策略，其余的写入预期成功，在提交之前未经服务端确认；提交时由脚本在服务端先校验全部写入的存在性策略，
+	 * 全部满足才写入；如有不满足则不写入任何值，并抛出 {@link IllegalStateException}；
+	 */
 	@Override
 	public void batchBegin() {
-		// un support!!!
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			batch.depth++;
+			return;
+		}
+		batchThreadLocal.set(new Batch());
 	}
 
+	/**
+	 * 提交批量写入；只有最外层的批量提交时才写入 Redis；
+	 */
 	@Override
 	public void batchCommit() {
-		// un support!!!
+		Batch batch = batchThreadLocal.get();
+		if (batch == null) {
+			return;
+		}
+		if (batch.depth > 0) {
+			batch.depth--;
+			return;
+		}
+		batchThreadLocal.remove();
+		if (batch.writes.isEmpty()) {
+			return;
+		}
+		int count = batch.writes.size();
+		byte[][] params = new byte[count * 3][];
+		for (int i = 0; i < count; i++) {
+			PendingWrite write = batch.writes.get(i);
+			// 全部参数在同一个命令中发送，不能使用线程内复用的缓冲区；
+			params[i] = write.key.toBytes();
+			params[count + 2 * i] = write.nxxx;
+			params[count + 2 * i + 1] = write.value;
+		}
+		Object r;
+		try (Jedis jedis = jedisPool.getResource()) {
+			r = RedisScript.SET_WITH_POLICIES.eval(jedis, count, params);
+		}
+		int conflict = ((Long) r).intValue();
+		if (conflict > 0) {
+			PendingWrite write = batch.writes.get(conflict - 1);
+			throw new IllegalStateException(String.format(
+					"Fail on committing batch to redis! ExPolicy doesn't match! --[KEY=%s][EX_POLICY=%s]", write.key,
+					write.ex));
+		}
+	}
+
+	private static class PendingWrite {
+
+		private final Bytes key;
+
+		private final byte[] value;
+
+		private final ExPolicy ex;
+
+		private final byte[] nxxx;
+
+		private PendingWrite(Bytes key, byte[] value, ExPolicy ex, byte[] nxxx) {
+			this.key = key;
+			this.value = value;
+			this.ex = ex;
+			this.nxxx = nxxx;
+		}
+	}
+
+	private static class Batch {
+
+		/**
+		 * 嵌套的批量的层数；
+		 */
+		private int depth;
+
+		/**
+		 * 按写入顺序排列的写入操作；
+		 */
+		private final List<PendingWrite> writes = new ArrayList<>();
+
+		/**
+		 * 批量中写入的键的最新值；
+		 */
+		private final Map<Bytes, byte[]> values = new HashMap<>();
+
+		private boolean set(Bytes key, byte[] value, ExPolicy ex, byte[] nxxx) {
+			boolean written = values.containsKey(key);
+			if (written && ex == ExPolicy.NOT_EXISTING) {
+				return false;
+			}
+			writes.add(new PendingWrite(key, value, ex, nxxx));
+			values.put(key, value);
+			return true;
+		}
 	}
 }
\ No newline at end of file
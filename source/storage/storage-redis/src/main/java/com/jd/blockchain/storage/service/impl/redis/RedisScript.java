@@ -0,0 +1,165 @@
+package com.jd.blockchain.storage.service.impl.redis;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Redis 的 Lua 脚本；
+ * <p>
+ * 脚本以 SHA1 摘要（EVALSHA）执行，避免每次传输脚本内容；服务端缺少脚本（如重启或执行了 SCRIPT FLUSH）时自动重新加载；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class RedisScript {
+
+	/**
+	 * 写入指定版本的值；仅当指定版本恰好是下一个版本时才写入；
+	 * <p>
+	 * KEYS[1]：键；ARGV[1]：要写入的版本；ARGV[2]：值；<br>
+	 * 返回 1 表示写入成功，返回 0 表示版本不匹配；
+	 */
+	public static final RedisScript SET_VERSION = new RedisScript(
+			"if redis.call('HLEN', KEYS[1]) == tonumber(ARGV[1]) then\n"
+			+ "  return redis.call('HSETNX', KEYS[1], ARGV[1], ARGV[2])\n"
+			+ "end\n"
+			+ "return 0");
+
+	/**
+	 * 原子性地写入一批指定版本的值；先校验全部写入的版本，全部匹配才写入，否则不写入任何值；
+	 * <p>
+	 * KEYS[i]：第 i 个写入的键，同一个键可以出现多次，版本须连续；ARGV[2i-1]：第 i 个写入的版本；ARGV[2i]：第 i 个写入的值；<br>
+	 * 返回 0 表示全部写入成功，返回 i 表示第 i 个写入的版本不匹配；
+	 */
+	public static final RedisScript SET_VERSIONS = new RedisScript(
+			"local lens = {}\n"
+			+ "for i = 1, #KEYS do\n"
+			+ "  local n = lens[KEYS[i]]\n"
+			+ "  if n == nil then\n"
+			+ "    n = redis.call('HLEN', KEYS[i])\n"
+			+ "  end\n"
+			+ "  if n ~= tonumber(ARGV[2 * i - 1]) then\n"
+			+ "    return i\n"
+			+ "  end\n"
+			+ "  lens[KEYS[i]] = n + 1\n"
+			+ "end\n"
+			+ "for i = 1, #KEYS do\n"
+			+ "  redis.call('HSET', KEYS[i], ARGV[2 * i - 1], ARGV[2 * i])\n"
+			+ "end\n"
+			+ "return 0");
+
+	/**
+	 * 原子性地按存在性策略写入一批值；先校验全部写入的存在性策略，全部满足才写入，否则不写入任何值；
+	 * <p>
+	 * KEYS[i]：第 i 个写入的键；ARGV[2i-1]：第 i 个写入的存在性策略，“NX” 或者 “XX”；ARGV[2i]：第 i 个写入的值；<br>
+	 * 返回 0 表示全部写入成功，返回 i 表示第 i 个写入不满足存在性策略；
+	 */
+	public static final RedisScript SET_WITH_POLICIES = new RedisScript(
+			"local written = {}\n"
+			+ "for i = 1, #KEYS do\n"
+			+ "  local exists = written[KEYS[i]] or redis.call('EXISTS', KEYS[i]) == 1\n"
+			+ "  if (ARGV[2 * i - 1] == 'NX' and exists) or (ARGV[2 * i - 1] == 'XX' and not exists) then\n"
+			+ "    return i\n"
+			+ "  end\n"
+			+ "  written[KEYS[i]] = true\n"
+			+ "end\n"
+			+ "for i = 1, #KEYS do\n"
+			+ "  redis.call('SET', KEYS[i], ARGV[2 * i])\n"
+			+ "end\n"
+			+ "return 0");
+
+	/**
+	 * 读取最新版本及其值；
+	 * <p>
+	 * KEYS[1]：键；<br>
+	 * 键不存在时返回 nil，否则返回 [最新版本, 值]；
+	 */
+	public static final RedisScript GET_LATEST = new RedisScript(
+			"local n = redis.call('HLEN', KEYS[1])\n"
+			+ "if n == 0 then\n"
+			+ "  return nil\n"
+			+ "end\n"
+			+ "return {n - 1, redis.call('HGET', KEYS[1], tostring(n - 1))}");
+
+	private final String script;
+
+	private final byte[] scriptBytes;
+
+	private final byte[] sha1;
+
+	public RedisScript(String script) {
+		this.script = script;
+		this.scriptBytes = SafeEncoder.encode(script);
+		this.sha1 = SafeEncoder.encode(sha1Hex(scriptBytes));
+	}
+
+	public String getScript() {
+		return script;
+	}
+
+	public String getSha1() {
+		return SafeEncoder.encode(sha1);
+	}
+
+	/**
+	 * 执行脚本；
+	 *
+	 * @param jedis
+	 * @param keyCount
+	 *            键的数量；
+	 * @param params
+	 *            参数；前 keyCount 个是键；
+	 * @return
+	 */
+	public Object eval(Jedis jedis, int keyCount, byte[]... params) {
+		try {
+			return jedis.evalsha(sha1, keyCount, params);
+		} catch (JedisNoScriptException e) {
+			load(jedis);
+			return jedis.evalsha(sha1, keyCount, params);
+		}
+	}
+
+	/**
+	 * 在管道中执行脚本；
+	 * <p>
+	 * 管道中无法处理脚本不存在的错误，因此在开始管道之前，须先通过 {@link #load(Jedis)} 加载脚本；
+	 *
+	 * @param pipeline
+	 * @param keyCount
+	 * @param params
+	 * @return
+	 */
+	public Response<Object> eval(Pipeline pipeline, int keyCount, byte[]... params) {
+		return pipeline.evalsha(sha1, keyCount, params);
+	}
+
+	/**
+	 * 向服务端加载脚本；
+	 *
+	 * @param jedis
+	 */
+	public void load(Jedis jedis) {
+		jedis.scriptLoad(scriptBytes);
+	}
+
+	private static String sha1Hex(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+				hex.append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+}
@@ -1,11 +1,20 @@
 package com.jd.blockchain.storage.service.impl.redis;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
 import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesBuffers;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.util.SafeEncoder;
 
 /**
@@ -20,15 +29,24 @@ import redis.clients.util.SafeEncoder;
  * 4、“版本增长”必须以 1 顺序递增，不允许跳空递增；<br>
  * 
  * <p>
- * 由于 Redis 缺少事务特性，并且无法很好地自定义组合的原子操作（ MULTI-EXEC 不适用于集群模式下），所以在此实现中只能做到前面 3
- * 点。<br>
- * 第 4 点由调用方（账本操作层）在调用前做了版本校验，所以从整个系统来看也可以保证以上的4点要求。
+ * 由于 MULTI-EXEC 不适用于集群模式下，此实现通过 Lua 脚本（参见 {@link RedisScript#SET_VERSION}）在服务端原子性地校验版本并写入，
+ * 以单个键为单位保证以上 4 点要求；<br>
+ * 批量写入（参见 {@link #batchBegin()}）以一个 Lua 脚本（参见 {@link RedisScript#SET_VERSIONS}）一次性提交，
+ * 批量中的全部写入要么都成功，要么都不写入；<br>
+ * 注：脚本涉及批量中的全部键，因此要求单个 Redis 节点，与 {@link JedisPool} 的连接方式一致。
  * 
  * @author huanghaiquan
  *
  */
 public class RedisVerioningStorage implements VersioningKVStorage {
 
+	/**
+	 * 批量读取时一次管道同步中的最大命令数量；
+	 */
+	private static final int MAX_PIPELINE_SIZE = 1024;
+
+	private final ThreadLocal<Batch> batchThreadLocal = new ThreadLocal<>();
+
 	private JedisPool jedisPool;
 
 	public RedisVerioningStorage(JedisPool jedisPool) {
@@ -37,15 +55,25 @@ public class RedisVerioningStorage implements VersioningKVStorage {
 
 	@Override
 	public long getVersion(Bytes key) {
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			PendingWrite pending = batch.latestWrites.get(key);
+			if (pending != null) {
+				return pending.version;
+			}
+		}
 		try (Jedis jedis = jedisPool.getResource()) {
 //			byte[] keyBytes = SafeEncoder.encode(key);
 //			return jedis.hlen(keyBytes) - 1;
-			return jedis.hlen(key.toBytes()) - 1;
+			return jedis.hlen(BytesBuffers.flatten(key)) - 1;
 		}
 	}
 
 	@Override
 	public VersioningKVEntry getEntry(Bytes key, long version) {
+		if (version < 0) {
+			return getLatest(key);
+		}
 		byte[] value = get(key, version);
 		if (value == null) {
 			return null;
@@ -55,51 +83,286 @@ public class RedisVerioningStorage implements VersioningKVStorage {
 
 	@Override
 	public byte[] get(Bytes key, long version) {
-		try (Jedis jedis = jedisPool.getResource()) {
-			long ver = version;
-			if (ver < 0) {
-				//查询最新；
-				ver = getVersion(key);
-			}
-			if (ver < 0) {
-				return null;
+		if (version < 0) {
+			VersioningKVEntry latest = getLatest(key);
+			return latest == null ? null : latest.getValue();
+		}
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			PendingWrite pending = batch.latestWrites.get(key);
+			if (pending != null && pending.version == version) {
+				return pending.value;
 			}
+		}
+		try (Jedis jedis = jedisPool.getResource()) {
 //			byte[] keyBytes = SafeEncoder.encode(key);
 //			byte[] verBytes = encodeVersionKey(ver);
 //			byte[] value = jedis.hget(keyBytes, verBytes);
-			byte[] verBytes = encodeVersionKey(ver);
-			byte[] value = jedis.hget(key.toBytes(), verBytes);
+			byte[] verBytes = encodeVersionKey(version);
+			byte[] value = jedis.hget(BytesBuffers.flatten(key), verBytes);
 			return value;
 		}
 	}
 
+	/**
+	 * 以一次往返读取最新版本及其值；
+	 *
+	 * @param key
+	 * @return 键不存在时返回 null；
+	 */
+	private VersioningKVEntry getLatest(Bytes key) {
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			PendingWrite pending = batch.latestWrites.get(key);
+			if (pending != null) {
+				return new VersioningKVData(key, pending.version, pending.value);
+			}
+		}
+		Object reply;
+		try (Jedis jedis = jedisPool.getResource()) {
+			reply = RedisScript.GET_LATEST.eval(jedis, 1, BytesBuffers.flatten(key));
+		}
+		return toLatestEntry(key, reply);
+	}
+
+	/**
+	 * 以管道批量执行 {@link RedisScript#GET_LATEST} 读取多个键的最新版本及其值；批量中已写入的键直接返回批量中的最新写入；
+	 */
+	@Override
+	public VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		Batch batch = batchThreadLocal.get();
+		int[] indexes = new int[keys.length];
+		int count = 0;
+		for (int i = 0; i < keys.length; i++) {
+			PendingWrite pending = batch == null ? null : batch.latestWrites.get(keys[i]);
+			if (pending != null) {
+				entries[i] = new VersioningKVData(keys[i], pending.version, pending.value);
+			} else {
+				indexes[count++] = i;
+			}
+		}
+		if (count == 0) {
+			return entries;
+		}
+		try (Jedis jedis = jedisPool.getResource()) {
+			RedisScript.GET_LATEST.load(jedis);
+			int offset = 0;
+			while (offset < count) {
+				int size = Math.min(MAX_PIPELINE_SIZE, count - offset);
+				Pipeline pipeline = jedis.pipelined();
+				for (int j = offset; j < offset + size; j++) {
+					// 命令在调用时即写入输出缓冲区，因此可以使用线程内复用的缓冲区；
+					RedisScript.GET_LATEST.eval(pipeline, 1, BytesBuffers.flatten(keys[indexes[j]]));
+				}
+				List<Object> results = pipeline.syncAndReturnAll();
+				for (int j = 0; j < size; j++) {
+					int i = indexes[offset + j];
+					entries[i] = toLatestEntry(keys[i], results.get(j));
+				}
+				offset += size;
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * 以管道批量执行 HGET 读取多个键的指定版本的值；指定最新版本的键以 {@link #multiGetLatest(Bytes[])} 读取；
+	 */
+	@Override
+	public VersioningKVEntry[] multiGetEntries(Bytes[] keys, long[] versions) {
+		if (keys.length != versions.length) {
+			throw new IllegalArgumentException("The number of versions doesn't match the number of keys!");
+		}
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		Batch batch = batchThreadLocal.get();
+		int[] latestIndexes = new int[keys.length];
+		int latestCount = 0;
+		int[] indexes = new int[keys.length];
+		int count = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (versions[i] < 0) {
+				latestIndexes[latestCount++] = i;
+				continue;
+			}
+			PendingWrite pending = batch == null ? null : batch.latestWrites.get(keys[i]);
+			if (pending != null && pending.version == versions[i]) {
+				entries[i] = new VersioningKVData(keys[i], pending.version, pending.value);
+			} else {
+				indexes[count++] = i;
+			}
+		}
+		if (latestCount > 0) {
+			Bytes[] latestKeys = new Bytes[latestCount];
+			for (int j = 0; j < latestCount; j++) {
+				latestKeys[j] = keys[latestIndexes[j]];
+			}
+			VersioningKVEntry[] latestEntries = multiGetLatest(latestKeys);
+			for (int j = 0; j < latestCount; j++) {
+				entries[latestIndexes[j]] = latestEntries[j];
+			}
+		}
+		if (count == 0) {
+			return entries;
+		}
+		try (Jedis jedis = jedisPool.getResource()) {
+			int offset = 0;
+			while (offset < count) {
+				int size = Math.min(MAX_PIPELINE_SIZE, count - offset);
+				Pipeline pipeline = jedis.pipelined();
+				List<Response<byte[]>> responses = new ArrayList<>(size);
+				for (int j = offset; j < offset + size; j++) {
+					int i = indexes[j];
+					responses.add(pipeline.hget(BytesBuffers.flatten(keys[i]), encodeVersionKey(versions[i])));
+				}
+				pipeline.sync();
+				for (int j = 0; j < size; j++) {
+					int i = indexes[offset + j];
+					byte[] value = responses.get(j).get();
+					entries[i] = value == null ? null : new VersioningKVData(keys[i], versions[i], value);
+				}
+				offset += size;
+			}
+		}
+		return entries;
+	}
+
+	private static VersioningKVEntry toLatestEntry(Bytes key, Object reply) {
+		if (reply instanceof JedisDataException) {
+			throw new IllegalStateException(String.format("Fail on reading latest version from redis! --[KEY=%s] %s",
+					key, ((JedisDataException) reply).getMessage()), (JedisDataException) reply);
+		}
+		if (reply == null) {
+			return null;
+		}
+		List<?> latest = (List<?>) reply;
+		long version = ((Long) latest.get(0)).longValue();
+		byte[] value = (byte[]) latest.get(1);
+		if (value == null) {
+			return null;
+		}
+		return new VersioningKVData(key, version, value);
+	}
+
 	@Override
 	public long set(Bytes key, byte[] value, long version) {
+		long ver = version < 0 ? 0 : version + 1;
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			return batch.set(key, value, ver);
+		}
 		try (Jedis jedis = jedisPool.getResource()) {
-//			byte[] keyBytes = SafeEncoder.encode(key);
-			long ver = version < 0 ? 0 : version + 1;
-			byte[] verBytes = encodeVersionKey(ver);
-			// 如果不存在，则写入；由于 Redis 特性的限制，此处无法原子性地校验是 version 参数否存在跳空增长，
-			// 默认在外部调用已经校验了 version 为最新版本;
-			Long r = jedis.hsetnx(key.toBytes(), verBytes, value);
-			return r.longValue() == 0 ? -1 : ver;
+			// 以脚本原子性地校验版本并写入，版本必须以 1 顺序递增；
+			Object r = RedisScript.SET_VERSION.eval(jedis, 1, BytesBuffers.flatten(key), encodeVersionKey(ver),
+					value);
+			return ((Long) r).longValue() == 0 ? -1 : ver;
 		}
 	}
 
-	private byte[] encodeVersionKey(long version) {
+	private static byte[] encodeVersionKey(long version) {
 		return SafeEncoder.encode("" + version);
 	}
 
+	/**
+	 * 开始批量写入；批量以线程为单位，可以嵌套，嵌套的批量合并到最外层的批量中一起提交；
+	 * <p>
+	 * 批量写入期间的写入操作在当前线程中缓存，直到 {@link #batchCommit()} 时以一个脚本原子性地提交到 Redis；<br>
+	 * 批量中的版本校验分两步完成：写入时只对同一批量中已写入的键校验版本连续性，此时返回的版本是预期的版本，在提交之前未经服务端确认；
+	 * 提交时由脚本在服务端先校验全部写入的版本，全部匹配才写入；如有不匹配则不写入任何值，并在 {@link #batchCommit()} 时抛出
+	 * {@link IllegalStateException}；
+	 */
 	@Override
 	public void batchBegin() {
-		// un support!!!
+		Batch batch = batchThreadLocal.get();
+		if (batch != null) {
+			batch.depth++;
+			return;
+		}
+		batchThreadLocal.set(new Batch());
 	}
 
+	/**
+	 * 提交批量写入；只有最外层的批量提交时才写入 Redis；
+	 */
 	@Override
 	public void batchCommit() {
-		// un support!!!
+		Batch batch = batchThreadLocal.get();
+		if (batch == null) {
+			return;
+		}
+		if (batch.depth > 0) {
+			batch.depth--;
+			return;
+		}
+		batchThreadLocal.remove();
+		if (batch.writes.isEmpty()) {
+			return;
+		}
+		int count = batch.writes.size();
+		byte[][] params = new byte[count * 3][];
+		for (int i = 0; i < count; i++) {
+			PendingWrite write = batch.writes.get(i);
+			// 全部参数在同一个命令中发送，不能使用线程内复用的缓冲区；
+			params[i] = write.key.toBytes();
+			params[count + 2 * i] = encodeVersionKey(write.version);
+			params[count + 2 * i + 1] = write.value;
+		}
+		Object r;
+		try (Jedis jedis = jedisPool.getResource()) {
+			r = RedisScript.SET_VERSIONS.eval(jedis, count, params);
+		}
+		int conflict = ((Long) r).intValue();
+		if (conflict > 0) {
+			PendingWrite write = batch.writes.get(conflict - 1);
+			throw new IllegalStateException(String.format(
+					"Fail on committing batch to redis! Expected version doesn't match! --[KEY=%s][VERSION=%s]",
+					write.key, write.version));
+		}
 	}
 
+	private static class PendingWrite {
+
+		private final Bytes key;
+
+		private final long version;
+
+		private final byte[] value;
+
+		private PendingWrite(Bytes key, long version, byte[] value) {
+			this.key = key;
+			this.version = version;
+			this.value = value;
+		}
+	}
+
+	private static class Batch {
+
+		/**
+		 * 嵌套的批量的层数；
+		 */
+		private int depth;
+
+		/**
+		 * 按写入顺序排列的写入操作；
+		 */
+		private final List<PendingWrite> writes = new ArrayList<>();
+
+		/**
+		 * 每个键在批量中的最新写入；
+		 */
+		private final Map<Bytes, PendingWrite> latestWrites = new HashMap<>();
+
+		private long set(Bytes key, byte[] value, long version) {
+			PendingWrite latest = latestWrites.get(key);
+			if (latest != null && latest.version + 1 != version) {
+				return -1;
+			}
+			PendingWrite write = new PendingWrite(key, version, value);
+			writes.add(write);
+			latestWrites.put(key, write);
+			return version;
+		}
+	}
 
 	private static class VersioningKVData implements VersioningKVEntry{
 
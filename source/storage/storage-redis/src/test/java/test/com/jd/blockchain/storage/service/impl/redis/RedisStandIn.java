@@ -0,0 +1,346 @@
+package test.com.jd.blockchain.storage.service.impl.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jd.blockchain.storage.service.impl.redis.RedisScript;
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 进程内的 Redis 替身；
+ * <p>
+ * 以 RESP 协议实现了存储所用到的少量命令；脚本只支持 {@link RedisScript} 中预定义的脚本，以 Java 代码模拟执行；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class RedisStandIn implements AutoCloseable {
+
+	private final ServerSocket serverSocket;
+
+	private final Map<Bytes, byte[]> values = new HashMap<>();
+
+	private final Map<Bytes, Map<Bytes, byte[]>> hashes = new HashMap<>();
+
+	private final Map<String, String> scripts = new HashMap<>();
+
+	private final AtomicInteger commandCount = new AtomicInteger();
+
+	private volatile boolean running = true;
+
+	public RedisStandIn() throws IOException {
+		serverSocket = new ServerSocket(0);
+		Thread acceptor = new Thread(this::accept, "redis-stand-in");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * 已执行的命令数量；
+	 *
+	 * @return
+	 */
+	public int getCommandCount() {
+		return commandCount.get();
+	}
+
+	/**
+	 * 清除已加载的脚本；
+	 */
+	public synchronized void flushScripts() {
+		scripts.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		serverSocket.close();
+	}
+
+	private void accept() {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread worker = new Thread(() -> serve(socket), "redis-stand-in-conn");
+				worker.setDaemon(true);
+				worker.start();
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket) {
+			InputStream in = new BufferedInputStream(s.getInputStream());
+			OutputStream out = new BufferedOutputStream(s.getOutputStream());
+			while (running) {
+				List<byte[]> command = readCommand(in);
+				if (command == null) {
+					return;
+				}
+				commandCount.incrementAndGet();
+				execute(command, out);
+				// 只有在没有后续命令时才刷出，以模拟管道的行为；
+				if (in.available() == 0) {
+					out.flush();
+				}
+			}
+		} catch (IOException e) {
+			// 连接关闭；
+		}
+	}
+
+	private synchronized void execute(List<byte[]> command, OutputStream out) throws IOException {
+		String name = str(command.get(0)).toUpperCase();
+		switch (name) {
+		case "PING":
+			simple(out, "PONG");
+			break;
+		case "SELECT":
+		case "QUIT":
+			simple(out, "OK");
+			break;
+		case "FLUSHDB":
+			values.clear();
+			hashes.clear();
+			simple(out, "OK");
+			break;
+		case "GET":
+			bulk(out, values.get(new Bytes(command.get(1))));
+			break;
+		case "MGET":
+			out.write(("*" + (command.size() - 1) + "\r\n").getBytes(StandardCharsets.UTF_8));
+			for (int i = 1; i < command.size(); i++) {
+				bulk(out, values.get(new Bytes(command.get(i))));
+			}
+			break;
+		case "EXISTS":
+			integer(out, values.containsKey(new Bytes(command.get(1))) ? 1 : 0);
+			break;
+		case "SET":
+			set(command, out);
+			break;
+		case "HLEN":
+			integer(out, hash(command.get(1)).size());
+			break;
+		case "HGET":
+			bulk(out, hash(command.get(1)).get(new Bytes(command.get(2))));
+			break;
+		case "HSETNX":
+			integer(out, hsetnx(command.get(1), command.get(2), command.get(3)));
+			break;
+		case "SCRIPT":
+			String script = str(command.get(2));
+			String sha1 = sha1Of(script);
+			scripts.put(sha1, script);
+			bulk(out, sha1.getBytes(StandardCharsets.UTF_8));
+			break;
+		case "EVALSHA":
+			evalsha(command, out);
+			break;
+		default:
+			error(out, "ERR unknown command '" + name + "'");
+		}
+	}
+
+	private void set(List<byte[]> command, OutputStream out) throws IOException {
+		Bytes key = new Bytes(command.get(1));
+		String nxxx = command.size() > 3 ? str(command.get(3)).toUpperCase() : null;
+		boolean exists = values.containsKey(key);
+		if (("NX".equals(nxxx) && exists) || ("XX".equals(nxxx) && !exists)) {
+			bulk(out, null);
+			return;
+		}
+		values.put(key, command.get(2));
+		simple(out, "OK");
+	}
+
+	private void evalsha(List<byte[]> command, OutputStream out) throws IOException {
+		String script = scripts.get(str(command.get(1)));
+		if (script == null) {
+			error(out, "NOSCRIPT No matching script. Please use EVAL.");
+			return;
+		}
+		int keyCount = Integer.parseInt(str(command.get(2)));
+		if (script.equals(RedisScript.SET_VERSIONS.getScript())) {
+			integer(out, setVersions(command, keyCount));
+			return;
+		}
+		if (script.equals(RedisScript.SET_WITH_POLICIES.getScript())) {
+			integer(out, setWithPolicies(command, keyCount));
+			return;
+		}
+		byte[] key = command.get(3);
+		if (script.equals(RedisScript.SET_VERSION.getScript())) {
+			long version = Long.parseLong(str(command.get(4)));
+			if (hash(key).size() != version) {
+				integer(out, 0);
+				return;
+			}
+			integer(out, hsetnx(key, command.get(4), command.get(5)));
+		} else if (script.equals(RedisScript.GET_LATEST.getScript())) {
+			Map<Bytes, byte[]> hash = hash(key);
+			if (hash.isEmpty()) {
+				bulk(out, null);
+				return;
+			}
+			long version = hash.size() - 1;
+			out.write(("*2\r\n:" + version + "\r\n").getBytes(StandardCharsets.UTF_8));
+			bulk(out, hash.get(new Bytes(("" + version).getBytes(StandardCharsets.UTF_8))));
+		} else {
+			error(out, "ERR unsupported script");
+		}
+	}
+
+	/**
+	 * 模拟 {@link RedisScript#SET_VERSIONS}；
+	 */
+	private int setVersions(List<byte[]> command, int keyCount) {
+		Map<Bytes, Integer> lens = new HashMap<>();
+		for (int i = 0; i < keyCount; i++) {
+			Bytes key = new Bytes(command.get(3 + i));
+			Integer n = lens.get(key);
+			if (n == null) {
+				n = hash(command.get(3 + i)).size();
+			}
+			if (n != Long.parseLong(str(command.get(3 + keyCount + 2 * i)))) {
+				return i + 1;
+			}
+			lens.put(key, n + 1);
+		}
+		for (int i = 0; i < keyCount; i++) {
+			hash(command.get(3 + i)).put(new Bytes(command.get(3 + keyCount + 2 * i)),
+					command.get(3 + keyCount + 2 * i + 1));
+		}
+		return 0;
+	}
+
+	/**
+	 * 模拟 {@link RedisScript#SET_WITH_POLICIES}；
+	 */
+	private int setWithPolicies(List<byte[]> command, int keyCount) {
+		Map<Bytes, Boolean> written = new HashMap<>();
+		for (int i = 0; i < keyCount; i++) {
+			Bytes key = new Bytes(command.get(3 + i));
+			boolean exists = written.containsKey(key) || values.containsKey(key);
+			String nxxx = str(command.get(3 + keyCount + 2 * i));
+			if (("NX".equals(nxxx) && exists) || ("XX".equals(nxxx) && !exists)) {
+				return i + 1;
+			}
+			written.put(key, true);
+		}
+		for (int i = 0; i < keyCount; i++) {
+			values.put(new Bytes(command.get(3 + i)), command.get(3 + keyCount + 2 * i + 1));
+		}
+		return 0;
+	}
+
+	private Map<Bytes, byte[]> hash(byte[] key) {
+		Map<Bytes, byte[]> hash = hashes.get(new Bytes(key));
+		if (hash == null) {
+			hash = new HashMap<>();
+			hashes.put(new Bytes(key), hash);
+		}
+		return hash;
+	}
+
+	private int hsetnx(byte[] key, byte[] field, byte[] value) {
+		Map<Bytes, byte[]> hash = hash(key);
+		Bytes f = new Bytes(field);
+		if (hash.containsKey(f)) {
+			return 0;
+		}
+		hash.put(f, value);
+		return 1;
+	}
+
+	private static List<byte[]> readCommand(InputStream in) throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			return null;
+		}
+		if (b != '*') {
+			throw new IOException("Unsupported request!");
+		}
+		int count = Integer.parseInt(readLine(in));
+		List<byte[]> args = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			if (in.read() != '$') {
+				throw new IOException("Unsupported request!");
+			}
+			int len = Integer.parseInt(readLine(in));
+			byte[] arg = new byte[len];
+			int offset = 0;
+			while (offset < len) {
+				int n = in.read(arg, offset, len - offset);
+				if (n < 0) {
+					throw new IOException("Unexpected end of stream!");
+				}
+				offset += n;
+			}
+			in.read();
+			in.read();
+			args.add(arg);
+		}
+		return args;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int b;
+		while ((b = in.read()) != '\r') {
+			if (b < 0) {
+				throw new IOException("Unexpected end of stream!");
+			}
+			line.append((char) b);
+		}
+		in.read();
+		return line.toString();
+	}
+
+	private static void simple(OutputStream out, String reply) throws IOException {
+		out.write(("+" + reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void error(OutputStream out, String message) throws IOException {
+		out.write(("-" + message + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void integer(OutputStream out, long value) throws IOException {
+		out.write((":" + value + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void bulk(OutputStream out, byte[] value) throws IOException {
+		if (value == null) {
+			out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+		out.write(value);
+		out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String str(byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String sha1Of(String script) {
+		return new RedisScript(script).getSha1();
+	}
+}
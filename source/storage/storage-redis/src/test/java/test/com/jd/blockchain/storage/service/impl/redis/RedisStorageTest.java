@@ -0,0 +1,228 @@
+package test.com.jd.blockchain.storage.service.impl.redis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jd.blockchain.storage.service.ExPolicyKVStorage;
+import com.jd.blockchain.storage.service.ExPolicyKVStorage.ExPolicy;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
+import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.storage.service.impl.redis.RedisStorageService;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesUtils;
+
+import redis.clients.jedis.JedisPool;
+
+public class RedisStorageTest {
+
+	private RedisStandIn redis;
+
+	private JedisPool jedisPool;
+
+	private RedisStorageService storageService;
+
+	@Before
+	public void init() throws IOException {
+		redis = new RedisStandIn();
+		jedisPool = new JedisPool("127.0.0.1", redis.getPort());
+		storageService = new RedisStorageService(jedisPool);
+	}
+
+	@After
+	public void close() throws IOException {
+		jedisPool.close();
+		redis.close();
+	}
+
+	@Test
+	public void testVersioningStorage() {
+		VersioningKVStorage verStorage = storageService.getVersioningKVStorage();
+		Bytes key = Bytes.fromString("k1");
+		assertEquals(-1, verStorage.getVersion(key));
+		assertNull(verStorage.get(key, -1));
+		assertNull(verStorage.getEntry(key, -1));
+
+		assertEquals(0, verStorage.set(key, BytesUtils.toBytes("v0"), -1));
+		assertEquals(-1, verStorage.set(key, BytesUtils.toBytes("v0"), -1));
+		assertEquals(1, verStorage.set(key, BytesUtils.toBytes("v1"), 0));
+		// 版本不允许跳空增长；
+		assertEquals(-1, verStorage.set(key, BytesUtils.toBytes("v3"), 2));
+
+		assertEquals(1, verStorage.getVersion(key));
+		assertEquals("v0", BytesUtils.toString(verStorage.get(key, 0)));
+		assertEquals("v1", BytesUtils.toString(verStorage.get(key, -1)));
+		VersioningKVEntry latest = verStorage.getEntry(key, -1);
+		assertEquals(1, latest.getVersion());
+		assertEquals("v1", BytesUtils.toString(latest.getValue()));
+
+		// 服务端的脚本被清除后自动重新加载；
+		redis.flushScripts();
+		assertEquals(2, verStorage.set(key, BytesUtils.toBytes("v2"), 1));
+		redis.flushScripts();
+		assertEquals("v2", BytesUtils.toString(verStorage.get(key, -1)));
+	}
+
+	@Test
+	public void testVersioningBatch() {
+		VersioningKVStorage verStorage = storageService.getVersioningKVStorage();
+		int keyCount = 3000;
+		verStorage.batchBegin();
+		for (int i = 0; i < keyCount; i++) {
+			Bytes key = Bytes.fromString("KEY-" + i);
+			assertEquals(0, verStorage.set(key, BytesUtils.toBytes("v0-" + i), -1));
+			assertEquals(1, verStorage.set(key, BytesUtils.toBytes("v1-" + i), 0));
+			assertEquals(-1, verStorage.set(key, BytesUtils.toBytes("v1-" + i), 0));
+		}
+		// 批量中的写入对当前线程可见；
+		Bytes key0 = Bytes.fromString("KEY-0");
+		assertEquals(1, verStorage.getVersion(key0));
+		assertEquals("v1-0", BytesUtils.toString(verStorage.get(key0, -1)));
+
+		int commandCount = redis.getCommandCount();
+		verStorage.batchCommit();
+		// 以一个脚本提交整个批量：缺少脚本时的一次失败的执行、加载脚本以及重新执行；
+		assertTrue(redis.getCommandCount() - commandCount <= 3);
+
+		for (int i = 0; i < keyCount; i += 100) {
+			Bytes key = Bytes.fromString("KEY-" + i);
+			assertEquals(1, verStorage.getVersion(key));
+			assertEquals("v0-" + i, BytesUtils.toString(verStorage.get(key, 0)));
+			assertEquals("v1-" + i, BytesUtils.toString(verStorage.get(key, -1)));
+		}
+
+		// 提交时校验版本；有冲突时整个批量都不写入；
+		Bytes newKey = Bytes.fromString("KEY-NEW");
+		Bytes key1 = Bytes.fromString("KEY-1");
+		verStorage.batchBegin();
+		assertEquals(0, verStorage.set(newKey, BytesUtils.toBytes("new"), -1));
+		assertEquals(2, verStorage.set(key1, BytesUtils.toBytes("v2-1"), 1));
+		assertEquals(0, verStorage.set(key0, BytesUtils.toBytes("conflict"), -1));
+		try {
+			verStorage.batchCommit();
+			fail("The version conflict is not detected!");
+		} catch (IllegalStateException e) {
+			// 预期的异常；
+		}
+		assertEquals("v0-0", BytesUtils.toString(verStorage.get(key0, 0)));
+		assertEquals(-1, verStorage.getVersion(newKey));
+		assertEquals(1, verStorage.getVersion(key1));
+	}
+
+	@Test
+	public void testNestedBatch() {
+		VersioningKVStorage verStorage = storageService.getVersioningKVStorage();
+		ExPolicyKVStorage exStorage = storageService.getExPolicyKVStorage();
+		Bytes key = Bytes.fromString("nested");
+		Bytes exKey = Bytes.fromString("nested-ex");
+
+		verStorage.batchBegin();
+		exStorage.batchBegin();
+		assertEquals(0, verStorage.set(key, BytesUtils.toBytes("v0"), -1));
+		assertTrue(exStorage.set(exKey, BytesUtils.toBytes("ex0"), ExPolicy.NOT_EXISTING));
+
+		// 嵌套的批量合并到外层的批量中，不丢弃外层尚未提交的写入；
+		verStorage.batchBegin();
+		exStorage.batchBegin();
+		assertEquals(1, verStorage.set(key, BytesUtils.toBytes("v1"), 0));
+		assertTrue(exStorage.set(exKey, BytesUtils.toBytes("ex1"), ExPolicy.EXISTING));
+		int commandCount = redis.getCommandCount();
+		verStorage.batchCommit();
+		exStorage.batchCommit();
+		// 内层的提交不写入 Redis；
+		assertEquals(commandCount, redis.getCommandCount());
+
+		verStorage.batchCommit();
+		exStorage.batchCommit();
+		assertEquals(1, verStorage.getVersion(key));
+		assertEquals("v0", BytesUtils.toString(verStorage.get(key, 0)));
+		assertEquals("v1", BytesUtils.toString(verStorage.get(key, 1)));
+		assertEquals("ex1", BytesUtils.toString(exStorage.get(exKey)));
+	}
+
+	@Test
+	public void testMultiGet() {
+		VersioningKVStorage verStorage = storageService.getVersioningKVStorage();
+		ExPolicyKVStorage exStorage = storageService.getExPolicyKVStorage();
+		Bytes[] keys = new Bytes[5];
+		Bytes[] exKeys = new Bytes[5];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = Bytes.fromString("ACC/").concat(Bytes.fromString("k" + i));
+			exKeys[i] = Bytes.fromString("ACC/").concat(Bytes.fromString("ex" + i));
+			for (int v = 0; v < i; v++) {
+				assertEquals(v, verStorage.set(keys[i], BytesUtils.toBytes("v" + v + "-" + i), v - 1));
+			}
+			if (i > 0) {
+				assertTrue(exStorage.set(exKeys[i], BytesUtils.toBytes("ex-" + i), ExPolicy.NOT_EXISTING));
+			}
+		}
+
+		int commandCount = redis.getCommandCount();
+		VersioningKVEntry[] entries = verStorage.multiGetLatest(keys);
+		byte[][] values = exStorage.multiGet(exKeys);
+		// 加载脚本以及每个键一次读取，管道中一次往返；存在性数据以一次 MGET 读取；
+		assertEquals(commandCount + 1 + keys.length + 1, redis.getCommandCount());
+		assertNull(entries[0]);
+		assertNull(values[0]);
+		for (int i = 1; i < keys.length; i++) {
+			assertEquals(i - 1, entries[i].getVersion());
+			assertEquals("v" + (i - 1) + "-" + i, BytesUtils.toString(entries[i].getValue()));
+			assertEquals("ex-" + i, BytesUtils.toString(values[i]));
+		}
+
+		// 批量中的写入对批量读取可见；
+		verStorage.batchBegin();
+		assertEquals(0, verStorage.set(keys[0], BytesUtils.toBytes("v0-0"), -1));
+		entries = verStorage.multiGetLatest(keys);
+		assertEquals("v0-0", BytesUtils.toString(entries[0].getValue()));
+		assertEquals(3, entries[4].getVersion());
+		verStorage.batchCommit();
+
+		// 脚本被清除后，批量读取时重新加载；
+		redis.flushScripts();
+		entries = verStorage.multiGetLatest(keys);
+		assertEquals(0, entries[0].getVersion());
+	}
+
+	@Test
+	public void testExPolicyBatch() {
+		ExPolicyKVStorage exStorage = storageService.getExPolicyKVStorage();
+		Bytes key = Bytes.fromString("kex");
+		byte[] data = BytesUtils.toBytes("data");
+
+		assertFalse(exStorage.set(key, data, ExPolicy.EXISTING));
+		exStorage.batchBegin();
+		assertTrue(exStorage.set(key, data, ExPolicy.NOT_EXISTING));
+		assertFalse(exStorage.set(key, data, ExPolicy.NOT_EXISTING));
+		assertTrue(exStorage.set(key, BytesUtils.toBytes("data2"), ExPolicy.EXISTING));
+		assertTrue(exStorage.exist(key));
+		assertEquals("data2", BytesUtils.toString(exStorage.get(key)));
+		exStorage.batchCommit();
+
+		assertTrue(exStorage.exist(key));
+		assertArrayEquals(BytesUtils.toBytes("data2"), exStorage.get(key));
+
+		// 有冲突时整个批量都不写入；
+		Bytes newKey = Bytes.fromString("kex-new");
+		exStorage.batchBegin();
+		assertTrue(exStorage.set(newKey, data, ExPolicy.NOT_EXISTING));
+		assertTrue(exStorage.set(key, data, ExPolicy.NOT_EXISTING));
+		try {
+			exStorage.batchCommit();
+			fail("The ExPolicy conflict is not detected!");
+		} catch (IllegalStateException e) {
+			// 预期的异常；
+		}
+		assertArrayEquals(BytesUtils.toBytes("data2"), exStorage.get(key));
+		assertFalse(exStorage.exist(newKey));
+	}
+}
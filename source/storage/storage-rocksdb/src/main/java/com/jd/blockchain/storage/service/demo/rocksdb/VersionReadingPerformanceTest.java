@@ -0,0 +1,109 @@
+package com.jd.blockchain.storage.service.demo.rocksdb;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jd.blockchain.storage.service.DbConnection;
+import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.storage.service.impl.rocksdb.RocksDBConnectionFactory;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.ConsoleUtils;
+import com.jd.blockchain.utils.io.FileUtils;
+
+/**
+ * 测试在持续写入的同时，随读线程数增加的版本读取吞吐量；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class VersionReadingPerformanceTest {
+
+	public static void main(String[] args) {
+		String uri = initEmptyDB("perf_rocksdb_version_reading_test");
+		try (RocksDBConnectionFactory connFactory = new RocksDBConnectionFactory()) {
+			DbConnection conn = connFactory.connect(uri);
+			VersioningKVStorage storage = conn.getStorageService().getVersioningKVStorage();
+
+			int keyCount = 100000;
+			Bytes keyPrefix = Bytes.fromString("KEY-");
+			byte[] value = new byte[64];
+			new Random().nextBytes(value);
+			for (int i = 0; i < keyCount; i++) {
+				storage.set(keyPrefix.concat(Bytes.fromInt(i)), value, -1);
+			}
+
+			int maxThreads = Runtime.getRuntime().availableProcessors();
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				test_version_reading(threads, keyPrefix, keyCount, 2000, storage);
+			}
+		}
+	}
+
+	private static void test_version_reading(int readerCount, Bytes keyPrefix, int keyCount, long durationMillis,
+			VersioningKVStorage storage) {
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicLong reads = new AtomicLong();
+		AtomicLong writes = new AtomicLong();
+		CountDownLatch latch = new CountDownLatch(readerCount + 1);
+
+		// 写线程：持续地更新已有的键；
+		Thread writer = new Thread(() -> {
+			Random rand = new Random();
+			byte[] value = new byte[64];
+			long count = 0;
+			while (running.get()) {
+				Bytes key = keyPrefix.concat(Bytes.fromInt(rand.nextInt(keyCount)));
+				long v = storage.getVersion(key);
+				if (storage.set(key, value, v) > -1) {
+					count++;
+				}
+			}
+			writes.addAndGet(count);
+			latch.countDown();
+		});
+		writer.start();
+
+		for (int i = 0; i < readerCount; i++) {
+			Thread reader = new Thread(() -> {
+				Random rand = new Random();
+				long count = 0;
+				while (running.get()) {
+					Bytes key = keyPrefix.concat(Bytes.fromInt(rand.nextInt(keyCount)));
+					if (storage.getVersion(key) < 0) {
+						throw new IllegalStateException("Version of key is missing! --key=" + key);
+					}
+					count++;
+				}
+				reads.addAndGet(count);
+				latch.countDown();
+			});
+			reader.start();
+		}
+
+		try {
+			Thread.sleep(durationMillis);
+			running.set(false);
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		double readTps = reads.get() * 1000.0 / durationMillis;
+		double writeTps = writes.get() * 1000.0 / durationMillis;
+		ConsoleUtils.info("============= [version_reading] : readers = %s; read tps= %.2f; write tps= %.2f; ",
+				readerCount, readTps, writeTps);
+	}
+
+	private static String initEmptyDB(String name) {
+		String currDir = FileUtils.getCurrentDir();
+		String dbDir = new File(currDir, name + ".db").getAbsolutePath();
+		FileUtils.deleteFile(dbDir);
+		String dbURI = "rocksdb://" + dbDir;
+		return dbURI;
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.jd.blockchain.storage.service.impl.rocksdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import com.jd.blockchain.storage.service.impl.rocksdb.VersionTable.VersionEntry;
+
+/**
+ * 同一个数据库上的多个存储共享的写入器；
+ * <p>
+ * 批量以线程为单位，可以嵌套；同一个线程中由共享同一个写入器的任何存储开始的批量都合并为同一个 {@link WriteBatch}，
+ * 在最外层的批量提交时以一次 {@link RocksDB#write(WriteOptions, WriteBatch)} 原子性地写入；<br>
+ * 例如 {@link RocksDBStorageService} 的“版本”和“存在性”两类存储共享同一个写入器，同一个批量中写入的两类数据要么全部写入，要么全部未写入；
+ *
+ * @author huanghaiquan
+ *
+ */
+class RocksDBBatchWriter {
+
+	private final ThreadLocal<BatchContext> batchThreadLocal = new ThreadLocal<>();
+
+	private final RocksDB db;
+
+	private final WriteOptions writeOptions = new WriteOptions();
+
+	RocksDBBatchWriter(RocksDB db) {
+		this.db = db;
+	}
+
+	/**
+	 * 写入数据；如果当前线程有进行中的批量，则加入批量，否则直接写入数据库；
+	 *
+	 * @param column
+	 * @param key
+	 *            键；写入批量或者数据库时复制，因此可以使用线程内复用的缓冲区；
+	 * @param value
+	 */
+	void put(ColumnFamilyHandle column, byte[] key, byte[] value) {
+		try {
+			BatchContext batch = batchThreadLocal.get();
+			if (batch != null) {
+				batch.writeBatch.put(column, key, value);
+			} else {
+				db.put(column, writeOptions, key, value);
+			}
+		} catch (RocksDBException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 记录在当前批量中更新了版本的版本项；批量写入数据库之后清除其标记；
+	 * <p>
+	 * 如果当前线程没有进行中的批量，则版本已经直接写入数据库，无需记录；
+	 *
+	 * @param ver
+	 */
+	void addDirtyVersion(VersionEntry ver) {
+		BatchContext batch = batchThreadLocal.get();
+		if (batch != null) {
+			// 批量提交之前，版本项不能被淘汰，否则会从数据库重新加载到过期的版本；
+			ver.setDirty(true);
+			batch.dirtyVersions.add(ver);
+		}
+	}
+
+	/**
+	 * 开始批量；
+	 */
+	void begin() {
+		BatchContext batch = batchThreadLocal.get();
+		if (batch != null) {
+			batch.depth++;
+			return;
+		}
+		batchThreadLocal.set(new BatchContext());
+	}
+
+	/**
+	 * 提交批量；只有最外层的批量提交时才写入数据库；
+	 */
+	void commit() {
+		BatchContext batch = batchThreadLocal.get();
+		if (batch == null) {
+			return;
+		}
+		if (batch.depth > 0) {
+			batch.depth--;
+			return;
+		}
+		batchThreadLocal.remove();
+		try {
+			db.write(writeOptions, batch.writeBatch);
+		} catch (RocksDBException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		} finally {
+			batch.writeBatch.close();
+			for (VersionEntry ver : batch.dirtyVersions) {
+				ver.setDirty(false);
+			}
+		}
+	}
+
+	private static class BatchContext {
+
+		private final WriteBatch writeBatch = new WriteBatch();
+
+		/**
+		 * 嵌套的批量的层数；
+		 */
+		private int depth;
+
+		/**
+		 * 在批量中更新了版本的版本项；
+		 */
+		private final List<VersionEntry> dirtyVersions = new ArrayList<>();
+
+	}
+}
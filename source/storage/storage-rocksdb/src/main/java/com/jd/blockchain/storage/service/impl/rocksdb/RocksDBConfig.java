@@ -0,0 +1,250 @@
+package com.jd.blockchain.storage.service.impl.rocksdb;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Properties;
+
+import com.jd.blockchain.utils.PropertiesUtils;
+
+/**
+ * RocksDB 存储的配置；
+ * <p>
+ * 存储以不同的列族（Column Family）分别保存键的版本、版本化的数据以及默克尔树节点等无版本的数据，每个列族有各自的调优参数；
+ * <p>
+ * 配置可以通过 {@link Properties} 提供，也可以通过连接字符串的查询参数提供，例如：
+ *
+ * <pre>
+ * rocksdb:///export/ledger.db?block-cache-size=1G&amp;data.prefix-length=16&amp;node.block-cache-size=256M
+ * </pre>
+ *
+ * 连接字符串中的参数覆盖连接工厂的默认配置；表示大小的参数可以使用 K、M、G 作为单位；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class RocksDBConfig {
+
+	/**
+	 * 版本列族和数据列族共享的块缓存的大小；
+	 */
+	public static final String BLOCK_CACHE_SIZE = "block-cache-size";
+
+	/**
+	 * 内存中缓存的键的最新版本的最大数量；
+	 */
+	public static final String VERSION_CAPACITY = "version.capacity";
+
+	/**
+	 * 版本列族的布隆过滤器每个键的位数；
+	 */
+	public static final String VERSION_BLOOM_BITS = "version.bloom-bits";
+
+	/**
+	 * 数据列族的布隆过滤器每个键的位数；
+	 */
+	public static final String DATA_BLOOM_BITS = "data.bloom-bits";
+
+	/**
+	 * 数据列族的前缀长度；大于 0 时，以数据键的前 N 个字节作为前缀，建立前缀布隆过滤器和内存表的前缀布隆过滤器；
+	 */
+	public static final String DATA_PREFIX_LENGTH = "data.prefix-length";
+
+	/**
+	 * 节点列族的块缓存的大小；节点列族针对点查询进行优化，使用独立的块缓存；
+	 */
+	public static final String NODE_BLOCK_CACHE_SIZE = "node.block-cache-size";
+
+	private static final long KB = 1024;
+
+	private static final long MB = 1024 * KB;
+
+	private static final long GB = 1024 * MB;
+
+	private long blockCacheSize = 512 * MB;
+
+	private int versionCapacity = VersionTable.DEFAULT_CAPACITY;
+
+	private int versionBloomBits = 10;
+
+	private int dataBloomBits = 10;
+
+	private int dataPrefixLength = 0;
+
+	private long nodeBlockCacheSize = 256 * MB;
+
+	public RocksDBConfig() {
+	}
+
+	public RocksDBConfig(Properties props) {
+		setValues(props);
+	}
+
+	/**
+	 * 以当前配置为基础，创建一个应用了指定参数的新配置；当前配置不会改变；
+	 *
+	 * @param props
+	 * @return
+	 */
+	public RocksDBConfig merge(Properties props) {
+		RocksDBConfig config = new RocksDBConfig();
+		config.blockCacheSize = this.blockCacheSize;
+		config.versionCapacity = this.versionCapacity;
+		config.versionBloomBits = this.versionBloomBits;
+		config.dataBloomBits = this.dataBloomBits;
+		config.dataPrefixLength = this.dataPrefixLength;
+		config.nodeBlockCacheSize = this.nodeBlockCacheSize;
+		config.setValues(props);
+		return config;
+	}
+
+	private void setValues(Properties props) {
+		for (String name : props.stringPropertyNames()) {
+			String value = PropertiesUtils.getRequiredProperty(props, name);
+			switch (name) {
+			case BLOCK_CACHE_SIZE:
+				setBlockCacheSize(parseSize(name, value));
+				break;
+			case VERSION_CAPACITY:
+				setVersionCapacity((int) parseSize(name, value));
+				break;
+			case VERSION_BLOOM_BITS:
+				setVersionBloomBits(PropertiesUtils.getInt(props, name));
+				break;
+			case DATA_BLOOM_BITS:
+				setDataBloomBits(PropertiesUtils.getInt(props, name));
+				break;
+			case DATA_PREFIX_LENGTH:
+				setDataPrefixLength(PropertiesUtils.getInt(props, name));
+				break;
+			case NODE_BLOCK_CACHE_SIZE:
+				setNodeBlockCacheSize(parseSize(name, value));
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported rocksdb config property[" + name + "]!");
+			}
+		}
+	}
+
+	/**
+	 * 解析连接字符串的查询参数；
+	 *
+	 * @param query
+	 *            查询字符串，格式为 name1=value1&amp;name2=value2；
+	 * @return
+	 */
+	public static Properties parseQuery(String query) {
+		Properties props = new Properties();
+		if (query == null || query.length() == 0) {
+			return props;
+		}
+		for (String param : query.split("&")) {
+			if (param.length() == 0) {
+				continue;
+			}
+			int idx = param.indexOf('=');
+			if (idx < 1) {
+				throw new IllegalArgumentException("Illegal rocksdb connection parameter[" + param + "]!");
+			}
+			try {
+				props.setProperty(URLDecoder.decode(param.substring(0, idx), "UTF-8"),
+						URLDecoder.decode(param.substring(idx + 1), "UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+		return props;
+	}
+
+	private static long parseSize(String name, String value) {
+		String number = value.toUpperCase();
+		// 以 K、M、G 为单位时，也可以写作 KB、MB、GB；
+		if (number.length() > 2 && number.endsWith("B")) {
+			number = number.substring(0, number.length() - 1);
+		}
+		long unit = 1;
+		char suffix = number.charAt(number.length() - 1);
+		if (suffix == 'K') {
+			unit = KB;
+		} else if (suffix == 'M') {
+			unit = MB;
+		} else if (suffix == 'G') {
+			unit = GB;
+		}
+		if (unit > 1) {
+			number = number.substring(0, number.length() - 1);
+		}
+		try {
+			return Long.parseLong(number.trim()) * unit;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+					String.format("Illegal size value of rocksdb config property[%s]! --[value=%s]", name, value), e);
+		}
+	}
+
+	public long getBlockCacheSize() {
+		return blockCacheSize;
+	}
+
+	public void setBlockCacheSize(long blockCacheSize) {
+		if (blockCacheSize < 0) {
+			throw new IllegalArgumentException("The block cache size is negative!");
+		}
+		this.blockCacheSize = blockCacheSize;
+	}
+
+	public int getVersionCapacity() {
+		return versionCapacity;
+	}
+
+	public void setVersionCapacity(int versionCapacity) {
+		if (versionCapacity < 1) {
+			throw new IllegalArgumentException("The version capacity is less than 1!");
+		}
+		this.versionCapacity = versionCapacity;
+	}
+
+	public int getVersionBloomBits() {
+		return versionBloomBits;
+	}
+
+	public void setVersionBloomBits(int versionBloomBits) {
+		if (versionBloomBits < 0) {
+			throw new IllegalArgumentException("The bloom bits of version column is negative!");
+		}
+		this.versionBloomBits = versionBloomBits;
+	}
+
+	public int getDataBloomBits() {
+		return dataBloomBits;
+	}
+
+	public void setDataBloomBits(int dataBloomBits) {
+		if (dataBloomBits < 0) {
+			throw new IllegalArgumentException("The bloom bits of data column is negative!");
+		}
+		this.dataBloomBits = dataBloomBits;
+	}
+
+	public int getDataPrefixLength() {
+		return dataPrefixLength;
+	}
+
+	public void setDataPrefixLength(int dataPrefixLength) {
+		if (dataPrefixLength < 0) {
+			throw new IllegalArgumentException("The prefix length of data column is negative!");
+		}
+		this.dataPrefixLength = dataPrefixLength;
+	}
+
+	public long getNodeBlockCacheSize() {
+		return nodeBlockCacheSize;
+	}
+
+	public void setNodeBlockCacheSize(long nodeBlockCacheSize) {
+		if (nodeBlockCacheSize < 0) {
+			throw new IllegalArgumentException("The block cache size of node column is negative!");
+		}
+		this.nodeBlockCacheSize = nodeBlockCacheSize;
+	}
+
+}
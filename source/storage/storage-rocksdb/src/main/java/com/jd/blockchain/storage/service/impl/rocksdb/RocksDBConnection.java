@@ -1,29 +1,116 @@
 package com.jd.blockchain.storage.service.impl.rocksdb;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-import org.rocksdb.Options;
-import org.rocksdb.RocksDB;
-import org.rocksdb.RocksDBException;
+import org.rocksdb.*;
 
 import com.jd.blockchain.storage.service.DbConnection;
 import com.jd.blockchain.storage.service.KVStorageService;
 
+/**
+ * RocksDB 数据库连接；
+ * <p>
+ * 新建的数据库以 3 个列族分别保存不同访问特征的数据：<br>
+ * 1、版本列族 {@link #VERSION_COLUMN}：保存键的最新版本，读取频繁，值很小；<br>
+ * 2、数据列族 {@link #DATA_COLUMN}：保存版本化的数据，以“键+版本”作为存储键，可配置前缀布隆过滤器；<br>
+ * 3、节点列族 {@link #NODE_COLUMN}：保存默克尔树节点等无版本的数据（参见 {@link RocksDBExPolicyStorage}），只有点查询，针对点查询进行优化；
+ * <p>
+ * 只有默认列族的已有数据库按照原有的布局打开，所有数据都保存在默认列族中；
+ *
+ * @author huanghaiquan
+ *
+ */
 public class RocksDBConnection implements DbConnection {
 
-	private Options options;
+	public static final String VERSION_COLUMN = "version";
+
+	public static final String DATA_COLUMN = "data";
+
+	public static final String NODE_COLUMN = "node";
+
+	private DBOptions dbOptions;
+
+	private List<ColumnFamilyOptions> columnOptions = new ArrayList<>();
+
+	private List<ColumnFamilyHandle> columnHandles = new ArrayList<>();
+
+	private List<RocksObject> sharedResources = new ArrayList<>();
 
 	private RocksDB db;
 
 	private RocksDBStorageService storage;
 
-	public RocksDBConnection(String dbPath, Options options) {
+	public RocksDBConnection(String dbPath, RocksDBConfig config) {
+		this.dbOptions = initDBOptions();
+		// 版本列族和数据列族共享同一个块缓存；
+		Cache blockCache = new LRUCache(config.getBlockCacheSize());
+		sharedResources.add(blockCache);
+
+		List<ColumnFamilyDescriptor> columns = new ArrayList<>();
+		boolean legacy = isLegacyLayout(dbPath);
+		if (legacy) {
+			columns.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY,
+					initTableOptions(blockCache, config.getDataBloomBits(), 0)));
+		} else {
+			columns.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, initColumnOptions()));
+			columns.add(new ColumnFamilyDescriptor(columnName(VERSION_COLUMN),
+					initTableOptions(blockCache, config.getVersionBloomBits(), 0)));
+			columns.add(new ColumnFamilyDescriptor(columnName(DATA_COLUMN), initTableOptions(
+					blockCache, config.getDataBloomBits(), config.getDataPrefixLength())));
+			columns.add(new ColumnFamilyDescriptor(columnName(NODE_COLUMN),
+					initPointLookupOptions(config.getNodeBlockCacheSize())));
+		}
+		for (ColumnFamilyDescriptor column : columns) {
+			columnOptions.add(column.columnFamilyOptions());
+		}
+
 		try {
-			this.db = RocksDB.open(options, dbPath);
+			this.db = RocksDB.open(dbOptions, dbPath, columns, columnHandles);
 		} catch (RocksDBException e) {
+			dbClose();
 			throw new IllegalStateException(e.getMessage(), e);
 		}
-		this.storage = new RocksDBStorageService(db);
+
+		if (legacy) {
+			ColumnFamilyHandle defaultColumn = columnHandles.get(0);
+			this.storage = new RocksDBStorageService(db, defaultColumn, defaultColumn, defaultColumn,
+					config.getVersionCapacity());
+		} else {
+			this.storage = new RocksDBStorageService(db, columnHandles.get(1), columnHandles.get(2),
+					columnHandles.get(3), config.getVersionCapacity());
+		}
+	}
+
+	/**
+	 * 是否是只有默认列族的已有数据库；
+	 *
+	 * @param dbPath
+	 * @return
+	 */
+	private static boolean isLegacyLayout(String dbPath) {
+		if (!new File(dbPath, "CURRENT").isFile()) {
+			return false;
+		}
+		try (Options options = new Options()) {
+			List<byte[]> names = RocksDB.listColumnFamilies(options, dbPath);
+			for (byte[] name : names) {
+				if (!Arrays.equals(RocksDB.DEFAULT_COLUMN_FAMILY, name)) {
+					return false;
+				}
+			}
+			return true;
+		} catch (RocksDBException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private static byte[] columnName(String name) {
+		return name.getBytes(StandardCharsets.UTF_8);
 	}
 
 	@Override
@@ -39,17 +126,109 @@ public class RocksDBConnection implements DbConnection {
 	}
 
 	public void dbClose() {
-		Options options = this.options;
-		this.options = null;
 		RocksDB db = this.db;
 		this.db = null;
-		
-		if (options != null) {
-			options.close();
+
+		// 列族句柄须在数据库关闭之前释放；
+		for (ColumnFamilyHandle handle : columnHandles) {
+			handle.close();
 		}
+		columnHandles.clear();
 		if (db != null) {
 			db.close();
 		}
+
+		for (ColumnFamilyOptions options : columnOptions) {
+			options.close();
+		}
+		columnOptions.clear();
+		for (RocksObject resource : sharedResources) {
+			resource.close();
+		}
+		sharedResources.clear();
+		if (dbOptions != null) {
+			dbOptions.close();
+			dbOptions = null;
+		}
+	}
+
+	private DBOptions initDBOptions() {
+		return new DBOptions()
+				.setAllowConcurrentMemtableWrite(true)
+				.setEnableWriteThreadAdaptiveYield(true)
+				.setCreateIfMissing(true)
+				.setCreateMissingColumnFamilies(true)
+				.setMaxBackgroundCompactions(10)
+				.setMaxBackgroundFlushes(4)
+				;
+	}
+
+	private ColumnFamilyOptions initColumnOptions() {
+		final List<CompressionType> compressionLevels = new ArrayList<>();
+		compressionLevels.add(CompressionType.NO_COMPRESSION); // 0-1
+		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 1-2
+		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 2-3
+		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 3-4
+		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 4-5
+		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 5-6
+		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 6-7
+
+		return new ColumnFamilyOptions()
+				.setMaxWriteBufferNumber(3)
+				.setBloomLocality(10)
+				.setMinWriteBufferNumberToMerge(4)
+				.setCompressionPerLevel(compressionLevels)
+				.setNumLevels(7)
+				.setCompressionType(CompressionType.SNAPPY_COMPRESSION)
+				.setCompactionStyle(CompactionStyle.UNIVERSAL)
+				.setMemTableConfig(new SkipListMemTableConfig())
+				;
+	}
+
+	/**
+	 * 创建采用块表格式的列族选项；
+	 *
+	 * @param blockCache
+	 *            块缓存；
+	 * @param bloomBits
+	 *            布隆过滤器每个键的位数；为 0 时不使用布隆过滤器；
+	 * @param prefixLength
+	 *            前缀长度；大于 0 时建立前缀布隆过滤器；
+	 * @return
+	 */
+	private ColumnFamilyOptions initTableOptions(Cache blockCache, int bloomBits, int prefixLength) {
+		final BlockBasedTableConfig tableOptions = new BlockBasedTableConfig()
+				.setBlockSize(4 * 1024)
+				.setBlockSizeDeviation(10)
+				.setBlockCache(blockCache)
+				.setCacheIndexAndFilterBlocks(true)
+				.setBlockRestartInterval(16)
+				;
+		if (bloomBits > 0) {
+			Filter bloomFilter = new BloomFilter(bloomBits, false);
+			sharedResources.add(bloomFilter);
+			tableOptions.setFilter(bloomFilter);
+		}
+
+		ColumnFamilyOptions options = initColumnOptions().setTableFormatConfig(tableOptions);
+		if (prefixLength > 0) {
+			// 长度不足前缀长度的键以整个键作为前缀；表格同时保留整键过滤，点查询仍可利用布隆过滤器；
+			options.useCappedPrefixExtractor(prefixLength)
+					.setMemtablePrefixBloomSizeRatio(0.1);
+		}
+		return options;
+	}
+
+	/**
+	 * 创建针对点查询优化的列族选项；
+	 *
+	 * @param blockCacheSize
+	 *            此列族独立使用的块缓存的大小；
+	 * @return
+	 */
+	private ColumnFamilyOptions initPointLookupOptions(long blockCacheSize) {
+		long blockCacheSizeMb = Math.max(1, blockCacheSize / (1024 * 1024));
+		return initColumnOptions().optimizeForPointLookup(blockCacheSizeMb);
 	}
 
 }
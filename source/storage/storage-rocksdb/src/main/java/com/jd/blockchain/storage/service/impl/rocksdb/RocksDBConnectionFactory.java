@@ -1,21 +1,18 @@
 package com.jd.blockchain.storage.service.impl.rocksdb;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import javax.annotation.PreDestroy;
 
-import org.rocksdb.*;
+import org.rocksdb.RocksDB;
 
 import com.jd.blockchain.storage.service.DbConnection;
 import com.jd.blockchain.storage.service.DbConnectionFactory;
-import org.rocksdb.util.SizeUnit;
 
 public class RocksDBConnectionFactory implements DbConnectionFactory {
 
@@ -30,6 +27,28 @@ public class RocksDBConnectionFactory implements DbConnectionFactory {
 
 	private Map<String, RocksDBConnection> connections = new ConcurrentHashMap<>();
 
+	private final RocksDBConfig config;
+
+	public RocksDBConnectionFactory() {
+		this(new RocksDBConfig());
+	}
+
+	/**
+	 * @param config
+	 *            默认配置；连接字符串中的查询参数将覆盖默认配置中的对应项；
+	 */
+	public RocksDBConnectionFactory(RocksDBConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * @param props
+	 *            默认配置的属性；参见 {@link RocksDBConfig}；
+	 */
+	public RocksDBConnectionFactory(Properties props) {
+		this(new RocksDBConfig(props));
+	}
+
 	@Override
 	public DbConnection connect(String dbUri) {
 		return connect(dbUri, null);
@@ -49,6 +68,12 @@ public class RocksDBConnectionFactory implements DbConnectionFactory {
 		String uriHead = URI_SCHEME + "://";
 		int beginIndex = dbConnectionString.indexOf(uriHead);
 		String dbPath = dbConnectionString.substring(beginIndex + uriHead.length());
+		String query = null;
+		int queryIndex = dbPath.indexOf('?');
+		if (queryIndex > -1) {
+			query = dbPath.substring(queryIndex + 1);
+			dbPath = dbPath.substring(0, queryIndex);
+		}
 		if (!dbPath.startsWith(File.separator)) {
 			dbPath = File.separator + dbPath;
 		}
@@ -58,9 +83,9 @@ public class RocksDBConnectionFactory implements DbConnectionFactory {
 			return conn;
 		}
 
-		Options options = initOptions();
+		RocksDBConfig connConfig = config.merge(RocksDBConfig.parseQuery(query));
 
-		conn = new RocksDBConnection(dbPath, options);
+		conn = new RocksDBConnection(dbPath, connConfig);
 		connections.put(dbPath, conn);
 
 		return conn;
@@ -82,43 +107,4 @@ public class RocksDBConnectionFactory implements DbConnectionFactory {
 		}
 	}
 
-	private Options initOptions() {
-		final Filter bloomFilter = new BloomFilter(32);
-		final BlockBasedTableConfig tableOptions = new BlockBasedTableConfig()
-				.setFilter(bloomFilter)
-				.setBlockSize(4 * SizeUnit.KB)
-				.setBlockSizeDeviation(10)
-				.setBlockCacheSize(64 * SizeUnit.GB)
-				.setNoBlockCache(false)
-				.setCacheIndexAndFilterBlocks(true)
-				.setBlockRestartInterval(16)
-				;
-		final List<CompressionType> compressionLevels = new ArrayList<>();
-		compressionLevels.add(CompressionType.NO_COMPRESSION); // 0-1
-		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 1-2
-		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 2-3
-		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 3-4
-		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 4-5
-		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 5-6
-		compressionLevels.add(CompressionType.SNAPPY_COMPRESSION); // 6-7
-
-		Options options = new Options()
-				.setAllowConcurrentMemtableWrite(true)
-				.setEnableWriteThreadAdaptiveYield(true)
-				.setCreateIfMissing(true)
-				.setMaxWriteBufferNumber(3)
-				.setTableFormatConfig(tableOptions)
-				.setMaxBackgroundCompactions(10)
-				.setMaxBackgroundFlushes(4)
-				.setBloomLocality(10)
-				.setMinWriteBufferNumberToMerge(4)
-				.setCompressionPerLevel(compressionLevels)
-				.setNumLevels(7)
-				.setCompressionType(CompressionType.SNAPPY_COMPRESSION)
-				.setCompactionStyle(CompactionStyle.UNIVERSAL)
-				.setMemTableConfig(new SkipListMemTableConfig())
-				;
-		return options;
-	}
-
 }
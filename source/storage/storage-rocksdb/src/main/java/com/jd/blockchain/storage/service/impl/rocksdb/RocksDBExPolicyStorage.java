@@ -1,6 +1,7 @@
 package com.jd.blockchain.storage.service.impl.rocksdb;
 
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.utils.Bytes;
 
 public class RocksDBExPolicyStorage implements ExPolicyKVStorage {
@@ -16,6 +17,16 @@ public class RocksDBExPolicyStorage implements ExPolicyKVStorage {
 		return versioningStorage.get(key, 0);
 	}
 
+	@Override
+	public byte[][] multiGet(Bytes[] keys) {
+		VersioningKVEntry[] entries = versioningStorage.multiGetEntries(keys, 0);
+		byte[][] values = new byte[keys.length][];
+		for (int i = 0; i < entries.length; i++) {
+			values[i] = entries[i] == null ? null : entries[i].getValue();
+		}
+		return values;
+	}
+
 	@Override
 	public boolean exist(Bytes key) {
 		long ver = versioningStorage.getVersion(key);
@@ -1,20 +1,58 @@
 package com.jd.blockchain.storage.service.impl.rocksdb;
 
+import org.rocksdb.Checkpoint;
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
 
+import com.jd.blockchain.storage.service.CheckpointStorageService;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.storage.service.KVStorageService;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
 
-public class RocksDBStorageService implements KVStorageService {
+/**
+ * RocksDB 存储服务；
+ * <p>
+ * “版本”和“存在性”两类存储共享同一个 {@link RocksDBBatchWriter}，同一个线程中嵌套开始的两类存储的批量合并为一次原子性的写入；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class RocksDBStorageService implements KVStorageService, CheckpointStorageService {
+
+	private RocksDB db;
 
 	private ExPolicyKVStorage exStorage;
 
 	private VersioningKVStorage verStorage;
 
 	public RocksDBStorageService(RocksDB db) {
-		this.verStorage = new RocksDBVersioningStorage(db);
-		this.exStorage = new RocksDBExPolicyStorage(new RocksDBVersioningStorage(db));
+		this(db, db.getDefaultColumnFamily(), VersionTable.DEFAULT_CAPACITY);
+	}
+
+	private RocksDBStorageService(RocksDB db, ColumnFamilyHandle defaultColumn, int versionCapacity) {
+		// 每次调用 RocksDB.getDefaultColumnFamily() 返回不同的句柄实例，因此只获取一次，使各个存储以同一个句柄识别共享的列族；
+		this(db, defaultColumn, defaultColumn, defaultColumn, versionCapacity);
+	}
+
+	/**
+	 * @param db
+	 * @param versionColumn
+	 *            保存版本化数据的最新版本的列族；
+	 * @param dataColumn
+	 *            保存版本化数据的列族；
+	 * @param nodeColumn
+	 *            保存无版本数据（默克尔树节点等）的列族；
+	 * @param versionCapacity
+	 *            内存中缓存的键的最新版本的最大数量；
+	 */
+	public RocksDBStorageService(RocksDB db, ColumnFamilyHandle versionColumn, ColumnFamilyHandle dataColumn,
+			ColumnFamilyHandle nodeColumn, int versionCapacity) {
+		this.db = db;
+		RocksDBBatchWriter writer = new RocksDBBatchWriter(db);
+		this.verStorage = new RocksDBVersioningStorage(db, writer, versionColumn, dataColumn, versionCapacity);
+		this.exStorage = new RocksDBExPolicyStorage(
+				new RocksDBVersioningStorage(db, writer, nodeColumn, nodeColumn, versionCapacity));
 	}
 
 	@Override
@@ -27,4 +65,19 @@ public class RocksDBStorageService implements KVStorageService {
 		return verStorage;
 	}
 
+	/**
+	 * 创建 RocksDB 检查点；
+	 * <p>
+	 * 检查点的 SST 文件以硬链接的方式指向数据库中的文件（不在同一个文件系统时复制），创建的代价与数据库的大小基本无关；
+	 * 检查点包含全部列族，以 {@link RocksDBConnection} 打开时保持原有的布局；
+	 */
+	@Override
+	public void createCheckpoint(String checkpointDir) {
+		try (Checkpoint checkpoint = Checkpoint.create(db)) {
+			checkpoint.createCheckpoint(checkpointDir);
+		} catch (RocksDBException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
 }
@@ -1,15 +1,19 @@
 package com.jd.blockchain.storage.service.impl.rocksdb;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.rocksdb.*;
 
 import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.storage.service.impl.rocksdb.VersionTable.VersionEntry;
 import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesBuffers;
 import com.jd.blockchain.utils.io.BytesUtils;
 
 /**
@@ -33,65 +37,113 @@ import com.jd.blockchain.utils.io.BytesUtils;
  */
 public class RocksDBVersioningStorage implements VersioningKVStorage {
 
-	private final ThreadLocal<WriteBatch> writeBatchThreadLocal = new ThreadLocal<>();
-
 	private static Bytes VERSION_PREFIX = Bytes.fromString("V");
 
 	private static Bytes DATA_PREFIX = Bytes.fromString("D");
 
-	private final ReentrantLock lock = new ReentrantLock();
-
-	private final WriteOptions writeOptions = new WriteOptions();
-
 	private final ReadOptions readOptions = new ReadOptions()
 			.setFillCache(true)
 			.setVerifyChecksums(false)
 			;
-	// put、get操作都在当前对象中，处理过程已加锁，不再需要线程安全对象
-	private Map<Bytes, AtomicLong> versions = new LRUMap<>(1024 * 128);
-//	private Map<Bytes, AtomicLong> versions = new LRUMap<>(1024);
+	// 读取版本无需加锁，版本的递增在版本项的对象锁内通过 CAS 完成；
+	private final VersionTable versions;
 
 	private RocksDB db;
 
+	/**
+	 * 写入器；可以与同一个数据库上的其它存储共享，使得各个存储在同一个批量中的写入合并为一次原子性的写入；
+	 */
+	private final RocksDBBatchWriter writer;
+
+	private final ColumnFamilyHandle versionColumn;
+
+	private final ColumnFamilyHandle dataColumn;
+
+	/**
+	 * 版本和数据是否保存在同一个列族中；同一个列族中以前缀区分版本键和数据键；
+	 */
+	private final boolean sharedColumn;
+
 	public RocksDBVersioningStorage(RocksDB db) {
+		this(db, VersionTable.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param db
+	 * @param versionCapacity
+	 *            内存中缓存的键的最新版本的最大数量；
+	 */
+	public RocksDBVersioningStorage(RocksDB db, int versionCapacity) {
+		this(db, db.getDefaultColumnFamily(), versionCapacity);
+	}
+
+	private RocksDBVersioningStorage(RocksDB db, ColumnFamilyHandle defaultColumn, int versionCapacity) {
+		this(db, defaultColumn, defaultColumn, versionCapacity);
+	}
+
+	/**
+	 * @param db
+	 * @param versionColumn
+	 *            保存键的最新版本的列族；
+	 * @param dataColumn
+	 *            保存数据的列族；可以是与版本列族相同的句柄；
+	 * @param versionCapacity
+	 *            内存中缓存的键的最新版本的最大数量；
+	 */
+	public RocksDBVersioningStorage(RocksDB db, ColumnFamilyHandle versionColumn, ColumnFamilyHandle dataColumn,
+			int versionCapacity) {
+		this(db, new RocksDBBatchWriter(db), versionColumn, dataColumn, versionCapacity);
+	}
+
+	/**
+	 * @param db
+	 * @param writer
+	 *            写入器；与共享同一个写入器的其它存储在同一个线程中开始的批量合并为同一个批量；
+	 * @param versionColumn
+	 *            保存键的最新版本的列族；
+	 * @param dataColumn
+	 *            保存数据的列族；可以是与版本列族相同的句柄；
+	 * @param versionCapacity
+	 *            内存中缓存的键的最新版本的最大数量；
+	 */
+	RocksDBVersioningStorage(RocksDB db, RocksDBBatchWriter writer, ColumnFamilyHandle versionColumn,
+			ColumnFamilyHandle dataColumn, int versionCapacity) {
 		this.db = db;
+		this.writer = writer;
+		this.versionColumn = versionColumn;
+		this.dataColumn = dataColumn;
+		this.sharedColumn = versionColumn == dataColumn;
+		this.versions = new VersionTable(versionCapacity);
 	}
 
-	protected static Bytes encodeVersionKey(Bytes dataKey) {
-		return VERSION_PREFIX.concat(dataKey);
+	protected Bytes encodeVersionKey(Bytes dataKey) {
+		if (sharedColumn) {
+			return VERSION_PREFIX.concat(dataKey);
+		}
+		return dataKey;
 	}
 
-	protected static Bytes encodeDataKey(Bytes dataKey, long version) {
-		return DATA_PREFIX.concat(Bytes.fromLong(version)).concat(dataKey);
+	protected Bytes encodeDataKey(Bytes dataKey, long version) {
+		if (sharedColumn) {
+			return DATA_PREFIX.concat(Bytes.fromLong(version)).concat(dataKey);
+		}
+		// 以键作为前缀，同一个键的各个版本相邻存放，并且可以利用数据列族的前缀布隆过滤器；
+		return dataKey.concat(Bytes.fromLong(version));
 	}
 
-	private byte[] dbGet(Bytes key) {
+	private byte[] dbGet(ColumnFamilyHandle column, Bytes key) {
 		try {
-			byte[] keyBytes = key.toBytes();
-			return db.get(readOptions, keyBytes);
+			// JNI 调用期间复制键，因此可以使用线程内复用的缓冲区；
+			byte[] keyBytes = BytesBuffers.flatten(key);
+			return db.get(column, readOptions, keyBytes);
 		} catch (RocksDBException e) {
 			throw new IllegalStateException(e.getMessage(), e);
 		}
 	}
 
-	protected void dbSet(Bytes key, byte[] value) {
-		byte[] keyBytes = key.toBytes();
-
-		WriteBatch writeBatch = writeBatchThreadLocal.get();
-		if (writeBatch != null) {
-			// 表示批量
-			try {
-				writeBatch.put(keyBytes, value);
-			} catch (RocksDBException e) {
-				throw new IllegalStateException(e.getMessage(), e);
-			}
-		} else {
-			try {
-				this.db.put(keyBytes, value);
-			} catch (RocksDBException e) {
-				throw new IllegalStateException(e.getMessage(), e);
-			}
-		}
+	protected void dbSet(ColumnFamilyHandle column, Bytes key, byte[] value) {
+		// 写入批量或者数据库时复制键，因此可以使用线程内复用的缓冲区；
+		writer.put(column, BytesBuffers.flatten(key), value);
 	}
 
 	@Override
@@ -100,30 +152,26 @@ public class RocksDBVersioningStorage implements VersioningKVStorage {
 	}
 
 	protected AtomicLong innerGetVersion(Bytes key) {
-		AtomicLong ver;
-		try {
-			lock.lock();
-			ver = versions.get(key);
-			if (ver == null) {
-				Bytes vkey = encodeVersionKey(key);
-				byte[] verBytes = dbGet(vkey);
-				if (verBytes == null) {
-					// TODO: 未处理无效 key 的释放；
-					ver = new AtomicLong(-1);
-				} else {
-					long v = BytesUtils.toLong(verBytes);
-					if (v < 0) {
-						throw new IllegalStateException(
-								String.format("Illegal format of version bytes in rocks db! --[key=%s]", key));
-					}
-					ver = new AtomicLong(v);
-				}
-				versions.put(key, ver);
-			}
-		} finally {
-			lock.unlock();
+		return versions.get(key, this::dbGetVersion);
+	}
+
+	private long dbGetVersion(Bytes key) {
+		Bytes vkey = encodeVersionKey(key);
+		byte[] verBytes = dbGet(versionColumn, vkey);
+		return parseVersion(key, verBytes);
+	}
+
+	private static long parseVersion(Bytes key, byte[] verBytes) {
+		if (verBytes == null) {
+			// TODO: 未处理无效 key 的释放；
+			return -1;
 		}
-		return ver;
+		long v = BytesUtils.toLong(verBytes);
+		if (v < 0) {
+			throw new IllegalStateException(
+					String.format("Illegal format of version bytes in rocks db! --[key=%s]", key));
+		}
+		return v;
 	}
 
 	@Override
@@ -146,84 +194,173 @@ public class RocksDBVersioningStorage implements VersioningKVStorage {
 		}
 		long targetVersion = version < 0 ? latestVersion : version;
 		Bytes dKey = encodeDataKey(key, targetVersion);
-		byte[] value = dbGet(dKey);
+		byte[] value = dbGet(dataColumn, dKey);
 		return value;
 	}
 
+	/**
+	 * 批量读取多个键的最新版本的数据；
+	 * <p>
+	 * 未缓存版本的键通过一次 multiGet 从版本列族读取，并加入版本缓存；之后再通过一次 multiGet 从数据列族读取全部的值；
+	 */
 	@Override
-	public synchronized long set(Bytes key, byte[] value, long version) {
-		AtomicLong ver = innerGetVersion(key);
-		long newVer = version + 1;
-		if (ver.compareAndSet(version, newVer)) {
-			// updateIfLatest 为 false 有利于同一个 key 的多版本并发写入；
-			dbSetToVersion(key, value, newVer);
-			return newVer;
-		}
-
-		return -1;
+	public VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+		return multiGetEntries(keys, -1);
 	}
 
 	/**
-	 * 向数据库更新键值到指定版本； <br>
-	 * 
-	 * 操作将把最新的版本号以及对应的数据存储到数据库；<br>
+	 * 批量读取多个键的指定版本的数据；
 	 * 
-	 * @param key
-	 *            要写入的键；
-	 * @param value
-	 *            要写入的值；
+	 * @param keys
 	 * @param version
-	 *            要写入的新版本号；将做并发检查，如果指定的值已经不是最新版本，则不会写入到数据库；
-	 * @return 返回最新的版本号；
+	 *            要读取的版本；-1 表示各个键的最新版本；
+	 * @return 与参数中的键一一对应；键或者版本不存在时对应的元素为 null；
 	 */
-	private long dbSetToVersion(Bytes key, byte[] value, long version) {
-		long latestVersion;
+	VersioningKVEntry[] multiGetEntries(Bytes[] keys, long version) {
+		long[] versions = new long[keys.length];
+		Arrays.fill(versions, version);
+		return multiGetEntries(keys, versions);
+	}
+
+	/**
+	 * 批量读取多个键的各自指定版本的数据；
+	 * <p>
+	 * 版本通过一次 multiGet 从版本列族读取（已缓存的除外），之后再通过一次 multiGet 从数据列族读取全部的值；<br>
+	 * 指定了确切版本的键也需要校验最新版本，以免读到尚未提交的版本；
+	 */
+	@Override
+	public VersioningKVEntry[] multiGetEntries(Bytes[] keys, long[] versions) {
+		if (keys.length != versions.length) {
+			throw new IllegalArgumentException("The number of versions doesn't match the number of keys!");
+		}
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		long[] latestVersions = multiGetVersions(keys);
+
+		long[] targetVersions = new long[keys.length];
+		int[] indexes = new int[keys.length];
+		// 每个键使用独立的数组，multiGet 返回的结果以数组实例为键；
+		List<byte[]> dataKeys = new ArrayList<>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			long latestVersion = latestVersions[i];
+			long version = versions[i];
+			if (latestVersion < 0 || version > latestVersion) {
+				continue;
+			}
+			targetVersions[i] = version < 0 ? latestVersion : version;
+			indexes[dataKeys.size()] = i;
+			dataKeys.add(encodeDataKey(keys[i], targetVersions[i]).toBytes());
+		}
+		if (dataKeys.isEmpty()) {
+			return entries;
+		}
+		Map<byte[], byte[]> values = dbMultiGet(dataColumn, dataKeys);
+		for (int j = 0; j < dataKeys.size(); j++) {
+			byte[] value = values.get(dataKeys.get(j));
+			if (value != null) {
+				int i = indexes[j];
+				entries[i] = new VersioningKVData(keys[i], targetVersions[i], value);
+			}
+		}
+		return entries;
+	}
+
+	private long[] multiGetVersions(Bytes[] keys) {
+		long[] latestVersions = new long[keys.length];
+		int[] indexes = new int[keys.length];
+		long[] stamps = new long[keys.length];
+		List<byte[]> versionKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			VersionEntry ver = versions.get(keys[i]);
+			if (ver != null) {
+				latestVersions[i] = ver.get();
+			} else {
+				// 在读取数据库之前记录淘汰戳；
+				stamps[versionKeys.size()] = versions.getStamp(keys[i]);
+				indexes[versionKeys.size()] = i;
+				versionKeys.add(encodeVersionKey(keys[i]).toBytes());
+			}
+		}
+		if (versionKeys.isEmpty()) {
+			return latestVersions;
+		}
+		Map<byte[], byte[]> verValues = dbMultiGet(versionColumn, versionKeys);
+		for (int j = 0; j < versionKeys.size(); j++) {
+			int i = indexes[j];
+			long v = parseVersion(keys[i], verValues.get(versionKeys.get(j)));
+			// 加入版本缓存；如果已被并发加载，则以缓存中的版本为准；
+			// 如果读取期间有版本项被淘汰，则读取的版本可能已经过期，需要重新加载；
+			VersionEntry ver = versions.putIfUnchanged(keys[i], v, stamps[j]);
+			latestVersions[i] = ver == null ? innerGetVersion(keys[i]).get() : ver.get();
+		}
+		return latestVersions;
+	}
+
+	private Map<byte[], byte[]> dbMultiGet(ColumnFamilyHandle column, List<byte[]> keys) {
 		try {
-			lock.lock();
-			// 同步地写入版本号；
-			// 判断此版本是否已被并发更新为更高的值；如果版本已经不一致，则当前值已不必写入,避免数据库中新版本被错误地覆盖为低的版本；
-			latestVersion = innerGetVersion(key).get();
-			if (version == latestVersion) {
-				Bytes vkey = encodeVersionKey(key);
-				byte[] verBytes = BytesUtils.toBytes(version);
-				dbSet(vkey, verBytes);
+			return db.multiGet(readOptions, Collections.nCopies(keys.size(), column), keys);
+		} catch (RocksDBException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public long set(Bytes key, byte[] value, long version) {
+		long newVer = version + 1;
+		while (true) {
+			VersionEntry ver = versions.get(key, this::dbGetVersion);
+			// 仅对同一个键的写入进行同步，不影响读取以及其它键的写入；
+			// 版本的递增与版本的写入在同一把锁内完成，淘汰版本项时也持有此锁，因此被淘汰之后数据库中的版本总是最新的；
+			synchronized (ver) {
+				if (ver.isEvicted()) {
+					// 版本项已被淘汰，重新加载；
+					continue;
+				}
+				if (!ver.compareAndSet(version, newVer)) {
+					return -1;
+				}
+				dbSetVersion(ver, newVer);
 			}
-		} finally {
-			lock.unlock();
+			// 写入数据；新版本的数据键是唯一的，无需同步；
+			dbSetData(key, value, newVer);
+			return newVer;
 		}
-		// 写入数据；
-		dbSetData(key, value, version);
-		return latestVersion;
+	}
+
+	/**
+	 * 向数据库写入键的最新版本号；调用方应持有版本项的对象锁；
+	 * 
+	 * @param ver
+	 *            要写入的键的版本项；
+	 * @param version
+	 *            要写入的新版本号；
+	 */
+	private void dbSetVersion(VersionEntry ver, long version) {
+		Bytes vkey = encodeVersionKey(ver.getKey());
+		byte[] verBytes = BytesUtils.toBytes(version);
+		writer.addDirtyVersion(ver);
+		dbSet(versionColumn, vkey, verBytes);
 	}
 
 	protected void dbSetData(Bytes key, byte[] value, long version) {
 		// 写入数据；
 		Bytes dkey = encodeDataKey(key, version);
-		dbSet(dkey, value);
+		dbSet(dataColumn, dkey, value);
 	}
 
+	/**
+	 * 开始批量写入；
+	 * <p>
+	 * 批量可以嵌套，例如同时开始“版本”和“存在性”两类存储的批量；共享同一个写入器的存储的嵌套批量合并为同一个 {@link WriteBatch}，
+	 * 在最外层的批量提交时一次性原子写入；
+	 */
 	@Override
 	public void batchBegin() {
-		writeBatchThreadLocal.set(new WriteBatch());
+		writer.begin();
 	}
 
 	@Override
 	public void batchCommit() {
-		WriteBatch writeBatch = writeBatchThreadLocal.get();
-		if (writeBatch != null) {
-			writeBatch(writeBatch);
-			writeBatchThreadLocal.remove();
-		}
-	}
-
-	private void writeBatch(WriteBatch writeBatch) {
-		try {
-			db.write(writeOptions, writeBatch);
-		} catch (RocksDBException e) {
-			throw new IllegalStateException(e.getMessage(), e);
-		} finally {
-			writeBatch.close();
-		}
+		writer.commit();
 	}
 
 	private static class VersioningKVData implements VersioningKVEntry {
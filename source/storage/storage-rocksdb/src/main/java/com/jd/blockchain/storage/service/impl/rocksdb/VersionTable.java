@@ -0,0 +1,359 @@
+package com.jd.blockchain.storage.service.impl.rocksdb;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 键的最新版本的内存索引；
+ *
+ * <p>
+ * 索引被划分为多个分段，每个分段由一个 {@link ConcurrentHashMap} 保存版本项，因此读取版本时无需加锁；<br>
+ * 版本的递增通过对版本项进行 CAS 操作完成；
+ *
+ * <p>
+ * 每个分段的容量是有界的，超出容量时按照 CLOCK（二次机会）算法淘汰最近未被访问的版本项；<br>
+ * 已更新但尚未写入数据库的版本项（参见 {@link VersionEntry#isDirty()}）不会被淘汰，以避免从数据库重新加载到过期的版本；<br>
+ * 淘汰在版本项的对象锁内进行，被淘汰的版本项标记为失效（参见 {@link VersionEntry#isEvicted()}），
+ * 持有版本项的写入方需要在同一把锁内检查此标记，失效时重新获取版本项；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class VersionTable {
+
+	/**
+	 * 默认的容量；
+	 */
+	public static final int DEFAULT_CAPACITY = 1024 * 128;
+
+	/**
+	 * 默认的分段数量；
+	 */
+	public static final int DEFAULT_SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private final int segmentMask;
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public VersionTable() {
+		this(DEFAULT_CAPACITY, DEFAULT_SEGMENTS);
+	}
+
+	public VersionTable(int capacity) {
+		this(capacity, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * @param capacity
+	 *            最大的版本项数量；
+	 * @param segments
+	 *            分段数量；将向上取整为 2 的幂；
+	 */
+	public VersionTable(int capacity, int segments) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity of version table is less than 1!");
+		}
+		if (segments < 1) {
+			throw new IllegalArgumentException("The segments of version table is less than 1!");
+		}
+		int segmentCount = Integer.highestOneBit(segments);
+		if (segmentCount < segments) {
+			segmentCount <<= 1;
+		}
+		while (segmentCount > 1 && capacity / segmentCount < 1) {
+			segmentCount >>= 1;
+		}
+		int segmentCapacity = capacity / segmentCount;
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment(segmentCapacity);
+		}
+		this.segmentMask = segmentCount - 1;
+	}
+
+	private Segment segmentFor(Bytes key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & segmentMask];
+	}
+
+	/**
+	 * 返回指定键的版本项；如果不存在，则返回 null；
+	 * <p>
+	 * 此操作不加锁；
+	 *
+	 * @param key
+	 * @return
+	 */
+	public VersionEntry get(Bytes key) {
+		VersionEntry entry = segmentFor(key).entries.get(key);
+		if (entry != null) {
+			entry.touch();
+		}
+		return entry;
+	}
+
+	/**
+	 * 返回指定键的版本项；如果不存在，则通过指定的加载器加载最新版本并加入索引；
+	 * <p>
+	 * 加载器在 {@link ConcurrentHashMap#computeIfAbsent(Object, java.util.function.Function)} 内执行，
+	 * 加载期间同一个键的淘汰和加载都被阻塞，因此加载的版本不会被并发的写入和淘汰所过期；
+	 *
+	 * @param key
+	 * @param loader
+	 *            版本加载器；返回 -1 表示键不存在；加载器不能访问当前索引；
+	 * @return
+	 */
+	public VersionEntry get(Bytes key, ToLongFunction<Bytes> loader) {
+		Segment segment = segmentFor(key);
+		VersionEntry entry = segment.entries.get(key);
+		if (entry != null) {
+			entry.touch();
+			return entry;
+		}
+		VersionEntry[] created = new VersionEntry[1];
+		entry = segment.entries.computeIfAbsent(key, k -> created[0] = new VersionEntry(k, loader.applyAsLong(k)));
+		if (entry != created[0]) {
+			entry.touch();
+			return entry;
+		}
+		segment.added(entry);
+		return entry;
+	}
+
+	/**
+	 * 返回指定键所在分段的淘汰戳；
+	 * <p>
+	 * 分段中每淘汰一个版本项，淘汰戳都会变化；在索引外部批量加载版本之前记录此值，
+	 * 加入索引时以 {@link #putIfUnchanged(Bytes, long, long)} 校验，以免加入期间已被淘汰的过期版本；
+	 *
+	 * @param key
+	 * @return
+	 */
+	public long getStamp(Bytes key) {
+		return segmentFor(key).stamp.get();
+	}
+
+	/**
+	 * 加入在索引外部加载的版本；
+	 * <p>
+	 * 如果键已经在索引中，则返回已有的版本项；<br>
+	 * 否则仅在分段的淘汰戳与加载之前记录的值一致时加入，即加载之后该分段未淘汰过任何版本项，因此加载的版本不会是过期的；
+	 *
+	 * @param key
+	 * @param version
+	 *            加载的最新版本；-1 表示键不存在；
+	 * @param stamp
+	 *            加载之前通过 {@link #getStamp(Bytes)} 返回的淘汰戳；
+	 * @return 索引中的版本项；如果淘汰戳已经变化，则不加入，并返回 null；
+	 */
+	public VersionEntry putIfUnchanged(Bytes key, long version, long stamp) {
+		Segment segment = segmentFor(key);
+		VersionEntry[] created = new VersionEntry[1];
+		VersionEntry entry = segment.entries.computeIfAbsent(key,
+				k -> segment.stamp.get() == stamp ? created[0] = new VersionEntry(k, version) : null);
+		if (entry == null) {
+			return null;
+		}
+		if (entry != created[0]) {
+			entry.touch();
+			return entry;
+		}
+		segment.added(entry);
+		return entry;
+	}
+
+	/**
+	 * 当前的版本项数量；
+	 *
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size.get();
+		}
+		return size;
+	}
+
+	/**
+	 * 因超出容量而被淘汰的版本项数量；
+	 *
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * 清空索引；
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	private class Segment {
+
+		private final int capacity;
+
+		private final ConcurrentHashMap<Bytes, VersionEntry> entries;
+
+		/**
+		 * CLOCK 算法的环形队列；队首即时钟指针的位置；
+		 */
+		private final Queue<VersionEntry> clock = new ConcurrentLinkedQueue<>();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private final AtomicBoolean evicting = new AtomicBoolean();
+
+		/**
+		 * 淘汰戳；在移除版本项之前递增；
+		 */
+		private final AtomicLong stamp = new AtomicLong();
+
+		private Segment(int capacity) {
+			this.capacity = capacity;
+			this.entries = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+		}
+
+		private void added(VersionEntry entry) {
+			clock.offer(entry);
+			if (size.incrementAndGet() > capacity) {
+				evict();
+			}
+		}
+
+		private void evict() {
+			// 同一时刻只需要一个线程执行淘汰；其它线程不必等待；
+			if (!evicting.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				// 限制扫描的次数，避免在全部版本项都被访问或都未写入数据库时无限循环；
+				int maxScan = size.get() * 2;
+				for (int i = 0; i < maxScan && size.get() > capacity; i++) {
+					VersionEntry entry = clock.poll();
+					if (entry == null) {
+						break;
+					}
+					if (!tryEvict(entry)) {
+						// 给予二次机会；
+						entry.referenced = false;
+						clock.offer(entry);
+					}
+				}
+			} finally {
+				evicting.set(false);
+			}
+		}
+
+		/**
+		 * 淘汰版本项；与写入方互斥地检查并标记版本项，使得写入方不会在已淘汰的版本项上递增版本；
+		 * 
+		 * @param entry
+		 * @return 最近被访问过，或者有尚未写入数据库的更新时返回 false；
+		 */
+		private boolean tryEvict(VersionEntry entry) {
+			synchronized (entry) {
+				if (entry.referenced || entry.dirty) {
+					return false;
+				}
+				// 先递增淘汰戳，再移除版本项，使得移除之后以旧的淘汰戳加入的过期版本都被拒绝；
+				stamp.incrementAndGet();
+				entry.evicted = true;
+				if (entries.remove(entry.key, entry)) {
+					size.decrementAndGet();
+					evictionCount.incrementAndGet();
+				}
+				return true;
+			}
+		}
+
+		private void clear() {
+			stamp.incrementAndGet();
+			for (VersionEntry entry : entries.values()) {
+				synchronized (entry) {
+					entry.evicted = true;
+				}
+			}
+			entries.clear();
+			clock.clear();
+			size.set(0);
+		}
+	}
+
+	/**
+	 * 版本项；其值为键的最新版本，-1 表示键不存在；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	@SuppressWarnings("serial")
+	public static class VersionEntry extends AtomicLong {
+
+		private final Bytes key;
+
+		private volatile boolean referenced;
+
+		private volatile boolean dirty;
+
+		private volatile boolean evicted;
+
+		private VersionEntry(Bytes key, long version) {
+			super(version);
+			this.key = key;
+		}
+
+		public Bytes getKey() {
+			return key;
+		}
+
+		private void touch() {
+			// 仅在标记未设置时写入，避免读多的场景下频繁写共享的缓存行；
+			if (!referenced) {
+				referenced = true;
+			}
+		}
+
+		/**
+		 * 是否有尚未写入数据库的版本更新；
+		 *
+		 * @return
+		 */
+		public boolean isDirty() {
+			return dirty;
+		}
+
+		/**
+		 * 是否已被淘汰；已淘汰的版本项不再是键的最新版本，写入方应重新从索引获取版本项；
+		 * <p>
+		 * 此标记在版本项的对象锁内设置，写入方在递增版本之前应持有同一把锁检查此标记；
+		 *
+		 * @return
+		 */
+		public boolean isEvicted() {
+			return evicted;
+		}
+
+		/**
+		 * 设置是否有尚未写入数据库的版本更新；有尚未写入的更新时，版本项不会被淘汰；
+		 *
+		 * @param dirty
+		 */
+		public void setDirty(boolean dirty) {
+			this.dirty = dirty;
+		}
+	}
+}
@@ -5,18 +5,37 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
 
+import com.jd.blockchain.storage.service.CheckpointStorageService;
 import com.jd.blockchain.storage.service.DbConnection;
 import com.jd.blockchain.storage.service.DbConnectionFactory;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage.ExPolicy;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.storage.service.impl.rocksdb.RocksDBConfig;
 import com.jd.blockchain.storage.service.impl.rocksdb.RocksDBConnectionFactory;
+import com.jd.blockchain.storage.service.impl.rocksdb.RocksDBStorageService;
+import com.jd.blockchain.storage.service.utils.CheckpointArchive;
+import com.jd.blockchain.storage.service.utils.GroupCommitKVStorage;
 import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.IllegalDataException;
 import com.jd.blockchain.utils.io.BytesUtils;
 import com.jd.blockchain.utils.io.FileUtils;
 
@@ -48,6 +67,347 @@ public class RocksDBStorageTest {
 
 	}
 
+	@Test
+	public void testConnectWithConfig() {
+		String dbUri = initEmptyDB("rocksdb_storage_config_test");
+		String paramUri = dbUri + "?block-cache-size=8M&data.prefix-length=8&node.block-cache-size=4MB";
+		Properties defaultProps = new Properties();
+		defaultProps.setProperty(RocksDBConfig.VERSION_CAPACITY, "1K");
+		long expectedVersion;
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory(defaultProps);) {
+			DbConnection conn = dbConnFactory.connect(paramUri);
+			expectedVersion = test(conn.getStorageService().getVersioningKVStorage());
+			test(conn.getStorageService().getExPolicyKVStorage());
+		}
+
+		// 以不同的参数重新打开；
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri + "?data.prefix-length=0");
+			testAfterReload(conn.getStorageService().getVersioningKVStorage(), expectedVersion);
+			testAfterReload(conn.getStorageService().getExPolicyKVStorage());
+		}
+	}
+
+	@Test
+	public void testConfig() {
+		Properties props = new Properties();
+		props.setProperty(RocksDBConfig.BLOCK_CACHE_SIZE, "2G");
+		props.setProperty(RocksDBConfig.DATA_PREFIX_LENGTH, "16");
+		RocksDBConfig config = new RocksDBConfig(props);
+		assertEquals(2L * 1024 * 1024 * 1024, config.getBlockCacheSize());
+		assertEquals(16, config.getDataPrefixLength());
+
+		RocksDBConfig merged = config.merge(RocksDBConfig.parseQuery("node.block-cache-size=64mb&data.bloom-bits=16"));
+		assertEquals(2L * 1024 * 1024 * 1024, merged.getBlockCacheSize());
+		assertEquals(16, merged.getDataPrefixLength());
+		assertEquals(64L * 1024 * 1024, merged.getNodeBlockCacheSize());
+		assertEquals(16, merged.getDataBloomBits());
+		assertEquals(10, config.getDataBloomBits());
+
+		try {
+			config.merge(RocksDBConfig.parseQuery("unknown=1"));
+			assertTrue("Unsupported property is accepted!", false);
+		} catch (IllegalArgumentException e) {
+			// 预期的异常；
+		}
+	}
+
+	/**
+	 * 验证只有默认列族的已有数据库可以继续使用；
+	 * 
+	 * @throws RocksDBException
+	 */
+	@Test
+	public void testLegacyLayout() throws RocksDBException {
+		String dbUri = initEmptyDB("rocksdb_storage_legacy_test");
+		String dbPath = dbUri.substring("rocksdb://".length());
+		long expectedVersion;
+		try (Options options = new Options().setCreateIfMissing(true); RocksDB db = RocksDB.open(options, dbPath)) {
+			RocksDBStorageService storage = new RocksDBStorageService(db);
+			expectedVersion = test(storage.getVersioningKVStorage());
+			test(storage.getExPolicyKVStorage());
+		}
+
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			testAfterReload(conn.getStorageService().getVersioningKVStorage(), expectedVersion);
+			testAfterReload(conn.getStorageService().getExPolicyKVStorage());
+		}
+
+		try (Options options = new Options()) {
+			assertEquals(1, RocksDB.listColumnFamilies(options, dbPath).size());
+		}
+	}
+
+	@Test
+	public void testMultiGet() throws RocksDBException {
+		String dbUri = initEmptyDB("rocksdb_storage_multiget_test");
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			writeMultiGetData(conn.getStorageService().getVersioningKVStorage(),
+					conn.getStorageService().getExPolicyKVStorage());
+		}
+		// 重新打开，版本从数据库批量加载；
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			testMultiGet(conn.getStorageService().getVersioningKVStorage(),
+					conn.getStorageService().getExPolicyKVStorage());
+			// 版本已缓存；
+			testMultiGet(conn.getStorageService().getVersioningKVStorage(),
+					conn.getStorageService().getExPolicyKVStorage());
+		}
+
+		// 版本和数据保存在同一个列族中；
+		String legacyPath = initEmptyDB("rocksdb_storage_multiget_legacy_test").substring("rocksdb://".length());
+		try (Options options = new Options().setCreateIfMissing(true); RocksDB db = RocksDB.open(options, legacyPath)) {
+			RocksDBStorageService storage = new RocksDBStorageService(db);
+			writeMultiGetData(storage.getVersioningKVStorage(), storage.getExPolicyKVStorage());
+			testMultiGet(storage.getVersioningKVStorage(), storage.getExPolicyKVStorage());
+		}
+	}
+
+	@Test
+	public void testCheckpoint() throws IOException {
+		String dbUri = initEmptyDB("rocksdb_storage_checkpoint_test");
+		File checkpointDir = initEmptyDir("rocksdb_storage_checkpoint_test.ckpt.db");
+		File installDir = initEmptyDir("rocksdb_storage_checkpoint_install.db");
+		Bytes laterKey = Bytes.fromString("after-checkpoint");
+
+		long expectedVersion;
+		byte[] archive;
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			VersioningKVStorage verStorage = conn.getStorageService().getVersioningKVStorage();
+			expectedVersion = test(verStorage);
+			test(conn.getStorageService().getExPolicyKVStorage());
+
+			((CheckpointStorageService) conn.getStorageService()).createCheckpoint(checkpointDir.getAbsolutePath());
+			// 创建检查点之后的写入不在检查点中；
+			verStorage.set(laterKey, BytesUtils.toBytes("data"), -1);
+
+			// 以较小的分块传输，使文件被分为多个块；
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (InputStream in = CheckpointArchive.open(checkpointDir, 1024)) {
+				BytesUtils.copy(in, out);
+			}
+			archive = out.toByteArray();
+		}
+
+		int count = CheckpointArchive.extract(new ByteArrayInputStream(archive), installDir);
+		assertEquals(checkpointDir.list().length, count);
+
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect("rocksdb://" + installDir.getAbsolutePath());
+			VersioningKVStorage verStorage = conn.getStorageService().getVersioningKVStorage();
+			testAfterReload(verStorage, expectedVersion);
+			testAfterReload(conn.getStorageService().getExPolicyKVStorage());
+			assertEquals(-1, verStorage.getVersion(laterKey));
+		}
+
+		// 不完整的归档；
+		File brokenDir = initEmptyDir("rocksdb_storage_checkpoint_broken.db");
+		try {
+			CheckpointArchive.extract(new ByteArrayInputStream(Arrays.copyOf(archive, archive.length / 2)),
+					brokenDir);
+			fail("Incomplete archive is extracted!");
+		} catch (IllegalDataException e) {
+		}
+	}
+
+	@Test
+	public void testConcurrentSetWithEviction() throws InterruptedException {
+		String dbUri = initEmptyDB("rocksdb_storage_concurrent_test");
+		Properties props = new Properties();
+		// 很小的版本缓存，使得版本项频繁地被淘汰和重新加载；
+		props.setProperty(RocksDBConfig.VERSION_CAPACITY, "4");
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory(props);) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			VersioningKVStorage verStorage = conn.getStorageService().getVersioningKVStorage();
+
+			Bytes key = Bytes.fromString("SHARED");
+			int threadCount = 8;
+			int rounds = 500;
+			AtomicInteger succeeded = new AtomicInteger();
+			CountDownLatch latch = new CountDownLatch(threadCount);
+			for (int t = 0; t < threadCount; t++) {
+				final int tid = t;
+				new Thread(() -> {
+					try {
+						for (int i = 0; i < rounds; i++) {
+							// 写入其它的键，触发淘汰；
+							verStorage.set(Bytes.fromString("K-" + tid + "-" + i), BytesUtils.toBytes("x"), -1);
+
+							long v = verStorage.getVersion(key);
+							if (verStorage.set(key, BytesUtils.toBytes(tid + "-" + i), v) == v + 1) {
+								succeeded.incrementAndGet();
+							}
+						}
+					} finally {
+						latch.countDown();
+					}
+				}).start();
+			}
+			latch.await();
+
+			// 每一个版本只被成功写入一次，版本连续递增；
+			assertEquals(succeeded.get() - 1, verStorage.getVersion(key));
+			for (int v = 0; v < succeeded.get(); v++) {
+				assertNotNull(verStorage.get(key, v));
+			}
+		}
+	}
+
+	@Test
+	public void testGroupCommitCrash() {
+		String dbUri = initEmptyDB("rocksdb_storage_group_commit_test");
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			CrashingVersioningStorage verStorage = new CrashingVersioningStorage(
+					conn.getStorageService().getVersioningKVStorage());
+			GroupCommitKVStorage storage = new GroupCommitKVStorage(conn.getStorageService().getExPolicyKVStorage(),
+					verStorage, 2);
+
+			writeGroup(storage, 0);
+			writeGroup(storage, 1);
+			storage.sync();
+
+			// 模拟在“存在性”存储的批量提交之后、“版本”存储的批量提交之前崩溃；
+			verStorage.crashing = true;
+			writeGroup(storage, 2);
+			try {
+				storage.close();
+				fail("The crash of writing is not reported!");
+			} catch (IllegalStateException e) {
+			}
+		}
+
+		try (DbConnectionFactory dbConnFactory = new RocksDBConnectionFactory();) {
+			DbConnection conn = dbConnFactory.connect(dbUri);
+			VersioningKVStorage verStorage = conn.getStorageService().getVersioningKVStorage();
+			ExPolicyKVStorage exStorage = conn.getStorageService().getExPolicyKVStorage();
+
+			// 崩溃之前已写入的写入组完整地保留；
+			for (int i = 0; i < 2; i++) {
+				assertTrue(exStorage.exist(Bytes.fromString("NODE-" + i)));
+				assertEquals("block-" + i, BytesUtils.toString(verStorage.get(Bytes.fromString("BLOCK"), i)));
+			}
+			// 崩溃的写入组的两类数据都没有写入；
+			assertFalse(exStorage.exist(Bytes.fromString("NODE-2")));
+			assertEquals(1, verStorage.getVersion(Bytes.fromString("BLOCK")));
+		}
+	}
+
+	private static void writeGroup(GroupCommitKVStorage storage, int height) {
+		storage.batchBegin();
+		assertTrue(storage.set(Bytes.fromString("NODE-" + height), BytesUtils.toBytes("node-" + height),
+				ExPolicy.NOT_EXISTING));
+		assertEquals(height, storage.set(Bytes.fromString("BLOCK"), BytesUtils.toBytes("block-" + height), height - 1));
+		storage.batchCommit();
+	}
+
+	/**
+	 * 在批量提交时模拟崩溃的版本化存储；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class CrashingVersioningStorage implements VersioningKVStorage {
+
+		private final VersioningKVStorage storage;
+
+		private volatile boolean crashing;
+
+		private CrashingVersioningStorage(VersioningKVStorage storage) {
+			this.storage = storage;
+		}
+
+		@Override
+		public void batchBegin() {
+			storage.batchBegin();
+		}
+
+		@Override
+		public void batchCommit() {
+			if (crashing) {
+				throw new IllegalStateException("Crash!");
+			}
+			storage.batchCommit();
+		}
+
+		@Override
+		public long getVersion(Bytes key) {
+			return storage.getVersion(key);
+		}
+
+		@Override
+		public VersioningKVEntry getEntry(Bytes key, long version) {
+			return storage.getEntry(key, version);
+		}
+
+		@Override
+		public byte[] get(Bytes key, long version) {
+			return storage.get(key, version);
+		}
+
+		@Override
+		public long set(Bytes key, byte[] value, long version) {
+			return storage.set(key, value, version);
+		}
+	}
+
+	private void writeMultiGetData(VersioningKVStorage verStorage, ExPolicyKVStorage exStorage) {
+		for (int i = 0; i < 10; i++) {
+			Bytes key = Bytes.fromString("ACC/").concat(Bytes.fromString("k" + i));
+			for (int v = 0; v <= i; v++) {
+				assertEquals(v, verStorage.set(key, BytesUtils.toBytes("v" + v + "-" + i), v - 1));
+			}
+			assertTrue(exStorage.set(Bytes.fromString("ex" + i), BytesUtils.toBytes("ex-" + i), ExPolicy.NOT_EXISTING));
+		}
+	}
+
+	private void testMultiGet(VersioningKVStorage verStorage, ExPolicyKVStorage exStorage) {
+		Bytes[] keys = new Bytes[12];
+		Bytes[] exKeys = new Bytes[12];
+		for (int i = 0; i < keys.length; i++) {
+			// 组合的键，同样长度的键展开到同一个线程内的缓冲区；
+			keys[i] = Bytes.fromString("ACC/").concat(Bytes.fromString("k" + (i % 11)));
+			exKeys[i] = Bytes.fromString("ex" + (i % 11));
+		}
+		VersioningKVEntry[] entries = verStorage.multiGetLatest(keys);
+		byte[][] values = exStorage.multiGet(exKeys);
+		assertEquals(keys.length, entries.length);
+		for (int i = 0; i < keys.length; i++) {
+			int n = i % 11;
+			if (n == 10) {
+				assertNull(entries[i]);
+				assertNull(values[i]);
+				continue;
+			}
+			assertEquals(keys[i], entries[i].getKey());
+			assertEquals(n, entries[i].getVersion());
+			assertEquals("v" + n + "-" + n, BytesUtils.toString(entries[i].getValue()));
+			assertEquals("ex-" + n, BytesUtils.toString(values[i]));
+		}
+
+		// 读取各自指定的版本；
+		long[] versions = new long[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			int n = i % 11;
+			versions[i] = i % 3 == 0 ? 0 : (i % 3 == 1 ? n : n + 1);
+		}
+		entries = verStorage.multiGetEntries(keys, versions);
+		for (int i = 0; i < keys.length; i++) {
+			int n = i % 11;
+			if (n == 10 || versions[i] > n) {
+				assertNull(entries[i]);
+				continue;
+			}
+			assertEquals(keys[i], entries[i].getKey());
+			assertEquals(versions[i], entries[i].getVersion());
+			assertEquals("v" + versions[i] + "-" + n, BytesUtils.toString(entries[i].getValue()));
+		}
+	}
+
 	private void test(ExPolicyKVStorage exStorage) {
 		Bytes key = Bytes.fromString("kex");
 		assertFalse(exStorage.exist(key));
@@ -133,4 +493,11 @@ public class RocksDBStorageTest {
 		return dbURI;
 	}
 
+	private File initEmptyDir(String name) {
+		File dir = new File(FileUtils.getCurrentDir(), name);
+		FileUtils.deleteFile(dir);
+		dir.delete();
+		return dir;
+	}
+
 }
@@ -0,0 +1,122 @@
+package test.com.jd.blockchain.storage.service.impl.rocksdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.jd.blockchain.storage.service.impl.rocksdb.VersionTable;
+import com.jd.blockchain.storage.service.impl.rocksdb.VersionTable.VersionEntry;
+import com.jd.blockchain.utils.Bytes;
+
+public class VersionTableTest {
+
+	@Test
+	public void testLoadAndEvict() {
+		VersionTable table = new VersionTable(64, 4);
+		AtomicInteger loads = new AtomicInteger();
+
+		Bytes key = Bytes.fromString("KEY");
+		assertNull(table.get(key));
+		VersionEntry entry = table.get(key, k -> {
+			loads.incrementAndGet();
+			return 5;
+		});
+		assertEquals(5, entry.get());
+		assertSame(entry, table.get(key));
+		assertSame(entry, table.get(key, k -> {
+			loads.incrementAndGet();
+			return 0;
+		}));
+		assertEquals(1, loads.get());
+
+		assertTrue(entry.compareAndSet(5, 6));
+		assertEquals(6, table.get(key).get());
+
+		// 未写入数据库的版本项不会被淘汰；
+		entry.setDirty(true);
+		for (int i = 0; i < 1000; i++) {
+			table.get(Bytes.fromString("KEY-" + i), k -> -1);
+		}
+		assertTrue(table.size() <= 64 + 4);
+		assertTrue(table.getEvictionCount() > 0);
+		assertSame(entry, table.get(key));
+		assertFalse(entry.isEvicted());
+
+		entry.setDirty(false);
+		for (int i = 1000; i < 2000; i++) {
+			table.get(Bytes.fromString("KEY-" + i), k -> -1);
+		}
+		assertTrue(table.size() <= 64 + 4);
+	}
+
+	@Test
+	public void testStaleLoad() {
+		VersionTable table = new VersionTable(4, 1);
+		Bytes key = Bytes.fromString("KEY");
+
+		// 淘汰戳未变化时加入在外部加载的版本；
+		long stamp = table.getStamp(key);
+		VersionEntry entry = table.putIfUnchanged(key, 2, stamp);
+		assertEquals(2, entry.get());
+		assertSame(entry, table.putIfUnchanged(key, 1, stamp));
+
+		// 在外部加载之后，键被更新并被淘汰；
+		stamp = table.getStamp(key);
+		assertTrue(entry.compareAndSet(2, 3));
+		for (int i = 0; i < 16; i++) {
+			table.get(Bytes.fromString("KEY-" + i), k -> -1);
+		}
+		assertNull(table.get(key));
+		assertTrue(entry.isEvicted());
+
+		// 过期的版本不会加入索引；
+		assertNull(table.putIfUnchanged(key, 2, stamp));
+		assertNull(table.get(key));
+		assertEquals(3, table.get(key, k -> 3).get());
+	}
+
+	@Test
+	public void testConcurrentIncrease() throws InterruptedException {
+		VersionTable table = new VersionTable(16, 4);
+		Bytes key = Bytes.fromString("KEY");
+		VersionEntry entry = table.get(key, k -> -1);
+		entry.setDirty(true);
+
+		int threadCount = 8;
+		int increases = 1000;
+		AtomicInteger succeeded = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(threadCount);
+		for (int t = 0; t < threadCount; t++) {
+			final int tid = t;
+			new Thread(() -> {
+				try {
+					for (int i = 0; i < increases; i++) {
+						// 同时产生其它的键，触发淘汰；
+						table.get(Bytes.fromString("KEY-" + tid + "-" + i), k -> -1);
+
+						VersionEntry ver = table.get(key);
+						long v = ver.get();
+						if (ver.compareAndSet(v, v + 1)) {
+							succeeded.incrementAndGet();
+						}
+					}
+				} finally {
+					latch.countDown();
+				}
+			}).start();
+		}
+		latch.await();
+
+		VersionEntry ver = table.get(key);
+		assertNotNull(ver);
+		assertEquals(succeeded.get() - 1, ver.get());
+	}
+}
@@ -0,0 +1,24 @@
+package com.jd.blockchain.storage.service;
+
+/**
+ * 支持检查点的存储服务；
+ * <p>
+ * 检查点是存储在某一时刻的一致的完整副本，保存在一个独立的目录中，可以直接作为存储打开；
+ * 用于新节点或者落后节点的状态传输，以及节点的快速恢复；
+ *
+ * @author huanghaiquan
+ *
+ */
+public interface CheckpointStorageService {
+
+	/**
+	 * 在指定的目录创建检查点；
+	 * <p>
+	 * 检查点包含调用时已经写入的全部数据；目录必须不存在；
+	 *
+	 * @param checkpointDir
+	 *            检查点的目录；
+	 */
+	void createCheckpoint(String checkpointDir);
+
+}
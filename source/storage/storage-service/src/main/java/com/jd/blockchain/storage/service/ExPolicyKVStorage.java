@@ -72,6 +72,23 @@ public interface ExPolicyKVStorage extends BatchStorageService{
 	 */
 	boolean exist(Bytes key);
 
+	/**
+	 * 批量返回多个“键”对应的“值”；<br>
+	 * 返回的数组与参数中的键一一对应，不存在的键对应的元素为 null；
+	 * <p>
+	 * 默认实现逐个调用 {@link #get(Bytes)}；底层存储支持批量读取时应当重写此方法，以一次往返读取全部的键；
+	 * 
+	 * @param keys
+	 * @return
+	 */
+	default byte[][] multiGet(Bytes[] keys) {
+		byte[][] values = new byte[keys.length][];
+		for (int i = 0; i < keys.length; i++) {
+			values[i] = get(keys[i]);
+		}
+		return values;
+	}
+
 	/**
 	 * 存在性策略；
 	 * 
@@ -136,4 +136,52 @@ public interface VersioningKVStorage extends BatchStorageService {
 	 */
 	long set(Bytes key, byte[] value, long version);
 
+	/**
+	 * Return the latest version entries of the specified keys;<br>
+	 * 
+	 * The returned array is in the same order as the keys, with null for the
+	 * key which doesn't exist; <br>
+	 * 
+	 * The default implementation calls {@link #getEntry(Bytes, long)} one by
+	 * one; Implementations backed by a remote or persistent store should
+	 * override it to fetch all the keys in a single round trip.
+	 * 
+	 * @param keys
+	 * @return
+	 */
+	default VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			entries[i] = getEntry(keys[i], -1);
+		}
+		return entries;
+	}
+
+	/**
+	 * Return the entries of the specified versions of the keys;<br>
+	 * 
+	 * The returned array is in the same order as the keys, with null for the
+	 * key or version which doesn't exist; A negative version means the latest
+	 * version of the key; <br>
+	 * 
+	 * The default implementation calls {@link #getEntry(Bytes, long)} one by
+	 * one; Implementations backed by a remote or persistent store should
+	 * override it to fetch all the keys in a single round trip.
+	 * 
+	 * @param keys
+	 * @param versions
+	 *            the versions of the keys, in the same order as the keys;
+	 * @return
+	 */
+	default VersioningKVEntry[] multiGetEntries(Bytes[] keys, long[] versions) {
+		if (keys.length != versions.length) {
+			throw new IllegalArgumentException("The number of versions doesn't match the number of keys!");
+		}
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			entries[i] = getEntry(keys[i], versions[i]);
+		}
+		return entries;
+	}
+
 }
\ No newline at end of file
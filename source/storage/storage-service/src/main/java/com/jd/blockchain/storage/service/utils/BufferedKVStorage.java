@@ -52,6 +52,18 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 	private ConcurrentHashMap<Bytes, ExistanceWritingSet> existanceCache = new ConcurrentHashMap<>();
 	private Object existanceMutex = new Object();
 
+	/**
+	 * 预读的原始存储中的最新版本数据；键不存在时以版本为 -1 的项表示；
+	 * <p>
+	 * 只在键没有缓冲的写入时有效；输出缓冲的写入时移除被写入的键；参见 {@link #prefetch(Bytes[], Bytes[])}；
+	 */
+	private ConcurrentHashMap<Bytes, VersioningKVEntry> prefetchCache = new ConcurrentHashMap<>();
+
+	/**
+	 * 预读的原始存储中的存在性数据；键不存在时以 {@link #ABSENT_VALUE} 表示；
+	 */
+	private ConcurrentHashMap<Bytes, byte[]> existancePrefetchCache = new ConcurrentHashMap<>();
+
 	/**
 	 * 创建实例；
 	 * 
@@ -69,19 +81,189 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 		this.parallel = parallel;
 	}
 
+	/**
+	 * 以批量读取预读指定键在原始存储中的数据；
+	 * <p>
+	 * 预读的数据在此后的读取以及写入的版本和存在性校验中直接使用，避免逐个键访问原始存储；已经缓冲了写入或者已经预读的键不会重复读取；
+	 * 
+	 * @param versioningKeys
+	 *            要预读最新版本的“版本化KV存储”的键；
+	 * @param existanceKeys
+	 *            要预读的“存在性KV存储”的键；
+	 */
+	public void prefetch(Bytes[] versioningKeys, Bytes[] existanceKeys) {
+		Bytes[] fetchingKeys = filterKeys(versioningKeys, versioningCache, prefetchCache);
+		if (fetchingKeys.length > 0) {
+			VersioningKVEntry[] entries = origVersioningStorage.multiGetLatest(fetchingKeys);
+			for (int i = 0; i < fetchingKeys.length; i++) {
+				VersioningKVEntry entry = entries[i];
+				if (entry == null) {
+					entry = new VersioningKVData(fetchingKeys[i], -1, null);
+				}
+				prefetchCache.putIfAbsent(fetchingKeys[i], entry);
+			}
+		}
+
+		fetchingKeys = filterKeys(existanceKeys, existanceCache, existancePrefetchCache);
+		if (fetchingKeys.length > 0) {
+			byte[][] values = origExistanceStorage.multiGet(fetchingKeys);
+			for (int i = 0; i < fetchingKeys.length; i++) {
+				byte[] value = values[i];
+				existancePrefetchCache.putIfAbsent(fetchingKeys[i], value == null ? ABSENT_VALUE : value);
+			}
+		}
+	}
+
+	/**
+	 * 返回既没有缓冲写入、也没有预读的键；
+	 */
+	private static Bytes[] filterKeys(Bytes[] keys, ConcurrentHashMap<Bytes, ?> writingCache,
+			ConcurrentHashMap<Bytes, ?> prefetchedCache) {
+		ArrayList<Bytes> missingKeys = new ArrayList<>(keys.length);
+		for (Bytes key : keys) {
+			if (!writingCache.containsKey(key) && !prefetchedCache.containsKey(key)) {
+				missingKeys.add(key);
+			}
+		}
+		return missingKeys.toArray(new Bytes[missingKeys.size()]);
+	}
+
+	/**
+	 * 从预读的数据中返回指定版本的数据；
+	 * 
+	 * @param key
+	 * @param version
+	 * @return 未预读时，或者预读的不是指定的版本时返回 null；
+	 */
+	private VersioningKVEntry getPrefetched(Bytes key, long version) {
+		VersioningKVEntry entry = prefetchCache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (version < 0 || version >= entry.getVersion()) {
+			// 超出最新版本时返回不存在的标记；
+			return version > entry.getVersion() ? ABSENT : entry;
+		}
+		return null;
+	}
+
+	private static final VersioningKVEntry ABSENT = new VersioningKVData(null, -1, null);
+
+	private static final byte[] ABSENT_VALUE = new byte[0];
+
+	/**
+	 * 从原始存储读取存在性数据；优先使用预读的数据；
+	 * 
+	 * @param key
+	 * @return
+	 */
+	private byte[] getOrigExistance(Bytes key) {
+		byte[] value = existancePrefetchCache.get(key);
+		if (value == null) {
+			return origExistanceStorage.get(key);
+		}
+		return value == ABSENT_VALUE ? null : value;
+	}
+
+	private boolean existOrig(Bytes key) {
+		byte[] value = existancePrefetchCache.get(key);
+		if (value == null) {
+			return origExistanceStorage.exist(key);
+		}
+		return value != ABSENT_VALUE;
+	}
+
 	@Override
 	public long getVersion(Bytes key) {
 		VersioningWritingSet ws = versioningCache.get(key);
 		if (ws == null) {
+			VersioningKVEntry prefetched = prefetchCache.get(key);
+			if (prefetched != null) {
+				return prefetched.getVersion();
+			}
 			return origVersioningStorage.getVersion(key);
 		}
 		return ws.getLatestVersion();
 	}
 
+	@Override
+	public VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		int[] indexes = new int[keys.length];
+		ArrayList<Bytes> missingKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			VersioningWritingSet ws = versioningCache.get(keys[i]);
+			if (ws != null) {
+				entries[i] = ws.getEntry(ws.getLatestVersion());
+				continue;
+			}
+			VersioningKVEntry prefetched = prefetchCache.get(keys[i]);
+			if (prefetched != null) {
+				entries[i] = prefetched.getVersion() < 0 ? null : prefetched;
+				continue;
+			}
+			indexes[missingKeys.size()] = i;
+			missingKeys.add(keys[i]);
+		}
+		if (missingKeys.size() > 0) {
+			VersioningKVEntry[] origEntries = origVersioningStorage
+					.multiGetLatest(missingKeys.toArray(new Bytes[missingKeys.size()]));
+			for (int j = 0; j < origEntries.length; j++) {
+				entries[indexes[j]] = origEntries[j];
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * 批量读取多个键的指定版本的数据；
+	 * <p>
+	 * 缓冲的写入和预读的数据中没有的键以一次批量读取原始存储；读取的结果不加入预读缓存；
+	 */
+	@Override
+	public VersioningKVEntry[] multiGetEntries(Bytes[] keys, long[] versions) {
+		if (keys.length != versions.length) {
+			throw new IllegalArgumentException("The number of versions doesn't match the number of keys!");
+		}
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		int[] indexes = new int[keys.length];
+		ArrayList<Bytes> missingKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			if (versioningCache.containsKey(keys[i])) {
+				// 有缓冲的写入的键，由缓冲区决定读取的版本；
+				entries[i] = getEntry(keys[i], versions[i]);
+				continue;
+			}
+			VersioningKVEntry prefetched = getPrefetched(keys[i], versions[i]);
+			if (prefetched != null) {
+				entries[i] = prefetched.getVersion() < 0 ? null : prefetched;
+				continue;
+			}
+			indexes[missingKeys.size()] = i;
+			missingKeys.add(keys[i]);
+		}
+		if (missingKeys.size() > 0) {
+			long[] missingVersions = new long[missingKeys.size()];
+			for (int j = 0; j < missingVersions.length; j++) {
+				missingVersions[j] = versions[indexes[j]];
+			}
+			VersioningKVEntry[] origEntries = origVersioningStorage
+					.multiGetEntries(missingKeys.toArray(new Bytes[missingKeys.size()]), missingVersions);
+			for (int j = 0; j < origEntries.length; j++) {
+				entries[indexes[j]] = origEntries[j];
+			}
+		}
+		return entries;
+	}
+
 	@Override
 	public VersioningKVEntry getEntry(Bytes key, long version) {
 		VersioningWritingSet ws = versioningCache.get(key);
 		if (ws == null) {
+			VersioningKVEntry prefetched = getPrefetched(key, version);
+			if (prefetched != null) {
+				return prefetched.getVersion() < 0 ? null : prefetched;
+			}
 			return origVersioningStorage.getEntry(key, version);
 		}
 		long latestVersion = ws.getStartingVersion();
@@ -100,6 +282,10 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 	public byte[] get(Bytes key, long version) {
 		VersioningWritingSet ws = versioningCache.get(key);
 		if (ws == null) {
+			VersioningKVEntry prefetched = getPrefetched(key, version);
+			if (prefetched != null) {
+				return prefetched.getValue();
+			}
 			return origVersioningStorage.get(key, version);
 		}
 		long latestVersion = ws.getStartingVersion();
@@ -124,7 +310,8 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 		}
 		VersioningWritingSet ws = versioningCache.get(key);
 		if (ws == null) {
-			long latestVersion = origVersioningStorage.getVersion(key);
+			VersioningKVEntry prefetched = prefetchCache.get(key);
+			long latestVersion = prefetched == null ? origVersioningStorage.getVersion(key) : prefetched.getVersion();
 			if (version < latestVersion) {
 				return -1;
 			}
@@ -154,12 +341,31 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 		} else {
 			syncFlush();
 		}
+		// 已写入的键在原始存储中的最新版本已经改变，预读的数据失效；
+		for (Bytes key : versioningCache.keySet()) {
+			prefetchCache.remove(key);
+		}
+		for (Bytes key : existanceCache.keySet()) {
+			existancePrefetchCache.remove(key);
+		}
 
 		clear();
 	}
 
 	private void parallelFlush() {
 		// 不必在“版本”和“存在性”这两类存储接口之间保证向下写入的顺序，也不必保证不同 key 向下写入的顺序；
+		if (versioningCache.isEmpty() && existanceCache.isEmpty()) {
+			return;
+		}
+		// 并行写入由其它线程执行，此处的批量只是标记一次输出的边界（参见 GroupCommitKVStorage）；
+		origVersioningStorage.batchBegin();
+		origExistanceStorage.batchBegin();
+		parallelWrite();
+		origExistanceStorage.batchCommit();
+		origVersioningStorage.batchCommit();
+	}
+
+	private void parallelWrite() {
 		ParallelVersioningWritingTask versioningWritingTask = null;
 		if (versioningCache.size() > 0) {
 			VersioningWritingSet[] wss = versioningCache.values()
@@ -275,20 +481,22 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 	}
 
 	private void syncFlush() {
-		// 不必在“版本”和“存在性”这两类存储接口之间保证向下写入的顺序，也不必保证不同 key 向下写入的顺序；
+		// 不必保证不同 key 向下写入的顺序；
         if (versioningCache.isEmpty() && existanceCache.isEmpty()) {
             return;
         }
+		// 两类存储的批量嵌套开始，使一次输出的全部数据能够合并为同一个批量（参见 GroupCommitKVStorage）；
+		// “存在性”数据先于“版本”数据提交，账本的最新区块等索引保存在“版本”存储中，不会先于其引用的数据生效；
         origVersioningStorage.batchBegin();
-		for (VersioningWritingSet ws : versioningCache.values()) {
-			ws.flushTo(origVersioningStorage);
-		}
-        origVersioningStorage.batchCommit();
         origExistanceStorage.batchBegin();
 		for (ExistanceWritingSet ws : existanceCache.values()) {
 			ws.flushTo(origExistanceStorage);
 		}
+		for (VersioningWritingSet ws : versioningCache.values()) {
+			ws.flushTo(origVersioningStorage);
+		}
         origExistanceStorage.batchCommit();
+        origVersioningStorage.batchCommit();
 	}
 
 	private void clear() {
@@ -324,11 +532,37 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 		// 从“存在性KV存储”读取值；
 		ExistanceWritingSet ws = existanceCache.get(key);
 		if (ws == null) {
-			return origExistanceStorage.get(key);
+			return getOrigExistance(key);
 		}
 		return ws.get();
 	}
 
+	@Override
+	public byte[][] multiGet(Bytes[] keys) {
+		byte[][] values = new byte[keys.length][];
+		int[] indexes = new int[keys.length];
+		ArrayList<Bytes> missingKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			ExistanceWritingSet ws = existanceCache.get(keys[i]);
+			byte[] prefetched;
+			if (ws != null) {
+				values[i] = ws.get();
+			} else if ((prefetched = existancePrefetchCache.get(keys[i])) != null) {
+				values[i] = prefetched == ABSENT_VALUE ? null : prefetched;
+			} else {
+				indexes[missingKeys.size()] = i;
+				missingKeys.add(keys[i]);
+			}
+		}
+		if (missingKeys.size() > 0) {
+			byte[][] origValues = origExistanceStorage.multiGet(missingKeys.toArray(new Bytes[missingKeys.size()]));
+			for (int j = 0; j < origValues.length; j++) {
+				values[indexes[j]] = origValues[j];
+			}
+		}
+		return values;
+	}
+
 	@Override
 	public boolean set(Bytes key, byte[] value, ExPolicy ex) {
 		if (value == null) {
@@ -348,7 +582,7 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 	public boolean exist(Bytes key) {
 		ExistanceWritingSet ws = existanceCache.get(key);
 		if (ws == null) {
-			return origExistanceStorage.exist(key);
+			return existOrig(key);
 		}
 		return true;
 	}
@@ -364,7 +598,7 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 		// 从“存在性KV存储”读取值；
 		ExistanceWritingSet ws = existanceCache.get(key);
 		if (ws == null) {
-			boolean exist = origExistanceStorage.exist(key);
+			boolean exist = existOrig(key);
 			if (exist) {
 				return false;
 			}
@@ -394,7 +628,7 @@ public class BufferedKVStorage implements VersioningKVStorage, ExPolicyKVStorage
 		// 从“存在性KV存储”读取值；
 		ExistanceWritingSet ws = existanceCache.get(key);
 		if (ws == null) {
-			boolean exist = origExistanceStorage.exist(key);
+			boolean exist = existOrig(key);
 			if (!exist) {
 				// key 不存在；
 				return false;
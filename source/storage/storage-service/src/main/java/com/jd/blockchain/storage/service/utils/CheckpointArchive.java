@@ -0,0 +1,304 @@
+package com.jd.blockchain.storage.service.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.jd.blockchain.storage.service.CheckpointStorageService;
+import com.jd.blockchain.utils.IllegalDataException;
+import com.jd.blockchain.utils.io.BytesChunkReader;
+import com.jd.blockchain.utils.io.BytesChunkWriter;
+import com.jd.blockchain.utils.io.BytesUtils;
+
+/**
+ * 检查点归档；
+ * <p>
+ * 把检查点目录（参见 {@link CheckpointStorageService}）中的文件以分块的字节流（参见 {@link BytesChunkWriter}）传输，
+ * 在接收端还原为检查点目录；
+ * <p>
+ * 流的格式：首块是文件的数量（4 字节）；然后依次是每个文件的头块（8 字节的文件长度，以及 UTF-8 编码的文件名）和内容块；
+ * 每个内容块的长度不超过分块大小；
+ * <p>
+ * 输出流在读取时才逐块读入文件，不会把整个检查点读入内存；
+ *
+ * @author huanghaiquan
+ *
+ */
+public final class CheckpointArchive {
+
+	private static final byte[] MAGIC_BYTES = "JDCHAIN-CHECKPOINT".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * 默认的分块大小；
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	private CheckpointArchive() {
+	}
+
+	/**
+	 * 以默认的分块大小打开检查点目录的归档流；
+	 *
+	 * @param checkpointDir
+	 * @return
+	 */
+	public static InputStream open(File checkpointDir) {
+		return open(checkpointDir, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * 打开检查点目录的归档流；
+	 * <p>
+	 * 检查点目录中只能有文件，不能有子目录；
+	 *
+	 * @param checkpointDir
+	 *            检查点目录；
+	 * @param chunkSize
+	 *            分块大小；
+	 * @return
+	 */
+	public static InputStream open(File checkpointDir, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("The chunk size is less than 1!");
+		}
+		File[] files = checkpointDir.listFiles();
+		if (files == null) {
+			throw new IllegalArgumentException("The checkpoint dir doesn't exist! --" + checkpointDir);
+		}
+		// 按文件名排序，使同一个检查点的归档流保持一致；
+		Arrays.sort(files, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+		for (File file : files) {
+			if (!file.isFile()) {
+				throw new IllegalArgumentException("The checkpoint dir contains a sub directory! --" + file);
+			}
+		}
+		try {
+			return new ArchiveInputStream(files, chunkSize);
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 从归档流还原检查点目录；
+	 * <p>
+	 * 如果流的格式错误或者数据不完整，则抛出 {@link IllegalDataException}，已写入的文件不会被清除；
+	 *
+	 * @param in
+	 *            归档流；读取完毕后被关闭；
+	 * @param checkpointDir
+	 *            检查点目录；必须不存在或者为空；
+	 * @return 还原的文件的数量；
+	 */
+	public static int extract(InputStream in, File checkpointDir) {
+		String[] existing = checkpointDir.list();
+		if (existing != null && existing.length > 0) {
+			throw new IllegalArgumentException("The checkpoint dir is not empty! --" + checkpointDir);
+		}
+		if (!checkpointDir.isDirectory() && !checkpointDir.mkdirs()) {
+			throw new IllegalStateException("Cann't create the checkpoint dir! --" + checkpointDir);
+		}
+		try (BytesChunkReader reader = new BytesChunkReader(MAGIC_BYTES, in)) {
+			byte[] countBytes = reader.read();
+			if (countBytes == null || countBytes.length != 4) {
+				throw new IllegalDataException("Illegal checkpoint archive header!");
+			}
+			int count = BytesUtils.toInt(countBytes);
+			for (int i = 0; i < count; i++) {
+				byte[] header = reader.read();
+				if (header == null || header.length <= 8) {
+					throw new IllegalDataException("The checkpoint archive is incomplete!");
+				}
+				long length = BytesUtils.toLong(header);
+				String name = new String(header, 8, header.length - 8, StandardCharsets.UTF_8);
+				extractFile(reader, new File(checkpointDir, checkName(name)), length);
+			}
+			if (reader.read() != null) {
+				throw new IllegalDataException("Unexpected data at the end of the checkpoint archive!");
+			}
+			return count;
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private static void extractFile(BytesChunkReader reader, File file, long length) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			long remain = length;
+			while (remain > 0) {
+				int len = reader.read(out);
+				if (len < 0 || len > remain) {
+					throw new IllegalDataException("The length of file[" + file.getName()
+							+ "] doesn't match it's header in the checkpoint archive!");
+				}
+				remain -= len;
+			}
+		}
+	}
+
+	/**
+	 * 检查文件名，防止写到检查点目录之外；
+	 *
+	 * @param name
+	 * @return
+	 */
+	private static String checkName(String name) {
+		if (name.isEmpty() || name.equals(".") || name.equals("..") || name.indexOf('/') > -1
+				|| name.indexOf('\\') > -1) {
+			throw new IllegalDataException("Illegal file name in the checkpoint archive! --" + name);
+		}
+		return name;
+	}
+
+	/**
+	 * 逐块生成归档数据的输入流；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class ArchiveInputStream extends InputStream {
+
+		private final File[] files;
+
+		private final int chunkSize;
+
+		private final byte[] chunk;
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		private final BytesChunkWriter writer;
+
+		private int fileIndex = -1;
+
+		private InputStream fileIn;
+
+		private long fileRemain;
+
+		private byte[] current;
+
+		private int position;
+
+		private boolean finished;
+
+		public ArchiveInputStream(File[] files, int chunkSize) throws IOException {
+			this.files = files;
+			this.chunkSize = chunkSize;
+			this.chunk = new byte[chunkSize];
+			this.writer = new BytesChunkWriter(MAGIC_BYTES, buffer);
+			writer.write(BytesUtils.toBytes(files.length));
+			drain();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ensureData()) {
+				return -1;
+			}
+			return current[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!ensureData()) {
+				return -1;
+			}
+			int size = Math.min(len, current.length - position);
+			System.arraycopy(current, position, b, off, size);
+			position += size;
+			return size;
+		}
+
+		@Override
+		public int available() {
+			return current == null ? 0 : current.length - position;
+		}
+
+		private boolean ensureData() throws IOException {
+			while (current == null || position >= current.length) {
+				if (finished) {
+					return false;
+				}
+				nextChunk();
+				drain();
+			}
+			return true;
+		}
+
+		private void drain() {
+			current = buffer.toByteArray();
+			position = 0;
+			buffer.reset();
+		}
+
+		/**
+		 * 把下一个数据块写入缓冲区；
+		 *
+		 * @throws IOException
+		 */
+		private void nextChunk() throws IOException {
+			if (fileIn != null && fileRemain > 0) {
+				int len = (int) Math.min(chunkSize, fileRemain);
+				int n = readFully(fileIn, chunk, len);
+				if (n < len) {
+					throw new IOException("The file[" + files[fileIndex] + "] is changed while archiving!");
+				}
+				writer.write(len == chunkSize ? chunk : Arrays.copyOf(chunk, len));
+				fileRemain -= len;
+				return;
+			}
+			closeFile();
+			fileIndex++;
+			if (fileIndex >= files.length) {
+				// 写入结尾标识；
+				writer.close();
+				finished = true;
+				return;
+			}
+			File file = files[fileIndex];
+			fileRemain = file.length();
+			fileIn = new FileInputStream(file);
+
+			byte[] name = file.getName().getBytes(StandardCharsets.UTF_8);
+			byte[] header = new byte[8 + name.length];
+			BytesUtils.toBytes(fileRemain, header, 0);
+			System.arraycopy(name, 0, header, 8, name.length);
+			writer.write(header);
+		}
+
+		private static int readFully(InputStream in, byte[] bytes, int len) throws IOException {
+			int total = 0;
+			while (total < len) {
+				int n = in.read(bytes, total, len - total);
+				if (n < 0) {
+					break;
+				}
+				total += n;
+			}
+			return total;
+		}
+
+		private void closeFile() throws IOException {
+			InputStream in = fileIn;
+			fileIn = null;
+			if (in != null) {
+				in.close();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			finished = true;
+			current = null;
+			closeFile();
+		}
+	}
+}
@@ -0,0 +1,722 @@
+package com.jd.blockchain.storage.service.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.jd.blockchain.storage.service.CheckpointStorageService;
+import com.jd.blockchain.storage.service.ExPolicyKVStorage;
+import com.jd.blockchain.storage.service.KVStorageService;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
+import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 分组提交的KV存储；
+ * <p>
+ * 在一次批量（从 {@link #batchBegin()} 到 {@link #batchCommit()}，可以嵌套）中写入的数据构成一个“写入组”；最外层的批量提交时，写入组被移交给独立的写入线程，
+ * 以底层存储的一个批量写入，调用者不必等待写入完成；例如区块 N 的数据写入底层存储的同时，可以开始执行区块 N+1；
+ * <p>
+ * 写入组属于开始它的线程，批量的嵌套层数记录在写入组中，只有该线程的批量提交才会结束写入组；其它线程开始批量时，需要等待当前的写入组提交；<br>
+ * 批量之外的单次写入加入当前进行中的写入组，例如 {@link BufferedKVStorage} 在一次批量中由其它线程并行输出的写入；没有进行中的写入组时，作为一个独立的写入组提交；
+ * <p>
+ * 尚未写入底层存储的写入组构成底层存储之上的“覆盖层”；读取以及写入时的版本和存在性校验都基于覆盖层和底层存储的合并视图，因此批量提交之后的数据立即可见；
+ * <p>
+ * 写入组严格按照提交的顺序写入底层存储；每个写入组的“存在性”和“版本”数据在底层存储中嵌套在同一个批量中；
+ * 当底层存储的两类存储共享原子性的批量时（例如 RocksDB 的 {@code RocksDBStorageService}），每个写入组以一次原子性的写入提交，
+ * 即使进程在写入过程中崩溃，底层存储中的数据也总是已提交的写入组序列的一个前缀；
+ * <p>
+ * 写入底层存储失败之后，后续的写入组不再写入，而是保留在覆盖层中；失败的原因在下一次提交写入组或者调用 {@link #sync()} 时以
+ * {@link IllegalStateException} 抛出；
+ * <p>
+ * 通过 {@link #sync()} 等待已提交的写入组全部写入底层存储；
+ * <p>
+ * 当底层存储支持检查点时，创建的检查点包含创建之前已提交的全部写入组；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class GroupCommitKVStorage
+		implements ExPolicyKVStorage, VersioningKVStorage, KVStorageService, CheckpointStorageService, Closeable {
+
+	/**
+	 * 默认的等待写入的写入组的最大数量；
+	 */
+	public static final int DEFAULT_MAX_PENDING_GROUPS = 4;
+
+	private final ExPolicyKVStorage baseExPolicyStorage;
+
+	private final VersioningKVStorage baseVersioningStorage;
+
+	private final int maxPendingGroups;
+
+	/**
+	 * 底层存储的检查点服务；底层存储不支持检查点时为 null；
+	 */
+	private final CheckpointStorageService baseCheckpointStorage;
+
+	/**
+	 * 已提交但尚未写入底层存储的写入组；按照提交的顺序排列，队首是最早提交的写入组；
+	 */
+	private final ConcurrentLinkedDeque<WriteGroup> pendingGroups = new ConcurrentLinkedDeque<>();
+
+	private final ExecutorService writer;
+
+	/**
+	 * 写入操作以及提交计数的互斥锁；
+	 */
+	private final Object mutex = new Object();
+
+	/**
+	 * 当前正在写入的写入组；
+	 */
+	private volatile WriteGroup openGroup;
+
+	private long submittedCount;
+
+	private long durableCount;
+
+	private volatile Throwable failure;
+
+	private volatile boolean closed;
+
+	public GroupCommitKVStorage(KVStorageService baseStorage) {
+		this(baseStorage.getExPolicyKVStorage(), baseStorage.getVersioningKVStorage(), DEFAULT_MAX_PENDING_GROUPS,
+				baseStorage instanceof CheckpointStorageService ? (CheckpointStorageService) baseStorage : null);
+	}
+
+	/**
+	 * 创建实例；
+	 *
+	 * @param baseExPolicyStorage
+	 *            底层的存储；
+	 * @param baseVersioningStorage
+	 *            底层的存储；
+	 * @param maxPendingGroups
+	 *            等待写入的写入组的最大数量；达到此数量时，提交写入组的调用者将被阻塞，直到有写入组完成写入；
+	 */
+	public GroupCommitKVStorage(ExPolicyKVStorage baseExPolicyStorage, VersioningKVStorage baseVersioningStorage,
+			int maxPendingGroups) {
+		this(baseExPolicyStorage, baseVersioningStorage, maxPendingGroups, null);
+	}
+
+	private GroupCommitKVStorage(ExPolicyKVStorage baseExPolicyStorage, VersioningKVStorage baseVersioningStorage,
+			int maxPendingGroups, CheckpointStorageService baseCheckpointStorage) {
+		if (maxPendingGroups < 1) {
+			throw new IllegalArgumentException("The max pending groups is less than 1!");
+		}
+		this.baseExPolicyStorage = baseExPolicyStorage;
+		this.baseVersioningStorage = baseVersioningStorage;
+		this.maxPendingGroups = maxPendingGroups;
+		this.baseCheckpointStorage = baseCheckpointStorage;
+		this.writer = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "group-commit-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public ExPolicyKVStorage getExPolicyKVStorage() {
+		return this;
+	}
+
+	@Override
+	public VersioningKVStorage getVersioningKVStorage() {
+		return this;
+	}
+
+	/**
+	 * 已提交但尚未写入底层存储的写入组的数量；
+	 *
+	 * @return
+	 */
+	public int getPendingCount() {
+		return pendingGroups.size();
+	}
+
+	@Override
+	public void batchBegin() {
+		synchronized (mutex) {
+			Thread current = Thread.currentThread();
+			while (openGroup != null && openGroup.owner != current) {
+				// 等待其它线程的写入组提交；
+				waitMutex();
+			}
+			if (openGroup == null) {
+				openGroup = new WriteGroup(current);
+			}
+			openGroup.depth++;
+		}
+	}
+
+	@Override
+	public void batchCommit() {
+		synchronized (mutex) {
+			WriteGroup group = openGroup;
+			if (group == null || group.owner != Thread.currentThread()) {
+				return;
+			}
+			group.depth--;
+			if (group.depth == 0) {
+				try {
+					submit(group);
+				} finally {
+					openGroup = null;
+					mutex.notifyAll();
+				}
+				awaitCapacity();
+			}
+		}
+	}
+
+	/**
+	 * 提交写入组；须在持有 {@link #mutex} 时调用；
+	 *
+	 * @param group
+	 */
+	private void submit(WriteGroup group) {
+		checkState();
+		if (group.isEmpty()) {
+			return;
+		}
+		// 先加入覆盖层，再移出当前写入组，使并发的读取总能看到其中的数据；
+		pendingGroups.addLast(group);
+		submittedCount++;
+		writer.execute(() -> write(group));
+	}
+
+	/**
+	 * 限制等待写入的数据量；须在持有 {@link #mutex} 时调用；
+	 */
+	private void awaitCapacity() {
+		while (submittedCount - durableCount >= maxPendingGroups && failure == null) {
+			waitMutex();
+		}
+	}
+
+	private void write(WriteGroup group) {
+		if (failure == null) {
+			try {
+				group.writeTo(baseExPolicyStorage, baseVersioningStorage);
+			} catch (Throwable e) {
+				failure = e;
+			}
+		}
+		synchronized (mutex) {
+			if (failure == null) {
+				// 写入完成之后才移出覆盖层，使并发的读取总能从覆盖层或者底层存储读到数据；
+				pendingGroups.removeFirst();
+				durableCount++;
+			}
+			mutex.notifyAll();
+		}
+	}
+
+	/**
+	 * 持久化屏障；
+	 * <p>
+	 * 阻塞直到此前已提交的写入组全部写入底层存储；如果写入失败，则抛出 {@link IllegalStateException}；
+	 * <p>
+	 * 正在进行的批量中的数据尚未提交，不在等待的范围之内；
+	 */
+	public void sync() {
+		synchronized (mutex) {
+			long target = submittedCount;
+			while (durableCount < target) {
+				checkFailure();
+				waitMutex();
+			}
+			checkFailure();
+		}
+	}
+
+	/**
+	 * 等待已提交的写入组全部写入底层存储，然后创建底层存储的检查点；
+	 * <p>
+	 * 如果底层存储不支持检查点，则抛出 {@link UnsupportedOperationException}；
+	 */
+	@Override
+	public void createCheckpoint(String checkpointDir) {
+		if (baseCheckpointStorage == null) {
+			throw new UnsupportedOperationException("The base storage doesn't support checkpoint!");
+		}
+		sync();
+		baseCheckpointStorage.createCheckpoint(checkpointDir);
+	}
+
+	/**
+	 * 等待已提交的写入组全部写入底层存储，并停止写入线程；
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			sync();
+		} finally {
+			closed = true;
+			writer.shutdown();
+			try {
+				writer.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void waitMutex() {
+		try {
+			mutex.wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the group commit writer!", e);
+		}
+	}
+
+	private void checkState() {
+		if (closed) {
+			throw new IllegalStateException("The group commit storage is closed!");
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() {
+		Throwable error = failure;
+		if (error != null) {
+			throw new IllegalStateException("Fail on writing data to the base storage! --" + error.getMessage(),
+					error);
+		}
+	}
+
+	// ==================== 版本化KV存储 ====================
+
+	@Override
+	public long getVersion(Bytes key) {
+		VersioningWritingSet ws = findVersioningWritingSet(key, -1);
+		if (ws == null) {
+			return baseVersioningStorage.getVersion(key);
+		}
+		return ws.getLatestVersion();
+	}
+
+	@Override
+	public VersioningKVEntry getEntry(Bytes key, long version) {
+		VersioningWritingSet ws = findVersioningWritingSet(key, version);
+		if (ws == null) {
+			return baseVersioningStorage.getEntry(key, version);
+		}
+		return ws.getEntry(version < 0 ? ws.getLatestVersion() : version);
+	}
+
+	@Override
+	public byte[] get(Bytes key, long version) {
+		VersioningWritingSet ws = findVersioningWritingSet(key, version);
+		if (ws == null) {
+			return baseVersioningStorage.get(key, version);
+		}
+		return ws.get(version < 0 ? ws.getLatestVersion() : version);
+	}
+
+	@Override
+	public VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		int[] indexes = new int[keys.length];
+		List<Bytes> baseKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			VersioningWritingSet ws = findVersioningWritingSet(keys[i], -1);
+			if (ws != null) {
+				entries[i] = ws.getEntry(ws.getLatestVersion());
+			} else {
+				indexes[baseKeys.size()] = i;
+				baseKeys.add(keys[i]);
+			}
+		}
+		if (baseKeys.size() > 0) {
+			// 覆盖层中没有的键以一次批量读取底层存储；
+			VersioningKVEntry[] baseEntries = baseVersioningStorage
+					.multiGetLatest(baseKeys.toArray(new Bytes[baseKeys.size()]));
+			for (int j = 0; j < baseEntries.length; j++) {
+				entries[indexes[j]] = baseEntries[j];
+			}
+		}
+		return entries;
+	}
+
+	@Override
+	public VersioningKVEntry[] multiGetEntries(Bytes[] keys, long[] versions) {
+		if (keys.length != versions.length) {
+			throw new IllegalArgumentException("The number of versions doesn't match the number of keys!");
+		}
+		VersioningKVEntry[] entries = new VersioningKVEntry[keys.length];
+		int[] indexes = new int[keys.length];
+		List<Bytes> baseKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			VersioningWritingSet ws = findVersioningWritingSet(keys[i], versions[i]);
+			if (ws != null) {
+				entries[i] = ws.getEntry(versions[i] < 0 ? ws.getLatestVersion() : versions[i]);
+			} else {
+				indexes[baseKeys.size()] = i;
+				baseKeys.add(keys[i]);
+			}
+		}
+		if (baseKeys.size() > 0) {
+			// 覆盖层中没有的键以一次批量读取底层存储；
+			long[] baseVersions = new long[baseKeys.size()];
+			for (int j = 0; j < baseVersions.length; j++) {
+				baseVersions[j] = versions[indexes[j]];
+			}
+			VersioningKVEntry[] baseEntries = baseVersioningStorage
+					.multiGetEntries(baseKeys.toArray(new Bytes[baseKeys.size()]), baseVersions);
+			for (int j = 0; j < baseEntries.length; j++) {
+				entries[indexes[j]] = baseEntries[j];
+			}
+		}
+		return entries;
+	}
+
+	@Override
+	public long set(Bytes key, byte[] value, long version) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value is null!");
+		}
+		if (version < -1) {
+			version = -1;
+		}
+		synchronized (mutex) {
+			// 没有进行中的写入组时，作为一个独立的写入组提交；
+			boolean implicitBatch = openGroup == null;
+			if (implicitBatch) {
+				batchBegin();
+			}
+			try {
+				if (getVersion(key) != version) {
+					return -1;
+				}
+				return openGroup.setVersioning(key, value, version);
+			} finally {
+				if (implicitBatch) {
+					batchCommit();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 从覆盖层中查找包含指定版本的写入序列；
+	 * <p>
+	 * 从最新的写入组开始查找；返回 null 表示覆盖层中不包含指定的版本，应从底层存储读取；
+	 *
+	 * @param key
+	 * @param version
+	 *            版本；小于 0 表示最新版本；
+	 * @return
+	 */
+	private VersioningWritingSet findVersioningWritingSet(Bytes key, long version) {
+		WriteGroup group = openGroup;
+		if (group != null) {
+			VersioningWritingSet ws = group.versioningWrites.get(key);
+			if (ws != null && ws.covers(version)) {
+				return ws;
+			}
+		}
+		Iterator<WriteGroup> groups = pendingGroups.descendingIterator();
+		while (groups.hasNext()) {
+			VersioningWritingSet ws = groups.next().versioningWrites.get(key);
+			if (ws != null && ws.covers(version)) {
+				return ws;
+			}
+		}
+		return null;
+	}
+
+	// ==================== 存在性KV存储 ====================
+
+	@Override
+	public byte[] get(Bytes key) {
+		ExistanceWritingSet ws = findExistanceWritingSet(key);
+		if (ws == null) {
+			return baseExPolicyStorage.get(key);
+		}
+		return ws.value;
+	}
+
+	@Override
+	public byte[][] multiGet(Bytes[] keys) {
+		byte[][] values = new byte[keys.length][];
+		int[] indexes = new int[keys.length];
+		List<Bytes> baseKeys = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			ExistanceWritingSet ws = findExistanceWritingSet(keys[i]);
+			if (ws != null) {
+				values[i] = ws.value;
+			} else {
+				indexes[baseKeys.size()] = i;
+				baseKeys.add(keys[i]);
+			}
+		}
+		if (baseKeys.size() > 0) {
+			byte[][] baseValues = baseExPolicyStorage.multiGet(baseKeys.toArray(new Bytes[baseKeys.size()]));
+			for (int j = 0; j < baseValues.length; j++) {
+				values[indexes[j]] = baseValues[j];
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public boolean exist(Bytes key) {
+		return findExistanceWritingSet(key) != null || baseExPolicyStorage.exist(key);
+	}
+
+	@Override
+	public boolean set(Bytes key, byte[] value, ExPolicy ex) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value is null!");
+		}
+		synchronized (mutex) {
+			// 没有进行中的写入组时，作为一个独立的写入组提交；
+			boolean implicitBatch = openGroup == null;
+			if (implicitBatch) {
+				batchBegin();
+			}
+			try {
+				boolean exist = exist(key);
+				switch (ex) {
+				case EXISTING:
+					if (!exist) {
+						return false;
+					}
+					break;
+				case NOT_EXISTING:
+					if (exist) {
+						return false;
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unsupported ExistancePolicy[" + ex + "]!");
+				}
+				openGroup.setExistance(key, value, ex);
+				return true;
+			} finally {
+				if (implicitBatch) {
+					batchCommit();
+				}
+			}
+		}
+	}
+
+	private ExistanceWritingSet findExistanceWritingSet(Bytes key) {
+		WriteGroup group = openGroup;
+		if (group != null) {
+			ExistanceWritingSet ws = group.existanceWrites.get(key);
+			if (ws != null) {
+				return ws;
+			}
+		}
+		Iterator<WriteGroup> groups = pendingGroups.descendingIterator();
+		while (groups.hasNext()) {
+			ExistanceWritingSet ws = groups.next().existanceWrites.get(key);
+			if (ws != null) {
+				return ws;
+			}
+		}
+		return null;
+	}
+
+	// =============================================================
+
+	/**
+	 * 写入组；
+	 * <p>
+	 * 写入组在提交之后不再改变；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class WriteGroup {
+
+		/**
+		 * 开始此写入组的线程；
+		 */
+		private final Thread owner;
+
+		/**
+		 * 批量的嵌套层数；
+		 */
+		private int depth;
+
+		private final Map<Bytes, ExistanceWritingSet> existanceWrites = new ConcurrentHashMap<>();
+
+		private final Map<Bytes, VersioningWritingSet> versioningWrites = new ConcurrentHashMap<>();
+
+		public WriteGroup(Thread owner) {
+			this.owner = owner;
+		}
+
+		public boolean isEmpty() {
+			return existanceWrites.isEmpty() && versioningWrites.isEmpty();
+		}
+
+		public long setVersioning(Bytes key, byte[] value, long version) {
+			VersioningWritingSet ws = versioningWrites.get(key);
+			if (ws == null) {
+				// 写入首个值之后才加入写入组，使并发的读取不会看到空的写入序列；
+				ws = new VersioningWritingSet(key, version);
+				ws.values.add(value);
+				versioningWrites.put(key, ws);
+			} else {
+				ws.values.add(value);
+			}
+			return version + 1;
+		}
+
+		public void setExistance(Bytes key, byte[] value, ExPolicy ex) {
+			ExistanceWritingSet ws = existanceWrites.get(key);
+			if (ws == null) {
+				// 同一写入组中的后续更新沿用首次写入的策略；
+				existanceWrites.put(key, new ExistanceWritingSet(key, value, ex));
+			} else {
+				ws.value = value;
+			}
+		}
+
+		/**
+		 * 以底层存储的一个批量写入；“存在性”和“版本”两类存储的批量嵌套开始，底层存储共享批量时合并为一次原子性的写入；
+		 *
+		 * @param exPolicyStorage
+		 * @param versioningStorage
+		 */
+		public void writeTo(ExPolicyKVStorage exPolicyStorage, VersioningKVStorage versioningStorage) {
+			versioningStorage.batchBegin();
+			exPolicyStorage.batchBegin();
+			for (ExistanceWritingSet ws : existanceWrites.values()) {
+				if (!exPolicyStorage.set(ws.key, ws.value, ws.initPolicy)) {
+					throw new IllegalStateException(String.format(
+							"Fail on writing data to base storage! The existance policy doesn't match --[KEY=%s][POLICY=%s]",
+							ws.key, ws.initPolicy));
+				}
+			}
+			for (VersioningWritingSet ws : versioningWrites.values()) {
+				long expVersion = ws.startingVersion;
+				for (byte[] value : ws.values) {
+					if (versioningStorage.set(ws.key, value, expVersion) < 0) {
+						throw new IllegalStateException(String.format(
+								"Fail on writing data to base storage! Expected version doesn't match! --[KEY=%s][EXPECTED_VERSION=%s]",
+								ws.key, expVersion));
+					}
+					expVersion++;
+				}
+			}
+			exPolicyStorage.batchCommit();
+			versioningStorage.batchCommit();
+		}
+	}
+
+	/**
+	 * 写入组中某个键在起始版本之上新写入的版本序列；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class VersioningWritingSet {
+
+		private final Bytes key;
+
+		private final long startingVersion;
+
+		private final List<byte[]> values = new CopyOnWriteArrayList<>();
+
+		private VersioningWritingSet(Bytes key, long startingVersion) {
+			this.key = key;
+			this.startingVersion = startingVersion;
+		}
+
+		public long getLatestVersion() {
+			return startingVersion + values.size();
+		}
+
+		/**
+		 * 是否包含指定的版本；小于 0 表示最新版本；
+		 * <p>
+		 * 大于最新版本的版本也视为包含，以便从最新的写入组返回“不存在”，而不必查询底层存储；
+		 *
+		 * @param version
+		 * @return
+		 */
+		public boolean covers(long version) {
+			return version < 0 || version > startingVersion;
+		}
+
+		public byte[] get(long version) {
+			long idx = version - startingVersion - 1;
+			if (idx < 0 || idx >= values.size()) {
+				return null;
+			}
+			return values.get((int) idx);
+		}
+
+		public VersioningKVEntry getEntry(long version) {
+			byte[] value = get(version);
+			if (value == null) {
+				return null;
+			}
+			return new VersioningKVData(key, version, value);
+		}
+	}
+
+	private static class VersioningKVData implements VersioningKVEntry {
+
+		private Bytes key;
+
+		private long version;
+
+		private byte[] value;
+
+		public VersioningKVData(Bytes key, long version, byte[] value) {
+			this.key = key;
+			this.version = version;
+			this.value = value;
+		}
+
+		@Override
+		public Bytes getKey() {
+			return key;
+		}
+
+		@Override
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public byte[] getValue() {
+			return value;
+		}
+
+	}
+
+	private static class ExistanceWritingSet {
+
+		private final Bytes key;
+
+		private volatile byte[] value;
+
+		private final ExPolicy initPolicy;
+
+		private ExistanceWritingSet(Bytes key, byte[] value, ExPolicy initPolicy) {
+			this.key = key;
+			this.value = value;
+			this.initPolicy = initPolicy;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -19,11 +20,14 @@ import org.mockito.verification.VerificationMode;
 
 import com.jd.blockchain.storage.service.ExPolicyKVStorage;
 import com.jd.blockchain.storage.service.ExPolicyKVStorage.ExPolicy;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
 import com.jd.blockchain.storage.service.VersioningKVStorage;
 import com.jd.blockchain.storage.service.utils.BufferedKVStorage;
 import com.jd.blockchain.storage.service.utils.ExistancePolicyKVStorageMap;
+import com.jd.blockchain.storage.service.utils.MemoryKVStorage;
 import com.jd.blockchain.storage.service.utils.VersioningKVStorageMap;
 import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesUtils;
 
 public class BufferedKVStorageTest {
 
@@ -78,6 +82,167 @@ public class BufferedKVStorageTest {
 		verify(exStorage, times(1)).set(eq(Bytes.fromString("D")), any(), eq(ExPolicy.NOT_EXISTING));
 	}
 
+	@Test
+	public void testPrefetch() {
+		AtomicInteger singleReads = new AtomicInteger();
+		AtomicInteger multiReads = new AtomicInteger();
+		MemoryKVStorage origStorage = new MemoryKVStorage() {
+			@Override
+			public long getVersion(Bytes key) {
+				singleReads.incrementAndGet();
+				return super.getVersion(key);
+			}
+
+			@Override
+			public VersioningKVEntry getEntry(Bytes key, long version) {
+				singleReads.incrementAndGet();
+				return super.getEntry(key, version);
+			}
+
+			@Override
+			public byte[] get(Bytes key, long version) {
+				singleReads.incrementAndGet();
+				return super.get(key, version);
+			}
+
+			@Override
+			public VersioningKVEntry[] multiGetLatest(Bytes[] keys) {
+				multiReads.incrementAndGet();
+				return super.multiGetLatest(keys);
+			}
+
+			@Override
+			public byte[] get(Bytes key) {
+				singleReads.incrementAndGet();
+				return super.get(key);
+			}
+
+			@Override
+			public boolean exist(Bytes key) {
+				singleReads.incrementAndGet();
+				return super.exist(key);
+			}
+
+			@Override
+			public byte[][] multiGet(Bytes[] keys) {
+				multiReads.incrementAndGet();
+				return super.multiGet(keys);
+			}
+		};
+		Bytes keyA = Bytes.fromString("A");
+		Bytes keyB = Bytes.fromString("B");
+		Bytes keyC = Bytes.fromString("C");
+		assertEquals(0, origStorage.set(keyA, BytesUtils.toBytes("A0"), -1));
+		assertEquals(1, origStorage.set(keyA, BytesUtils.toBytes("A1"), 0));
+		assertEquals(0, origStorage.set(keyB, BytesUtils.toBytes("B0"), -1));
+		Bytes keyX = Bytes.fromString("X");
+		Bytes keyY = Bytes.fromString("Y");
+		assertTrue(origStorage.set(keyX, BytesUtils.toBytes("X0"), ExPolicy.NOT_EXISTING));
+
+		BufferedKVStorage bufStorage = new BufferedKVStorage(origStorage, origStorage, false);
+		bufStorage.prefetch(new Bytes[] { keyA, keyB, keyC }, new Bytes[] { keyX, keyY });
+		assertEquals(2, multiReads.get());
+		singleReads.set(0);
+
+		assertTrue(bufStorage.exist(keyX));
+		assertEquals("X0", BytesUtils.toString(bufStorage.get(keyX)));
+		assertFalse(bufStorage.exist(keyY));
+		assertNull(bufStorage.get(keyY));
+		assertFalse(bufStorage.set(keyX, BytesUtils.toBytes("X1"), ExPolicy.NOT_EXISTING));
+		assertFalse(bufStorage.set(keyY, BytesUtils.toBytes("Y1"), ExPolicy.EXISTING));
+		assertTrue(bufStorage.set(keyY, BytesUtils.toBytes("Y0"), ExPolicy.NOT_EXISTING));
+
+		// 预读的最新版本直接从缓存返回；
+		assertEquals(1, bufStorage.getVersion(keyA));
+		assertEquals("A1", BytesUtils.toString(bufStorage.get(keyA, -1)));
+		assertEquals("A1", BytesUtils.toString(bufStorage.getEntry(keyA, 1).getValue()));
+		assertNull(bufStorage.get(keyA, 2));
+		assertEquals(-1, bufStorage.getVersion(keyC));
+		assertNull(bufStorage.getEntry(keyC, -1));
+		assertNull(bufStorage.get(keyC, 0));
+		assertEquals(1, bufStorage.set(keyB, BytesUtils.toBytes("B1"), 0));
+		assertEquals(-1, bufStorage.set(keyC, BytesUtils.toBytes("C0"), 0));
+		assertEquals(0, bufStorage.set(keyC, BytesUtils.toBytes("C0"), -1));
+		assertEquals(0, singleReads.get());
+
+		// 历史版本仍然从原始存储读取；
+		assertEquals("A0", BytesUtils.toString(bufStorage.get(keyA, 0)));
+		assertEquals(1, singleReads.get());
+
+		// 已预读或者已缓冲写入的键不重复读取；
+		bufStorage.prefetch(new Bytes[] { keyA, keyB, keyC }, new Bytes[] { keyX, keyY });
+		assertEquals(2, multiReads.get());
+
+		VersioningKVEntry[] entries = bufStorage.multiGetLatest(new Bytes[] { keyA, keyB, keyC });
+		assertEquals(1, entries[0].getVersion());
+		assertEquals("B1", BytesUtils.toString(entries[1].getValue()));
+		assertEquals(0, entries[2].getVersion());
+
+		// 输出之后，已写入的键的预读数据失效；
+		bufStorage.flush();
+		singleReads.set(0);
+		assertEquals(1, bufStorage.getVersion(keyB));
+		assertEquals(0, bufStorage.getVersion(keyC));
+		assertEquals(2, singleReads.get());
+		assertEquals(1, bufStorage.getVersion(keyA));
+		assertTrue(bufStorage.exist(keyX));
+		assertEquals(2, singleReads.get());
+		assertEquals("Y0", BytesUtils.toString(bufStorage.get(keyY)));
+		assertEquals(3, singleReads.get());
+	}
+
+	@Test
+	public void testMultiGetEntries() {
+		AtomicInteger singleReads = new AtomicInteger();
+		AtomicInteger multiReads = new AtomicInteger();
+		MemoryKVStorage origStorage = new MemoryKVStorage() {
+			@Override
+			public VersioningKVEntry getEntry(Bytes key, long version) {
+				singleReads.incrementAndGet();
+				return super.getEntry(key, version);
+			}
+
+			@Override
+			public VersioningKVEntry[] multiGetEntries(Bytes[] keys, long[] versions) {
+				multiReads.incrementAndGet();
+				return super.multiGetEntries(keys, versions);
+			}
+		};
+		Bytes keyA = Bytes.fromString("A");
+		Bytes keyB = Bytes.fromString("B");
+		Bytes keyC = Bytes.fromString("C");
+		Bytes keyD = Bytes.fromString("D");
+		assertEquals(0, origStorage.set(keyA, BytesUtils.toBytes("A0"), -1));
+		assertEquals(1, origStorage.set(keyA, BytesUtils.toBytes("A1"), 0));
+		assertEquals(0, origStorage.set(keyB, BytesUtils.toBytes("B0"), -1));
+
+		BufferedKVStorage bufStorage = new BufferedKVStorage(origStorage, origStorage, false);
+		assertEquals(0, bufStorage.set(keyC, BytesUtils.toBytes("C0"), -1));
+		singleReads.set(0);
+
+		VersioningKVEntry[] entries = bufStorage.multiGetEntries(new Bytes[] { keyA, keyA, keyB, keyC, keyD },
+				new long[] { 0, 1, -1, 0, 0 });
+		assertEquals("A0", BytesUtils.toString(entries[0].getValue()));
+		assertEquals(1, entries[1].getVersion());
+		assertEquals("A1", BytesUtils.toString(entries[1].getValue()));
+		assertEquals("B0", BytesUtils.toString(entries[2].getValue()));
+		assertEquals("C0", BytesUtils.toString(entries[3].getValue()));
+		assertNull(entries[4]);
+		// 未缓冲写入的键以一次批量读取原始存储；
+		assertEquals(1, multiReads.get());
+
+		// 读取的结果不加入预读缓存；
+		assertEquals(2, origStorage.set(keyA, BytesUtils.toBytes("A2"), 1));
+		assertEquals("A2", BytesUtils.toString(bufStorage.get(keyA, -1)));
+		assertEquals(2, bufStorage.getVersion(keyA));
+
+		try {
+			bufStorage.multiGetEntries(new Bytes[] { keyA }, new long[] { 0, 1 });
+			fail("The mismatched versions are accepted!");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
 	// 改变了存储结构，此测试用例不再适合；
 	// @Test
 	// public void testDataSet() {
@@ -0,0 +1,352 @@
+package test.com.jd.blockchain.storage.service.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.jd.blockchain.storage.service.ExPolicyKVStorage;
+import com.jd.blockchain.storage.service.ExPolicyKVStorage.ExPolicy;
+import com.jd.blockchain.storage.service.KVStorageService;
+import com.jd.blockchain.storage.service.VersioningKVEntry;
+import com.jd.blockchain.storage.service.VersioningKVStorage;
+import com.jd.blockchain.storage.service.utils.BufferedKVStorage;
+import com.jd.blockchain.storage.service.utils.GroupCommitKVStorage;
+import com.jd.blockchain.storage.service.utils.MemoryKVStorage;
+import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesUtils;
+
+public class GroupCommitKVStorageTest {
+
+	private static final Bytes HEIGHT_KEY = Bytes.fromString("ledger/height");
+
+	@Test
+	public void testOverlayAndBarrier() {
+		BatchingStorage base = new BatchingStorage();
+		CountDownLatch gate = new CountDownLatch(1);
+		base.gate = gate;
+		GroupCommitKVStorage storage = new GroupCommitKVStorage(base, base, 4);
+
+		Bytes txKey = Bytes.fromString("tx-0");
+		storage.batchBegin();
+		assertTrue(storage.set(txKey, BytesUtils.toBytes("tx0"), ExPolicy.NOT_EXISTING));
+		assertEquals(0, storage.set(HEIGHT_KEY, BytesUtils.toBytes("block0"), -1));
+		storage.batchCommit();
+
+		// 写入线程被阻塞，数据只存在于覆盖层；
+		assertEquals(1, storage.getPendingCount());
+		assertFalse(base.exist(txKey));
+		assertEquals(-1, base.getVersion(HEIGHT_KEY));
+		assertTrue(storage.exist(txKey));
+		assertEquals("tx0", BytesUtils.toString(storage.get(txKey)));
+		assertEquals(0, storage.getVersion(HEIGHT_KEY));
+
+		// 后续的写入基于覆盖层校验版本和存在性；
+		storage.batchBegin();
+		assertEquals(-1, storage.set(HEIGHT_KEY, BytesUtils.toBytes("conflict"), -1));
+		assertEquals(1, storage.set(HEIGHT_KEY, BytesUtils.toBytes("block1"), 0));
+		assertFalse(storage.set(txKey, BytesUtils.toBytes("tx0"), ExPolicy.NOT_EXISTING));
+		assertTrue(storage.set(txKey, BytesUtils.toBytes("tx0-updated"), ExPolicy.EXISTING));
+		storage.batchCommit();
+
+		assertEquals(2, storage.getPendingCount());
+		assertEquals(1, storage.getVersion(HEIGHT_KEY));
+		assertEquals("block0", BytesUtils.toString(storage.get(HEIGHT_KEY, 0)));
+		assertEquals("block1", BytesUtils.toString(storage.get(HEIGHT_KEY, -1)));
+		VersioningKVEntry latest = storage.getEntry(HEIGHT_KEY, -1);
+		assertEquals(1, latest.getVersion());
+		assertEquals("block1", BytesUtils.toString(latest.getValue()));
+		assertNull(storage.get(HEIGHT_KEY, 2));
+		assertNull(storage.getEntry(HEIGHT_KEY, 2));
+		assertEquals("tx0-updated", BytesUtils.toString(storage.get(txKey)));
+
+		gate.countDown();
+		storage.sync();
+
+		// 屏障返回后，数据已经全部写入底层存储；
+		assertEquals(0, storage.getPendingCount());
+		assertEquals(2, base.commitCount);
+		assertEquals(1, base.getVersion(HEIGHT_KEY));
+		assertEquals("block0", BytesUtils.toString(base.get(HEIGHT_KEY, 0)));
+		assertEquals("block1", BytesUtils.toString(base.get(HEIGHT_KEY, 1)));
+		assertEquals("tx0-updated", BytesUtils.toString(base.get(txKey)));
+
+		// 不在批量中的写入作为单独的写入组提交；
+		assertEquals(2, storage.set(HEIGHT_KEY, BytesUtils.toBytes("block2"), 1));
+		storage.close();
+		assertEquals(3, base.commitCount);
+		assertEquals(2, base.getVersion(HEIGHT_KEY));
+
+		try {
+			storage.set(HEIGHT_KEY, BytesUtils.toBytes("block3"), 2);
+			fail("Writing to a closed storage is not rejected!");
+		} catch (IllegalStateException e) {
+			// 预期的异常；
+		}
+	}
+
+	@Test
+	public void testCrashConsistency() {
+		int blockCount = 10;
+		int crashBlock = 4;
+
+		BatchingStorage base = new BatchingStorage();
+		// 第 crashBlock + 1 次提交时模拟崩溃，该次批量中的数据全部丢失；
+		base.crashAt = crashBlock + 1;
+		GroupCommitKVStorage storage = new GroupCommitKVStorage(base, base, 2);
+
+		int submitted = 0;
+		try {
+			for (int i = 0; i < blockCount; i++) {
+				writeBlock(storage, i);
+				submitted++;
+			}
+		} catch (IllegalStateException e) {
+			// 写入失败之后拒绝提交新的写入组；
+		}
+		assertTrue(submitted > crashBlock);
+		try {
+			storage.sync();
+			fail("The failure of the writer is not reported!");
+		} catch (IllegalStateException e) {
+			// 预期的异常；
+		}
+		try {
+			writeBlock(storage, submitted);
+			fail("The failure of the writer is not reported!");
+		} catch (IllegalStateException e) {
+			// 预期的异常；
+		}
+
+		// 底层存储中是已提交的区块的一个前缀：崩溃之前的区块完整写入，之后的区块完全没有写入；
+		assertBlocks(base, crashBlock);
+
+		// 从底层存储恢复，重新写入崩溃之后的区块；
+		base.crashAt = -1;
+		GroupCommitKVStorage recovered = new GroupCommitKVStorage(base, base, 2);
+		assertEquals(crashBlock - 1, recovered.getVersion(HEIGHT_KEY));
+		for (int i = crashBlock; i < blockCount; i++) {
+			writeBlock(recovered, i);
+		}
+		recovered.close();
+		assertBlocks(base, blockCount);
+	}
+
+	@Test
+	public void testBufferedFlush() {
+		testBufferedFlush(false);
+		testBufferedFlush(true);
+	}
+
+	private void testBufferedFlush(boolean parallel) {
+		BatchingStorage base = new BatchingStorage();
+		GroupCommitKVStorage storage = new GroupCommitKVStorage(base, base, 4);
+
+		int blockCount = 5;
+		for (int i = 0; i < blockCount; i++) {
+			BufferedKVStorage buffer = new BufferedKVStorage(storage, storage, parallel);
+			for (int j = 0; j < 20; j++) {
+				assertTrue(buffer.set(txKey(i, j), BytesUtils.toBytes("tx-" + i + "-" + j), ExPolicy.NOT_EXISTING));
+			}
+			assertEquals(i, buffer.set(HEIGHT_KEY, BytesUtils.toBytes("block" + i), i - 1));
+			buffer.flush();
+			// 刷新之后立即可见；
+			assertEquals(i, storage.getVersion(HEIGHT_KEY));
+		}
+		storage.sync();
+
+		// 每次刷新作为一个写入组提交；
+		assertEquals(blockCount, base.commitCount);
+		assertBlocks(base, blockCount);
+		storage.close();
+	}
+
+	@Test
+	public void testConcurrentBatches() throws InterruptedException {
+		BatchingStorage base = new BatchingStorage();
+		GroupCommitKVStorage storage = new GroupCommitKVStorage(base, base, 4);
+
+		storage.batchBegin();
+		assertTrue(storage.set(txKey(0, 0), BytesUtils.toBytes("tx-0-0"), ExPolicy.NOT_EXISTING));
+
+		// 其它线程的批量需要等待当前的写入组提交，不能提前结束当前的写入组；
+		CountDownLatch started = new CountDownLatch(1);
+		Thread other = new Thread(() -> {
+			started.countDown();
+			writeBlock(storage, 0);
+		});
+		other.start();
+		started.await();
+		other.join(200);
+		assertTrue(other.isAlive());
+		assertEquals(0, storage.getPendingCount());
+
+		// 批量之外的写入加入进行中的写入组；
+		Thread outside = new Thread(
+				() -> storage.set(txKey(0, 1), BytesUtils.toBytes("tx-0-1"), ExPolicy.NOT_EXISTING));
+		outside.start();
+		outside.join();
+		assertEquals(0, storage.getPendingCount());
+
+		storage.batchCommit();
+		other.join();
+		storage.sync();
+
+		assertEquals(2, base.commitCount);
+		assertTrue(base.exist(txKey(0, 1)));
+		assertEquals(0, base.getVersion(HEIGHT_KEY));
+		storage.close();
+	}
+
+	private static void writeBlock(GroupCommitKVStorage storage, int height) {
+		storage.batchBegin();
+		for (int j = 0; j < 3; j++) {
+			storage.set(txKey(height, j), BytesUtils.toBytes("tx-" + height + "-" + j), ExPolicy.NOT_EXISTING);
+		}
+		storage.set(HEIGHT_KEY, BytesUtils.toBytes("block" + height), height - 1);
+		storage.batchCommit();
+	}
+
+	private static void assertBlocks(BatchingStorage base, int blockCount) {
+		assertEquals(blockCount - 1, base.getVersion(HEIGHT_KEY));
+		for (int i = 0; i < blockCount; i++) {
+			assertArrayEquals(BytesUtils.toBytes("block" + i), base.get(HEIGHT_KEY, i));
+			assertTrue(base.exist(txKey(i, 0)));
+		}
+		assertFalse(base.exist(txKey(blockCount, 0)));
+	}
+
+	private static Bytes txKey(int height, int index) {
+		return Bytes.fromString("block-" + height + "/tx-" + index);
+	}
+
+	/**
+	 * 以批量原子写入的测试存储；
+	 * <p>
+	 * 批量中的写入在最外层的批量提交时一次性写入；可以模拟在指定的提交时崩溃，该次批量中的写入全部丢失；
+	 *
+	 * @author huanghaiquan
+	 *
+	 */
+	private static class BatchingStorage implements ExPolicyKVStorage, VersioningKVStorage, KVStorageService {
+
+		private final MemoryKVStorage storage = new MemoryKVStorage();
+
+		private final List<BooleanSupplier> batch = new ArrayList<>();
+
+		private int depth;
+
+		private volatile int commitCount;
+
+		/**
+		 * 模拟崩溃的提交序号，从 1 开始；
+		 */
+		private volatile int crashAt = -1;
+
+		/**
+		 * 提交之前等待的门闩；
+		 */
+		private volatile CountDownLatch gate;
+
+		@Override
+		public ExPolicyKVStorage getExPolicyKVStorage() {
+			return this;
+		}
+
+		@Override
+		public VersioningKVStorage getVersioningKVStorage() {
+			return this;
+		}
+
+		@Override
+		public void batchBegin() {
+			depth++;
+		}
+
+		@Override
+		public void batchCommit() {
+			depth--;
+			if (depth > 0) {
+				return;
+			}
+			await();
+			int count = commitCount + 1;
+			if (count == crashAt) {
+				batch.clear();
+				throw new IllegalStateException("Simulated crash!");
+			}
+			for (BooleanSupplier write : batch) {
+				if (!write.getAsBoolean()) {
+					batch.clear();
+					throw new IllegalStateException("Conflict in batch!");
+				}
+			}
+			batch.clear();
+			commitCount = count;
+		}
+
+		private void await() {
+			CountDownLatch latch = gate;
+			if (latch == null) {
+				return;
+			}
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public long getVersion(Bytes key) {
+			return storage.getVersion(key);
+		}
+
+		@Override
+		public VersioningKVEntry getEntry(Bytes key, long version) {
+			return storage.getEntry(key, version);
+		}
+
+		@Override
+		public byte[] get(Bytes key, long version) {
+			return storage.get(key, version);
+		}
+
+		@Override
+		public long set(Bytes key, byte[] value, long version) {
+			if (depth == 0) {
+				return storage.set(key, value, version);
+			}
+			batch.add(() -> storage.set(key, value, version) > -1);
+			return version + 1;
+		}
+
+		@Override
+		public byte[] get(Bytes key) {
+			return storage.get(key);
+		}
+
+		@Override
+		public boolean set(Bytes key, byte[] value, ExPolicy ex) {
+			if (depth == 0) {
+				return storage.set(key, value, ex);
+			}
+			batch.add(() -> storage.set(key, value, ex));
+			return true;
+		}
+
+		@Override
+		public boolean exist(Bytes key) {
+			return storage.exist(key);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package test.perf.com.jd.blockchain.ledger.core;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.jd.blockchain.binaryproto.BinaryEncodingUtils;
+import com.jd.blockchain.binaryproto.DataContractEncoder;
+import com.jd.blockchain.binaryproto.DataContractRegistry;
+import com.jd.blockchain.binaryproto.impl2.DataContractContext;
+import com.jd.blockchain.crypto.CryptoAlgorithm;
+import com.jd.blockchain.crypto.CryptoUtils;
+import com.jd.blockchain.crypto.hash.HashDigest;
+import com.jd.blockchain.ledger.BlockchainKeyGenerator;
+import com.jd.blockchain.ledger.BlockchainKeyPair;
+import com.jd.blockchain.ledger.BytesValue;
+import com.jd.blockchain.ledger.BytesValueImpl;
+import com.jd.blockchain.ledger.DataAccountRegisterOperation;
+import com.jd.blockchain.ledger.DataType;
+import com.jd.blockchain.ledger.LedgerBlock;
+import com.jd.blockchain.ledger.TransactionRequest;
+import com.jd.blockchain.ledger.TransactionRequestBuilder;
+import com.jd.blockchain.ledger.core.impl.LedgerBlockData;
+import com.jd.blockchain.ledger.data.TxBuilder;
+import com.jd.blockchain.utils.io.BytesOutputBuffer;
+
+/**
+ * 数据契约编码的内存分配测试；
+ * <p>
+ * 以当前线程累计分配的字节数，对比逐个片段复制到 {@link ByteArrayOutputStream} 的编码方式、
+ * {@link BinaryEncodingUtils#encode(Object, Class)} 以及写入复用的直接缓冲区的
+ * {@link BinaryEncodingUtils#encode(Object, Class, ByteBuffer)} 每次编码分配的内存以及耗时；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class BinaryEncodingAllocationTester {
+
+	private static final int WARMUP_COUNT = 20000;
+
+	private static final int TEST_COUNT = 200000;
+
+	private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	public static void main(String[] args) {
+		DataContractRegistry.register(LedgerBlock.class);
+		DataContractRegistry.register(TransactionRequest.class);
+		DataContractRegistry.register(DataAccountRegisterOperation.class);
+		DataContractRegistry.register(BytesValue.class);
+
+		testAllocation(createBlock(), LedgerBlock.class);
+		System.out.println("============================================================");
+		testAllocation(createTxRequest(), TransactionRequest.class);
+		System.out.println("============================================================");
+		byte[] value = new byte[256];
+		new Random().nextBytes(value);
+		testAllocation(new BytesValueImpl(DataType.BYTES, value), BytesValue.class);
+	}
+
+	private static void testAllocation(Object data, Class<?> contractType) {
+		DataContractEncoder encoder = DataContractContext.resolve(contractType);
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+		Encoding streamEncoding = () -> {
+			BytesOutputBuffer buffer = new BytesOutputBuffer();
+			encoder.encode(data, buffer);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			buffer.writeTo(out);
+			return out.toByteArray().length;
+		};
+		Encoding arrayEncoding = () -> BinaryEncodingUtils.encode(data, contractType).length;
+		Encoding directEncoding = () -> {
+			directBuffer.clear();
+			return BinaryEncodingUtils.encode(data, contractType, directBuffer);
+		};
+
+		test(contractType.getSimpleName() + " [ByteArrayOutputStream]", streamEncoding);
+		test(contractType.getSimpleName() + " [byte[]]", arrayEncoding);
+		test(contractType.getSimpleName() + " [DirectByteBuffer]", directEncoding);
+	}
+
+	private static void test(String name, Encoding encoding) {
+		long size = 0;
+		for (int i = 0; i < WARMUP_COUNT; i++) {
+			size += encoding.encode();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long startBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+		long startTs = System.nanoTime();
+		for (int i = 0; i < TEST_COUNT; i++) {
+			size += encoding.encode();
+		}
+		long elapsedTs = System.nanoTime() - startTs;
+		long allocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - startBytes;
+
+		System.out.println(String.format("%s: encoded %s times [size=%s], takes %.2f ms, allocates %.1f bytes/op; --TPS=%.2f",
+				name, TEST_COUNT, size / (WARMUP_COUNT + TEST_COUNT), elapsedTs / 1000000.0D,
+				allocatedBytes * 1.0D / TEST_COUNT, TEST_COUNT * 1000000000.0D / elapsedTs));
+	}
+
+	private static LedgerBlock createBlock() {
+		HashDigest ledgerHash = randomHash();
+		LedgerBlockData block = new LedgerBlockData(100, ledgerHash, randomHash());
+		block.setHash(randomHash());
+		block.setAdminAccountHash(randomHash());
+		block.setUserAccountSetHash(randomHash());
+		block.setDataAccountSetHash(randomHash());
+		block.setContractAccountSetHash(randomHash());
+		block.setTransactionSetHash(randomHash());
+		return block;
+	}
+
+	private static TransactionRequest createTxRequest() {
+		TxBuilder txBuilder = new TxBuilder(randomHash());
+		BlockchainKeyPair dataKey = BlockchainKeyGenerator.getInstance().generate();
+		txBuilder.dataAccounts().register(dataKey.getIdentity());
+		TransactionRequestBuilder txReqBuilder = txBuilder.prepareRequest();
+		txReqBuilder.signAsEndpoint(BlockchainKeyGenerator.getInstance().generate());
+		return txReqBuilder.buildRequest();
+	}
+
+	private static HashDigest randomHash() {
+		byte[] data = new byte[64];
+		new Random().nextBytes(data);
+		return CryptoUtils.hash(CryptoAlgorithm.SHA256).hash(data);
+	}
+
+	private static interface Encoding {
+
+		int encode();
+
+	}
+}
@@ -47,6 +47,12 @@ public class LedgerBindingConfig {
 	public static final String DB_CONN = DB_PREFIX + "uri";
 	public static final String DB_PASSWORD = DB_PREFIX + "pwd";
 
+	// Merkle Config Key Prefix;
+	public static final String MERKLE_PREFIX = "merkle.";
+
+	// Merkle Attribute Key;
+	public static final String MERKLE_COMMIT_PARALLELISM = MERKLE_PREFIX + "commit-parallelism";
+
 	// ------------------------------
 
 	private Map<HashDigest, BindingConfig> bindings = new LinkedHashMap<>();
@@ -91,6 +97,7 @@ public class LedgerBindingConfig {
 			BindingConfig binding = getLedger(hashs[i]);
 			writeParticipant(builder, hashs[i], binding);
 			writeDB(builder, hashs[i], binding);
+			writeMerkle(builder, hashs[i], binding);
 			writeLine(builder);
 		}
 		return builder.toString();
@@ -140,6 +147,16 @@ public class LedgerBindingConfig {
 		writeLine(builder);
 	}
 
+	private void writeMerkle(StringBuilder builder, HashDigest ledgerHash, BindingConfig binding) {
+		String ledgerPrefix = String.join(ATTR_SEPERATOR, BINDING_PREFIX, ledgerHash.toBase58());
+		// 默克尔树配置；
+		String commitParallelismKey = String.join(ATTR_SEPERATOR, ledgerPrefix, MERKLE_COMMIT_PARALLELISM);
+
+		writeLine(builder, "#账本的默克尔树提交时重新计算哈希的并行度；小于或等于 1 时以串行方式提交；");
+		writeLine(builder, "%s=%s", commitParallelismKey, binding.getMerkleCommitParallelism());
+		writeLine(builder);
+	}
+
 	private static String stringOf(Object obj) {
 		if (obj == null) {
 			return "";
@@ -247,6 +264,18 @@ public class LedgerBindingConfig {
 					String.format("No db connection config of participant of ledger binding[%s]!", ledgerHash));
 		}
 
+		// 默克尔树配置；
+		String commitParallelismKey = String.join(ATTR_SEPERATOR, ledgerPrefix, MERKLE_COMMIT_PARALLELISM);
+		String strCommitParallelism = getProperty(props, commitParallelismKey, false);
+		if (strCommitParallelism != null) {
+			try {
+				binding.merkleCommitParallelism = Integer.parseInt(strCommitParallelism);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format(
+						"Illegal merkle commit parallelism[%s] of ledger binding[%s]!", strCommitParallelism, ledgerHash));
+			}
+		}
+
 		return binding;
 	}
 
@@ -300,6 +329,8 @@ public class LedgerBindingConfig {
 
 		private DBConnectionConfig dbConnection = new DBConnectionConfig();
 
+		private int merkleCommitParallelism;
+
 		public ParticipantBindingConfig getParticipant() {
 			return participant;
 		}
@@ -308,6 +339,19 @@ public class LedgerBindingConfig {
 			return dbConnection;
 		}
 
+		/**
+		 * 账本的默克尔树提交时重新计算哈希的并行度；小于或等于 1 时以串行方式提交；
+		 * 
+		 * @return
+		 */
+		public int getMerkleCommitParallelism() {
+			return merkleCommitParallelism;
+		}
+
+		public void setMerkleCommitParallelism(int merkleCommitParallelism) {
+			this.merkleCommitParallelism = merkleCommitParallelism;
+		}
+
 	}
 
 	public static class ParticipantBindingConfig {
@@ -31,15 +31,18 @@ public class Bytes implements BytesSerializable {
 
 	private final byte[] data;
 
+	private final int size;
+
 	private final int hashCode;
 
 	public int size() {
-		return prefix == null ? data.length : prefix.size() + data.length;
+		return size;
 	}
 
 	public Bytes() {
 		prefix=null;
 		data = null;
+		size = 0;
 		hashCode = hashCode(1);
 	}
 
@@ -49,6 +52,7 @@ public class Bytes implements BytesSerializable {
 		}
 		this.prefix=null;
 		this.data = data;
+		this.size = data.length;
 		hashCode = hashCode(1);
 	}
 
@@ -58,6 +62,7 @@ public class Bytes implements BytesSerializable {
 		}
 		this.prefix=prefix;
 		this.data = data;
+		this.size = sizeOf(prefix, data);
 //		setPrefix(prefix);
 		hashCode = hashCode(1);
 	}
@@ -69,11 +74,17 @@ public class Bytes implements BytesSerializable {
 			throw new IllegalArgumentException("data is null!");
 		}
 		this.prefix=prefix;
+		// 没有前缀的 data 直接引用其字节数组，不会复制；
 		this.data = data.toBytes();
+		this.size = sizeOf(prefix, this.data);
 		
 		hashCode = hashCode(1);
 	}
 
+	private static int sizeOf(Bytes prefix, byte[] data) {
+		return prefix == null ? data.length : prefix.size() + data.length;
+	}
+
 //	private void setData(byte[] data) {
 //		if (data == null) {
 //			throw new IllegalArgumentException("data is null!");
@@ -90,6 +101,17 @@ public class Bytes implements BytesSerializable {
 		return data;
 	}
 
+	/**
+	 * 是否由非空的前缀和当前的字节数组组合而成；
+	 * <p>
+	 * 组合而成的实例在 {@link #toBytes()} 时需要分配新的数组并复制数据；
+	 * 
+	 * @return
+	 */
+	public boolean isComposite() {
+		return prefix != null && prefix.size() > 0;
+	}
+
 	public static Bytes fromString(String str) {
 		return new Bytes(BytesUtils.toBytes(str));
 	}
@@ -171,21 +193,21 @@ public class Bytes implements BytesSerializable {
 			return false;
 		}
 		Bytes oth = (Bytes) obj;
-		if (this.hashCode != oth.hashCode) {
+		if (this.hashCode != oth.hashCode || this.size != oth.size) {
 			return false;
 		}
-		boolean prefixIsEqual = false;
-		if (this.prefix == null && oth.prefix == null) {
-			prefixIsEqual = true;
-		} else if (this.prefix == null) {
-			prefixIsEqual = false;
-		} else {
-			prefixIsEqual = this.prefix.equals(oth.prefix);
+		if (this.data.length != oth.data.length) {
+			// 以不同的方式组合而成的相同内容也是相等的；
+			return BytesUtils.equals(this.toBytes(), oth.toBytes());
 		}
-		if (!prefixIsEqual) {
+		if (!BytesUtils.equals(this.data, oth.data)) {
 			return false;
 		}
-		return BytesUtils.equals(this.data, oth.data);
+		// 总长度和当前数组的长度都相同，则前缀的长度也相同；
+		if (this.size == this.data.length) {
+			return true;
+		}
+		return this.prefix.equals(oth.prefix);
 	}
 
 	public int copyTo(byte[] buffer, int offset, int len) {
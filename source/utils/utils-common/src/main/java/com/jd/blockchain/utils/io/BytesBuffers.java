@@ -0,0 +1,54 @@
+package com.jd.blockchain.utils.io;
+
+import com.jd.blockchain.utils.Bytes;
+
+/**
+ * 线程内复用的字节数组缓冲区；
+ * <p>
+ * 用于把组合而成的 {@link Bytes}（参见 {@link Bytes#isComposite()}）展开为连续的字节数组，传递给只接受完整数组、并且在调用期间复制数据的接口，
+ * 例如 RocksDB 的 JNI 接口、Jedis 的命令发送；按照长度复用数组，避免每次访问存储时都分配新的数组；
+ * <p>
+ * 注意：返回的数组在当前线程下一次展开同样长度的 {@link Bytes} 时即被覆盖，调用者不能保留其引用，也不能同时持有两个展开的结果；
+ *
+ * @author huanghaiquan
+ *
+ */
+public final class BytesBuffers {
+
+	/**
+	 * 复用的数组的最大长度；更长的数据直接分配新的数组；
+	 */
+	public static final int MAX_BUFFER_SIZE = 256;
+
+	private static final ThreadLocal<byte[][]> BUFFERS = ThreadLocal
+			.withInitial(() -> new byte[MAX_BUFFER_SIZE + 1][]);
+
+	private BytesBuffers() {
+	}
+
+	/**
+	 * 返回包含指定数据的连续字节数组；
+	 * <p>
+	 * 不是组合而成的数据直接返回其字节数组；否则复制到当前线程复用的数组；
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	public static byte[] flatten(Bytes bytes) {
+		if (!bytes.isComposite()) {
+			return bytes.toBytes();
+		}
+		int size = bytes.size();
+		if (size > MAX_BUFFER_SIZE) {
+			return bytes.toBytes();
+		}
+		byte[][] buffers = BUFFERS.get();
+		byte[] buffer = buffers[size];
+		if (buffer == null) {
+			buffer = new byte[size];
+			buffers[size] = buffer;
+		}
+		bytes.copyTo(buffer, 0, size);
+		return buffer;
+	}
+}
@@ -2,6 +2,8 @@ package com.jd.blockchain.utils.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  * 字节输出缓冲区；<br>
@@ -84,6 +86,17 @@ public class BytesOutputBuffer {
 		}
 	}
 
+	/**
+	 * 复制写入；<br>
+	 * 
+	 * 此方法复制参数指定的字节片段的一个副本作为写入缓冲区的组成部分；
+	 * 
+	 * @param slice slice
+	 */
+	public void write(BytesSlice slice) {
+		writeCopy(slice.getOriginBytes(), slice.getOriginOffset(), slice.getSize());
+	}
+
 	/**
 	 * 复制写入；<br>
 	 * 
@@ -137,6 +150,24 @@ public class BytesOutputBuffer {
 		return len;
 	}
 	
+	/**
+	 * 把全部内容输出到指定的 {@link ByteBuffer}，并返回写入的长度；
+	 * <p>
+	 * 如果剩余空间不足，则抛出 {@link BufferOverflowException}，不写入任何数据；
+	 * 
+	 * @param out out
+	 * @return int
+	 */
+	public synchronized int writeTo(ByteBuffer out) {
+		if (out.remaining() < size) {
+			throw new BufferOverflowException();
+		}
+		for (int i = 0; i < cursor; i++) {
+			out.put(buffers[i]);
+		}
+		return size;
+	}
+
 	public synchronized int writeTo(OutputStream out) {
 		try {
 			for (int i = 0; i < cursor; i++) {
@@ -159,4 +190,17 @@ public class BytesOutputBuffer {
 		return data;
 	}
 
+	/**
+	 * 清空缓冲区，以便重复使用；<br>
+	 * 
+	 * 清除对已写入的字节数组的引用，保留已扩充的容量；
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < cursor; i++) {
+			buffers[i] = null;
+		}
+		cursor = 0;
+		size = 0;
+	}
+
 }
@@ -1,5 +1,9 @@
 package com.jd.blockchain.utils.io;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * @author huanghaiquan
  *
@@ -158,6 +162,32 @@ public class BytesSlice implements BytesSerializable {
 		return copy;
 	}
 
+	/**
+	 * 把全部内容写入指定的 {@link ByteBuffer}，并返回写入的长度；
+	 * 
+	 * @param out out
+	 * @return int
+	 */
+	public int writeTo(ByteBuffer out) {
+		out.put(bytes, dataOffset, size);
+		return size;
+	}
+
+	/**
+	 * 把全部内容写入指定的输出流，并返回写入的长度；
+	 * 
+	 * @param out out
+	 * @return int
+	 */
+	public int writeTo(OutputStream out) {
+		try {
+			out.write(bytes, dataOffset, size);
+			return size;
+		} catch (IOException e) {
+			throw new RuntimeIOException(e.getMessage(), e);
+		}
+	}
+
 	protected byte[] getOriginBytes() {
 		return bytes;
 	}
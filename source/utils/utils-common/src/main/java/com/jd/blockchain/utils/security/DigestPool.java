@@ -0,0 +1,60 @@
+package com.jd.blockchain.utils.security;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 线程本地的摘要算法实例池；
+ * <p>
+ * 每个线程保留一个可复用的实例，避免每次计算摘要时重新查找算法提供者并创建实例；<br>
+ * 使用时从线程本地取出，用完后重置并归还；同一线程同时使用多个实例时（例如流式计算的过程中又计算了其它摘要），创建新的实例；
+ * 
+ * @author huanghaiquan
+ *
+ * @param <T>
+ *            摘要算法实例的类型；
+ */
+public final class DigestPool<T> {
+
+	private final ThreadLocal<T> pool = new ThreadLocal<>();
+
+	private final Supplier<T> factory;
+
+	private final Consumer<T> resetter;
+
+	/**
+	 * @param factory
+	 *            创建实例的方法；
+	 * @param resetter
+	 *            重置实例的方法；
+	 */
+	public DigestPool(Supplier<T> factory, Consumer<T> resetter) {
+		this.factory = factory;
+		this.resetter = resetter;
+	}
+
+	/**
+	 * 取出当前线程的实例；如果已经被取出，则创建新的实例；
+	 * 
+	 * @return
+	 */
+	public T borrow() {
+		T digest = pool.get();
+		if (digest == null) {
+			return factory.get();
+		}
+		pool.set(null);
+		return digest;
+	}
+
+	/**
+	 * 重置并归还实例；
+	 * 
+	 * @param digest
+	 */
+	public void giveBack(T digest) {
+		resetter.accept(digest);
+		pool.set(digest);
+	}
+
+}
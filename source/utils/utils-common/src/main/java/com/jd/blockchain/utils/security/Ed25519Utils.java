@@ -6,6 +6,10 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.SignatureException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jd.blockchain.utils.Bytes;
 
 import net.i2p.crypto.eddsa.EdDSAEngine;
 import net.i2p.crypto.eddsa.EdDSAPrivateKey;
@@ -82,4 +86,49 @@ public class Ed25519Utils {
 		}
 	}
 
+	/**
+	 * 批量验证签名；
+	 * <p>
+	 * 与逐个调用 {@link #verify(byte[], byte[], byte[])} 的结果相同；批量验证时复用验签引擎，并且相同的公钥只解码一次，
+	 * 例如同一个节点对一批交易的签名；
+	 * 
+	 * @param plainDatas
+	 *            明文列表；
+	 * @param pubKeys
+	 *            公钥列表；
+	 * @param signatures
+	 *            摘要列表；
+	 * @return 按顺序对应每一个签名的验证结果；格式错误的公钥或者摘要的验证结果为 false；
+	 */
+	public static boolean[] verifyBatch(byte[][] plainDatas, byte[][] pubKeys, byte[][] signatures) {
+		if (plainDatas.length != pubKeys.length || plainDatas.length != signatures.length) {
+			throw new IllegalArgumentException("The lengths of datas, public keys and signatures are not equal!");
+		}
+		boolean[] results = new boolean[plainDatas.length];
+		EdDSAEngine sgr;
+		try {
+			sgr = new EdDSAEngine(MessageDigest.getInstance("SHA-512"));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+		EdDSAParameterSpec spec = EdDSANamedCurveTable.getByName("ed25519-sha-512");
+		Map<Bytes, EdDSAPublicKey> decodedKeys = new HashMap<>();
+		for (int i = 0; i < plainDatas.length; i++) {
+			try {
+				Bytes keyBytes = new Bytes(pubKeys[i]);
+				EdDSAPublicKey pubKey = decodedKeys.get(keyBytes);
+				if (pubKey == null) {
+					pubKey = new EdDSAPublicKey(new EdDSAPublicKeySpec(pubKeys[i], spec));
+					decodedKeys.put(keyBytes, pubKey);
+				}
+				sgr.initVerify(pubKey);
+				sgr.update(plainDatas[i]);
+				results[i] = sgr.verify(signatures[i]);
+			} catch (InvalidKeyException | SignatureException | RuntimeException e) {
+				results[i] = false;
+			}
+		}
+		return results;
+	}
+
 }
@@ -12,14 +12,24 @@ public class RipeMD160Utils {
 		Security.addProvider(new BouncyCastleProvider());
 	}
 
-	public static byte[] hash(byte[] bytes) {
+	/**
+	 * 线程本地的 RIPEMD160 摘要实例；
+	 */
+	public static final DigestPool<MessageDigest> DIGEST_POOL = new DigestPool<>(() -> {
 		try {
-			MessageDigest md160 = MessageDigest.getInstance("RIPEMD160");
-			return md160.digest(bytes);
+			return MessageDigest.getInstance("RIPEMD160");
 		} catch (NoSuchAlgorithmException e) {
 			throw new EncryptionException(e.getMessage(), e);
 		}
+	}, MessageDigest::reset);
 
+	public static byte[] hash(byte[] bytes) {
+		MessageDigest md160 = DIGEST_POOL.borrow();
+		try {
+			return md160.digest(bytes);
+		} finally {
+			DIGEST_POOL.giveBack(md160);
+		}
 	}
 
 }
@@ -15,6 +15,17 @@ import java.util.Arrays;
  */
 public class ShaUtils {
 
+	/**
+	 * 线程本地的 SHA-256 摘要实例；
+	 */
+	public static final DigestPool<MessageDigest> SHA256_DIGEST_POOL = new DigestPool<>(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}, MessageDigest::reset);
+
 	/**
 	 * 对指定的字节数组进行 SHA128 哈希；
 	 * @param bytes bytes
@@ -31,13 +42,23 @@ public class ShaUtils {
 	 * @return 返回长度为 32 的字节数组；
 	 */
 	public static byte[] hash_256(byte[] bytes) {
-		MessageDigest md = null;
+		return hash_256(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * 对指定的字节数组的片段进行 SHA256 哈希；
+	 * @param bytes bytes
+	 * @param offset offset
+	 * @param len len
+	 * @return 返回长度为 32 的字节数组；
+	 */
+	public static byte[] hash_256(byte[] bytes, int offset, int len) {
+		MessageDigest md = SHA256_DIGEST_POOL.borrow();
 		try {
-			md = MessageDigest.getInstance("SHA-256");
-			md.update(bytes);
+			md.update(bytes, offset, len);
 			return md.digest();
-		} catch (NoSuchAlgorithmException e) {
-			throw new IllegalStateException(e.getMessage(), e);
+		} finally {
+			SHA256_DIGEST_POOL.giveBack(md);
 		}
 	}
 
@@ -60,13 +81,14 @@ public class ShaUtils {
 	 * @return 返回长度为 32 的字节数组；
 	 */
 	public static int hash_256(byte[] bytes, byte[] outputBuffer, int offset, int length) {
-		MessageDigest md = null;
+		MessageDigest md = SHA256_DIGEST_POOL.borrow();
 		try {
-			md = MessageDigest.getInstance("SHA-256");
 			md.update(bytes);
 			return md.digest(outputBuffer, offset, length);
-		} catch (NoSuchAlgorithmException | DigestException e) {
+		} catch (DigestException e) {
 			throw new IllegalStateException(e.getMessage(), e);
+		} finally {
+			SHA256_DIGEST_POOL.giveBack(md);
 		}
 	}
 
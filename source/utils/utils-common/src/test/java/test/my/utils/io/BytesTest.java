@@ -7,6 +7,7 @@ import java.util.Arrays;
 import org.junit.Test;
 
 import com.jd.blockchain.utils.Bytes;
+import com.jd.blockchain.utils.io.BytesBuffers;
 import com.jd.blockchain.utils.io.BytesUtils;
 
 public class BytesTest {
@@ -22,4 +23,45 @@ public class BytesTest {
 		assertEquals(Arrays.hashCode(key1Bytes), key1.hashCode());
 	}
 
+	@Test
+	public void testCompositeEquals() {
+		Bytes flat = Bytes.fromString("LDG://ABC/key");
+		Bytes composite = Bytes.fromString("LDG://").concat(Bytes.fromString("ABC/")).concat(BytesUtils.toBytes("key"));
+		Bytes composite2 = Bytes.fromString("LDG://ABC/").concat(BytesUtils.toBytes("key"));
+		Bytes composite3 = new Bytes(Bytes.fromString("LDG://ABC/k"), BytesUtils.toBytes("ey"));
+
+		assertFalse(flat.isComposite());
+		assertTrue(composite.isComposite());
+		assertEquals(flat.size(), composite.size());
+
+		// 以不同方式组合而成的相同内容是相等的；
+		assertEquals(flat, composite);
+		assertEquals(composite, flat);
+		assertEquals(composite, composite2);
+		assertEquals(composite2, composite3);
+		assertEquals(flat.hashCode(), composite3.hashCode());
+		assertNotEquals(flat, Bytes.fromString("LDG://ABC/kez"));
+		assertNotEquals(composite, Bytes.fromString("LDG://").concat(BytesUtils.toBytes("ABC/kez")));
+	}
+
+	@Test
+	public void testFlatten() {
+		Bytes flat = Bytes.fromString("ABC");
+		// 不是组合而成的数据不必复制；
+		assertSame(flat.toBytes(), BytesBuffers.flatten(flat));
+
+		Bytes key1 = Bytes.fromString("LDG://").concat(BytesUtils.toBytes("key1"));
+		Bytes key2 = Bytes.fromString("LDG://").concat(BytesUtils.toBytes("key2"));
+		byte[] buffer = BytesBuffers.flatten(key1);
+		assertArrayEquals(key1.toBytes(), buffer);
+		// 同样长度的数据复用同一个数组；
+		assertSame(buffer, BytesBuffers.flatten(key2));
+		assertArrayEquals(key2.toBytes(), buffer);
+
+		byte[] large = new byte[BytesBuffers.MAX_BUFFER_SIZE + 1];
+		Bytes largeKey = Bytes.fromString("LDG://").concat(large);
+		assertEquals(largeKey.size(), BytesBuffers.flatten(largeKey).length);
+		assertNotSame(BytesBuffers.flatten(largeKey), BytesBuffers.flatten(largeKey));
+	}
+
 }
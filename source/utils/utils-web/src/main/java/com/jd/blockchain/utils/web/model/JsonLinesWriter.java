@@ -0,0 +1,85 @@
+package com.jd.blockchain.utils.web.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 以 JSON Lines（即 NDJSON）格式逐个输出对象的写入器；
+ * <p>
+ * 每一个对象序列化为一行 JSON；已经写入的对象不在内存中保留，并且每写入一定数量的对象刷新一次输出流，<br>
+ * 使得输出大量结果时服务端只占用常量的内存，客户端也可以逐行地解析结果；
+ * <p>
+ * 与 {@link JsonWebResponseMessageConverter} 一致，代理对象以其调用处理器进行序列化，但对象不包装为 {@link WebResponse}；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class JsonLinesWriter {
+
+	public static final String CONTENT_TYPE_VALUE = "application/x-ndjson;charset=UTF-8";
+
+	/**
+	 * 刷新输出流的间隔的对象数量；
+	 */
+	private static final int FLUSH_INTERVAL = 64;
+
+	private static final byte[] LINE_SEPERATOR = { '\n' };
+
+	private OutputStream out;
+
+	private long count;
+
+	public JsonLinesWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * 写入一个对象；
+	 *
+	 * @param obj
+	 * @throws IOException
+	 */
+	public void write(Object obj) throws IOException {
+		if (obj instanceof Proxy) {
+			obj = JsonWebResponseMessageConverter.unwrapProxy(obj);
+		}
+		out.write(JSON.toJSONString(obj).getBytes(StandardCharsets.UTF_8));
+		out.write(LINE_SEPERATOR);
+		count++;
+		if (count % FLUSH_INTERVAL == 0) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * 写入迭代器返回的全部对象，并刷新输出流；
+	 *
+	 * @param objects
+	 * @throws IOException
+	 */
+	public void writeAll(Iterator<?> objects) throws IOException {
+		while (objects.hasNext()) {
+			write(objects.next());
+		}
+		flush();
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * 已经写入的对象的数量；
+	 *
+	 * @return
+	 */
+	public long getCount() {
+		return count;
+	}
+
+}
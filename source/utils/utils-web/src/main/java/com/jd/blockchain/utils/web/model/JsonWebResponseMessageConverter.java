@@ -63,10 +63,24 @@ public class JsonWebResponseMessageConverter extends FastJsonHttpMessageConverte
 		super.writeInternal(WebResponse.createSuccessResult(obj), outputMessage);
 	}
 
-	private Object proxy2Obj(Object obj) throws Exception {
+	private static Object proxy2Obj(Object obj) throws Exception {
 		Field field = obj.getClass().getSuperclass().getDeclaredField("h");
 		field.setAccessible(true);
 		//获取指定对象中此字段的值
 		return field.get(obj); //获取Proxy对象中的此字段的值
 	}
+
+	/**
+	 * 返回代理对象的调用处理器；如果无法获取，则返回代理对象本身；
+	 * 
+	 * @param obj
+	 * @return
+	 */
+	static Object unwrapProxy(Object obj) {
+		try {
+			return proxy2Obj(obj);
+		} catch (Exception e) {
+			return obj;
+		}
+	}
 }
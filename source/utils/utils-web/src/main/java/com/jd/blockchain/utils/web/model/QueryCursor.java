@@ -0,0 +1,108 @@
+package com.jd.blockchain.utils.web.model;
+
+import com.jd.blockchain.utils.codec.Base58Utils;
+import com.jd.blockchain.utils.io.BytesUtils;
+
+/**
+ * 流式查询的续传游标；
+ * <p>
+ * 记录查询所基于的区块高度以及下一个要返回的结果的序号，以 Base58 编码的形式作为不透明的令牌返回给客户端；<br>
+ * 客户端以此令牌继续查询时，服务端从同一个区块的数据快照中的下一个序号开始返回结果，因此分段返回的结果前后一致；
+ * <p>
+ * 区块高度为 -1 时表示未绑定区块，即每次都基于最新的区块进行查询；
+ *
+ * @author huanghaiquan
+ *
+ */
+public class QueryCursor {
+
+	/**
+	 * 返回续传游标的响应头；如果结果已经全部返回，则不包含此响应头；
+	 */
+	public static final String HEADER_NAME = "X-Query-Cursor";
+
+	private final long blockHeight;
+
+	private final long index;
+
+	public QueryCursor(long blockHeight, long index) {
+		if (index < 0) {
+			throw new IllegalArgumentException("The index of query cursor is negative!");
+		}
+		this.blockHeight = blockHeight;
+		this.index = index;
+	}
+
+	public long getBlockHeight() {
+		return blockHeight;
+	}
+
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * 编码为令牌；
+	 *
+	 * @return
+	 */
+	public String encode() {
+		byte[] bytes = new byte[16];
+		BytesUtils.toBytes(blockHeight, bytes, 0);
+		BytesUtils.toBytes(index, bytes, 8);
+		return Base58Utils.encode(bytes);
+	}
+
+	/**
+	 * 解析令牌；
+	 *
+	 * @param token
+	 * @return
+	 */
+	public static QueryCursor decode(String token) {
+		byte[] bytes;
+		try {
+			bytes = Base58Utils.decode(token);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Illegal query cursor[" + token + "]!", e);
+		}
+		if (bytes.length != 16) {
+			throw new IllegalArgumentException("Illegal query cursor[" + token + "]!");
+		}
+		return new QueryCursor(BytesUtils.toLong(bytes, 0), BytesUtils.toLong(bytes, 8));
+	}
+
+	/**
+	 * 计算一次查询返回的结果的区间；
+	 *
+	 * @param fromIndex
+	 *            起始的序号；小于 0 时从 0 开始；
+	 * @param count
+	 *            要返回的结果的数量；小于 0 时返回到最后一个结果；
+	 * @param totalCount
+	 *            结果的总数；
+	 * @return 起始的序号和返回的数量；
+	 */
+	public static long[] range(long fromIndex, long count, long totalCount) {
+		fromIndex = Math.max(0, Math.min(fromIndex, totalCount));
+		long remaining = totalCount - fromIndex;
+		count = count < 0 ? remaining : Math.min(count, remaining);
+		return new long[] { fromIndex, count };
+	}
+
+	/**
+	 * 返回指定区间之后的续传游标；如果之后没有更多的结果，则返回 null；
+	 *
+	 * @param blockHeight
+	 * @param range
+	 *            {@link #range(long, long, long)} 返回的区间；
+	 * @param totalCount
+	 *            结果的总数；
+	 * @return
+	 */
+	public static QueryCursor next(long blockHeight, long[] range, long totalCount) {
+		long nextIndex = range[0] + range[1];
+		return nextIndex < totalCount ? new QueryCursor(blockHeight, nextIndex) : null;
+	}
+
+}
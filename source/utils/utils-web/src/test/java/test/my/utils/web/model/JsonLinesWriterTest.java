@@ -0,0 +1,109 @@
+package test.my.utils.web.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.jd.blockchain.utils.web.model.JsonLinesWriter;
+
+public class JsonLinesWriterTest {
+
+	@Test
+	public void testWriteAll() throws IOException {
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			items.add(new Item("KEY-" + i, i));
+		}
+		CountingOutputStream out = new CountingOutputStream();
+		JsonLinesWriter writer = new JsonLinesWriter(out);
+		writer.writeAll(items.iterator());
+
+		assertEquals(items.size(), writer.getCount());
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n", -1);
+		// 每一行一个对象，最后一行之后以换行结束；
+		assertEquals(items.size() + 1, lines.length);
+		assertEquals("", lines[items.size()]);
+		for (int i = 0; i < items.size(); i++) {
+			JSONObject json = JSON.parseObject(lines[i]);
+			assertEquals("KEY-" + i, json.getString("key"));
+			assertEquals(i, json.getIntValue("version"));
+		}
+		// 按间隔刷新输出流，并在全部写入之后刷新；
+		assertEquals(4, out.flushes);
+	}
+
+	@Test
+	public void testWriteProxy() throws IOException {
+		ItemHandler handler = new ItemHandler("KEY", 8);
+		Runnable proxy = (Runnable) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Runnable.class }, handler);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonLinesWriter writer = new JsonLinesWriter(out);
+		writer.writeAll(Arrays.asList(proxy, "text", null).iterator());
+
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(3, lines.length);
+		// 代理对象以其调用处理器序列化；
+		JSONObject json = JSON.parseObject(lines[0]);
+		assertEquals("KEY", json.getString("key"));
+		assertEquals(8, json.getIntValue("version"));
+		assertEquals("\"text\"", lines[1]);
+		assertEquals("null", lines[2]);
+	}
+
+	public static class Item {
+
+		private String key;
+
+		private long version;
+
+		public Item(String key, long version) {
+			this.key = key;
+			this.version = version;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+	}
+
+	public static class ItemHandler extends Item implements InvocationHandler {
+
+		public ItemHandler(String key, long version) {
+			super(key, version);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			return null;
+		}
+	}
+
+	private static class CountingOutputStream extends ByteArrayOutputStream {
+
+		private int flushes;
+
+		@Override
+		public void flush() throws IOException {
+			flushes++;
+			super.flush();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package test.my.utils.web.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.jd.blockchain.utils.codec.Base58Utils;
+import com.jd.blockchain.utils.web.model.QueryCursor;
+
+public class QueryCursorTest {
+
+	@Test
+	public void testEncodeDecode() {
+		QueryCursor cursor = new QueryCursor(1024, 300);
+		QueryCursor decoded = QueryCursor.decode(cursor.encode());
+		assertEquals(1024, decoded.getBlockHeight());
+		assertEquals(300, decoded.getIndex());
+
+		// 未绑定区块；
+		decoded = QueryCursor.decode(new QueryCursor(-1, 0).encode());
+		assertEquals(-1, decoded.getBlockHeight());
+		assertEquals(0, decoded.getIndex());
+	}
+
+	@Test
+	public void testDecodeIllegalToken() {
+		assertIllegalToken(null);
+		assertIllegalToken("");
+		// 非 Base58 字符；
+		assertIllegalToken("0OIl");
+		// 长度不正确；
+		assertIllegalToken(Base58Utils.encode(new byte[8]));
+		assertIllegalToken(Base58Utils.encode(new byte[17]));
+		// 负数的序号；
+		byte[] bytes = new byte[16];
+		bytes[8] = (byte) 0x80;
+		assertIllegalToken(Base58Utils.encode(bytes));
+	}
+
+	@Test
+	public void testRange() {
+		assertArrayEquals(new long[] { 0, 10 }, QueryCursor.range(0, 10, 100));
+		assertArrayEquals(new long[] { 95, 5 }, QueryCursor.range(95, 10, 100));
+		// 负数的起始序号从 0 开始；
+		assertArrayEquals(new long[] { 0, 10 }, QueryCursor.range(-5, 10, 100));
+		// 负数的数量返回到最后一个结果；
+		assertArrayEquals(new long[] { 40, 60 }, QueryCursor.range(40, -1, 100));
+		// 超出结果总数；
+		assertArrayEquals(new long[] { 100, 0 }, QueryCursor.range(120, 10, 100));
+		assertArrayEquals(new long[] { 0, 0 }, QueryCursor.range(0, 10, 0));
+	}
+
+	@Test
+	public void testNext() {
+		QueryCursor next = QueryCursor.next(8, QueryCursor.range(0, 10, 100), 100);
+		assertEquals(8, next.getBlockHeight());
+		assertEquals(10, next.getIndex());
+
+		// 已经返回全部结果时没有续传游标；
+		assertNull(QueryCursor.next(8, QueryCursor.range(95, 10, 100), 100));
+		assertNull(QueryCursor.next(8, QueryCursor.range(40, -1, 100), 100));
+		assertNull(QueryCursor.next(8, QueryCursor.range(0, 10, 0), 0));
+	}
+
+	private static void assertIllegalToken(String token) {
+		try {
+			QueryCursor.decode(token);
+			fail("Illegal query cursor is decoded! --[" + token + "]");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}